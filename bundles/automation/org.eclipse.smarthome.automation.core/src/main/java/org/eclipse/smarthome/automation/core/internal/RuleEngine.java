@@ -53,6 +53,7 @@ import org.eclipse.smarthome.automation.type.ModuleType;
 import org.eclipse.smarthome.automation.type.Output;
 import org.eclipse.smarthome.automation.type.TriggerType;
 import org.eclipse.smarthome.config.core.ConfigDescriptionParameter;
+import org.eclipse.smarthome.core.common.RuleProfiler;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.cm.ConfigurationException;
@@ -77,6 +78,7 @@ import org.slf4j.LoggerFactory;
  * @author Yordan Mihaylov - Initial Contribution
  * @author Kai Kreuzer - refactored (managed) provider, registry implementation and customized modules
  * @author Benedikt Niehues - change behavior for unregistering ModuleHandler
+ * @author Markus Mazurczak - Profiling of rule executions
  *
  */
 @SuppressWarnings("rawtypes")
@@ -99,6 +101,11 @@ public class RuleEngine
      */
     public static final String ID_PREFIX = "rule_"; //$NON-NLS-1$
 
+    /**
+     * Name of this rule engine in the {@link RuleProfiler}.
+     */
+    public static final String PROFILER_ENGINE = "automation";
+
     /**
      * Default value of delay between rule's re-initialization tries.
      */
@@ -927,8 +934,13 @@ public class RuleEngine
      * @param td {@link TriggerData} object containing new values for {@link Trigger}'s {@link Output}s
      */
     protected void runRule(RuntimeRule rule, RuleEngineCallbackImpl.TriggerData td) {
+        RuleProfiler.triggered(PROFILER_ENGINE, rule.getUID());
         RuleStatus ruleStatus = getRuleStatus(rule.getUID());
         if (ruleStatus == RuleStatus.IDLE) {
+            long start = System.nanoTime();
+            long conditionTime = 0;
+            long actionTime = 0;
+            boolean failed = false;
             try {
 
                 // change state to RUNNING
@@ -936,16 +948,23 @@ public class RuleEngine
                 clearContext(rule);
 
                 setTriggerOutputs(rule.getUID(), td);
+                long conditionStart = System.nanoTime();
                 boolean isSatisfied = calculateConditions(rule);
+                long actionStart = System.nanoTime();
+                conditionTime = actionStart - conditionStart;
                 if (isSatisfied) {
-                    executeActions(rule);
+                    failed = !executeActions(rule);
+                    actionTime = System.nanoTime() - actionStart;
                     logger.debug("The rule '{}' is executed.", rule.getUID());
                 } else {
                     logger.debug("The rule '{}' is NOT executed, since it has unsatisfied conditions.", rule.getUID());
                 }
             } catch (Throwable t) {
+                failed = true;
                 logger.error("Fail to execute rule '{}': {}", new Object[] { rule.getUID(), t.getMessage() }, t);
             }
+            RuleProfiler.executed(PROFILER_ENGINE, rule.getUID(), start - td.getTriggerTime(), conditionTime,
+                    actionTime, failed);
 
             // change state to IDLE
             setRuleStatusInfo(rule.getUID(), new RuleStatusInfo(RuleStatus.IDLE));
@@ -1051,12 +1070,14 @@ public class RuleEngine
      * This method evaluates actions of the {@link Rule} and set their {@link Output}s when they exists.
      *
      * @param rule executed rule.
+     * @return false, if one of the actions failed, true otherwise.
      */
-    private void executeActions(Rule rule) {
+    private boolean executeActions(Rule rule) {
         List<Action> actions = ((RuntimeRule) rule).getActions();
         if (actions == null || actions.size() == 0) {
-            return;
+            return true;
         }
+        boolean succeeded = true;
         for (Iterator<Action> it = actions.iterator(); it.hasNext();) {
             RuntimeAction a = (RuntimeAction) it.next();
             ActionHandler aHandler = a.getModuleHandler();
@@ -1069,11 +1090,12 @@ public class RuleEngine
                     updateContext(rUID, a.getId(), outputs);
                 }
             } catch (Throwable t) {
+                succeeded = false;
                 logger.error("Fail to execute the action: " + a.getId(), t);
             }
 
         }
-
+        return succeeded;
     }
 
     /**
@@ -22,6 +22,7 @@ import org.eclipse.smarthome.automation.handler.RuleEngineCallback;
  * rule's {@link Trigger}s.
  *
  * @author Yordan Mihaylov - Initial Contribution
+ * @author Markus Mazurczak - Recording of the trigger time
  */
 public class RuleEngineCallbackImpl implements RuleEngineCallback {
 
@@ -66,9 +67,19 @@ public class RuleEngineCallbackImpl implements RuleEngineCallback {
 
         private Map<String, ?> outputs;
 
+        private long triggerTime;
+
         public TriggerData(Trigger t, Map<String, ?> outputs) {
             this.trigger = t;
             this.outputs = outputs;
+            this.triggerTime = System.nanoTime();
+        }
+
+        /**
+         * @return the value of {@link System#nanoTime()} when the trigger fired
+         */
+        public long getTriggerTime() {
+            return triggerTime;
         }
 
         @Override
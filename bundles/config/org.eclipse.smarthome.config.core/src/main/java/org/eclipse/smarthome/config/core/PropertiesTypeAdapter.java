@@ -5,7 +5,7 @@
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
  */
-package org.eclipse.smarthome.storage.mapdb;
+package org.eclipse.smarthome.config.core;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -28,9 +28,10 @@ import com.google.gson.stream.JsonWriter;
 /**
  * Type adapter that makes sure that all Numeric values in Maps of type
  * Map<String, Object> are deserialized as BigDecimal instances instead of
- * doubles.
+ * doubles, as expected by {@link Configuration}.
  *
  * @author Ivan Iliev
+ * @author Markus Mazurczak - Moved from the MapDB storage to share it between the storages
  *
  */
 public class PropertiesTypeAdapter extends TypeAdapter<Map<String, Object>> {
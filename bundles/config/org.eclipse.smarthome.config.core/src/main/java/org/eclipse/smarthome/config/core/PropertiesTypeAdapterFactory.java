@@ -5,7 +5,7 @@
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
  */
-package org.eclipse.smarthome.storage.mapdb;
+package org.eclipse.smarthome.config.core;
 
 import java.lang.reflect.Type;
 
@@ -20,6 +20,7 @@ import com.google.gson.reflect.TypeToken;
  * or null otherwise.
  *
  * @author Ivan Iliev
+ * @author Markus Mazurczak - Moved from the MapDB storage to share it between the storages
  *
  */
 public class PropertiesTypeAdapterFactory implements TypeAdapterFactory {
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.config.discovery.internal
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import org.eclipse.smarthome.config.discovery.DiscoveryResult
+import org.eclipse.smarthome.config.discovery.DiscoveryResultFlag
+import org.eclipse.smarthome.core.storage.StorageCodec
+import org.eclipse.smarthome.core.storage.TypeTable
+import org.eclipse.smarthome.core.thing.ThingUID
+import org.junit.Before
+import org.junit.Test
+
+import com.google.gson.Gson
+
+/**
+ * Tests that {@link DiscoveryResultImpl}s survive a round trip through the binary format of the
+ * {@link DiscoveryResultCodec}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class DiscoveryResultCodecTest {
+
+    StorageCodec codec
+
+    @Before
+    void setUp() {
+        codec = new StorageCodec(new TypeTable([:], null), new Gson(), [new DiscoveryResultCodec()])
+        codec.binary = true
+    }
+
+    @Test
+    void 'assert a discovery result survives a round trip'() {
+        def result = new DiscoveryResultImpl(new ThingUID("binding:type:thing"), new ThingUID("binding:bridge:hub"),
+                [host: "192.168.0.2", port: new BigDecimal(80), secure: false], "host", "Lamp", 300)
+        result.flag = DiscoveryResultFlag.IGNORED
+        result.timestamp = 1234567890L
+
+        DiscoveryResultImpl decoded = roundTrip(result)
+
+        assertThat decoded.thingUID, is(result.thingUID)
+        assertThat decoded.bridgeUID, is(result.bridgeUID)
+        assertThat decoded.properties, is(result.properties)
+        assertThat decoded.representationProperty, is("host")
+        assertThat decoded.label, is("Lamp")
+        assertThat decoded.flag, is(DiscoveryResultFlag.IGNORED)
+        assertThat decoded.timestamp, is(1234567890L)
+        assertThat decoded.timeToLive, is(300L)
+    }
+
+    @Test
+    void 'assert a minimal discovery result survives a round trip'() {
+        def result = new DiscoveryResultImpl(new ThingUID("binding:type:thing"), null, null, null, null,
+                DiscoveryResult.TTL_UNLIMITED)
+
+        DiscoveryResultImpl decoded = roundTrip(result)
+
+        assertThat decoded.thingUID, is(result.thingUID)
+        assertThat decoded.bridgeUID, is(nullValue())
+        assertThat decoded.properties.isEmpty(), is(true)
+        assertThat decoded.representationProperty, is(nullValue())
+        assertThat decoded.label, is("")
+        assertThat decoded.flag, is(DiscoveryResultFlag.NEW)
+        assertThat decoded.timestamp, is(result.timestamp)
+        assertThat decoded.timeToLive, is(DiscoveryResult.TTL_UNLIMITED)
+    }
+
+    private DiscoveryResultImpl roundTrip(DiscoveryResultImpl result) {
+        byte[] data = codec.encode(result)
+        assertThat data[0], is(StorageCodec.FORMAT_BINARY)
+        return codec.decode(data, getClass().getClassLoader())
+    }
+}
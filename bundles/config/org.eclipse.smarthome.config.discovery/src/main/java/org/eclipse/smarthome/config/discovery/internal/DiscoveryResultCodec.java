@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.config.discovery.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+import org.eclipse.smarthome.config.discovery.DiscoveryResultFlag;
+import org.eclipse.smarthome.core.storage.ValueCodec;
+import org.eclipse.smarthome.core.storage.ValueCodecUtil;
+import org.eclipse.smarthome.core.thing.ThingUID;
+
+/**
+ * {@link ValueCodec} for the {@link DiscoveryResultImpl}s of the inbox.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class DiscoveryResultCodec implements ValueCodec<DiscoveryResultImpl> {
+
+    @Override
+    public Class<DiscoveryResultImpl> getValueType() {
+        return DiscoveryResultImpl.class;
+    }
+
+    @Override
+    public void encode(DiscoveryResultImpl result, DataOutput out) throws IOException {
+        ValueCodecUtil.writeString(out, result.getThingUID().getAsString());
+        ValueCodecUtil.writeString(out, result.getBridgeUID() == null ? null : result.getBridgeUID().getAsString());
+        ValueCodecUtil.writeValueMap(out, result.getProperties());
+        ValueCodecUtil.writeString(out, result.getRepresentationProperty());
+        ValueCodecUtil.writeString(out, result.getLabel());
+        ValueCodecUtil.writeString(out, result.getFlag() == null ? null : result.getFlag().name());
+        out.writeLong(result.getTimestamp());
+        out.writeLong(result.getTimeToLive());
+    }
+
+    @Override
+    public DiscoveryResultImpl decode(DataInput in) throws IOException {
+        ThingUID thingUID = new ThingUID(ValueCodecUtil.readString(in));
+        String bridgeUID = ValueCodecUtil.readString(in);
+        Map<String, Object> properties = ValueCodecUtil.readValueMap(in);
+        String representationProperty = ValueCodecUtil.readString(in);
+        String label = ValueCodecUtil.readString(in);
+        String flag = ValueCodecUtil.readString(in);
+        long timestamp = in.readLong();
+        long timeToLive = in.readLong();
+
+        DiscoveryResultImpl result;
+        try {
+            result = new DiscoveryResultImpl(thingUID, bridgeUID == null ? null : new ThingUID(bridgeUID),
+                    properties, representationProperty, label, timeToLive);
+            result.setFlag(flag == null ? null : DiscoveryResultFlag.valueOf(flag));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid discovery result for thing " + thingUID, e);
+        }
+        result.setTimestamp(timestamp);
+        return result;
+    }
+
+}
@@ -255,6 +255,15 @@ public class DiscoveryResultImpl implements DiscoveryResult {
         return timestamp;
     }
 
+    /**
+     * Restores the time of discovery, e.g. when the result is read from a storage.
+     *
+     * @param timestamp the time of discovery in milliseconds
+     */
+    void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     @Override
     public long getTimeToLive() {
         return timeToLive;
@@ -9,6 +9,7 @@ package org.eclipse.smarthome.config.discovery.internal;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -30,8 +31,10 @@ import org.eclipse.smarthome.config.discovery.inbox.InboxListener;
 import org.eclipse.smarthome.config.discovery.inbox.events.InboxEventFactory;
 import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.events.EventPublisher;
+import org.eclipse.smarthome.core.storage.CodecAwareStorageService;
 import org.eclipse.smarthome.core.storage.Storage;
 import org.eclipse.smarthome.core.storage.StorageService;
+import org.eclipse.smarthome.core.storage.ValueCodec;
 import org.eclipse.smarthome.core.thing.ManagedThingProvider;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingRegistry;
@@ -57,6 +60,7 @@ import org.slf4j.LoggerFactory;
  * @author Dennis Nobel - Added persistence support
  * @author Andre Fuechsel - Added removeOlderResults
  * @author Christoph Knauf - Added removeThingsForBridge
+ * @author Markus Mazurczak - Added binary codec for the stored results
  *
  */
 public final class PersistentInbox implements Inbox, DiscoveryListener, ThingRegistryChangeListener {
@@ -107,6 +111,8 @@ public final class PersistentInbox implements Inbox, DiscoveryListener, ThingReg
 
     private Storage<DiscoveryResult> discoveryResultStorage;
 
+    private final DiscoveryResultCodec discoveryResultCodec = new DiscoveryResultCodec();
+
     private ScheduledFuture<?> timeToLiveChecker;
 
     private EventPublisher eventPublisher;
@@ -452,8 +458,14 @@ public final class PersistentInbox implements Inbox, DiscoveryListener, ThingReg
     }
 
     protected void setStorageService(StorageService storageService) {
-        this.discoveryResultStorage = storageService.getStorage(DiscoveryResult.class.getName(),
-                this.getClass().getClassLoader());
+        if (storageService instanceof CodecAwareStorageService) {
+            this.discoveryResultStorage = ((CodecAwareStorageService) storageService).getStorage(
+                    DiscoveryResult.class.getName(), this.getClass().getClassLoader(),
+                    Collections.<ValueCodec<?>> singletonList(discoveryResultCodec));
+        } else {
+            this.discoveryResultStorage = storageService.getStorage(DiscoveryResult.class.getName(),
+                    this.getClass().getClassLoader());
+        }
     }
 
     protected void unsetStorageService(StorageService storageService) {
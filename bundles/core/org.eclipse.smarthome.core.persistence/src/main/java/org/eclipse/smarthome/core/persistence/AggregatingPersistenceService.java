@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.persistence;
+
+/**
+ * A queryable persistence service which can compute aggregates of the states of an item within a date range itself,
+ * e.g. by a query of its database or from precomputed rollups, so that the states do not have to be queried and
+ * aggregated one by one.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public interface AggregatingPersistenceService extends QueryablePersistenceService {
+
+    /**
+     * The supported aggregates. {@link #MIN}, {@link #MAX}, {@link #AVG}, {@link #SUM} and {@link #COUNT} only regard
+     * numeric states, i.e. {@code DecimalType}s and their subclasses, while {@link #FIRST} and {@link #LAST} regard
+     * all states.
+     */
+    public enum Aggregate {
+        /** the historic item with the lowest state */
+        MIN,
+        /** the historic item with the highest state */
+        MAX,
+        /** the average of the states */
+        AVG,
+        /** the sum of the states */
+        SUM,
+        /** the number of states */
+        COUNT,
+        /** the oldest historic item */
+        FIRST,
+        /** the newest historic item */
+        LAST
+    }
+
+    /**
+     * Computes an aggregate of the states of an item. Only the item name, the begin date and the end date of the
+     * filter are regarded.
+     * <p>
+     * For {@link Aggregate#AVG}, {@link Aggregate#SUM} and {@link Aggregate#COUNT} a {@code DecimalType} is returned
+     * together with the timestamp of the newest regarded state. Services which answer the query from rollups might
+     * return the start of the rollup interval as the timestamp of {@link Aggregate#MIN} and {@link Aggregate#MAX}.
+     * </p>
+     *
+     * @param filter the filter with the item name and the date range
+     * @param aggregate the aggregate to compute
+     * @return a historic item with the result or null if there are no states to aggregate
+     */
+    HistoricItem aggregate(FilterCriteria filter, Aggregate aggregate);
+
+}
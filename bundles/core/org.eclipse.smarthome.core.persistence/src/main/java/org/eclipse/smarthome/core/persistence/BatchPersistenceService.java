@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.persistence;
+
+import java.util.Collection;
+
+/**
+ * A {@link PersistenceService} which can store several states at once.
+ * <p>
+ * The persistence manager stores the states of items asynchronously and collects the states which arrive while a
+ * service is busy. If a service implements this interface, the collected states are passed to
+ * {@link #store(Collection)} in a single call, so that they can e.g. be written within one transaction or request.
+ * Other services are called with {@code store(item, alias)} for each of them.
+ * </p>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public interface BatchPersistenceService extends PersistenceService {
+
+    /**
+     * Stores the given states in the order of the collection.
+     * <p>
+     * The states have been taken when they were reported, so implementors must use {@link PersistenceEntry#getState()}
+     * and {@link PersistenceEntry#getTimestamp()} instead of the current state of the item.
+     * </p>
+     *
+     * @param entries the states to store, never empty
+     */
+    void store(Collection<PersistenceEntry> entries);
+
+}
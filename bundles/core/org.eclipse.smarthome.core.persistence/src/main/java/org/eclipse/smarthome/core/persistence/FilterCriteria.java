@@ -28,6 +28,7 @@ import org.eclipse.smarthome.core.types.State;
  * a filter.
  *
  * @author Kai Kreuzer - Initial contribution and API
+ * @author Markus Mazurczak - Added downsampling
  */
 public class FilterCriteria {
 
@@ -75,6 +76,9 @@ public class FilterCriteria {
     /** filter result to only contain entries that evaluate to true with the given operator and state */
     private State state;
 
+    /** allow the result to contain numeric values which summarize a time interval instead of the stored states */
+    private boolean downsampling = false;
+
     public String getItemName() {
         return itemName;
     }
@@ -107,6 +111,10 @@ public class FilterCriteria {
         return state;
     }
 
+    public boolean isDownsampling() {
+        return downsampling;
+    }
+
     public FilterCriteria setItemName(String itemName) {
         this.itemName = itemName;
         return this;
@@ -147,4 +155,16 @@ public class FilterCriteria {
         return this;
     }
 
+    /**
+     * Allows the service to answer a query over a large date range with less values, e.g. with the averages of
+     * intervals, as it is sufficient for charts. The states of the result might then be of another type than the
+     * states of the item. By default, the stored states are returned.
+     *
+     * @param downsampling true, if the result may be downsampled
+     * @return this filter criteria
+     */
+    public FilterCriteria setDownsampling(boolean downsampling) {
+        this.downsampling = downsampling;
+        return this;
+    }
 }
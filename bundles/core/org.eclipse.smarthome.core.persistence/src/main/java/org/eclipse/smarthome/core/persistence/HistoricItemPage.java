@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.persistence;
+
+import java.util.List;
+
+/**
+ * A page of the result of a query of a {@link StreamingPersistenceService}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class HistoricItemPage {
+
+    private final List<HistoricItem> items;
+    private final String resumeToken;
+
+    /**
+     * Creates a page.
+     *
+     * @param items the historic items of the page
+     * @param resumeToken the token to query the next page with or null if this is the last page
+     */
+    public HistoricItemPage(List<HistoricItem> items, String resumeToken) {
+        this.items = items;
+        this.resumeToken = resumeToken;
+    }
+
+    public List<HistoricItem> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the token to pass to {@link StreamingPersistenceService#query(FilterCriteria, String)} to get the next
+     * page. A token might be returned even if the next page turns out to be empty.
+     *
+     * @return the token or null if this is the last page
+     */
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    public boolean hasMore() {
+        return resumeToken != null;
+    }
+
+}
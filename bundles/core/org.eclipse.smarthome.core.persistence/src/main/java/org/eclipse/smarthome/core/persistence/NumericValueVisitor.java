@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.persistence;
+
+/**
+ * A callback for the numeric values of a query, which are passed as primitives without creating any
+ * {@link HistoricItem}s (see {@link StreamingPersistenceService#stream(FilterCriteria, String, NumericValueVisitor)}).
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public interface NumericValueVisitor {
+
+    /**
+     * Is called for each value.
+     *
+     * @param timestamp the time of the value in milliseconds
+     * @param value the value
+     * @return true to continue, false to stop the query
+     */
+    boolean visit(long timestamp, double value);
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.persistence;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.StateDescription;
+
+/**
+ * A {@link PersistenceEntry} is a snapshot of the state of an item, taken at the time the persistence manager has
+ * been notified about it. As persistence services are called asynchronously, the item of an entry reports the
+ * state of the snapshot instead of the current state of the original item.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class PersistenceEntry {
+
+    private final Item item;
+    private final String alias;
+    private final State state;
+    private final Date timestamp;
+
+    /**
+     * Creates an entry.
+     *
+     * @param item the item the state belongs to
+     * @param alias the alias under which the state should be persisted or null to use the item name
+     * @param state the state to persist
+     * @param timestamp the time the state has been reported
+     */
+    public PersistenceEntry(Item item, String alias, State state, Date timestamp) {
+        this.item = new SnapshotItem(item, state);
+        this.alias = alias;
+        this.state = state;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the item. Its state is the one of this entry, even if the state of the original item has changed since.
+     *
+     * @return the item
+     */
+    public Item getItem() {
+        return item;
+    }
+
+    /**
+     * @return the alias or null if no alias has been configured
+     */
+    public String getAlias() {
+        return alias;
+    }
+
+    /**
+     * @return the alias if one has been configured, the name of the item otherwise
+     */
+    public String getName() {
+        return alias != null ? alias : item.getName();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " -> " + state + " (" + timestamp + ")";
+    }
+
+    /**
+     * An {@link Item} which delegates to the original item, but reports the state of the snapshot.
+     */
+    private static class SnapshotItem implements Item {
+
+        private final Item item;
+        private final State state;
+
+        SnapshotItem(Item item, State state) {
+            this.item = item;
+            this.state = state;
+        }
+
+        @Override
+        public State getState() {
+            return state;
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            if (typeClass != null && typeClass.isInstance(state)) {
+                return state;
+            }
+            // only the item knows how to convert its state, which is only possible while it has not changed
+            if (state != null && state.equals(item.getState())) {
+                return item.getStateAs(typeClass);
+            }
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return item.getName();
+        }
+
+        @Override
+        public String getType() {
+            return item.getType();
+        }
+
+        @Override
+        public List<Class<? extends State>> getAcceptedDataTypes() {
+            return item.getAcceptedDataTypes();
+        }
+
+        @Override
+        public List<Class<? extends Command>> getAcceptedCommandTypes() {
+            return item.getAcceptedCommandTypes();
+        }
+
+        @Override
+        public List<String> getGroupNames() {
+            return item.getGroupNames();
+        }
+
+        @Override
+        public Set<String> getTags() {
+            return item.getTags();
+        }
+
+        @Override
+        public String getLabel() {
+            return item.getLabel();
+        }
+
+        @Override
+        public boolean hasTag(String tag) {
+            return item.hasTag(tag);
+        }
+
+        @Override
+        public String getCategory() {
+            return item.getCategory();
+        }
+
+        @Override
+        public StateDescription getStateDescription() {
+            return item.getStateDescription();
+        }
+
+        @Override
+        public StateDescription getStateDescription(Locale locale) {
+            return item.getStateDescription(locale);
+        }
+
+        @Override
+        public String toString() {
+            return item.getName() + " (State=" + state + ")";
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.persistence;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+
+/**
+ * Static methods to query any {@link QueryablePersistenceService} page by page. {@link StreamingPersistenceService}s
+ * are called directly, for all other services the paging of {@link FilterCriteria} is used and the page number is
+ * kept in the resume token. A resume token is only returned if the item following a full page exists, so the last
+ * page never leads to an empty one.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public final class PersistenceQueries {
+
+    /** the page size used for services which do not support streaming */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private PersistenceQueries() {
+    }
+
+    /**
+     * Queries a page (see {@link StreamingPersistenceService#query(FilterCriteria, String)}).
+     *
+     * @param service the service to query
+     * @param filter the filter to apply to the query, it is not modified
+     * @param resumeToken the resume token of the previous page or null to query the first page
+     * @return the page
+     * @throws IllegalArgumentException if the resume token is invalid
+     */
+    public static HistoricItemPage query(QueryablePersistenceService service, FilterCriteria filter,
+            String resumeToken) {
+        if (service instanceof StreamingPersistenceService) {
+            return ((StreamingPersistenceService) service).query(filter, resumeToken);
+        }
+
+        int pageNumber = resumeToken == null ? 0 : parse(resumeToken)[0];
+        int pageSize = Math.min(filter.getPageSize(), DEFAULT_PAGE_SIZE);
+        FilterCriteria pageFilter = copy(filter).setOperator(filter.getOperator()).setState(filter.getState())
+                .setPageNumber(pageNumber).setPageSize(pageSize);
+        List<HistoricItem> items = new ArrayList<>();
+        for (HistoricItem item : service.query(pageFilter)) {
+            items.add(item);
+        }
+        // a service which does not support paging returns all items at once
+        boolean hasMore = items.size() == pageSize && hasMore(service, pageFilter);
+        return new HistoricItemPage(items, hasMore ? String.valueOf(pageNumber + 1) : null);
+    }
+
+    /**
+     * Passes the numeric values of a query to a visitor (see
+     * {@link StreamingPersistenceService#stream(FilterCriteria, String, NumericValueVisitor)}).
+     *
+     * @param service the service to query
+     * @param filter the filter to apply to the query, it is not modified
+     * @param resumeToken a token returned by a previous call or null to start with the first value
+     * @param visitor the visitor
+     * @return the token to continue after the last visited value or null if all values have been visited
+     * @throws IllegalArgumentException if the resume token is invalid
+     */
+    public static String stream(QueryablePersistenceService service, FilterCriteria filter, String resumeToken,
+            NumericValueVisitor visitor) {
+        if (service instanceof StreamingPersistenceService) {
+            return ((StreamingPersistenceService) service).stream(filter, resumeToken, visitor);
+        }
+
+        int[] position = resumeToken == null ? new int[] { 0, 0 } : parse(resumeToken);
+        FilterCriteria pageFilter = copy(filter).setPageSize(DEFAULT_PAGE_SIZE);
+        for (int pageNumber = position[0];; pageNumber++) {
+            int index = 0;
+            for (HistoricItem item : service.query(pageFilter.setPageNumber(pageNumber))) {
+                index++;
+                if (pageNumber == position[0] && index <= position[1]) {
+                    continue;
+                }
+                if (item.getState() instanceof DecimalType) {
+                    double value = ((DecimalType) item.getState()).doubleValue();
+                    if (!visitor.visit(item.getTimestamp().getTime(), value)) {
+                        return pageNumber + ":" + index;
+                    }
+                }
+            }
+            if (index != DEFAULT_PAGE_SIZE || !hasMore(service, pageFilter)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Checks if there is an item after a full page. As {@link FilterCriteria} do not tell the total number of items,
+     * the item following the page is queried with a page size of 1, so its page number is its offset.
+     *
+     * @param service the service to query
+     * @param pageFilter the filter of the full page
+     * @return true if there is an item after the page, false if the page is the last one or the service returns all
+     *         items at once
+     */
+    private static boolean hasMore(QueryablePersistenceService service, FilterCriteria pageFilter) {
+        FilterCriteria nextFilter = copy(pageFilter).setOperator(pageFilter.getOperator())
+                .setState(pageFilter.getState())
+                .setPageNumber((pageFilter.getPageNumber() + 1) * pageFilter.getPageSize()).setPageSize(1);
+        Iterator<HistoricItem> it = service.query(nextFilter).iterator();
+        if (!it.hasNext()) {
+            return false;
+        }
+        it.next();
+        // a service which does not support paging returns all items again
+        return !it.hasNext();
+    }
+
+    private static FilterCriteria copy(FilterCriteria filter) {
+        return new FilterCriteria().setItemName(filter.getItemName()).setBeginDate(filter.getBeginDate())
+                .setEndDate(filter.getEndDate()).setOrdering(filter.getOrdering())
+                .setDownsampling(filter.isDownsampling());
+    }
+
+    private static int[] parse(String resumeToken) {
+        String[] parts = resumeToken.split(":");
+        try {
+            int[] position = { Integer.parseInt(parts[0]), parts.length > 1 ? Integer.parseInt(parts[1]) : 0 };
+            if (parts.length > 2 || position[0] < 0 || position[1] < 0) {
+                throw new IllegalArgumentException("Invalid resume token " + resumeToken);
+            }
+            return position;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid resume token " + resumeToken, e);
+        }
+    }
+
+}
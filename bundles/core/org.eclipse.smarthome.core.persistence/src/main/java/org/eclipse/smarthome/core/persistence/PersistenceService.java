@@ -30,9 +30,9 @@ public interface PersistenceService {
     /**
      * Stores the current value of the given item.
      * <p>
-     * Implementors should keep in mind that all registered {@link PersistenceService}s are called synchronously. Hence
-     * long running operations should be processed asynchronously. E.g. <code>store</code> adds things to a queue which
-     * is processed by some asynchronous workers (Quartz Job, Thread, etc.).
+     * The persistence manager calls this method asynchronously with an item which reports the state to persist, so
+     * the state of the original item might already have changed again. Services which want to store several states
+     * at once or need the time the state has been reported should implement {@link BatchPersistenceService}.
      * </p>
      * 
      * @param item the item which state should be persisted.
@@ -44,9 +44,9 @@ public interface PersistenceService {
      * Stores the current value of the given item under a specified alias.
      * </p>
      * <p>
-     * Implementors should keep in mind that all registered {@link PersistenceService}s are called synchronously. Hence
-     * long running operations should be processed asynchronously. E.g. <code>store</code> adds things to a queue which
-     * is processed by some asynchronous workers (Quartz Job, Thread, etc.).
+     * The persistence manager calls this method asynchronously with an item which reports the state to persist, so
+     * the state of the original item might already have changed again. Services which want to store several states
+     * at once or need the time the state has been reported should implement {@link BatchPersistenceService}.
      * </p>
      * 
      * @param item the item which state should be persisted.
@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.persistence;
+
+/**
+ * A queryable persistence service which can return the result of a query in pages, so that a client can process any
+ * number of historic items in constant memory. The position after a page is described by an opaque resume token,
+ * which stays valid when new states are stored in the meantime.
+ * <p>
+ * Clients which do not know whether a service supports streaming can use {@link PersistenceQueries}, which falls back
+ * to the paging of {@link FilterCriteria} otherwise.
+ * </p>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public interface StreamingPersistenceService extends QueryablePersistenceService {
+
+    /**
+     * Queries a page. The service chooses the size of the page, but does not return more than the page size of the
+     * filter. The page number of the filter is ignored.
+     *
+     * @param filter the filter to apply to the query, must contain an item name
+     * @param resumeToken the resume token of the previous page or null to query the first page
+     * @return the page
+     * @throws IllegalArgumentException if the resume token is invalid
+     */
+    HistoricItemPage query(FilterCriteria filter, String resumeToken);
+
+    /**
+     * Passes the numeric values of a query to a visitor until all of them have been visited or the visitor stops.
+     * Only the item name, the dates and the ordering of the filter are regarded, non-numeric states are skipped.
+     *
+     * @param filter the filter to apply to the query, must contain an item name
+     * @param resumeToken a token returned by a previous call or null to start with the first value
+     * @param visitor the visitor
+     * @return the token to continue after the last visited value or null if all values have been visited
+     * @throws IllegalArgumentException if the resume token is invalid
+     */
+    String stream(FilterCriteria filter, String resumeToken, NumericValueVisitor visitor);
+
+}
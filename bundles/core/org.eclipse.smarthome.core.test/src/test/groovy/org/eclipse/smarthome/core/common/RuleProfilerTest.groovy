@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.common
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import java.util.concurrent.TimeUnit
+
+import org.eclipse.smarthome.core.common.RuleProfiler.RuleStatistics
+import org.junit.After
+import org.junit.Test
+
+
+/**
+ * The RuleProfilerTest tests functionality of the RuleProfiler class.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class RuleProfilerTest {
+
+    @After
+    void tearDown() {
+        RuleProfiler.reset()
+    }
+
+    @Test
+    void 'record executions of a rule'() {
+        RuleProfiler.triggered("dsl", "Light on")
+        RuleProfiler.triggered("dsl", "Light on")
+        RuleProfiler.executed("dsl", "Light on", millis(4), 0, millis(10), false)
+        RuleProfiler.executed("dsl", "Light on", millis(2), 0, millis(30), true)
+        RuleProfiler.triggered("automation", "rule_1")
+
+        def profiles = RuleProfiler.getProfiles()
+        assertThat profiles.size(), is(2)
+
+        def profile = profiles.find { it.engine == "dsl" }
+        assertThat profile.rule, is("Light on")
+        assertThat profile.triggered, is(2L)
+        assertThat profile.executed, is(2L)
+        assertThat profile.failed, is(1L)
+        assertThat profile.averageQueueWait, is(3.0d)
+        assertThat profile.maxQueueWait, is(4.0d)
+        assertThat profile.averageActionTime, is(20.0d)
+        assertThat profile.totalTime, is(40.0d)
+        assertThat profile.maxTime, is(30.0d)
+
+        def automationProfile = profiles.find { it.engine == "automation" }
+        assertThat automationProfile.triggered, is(1L)
+        assertThat automationProfile.executed, is(0L)
+        assertThat automationProfile.p99, is(0.0d)
+    }
+
+    @Test
+    void 'percentiles are accurate to an eighth'() {
+        (1..98).each { RuleProfiler.executed("dsl", "rule", 0, millis(1), millis(9), false) }
+        (1..2).each { RuleProfiler.executed("dsl", "rule", 0, 0, millis(500), false) }
+
+        def profile = RuleProfiler.getProfiles()[0]
+        assertThat profile.p50 >= 10.0d && profile.p50 <= 10.0d * 1.125d, is(true)
+        assertThat profile.p99 >= 500.0d * 0.875d && profile.p99 <= 500.0d, is(true)
+        assertThat profile.averageConditionTime, is(0.98d)
+    }
+
+    @Test
+    void 'histogram buckets cover consecutive ranges'() {
+        long lowerBound = 0
+        for (int bucket = 0; bucket < 100; bucket++) {
+            long upperBound = RuleStatistics.upperBound(bucket)
+            assertThat RuleStatistics.bucket(lowerBound), is(bucket)
+            assertThat RuleStatistics.bucket(upperBound), is(bucket)
+            lowerBound = upperBound + 1
+        }
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis)
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.storage
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import java.nio.charset.StandardCharsets
+
+import org.eclipse.smarthome.core.internal.items.PersistedItemCodec
+import org.eclipse.smarthome.core.items.ManagedItemProvider.PersistedItem
+import org.junit.Before
+import org.junit.Test
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+import com.google.gson.Gson
+
+/**
+ * Tests for the {@link StorageCodec}, including a comparison of the binary format with the JSON format.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class StorageCodecTest {
+
+	final Logger logger = LoggerFactory.getLogger(StorageCodecTest.class)
+
+	def itemCodec = new PersistedItemCodec()
+	def addedTypes = [:]
+	def typeTable = new TypeTable([:], { id, typeName -> addedTypes.put(id, typeName) } as TypeTable.Listener)
+	def codec = new StorageCodec(typeTable, new Gson(), [itemCodec])
+
+	@Before
+	void setUp() {
+		codec.binary = true
+	}
+
+	@Test
+	void 'assert that JSON is the default format'() {
+		def defaultCodec = new StorageCodec(new TypeTable([:], null), new Gson(), [itemCodec])
+		assertThat defaultCodec.binary, is(false)
+		assertThat defaultCodec.encode(createItem())[0], is(StorageCodec.FORMAT_JSON)
+	}
+
+	@Test
+	void 'assert that values with a codec are stored in binary form'() {
+		def item = createItem()
+
+		byte[] data = codec.encode(item)
+		assertThat data[0], is(StorageCodec.FORMAT_BINARY)
+		assertThat addedTypes, is([0: PersistedItem.class.name])
+
+		PersistedItem decoded = codec.decode(data, null)
+		assertThat decoded.itemType, is(item.itemType)
+		assertThat decoded.baseItemType, is(nullValue())
+		assertThat decoded.label, is(item.label)
+		assertThat decoded.category, is(item.category)
+		assertThat decoded.groupNames, is(item.groupNames)
+		assertThat decoded.tags, is(item.tags)
+
+		codec.encode(item)
+		assertThat addedTypes.size(), is(1)
+	}
+
+	@Test
+	void 'assert that JSON is used without a codec or if binary is disabled'() {
+		def withoutCodec = new StorageCodec(typeTable, new Gson(), [])
+		withoutCodec.binary = true
+		assertThat withoutCodec.hasCodec(PersistedItem.class.name), is(false)
+		byte[] data = withoutCodec.encode(createItem())
+		assertThat data[0], is(StorageCodec.FORMAT_JSON)
+		assertThat withoutCodec.decode(data, null).label, is("Kitchen light")
+
+		codec.binary = false
+		data = codec.encode(createItem())
+		assertThat data[0], is(StorageCodec.FORMAT_JSON)
+		assertThat codec.decode(data, null).label, is("Kitchen light")
+		assertThat addedTypes.isEmpty(), is(true)
+	}
+
+	@Test
+	void 'assert that values in the other format need migration'() {
+		codec.binary = false
+		byte[] json = codec.encode(createItem())
+		codec.binary = true
+		byte[] binary = codec.encode(createItem())
+
+		assertThat codec.needsMigration(json), is(true)
+		assertThat codec.needsMigration(binary), is(false)
+		assertThat codec.needsMigration("legacy".getBytes(StandardCharsets.UTF_8)), is(true)
+
+		codec.binary = false
+		assertThat codec.needsMigration(json), is(false)
+		assertThat codec.needsMigration(binary), is(true)
+	}
+
+	@Test
+	void 'assert that configuration values keep their types'() {
+		def out = new ByteArrayOutputStream()
+		def values = [text: "abc", flag: true, number: new BigDecimal("12.50"), integer: 3, list: ["a", 1], map: [key: null]]
+		ValueCodecUtil.writeValueMap(new DataOutputStream(out), values)
+
+		def decoded = ValueCodecUtil.readValueMap(new DataInputStream(new ByteArrayInputStream(out.toByteArray())))
+		assertThat decoded.text, is("abc")
+		assertThat decoded.flag, is(true)
+		assertThat decoded.number, is(new BigDecimal("12.50"))
+		assertThat decoded.integer, is(new BigDecimal(3))
+		assertThat decoded.list, is(["a", new BigDecimal(1)])
+		assertThat decoded.map, is([key: null])
+	}
+
+	@Test
+	void 'assert that the binary format is smaller than JSON and log the round trip times'() {
+		def item = createItem()
+		def jsonCodec = new StorageCodec(new TypeTable([:], null), new Gson(), [])
+
+		int binarySize = codec.encode(item).length
+		int jsonSize = jsonCodec.encode(item).length
+		assertThat binarySize < jsonSize, is(true)
+
+		long binaryTime = measure(codec, item)
+		long jsonTime = measure(jsonCodec, item)
+		logger.info("PersistedItem: binary {} bytes in {}ms, JSON {} bytes in {}ms (10000 round trips)",
+				binarySize, binaryTime, jsonSize, jsonTime)
+	}
+
+	private long measure(StorageCodec codec, PersistedItem item) {
+		// warm up
+		for (int i = 0; i < 1000; i++) {
+			codec.decode(codec.encode(item), null)
+		}
+		long start = System.nanoTime()
+		for (int i = 0; i < 10000; i++) {
+			codec.decode(codec.encode(item), null)
+		}
+		return (System.nanoTime() - start) / 1000000
+	}
+
+	private PersistedItem createItem() {
+		def item = new PersistedItem()
+		item.itemType = "Switch"
+		item.label = "Kitchen light"
+		item.category = "Light"
+		item.groupNames = ["Kitchen", "Lights"]
+		item.tags = ["Lighting"] as Set
+		return item
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.thing.internal
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import org.eclipse.smarthome.core.storage.StorageCodec
+import org.eclipse.smarthome.core.storage.TypeTable
+import org.eclipse.smarthome.core.thing.ChannelUID
+import org.eclipse.smarthome.core.thing.link.ItemChannelLink
+import org.junit.Test
+
+import com.google.gson.Gson
+
+/**
+ * Tests that {@link ItemChannelLink}s survive a round trip through the binary format of the
+ * {@link ItemChannelLinkCodec}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class ItemChannelLinkCodecTest {
+
+    @Test
+    void 'assert a link survives a round trip'() {
+        def codec = new StorageCodec(new TypeTable([:], null), new Gson(), [new ItemChannelLinkCodec()])
+        codec.binary = true
+        def link = new ItemChannelLink("Kitchen_Light", new ChannelUID("binding:type:thing:group#switch"))
+
+        byte[] data = codec.encode(link)
+        assertThat data[0], is(StorageCodec.FORMAT_BINARY)
+
+        ItemChannelLink decoded = codec.decode(data, getClass().getClassLoader())
+        assertThat decoded, is(link)
+        assertThat decoded.itemName, is("Kitchen_Light")
+        assertThat decoded.UID, is(link.UID)
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.thing.internal
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import org.eclipse.smarthome.config.core.Configuration
+import org.eclipse.smarthome.core.storage.StorageCodec
+import org.eclipse.smarthome.core.storage.TypeTable
+import org.eclipse.smarthome.core.thing.Channel
+import org.eclipse.smarthome.core.thing.ChannelUID
+import org.eclipse.smarthome.core.thing.ThingUID
+import org.eclipse.smarthome.core.thing.type.ChannelTypeUID
+import org.junit.Before
+import org.junit.Test
+
+import com.google.gson.Gson
+
+/**
+ * Tests that {@link ThingImpl}s and {@link BridgeImpl}s survive a round trip through the binary format of the
+ * {@link ThingCodec}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class ThingCodecTest {
+
+    StorageCodec codec
+
+    @Before
+    void setUp() {
+        codec = new StorageCodec(new TypeTable([:], null), new Gson(),
+                [new ThingCodec(ThingImpl), new ThingCodec(BridgeImpl)])
+        codec.binary = true
+    }
+
+    @Test
+    void 'assert a thing with channels and configuration survives a round trip'() {
+        def thing = new ThingImpl(new ThingUID("binding:type:thing"))
+        thing.bridgeUID = new ThingUID("binding:bridge:hub")
+        thing.configuration = new Configuration([host: "192.168.0.2", port: new BigDecimal(80), secure: true,
+            names: ["a", "b"]])
+        thing.setProperty("firmware", "1.2")
+        thing.channels = [
+            new Channel(new ChannelUID(thing.UID, "switch"), new ChannelTypeUID("binding:switch"), "Switch",
+            new Configuration([delay: new BigDecimal("0.5")]), ["Lighting"] as Set, [vendor: "acme"], "Power",
+            "Turns it on"),
+            new Channel(new ChannelUID(thing.UID, "temperature"), "Number")
+        ]
+
+        ThingImpl decoded = roundTrip(thing)
+
+        assertThat decoded.getClass(), is(equalTo(ThingImpl))
+        assertThat decoded.UID, is(thing.UID)
+        assertThat decoded.bridgeUID, is(thing.bridgeUID)
+        assertThat decoded.configuration.properties, is(thing.configuration.properties)
+        assertThat decoded.properties, is([firmware: "1.2"])
+        assertThat decoded.channels.size(), is(2)
+
+        def channel = decoded.channels[0]
+        assertThat channel.UID, is(thing.channels[0].UID)
+        assertThat channel.channelTypeUID, is(new ChannelTypeUID("binding:switch"))
+        assertThat channel.acceptedItemType, is("Switch")
+        assertThat channel.label, is("Power")
+        assertThat channel.description, is("Turns it on")
+        assertThat channel.configuration.properties, is([delay: new BigDecimal("0.5")])
+        assertThat channel.properties, is([vendor: "acme"])
+        assertThat channel.defaultTags, is(["Lighting"] as Set)
+
+        channel = decoded.channels[1]
+        assertThat channel.UID, is(thing.channels[1].UID)
+        assertThat channel.channelTypeUID, is(nullValue())
+        assertThat channel.acceptedItemType, is("Number")
+        assertThat channel.label, is(nullValue())
+        assertThat channel.configuration.properties.isEmpty(), is(true)
+        assertThat channel.defaultTags.isEmpty(), is(true)
+    }
+
+    @Test
+    void 'assert a bridge without bridge and channels survives a round trip'() {
+        def bridge = new BridgeImpl(new ThingUID("binding:bridge:hub"))
+        bridge.configuration = new Configuration()
+
+        BridgeImpl decoded = roundTrip(bridge)
+
+        assertThat decoded.getClass(), is(equalTo(BridgeImpl))
+        assertThat decoded.UID, is(bridge.UID)
+        assertThat decoded.bridgeUID, is(nullValue())
+        assertThat decoded.configuration.properties.isEmpty(), is(true)
+        assertThat decoded.properties.isEmpty(), is(true)
+        assertThat decoded.channels.isEmpty(), is(true)
+    }
+
+    private Object roundTrip(Object value) {
+        byte[] data = codec.encode(value)
+        assertThat data[0], is(StorageCodec.FORMAT_BINARY)
+        return codec.decode(data, getClass().getClassLoader())
+    }
+}
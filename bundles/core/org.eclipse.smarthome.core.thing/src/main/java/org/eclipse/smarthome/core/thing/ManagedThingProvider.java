@@ -7,12 +7,18 @@
  */
 package org.eclipse.smarthome.core.thing;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.smarthome.config.core.Configuration;
 import org.eclipse.smarthome.core.common.registry.DefaultAbstractManagedProvider;
+import org.eclipse.smarthome.core.storage.ValueCodec;
 import org.eclipse.smarthome.core.thing.binding.ThingHandlerFactory;
+import org.eclipse.smarthome.core.thing.internal.BridgeImpl;
+import org.eclipse.smarthome.core.thing.internal.ThingCodec;
+import org.eclipse.smarthome.core.thing.internal.ThingImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +31,7 @@ import org.slf4j.LoggerFactory;
  * @author Oliver Libutzki - Initial contribution
  * @author Dennis Nobel - Integrated Storage
  * @author Michael Grammling - Added dynamic configuration update
+ * @author Markus Mazurczak - Added binary codecs
  */
 public class ManagedThingProvider extends DefaultAbstractManagedProvider<Thing, ThingUID> implements ThingProvider {
 
@@ -32,6 +39,9 @@ public class ManagedThingProvider extends DefaultAbstractManagedProvider<Thing,
 
     private List<ThingHandlerFactory> thingHandlerFactories = new CopyOnWriteArrayList<>();
 
+    private final Collection<ValueCodec<?>> valueCodecs = Arrays.<ValueCodec<?>> asList(
+            new ThingCodec<>(ThingImpl.class), new ThingCodec<>(BridgeImpl.class));
+
     /**
      * Creates a thing based on the given configuration properties, adds it and
      * informs all listeners.
@@ -76,6 +86,11 @@ public class ManagedThingProvider extends DefaultAbstractManagedProvider<Thing,
         return thing.getUID();
     }
 
+    @Override
+    protected Collection<ValueCodec<?>> getValueCodecs() {
+        return valueCodecs;
+    }
+
     @Override
     protected String getStorageName() {
         return Thing.class.getName();
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.thing.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.eclipse.smarthome.core.storage.ValueCodec;
+import org.eclipse.smarthome.core.storage.ValueCodecUtil;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.link.ItemChannelLink;
+
+/**
+ * {@link ValueCodec} for {@link ItemChannelLink}s.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class ItemChannelLinkCodec implements ValueCodec<ItemChannelLink> {
+
+    @Override
+    public Class<ItemChannelLink> getValueType() {
+        return ItemChannelLink.class;
+    }
+
+    @Override
+    public void encode(ItemChannelLink link, DataOutput out) throws IOException {
+        ValueCodecUtil.writeString(out, link.getItemName());
+        ValueCodecUtil.writeString(out, link.getUID().getAsString());
+    }
+
+    @Override
+    public ItemChannelLink decode(DataInput in) throws IOException {
+        String itemName = ValueCodecUtil.readString(in);
+        return new ItemChannelLink(itemName, new ChannelUID(ValueCodecUtil.readString(in)));
+    }
+
+}
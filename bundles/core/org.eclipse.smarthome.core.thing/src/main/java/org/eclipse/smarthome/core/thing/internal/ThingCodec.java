@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.thing.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.smarthome.config.core.Configuration;
+import org.eclipse.smarthome.core.storage.ValueCodec;
+import org.eclipse.smarthome.core.storage.ValueCodecUtil;
+import org.eclipse.smarthome.core.thing.Channel;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.type.ChannelTypeUID;
+
+/**
+ * {@link ValueCodec} for {@link ThingImpl}s and {@link BridgeImpl}s, including their channels and configuration maps.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ *
+ * @param <T> either {@link ThingImpl} or {@link BridgeImpl}
+ */
+public class ThingCodec<T extends ThingImpl> implements ValueCodec<T> {
+
+    private final Class<T> valueType;
+
+    /**
+     * Creates a codec for things or bridges.
+     *
+     * @param valueType {@link ThingImpl} or {@link BridgeImpl}
+     */
+    public ThingCodec(Class<T> valueType) {
+        if (valueType != ThingImpl.class && valueType != BridgeImpl.class) {
+            throw new IllegalArgumentException("Unsupported thing class " + valueType.getName());
+        }
+        this.valueType = valueType;
+    }
+
+    @Override
+    public Class<T> getValueType() {
+        return valueType;
+    }
+
+    @Override
+    public void encode(T thing, DataOutput out) throws IOException {
+        ValueCodecUtil.writeString(out, thing.getUID().getAsString());
+        ValueCodecUtil.writeString(out, asString(thing.getBridgeUID()));
+        ValueCodecUtil.writeValueMap(out, getProperties(thing.getConfiguration()));
+        ValueCodecUtil.writeStringMap(out, thing.getProperties());
+
+        List<Channel> channels = thing.getChannels();
+        ValueCodecUtil.writeVarInt(out, channels == null ? 0 : channels.size() + 1);
+        if (channels != null) {
+            for (Channel channel : channels) {
+                ValueCodecUtil.writeString(out, channel.getUID().getAsString());
+                ValueCodecUtil.writeString(out, asString(channel.getChannelTypeUID()));
+                ValueCodecUtil.writeString(out, channel.getAcceptedItemType());
+                ValueCodecUtil.writeString(out, channel.getLabel());
+                ValueCodecUtil.writeString(out, channel.getDescription());
+                ValueCodecUtil.writeValueMap(out, getProperties(channel.getConfiguration()));
+                ValueCodecUtil.writeStringMap(out, channel.getProperties());
+                ValueCodecUtil.writeStrings(out, channel.getDefaultTags());
+            }
+        }
+    }
+
+    @Override
+    public T decode(DataInput in) throws IOException {
+        ThingUID thingUID = new ThingUID(ValueCodecUtil.readString(in));
+        ThingImpl thing = valueType == BridgeImpl.class ? new BridgeImpl(thingUID) : new ThingImpl(thingUID);
+
+        String bridgeUID = ValueCodecUtil.readString(in);
+        if (bridgeUID != null) {
+            thing.setBridgeUID(new ThingUID(bridgeUID));
+        }
+        thing.setConfiguration(toConfiguration(ValueCodecUtil.readValueMap(in)));
+        Map<String, String> properties = ValueCodecUtil.readStringMap(in);
+        if (properties != null) {
+            for (Entry<String, String> property : properties.entrySet()) {
+                thing.setProperty(property.getKey(), property.getValue());
+            }
+        }
+
+        int channelCount = ValueCodecUtil.readVarInt(in);
+        if (channelCount > 0) {
+            List<Channel> channels = new ArrayList<>(channelCount - 1);
+            for (int i = 1; i < channelCount; i++) {
+                ChannelUID channelUID = new ChannelUID(ValueCodecUtil.readString(in));
+                String channelTypeUID = ValueCodecUtil.readString(in);
+                String acceptedItemType = ValueCodecUtil.readString(in);
+                String label = ValueCodecUtil.readString(in);
+                String description = ValueCodecUtil.readString(in);
+                Configuration configuration = toConfiguration(ValueCodecUtil.readValueMap(in));
+                Map<String, String> channelProperties = ValueCodecUtil.readStringMap(in);
+                Set<String> defaultTags = ValueCodecUtil.readStrings(in, new HashSet<String>());
+                channels.add(new Channel(channelUID,
+                        channelTypeUID == null ? null : new ChannelTypeUID(channelTypeUID), acceptedItemType,
+                        configuration, defaultTags == null ? new HashSet<String>(0) : defaultTags,
+                        channelProperties, label, description));
+            }
+            thing.setChannels(channels);
+        }
+
+        return valueType.cast(thing);
+    }
+
+    private static String asString(Object uid) {
+        return uid == null ? null : uid.toString();
+    }
+
+    private static Map<String, Object> getProperties(Configuration configuration) {
+        return configuration == null ? null : configuration.getProperties();
+    }
+
+    private static Configuration toConfiguration(Map<String, Object> properties) {
+        return properties == null ? null : new Configuration(new HashMap<>(properties));
+    }
+
+}
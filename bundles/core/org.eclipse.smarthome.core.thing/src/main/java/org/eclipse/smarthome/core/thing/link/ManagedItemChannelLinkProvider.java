@@ -8,20 +8,32 @@
 package org.eclipse.smarthome.core.thing.link;
 
 import java.util.Collection;
+import java.util.Collections;
 
 import org.eclipse.smarthome.core.common.registry.DefaultAbstractManagedProvider;
+import org.eclipse.smarthome.core.storage.ValueCodec;
 import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.internal.ItemChannelLinkCodec;
 
 /**
  *
  * {@link ManagedItemChannelLinkProvider} is responsible for managed {@link ItemChannelLink}s at runtime.
  *
  * @author Dennis Nobel - Initial contribution
+ * @author Markus Mazurczak - Added binary codec
  *
  */
 public class ManagedItemChannelLinkProvider extends DefaultAbstractManagedProvider<ItemChannelLink, String> implements
         ItemChannelLinkProvider {
 
+    private final Collection<ValueCodec<?>> valueCodecs = Collections
+            .<ValueCodec<?>> singletonList(new ItemChannelLinkCodec());
+
+    @Override
+    protected Collection<ValueCodec<?>> getValueCodecs() {
+        return valueCodecs;
+    }
+
     @Override
     protected String getStorageName() {
         return ItemChannelLink.class.getName();
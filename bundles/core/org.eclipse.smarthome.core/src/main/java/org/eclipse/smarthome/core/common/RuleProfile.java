@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.common;
+
+/**
+ * A {@link RuleProfile} is a snapshot of the data the {@link RuleProfiler} has recorded for a rule. All times are given
+ * in milliseconds.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class RuleProfile {
+
+    private final String engine;
+    private final String rule;
+    private final long triggered;
+    private final long executed;
+    private final long failed;
+    private final double averageQueueWait;
+    private final double maxQueueWait;
+    private final double averageConditionTime;
+    private final double averageActionTime;
+    private final double totalTime;
+    private final double p50;
+    private final double p99;
+    private final double maxTime;
+
+    public RuleProfile(String engine, String rule, long triggered, long executed, long failed,
+            double averageQueueWait, double maxQueueWait, double averageConditionTime, double averageActionTime,
+            double totalTime, double p50, double p99, double maxTime) {
+        this.engine = engine;
+        this.rule = rule;
+        this.triggered = triggered;
+        this.executed = executed;
+        this.failed = failed;
+        this.averageQueueWait = averageQueueWait;
+        this.maxQueueWait = maxQueueWait;
+        this.averageConditionTime = averageConditionTime;
+        this.averageActionTime = averageActionTime;
+        this.totalTime = totalTime;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * @return the rule engine which executes the rule, e.g. "dsl" or "automation"
+     */
+    public String getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return the name or UID of the rule
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    public long getTriggered() {
+        return triggered;
+    }
+
+    public long getExecuted() {
+        return executed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the average time between the trigger and the start of an execution
+     */
+    public double getAverageQueueWait() {
+        return averageQueueWait;
+    }
+
+    public double getMaxQueueWait() {
+        return maxQueueWait;
+    }
+
+    public double getAverageConditionTime() {
+        return averageConditionTime;
+    }
+
+    public double getAverageActionTime() {
+        return averageActionTime;
+    }
+
+    /**
+     * @return the total time spent in all executions
+     */
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return the median execution time
+     */
+    public double getP50() {
+        return p50;
+    }
+
+    /**
+     * @return the 99th percentile of the execution times
+     */
+    public double getP99() {
+        return p99;
+    }
+
+    public double getMaxTime() {
+        return maxTime;
+    }
+
+}
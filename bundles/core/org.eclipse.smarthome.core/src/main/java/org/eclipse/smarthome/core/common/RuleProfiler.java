@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class records the executions of rules by the rule engines, so it can be seen which rules take the most time and
+ * how long they wait before they are executed. Rules are identified by the rule engine (e.g. "dsl" or "automation")
+ * and their name or UID within this engine.
+ * <p>
+ * For each rule the number of triggers, executions and failures, the time spent waiting, evaluating conditions and
+ * executing actions and a histogram of the execution times are kept. The histogram buckets grow exponentially, so the
+ * percentiles are accurate to 1/8 of their value.
+ * <p>
+ * Executions which take longer than the configured "slowRuleThreshold" (in milliseconds) are logged as warnings. By
+ * default, slow executions are not logged.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class RuleProfiler {
+
+    private final static Logger logger = LoggerFactory.getLogger(RuleProfiler.class);
+
+    private static final String CONFIG_SLOW_RULE_THRESHOLD = "slowRuleThreshold";
+
+    static private ConcurrentMap<String, RuleStatistics> statistics = new ConcurrentHashMap<>();
+
+    static private volatile long slowRuleThreshold;
+
+    protected void activate(Map<String, Object> properties) {
+        modified(properties);
+    }
+
+    protected void modified(Map<String, Object> properties) {
+        Object value = properties != null ? properties.get(CONFIG_SLOW_RULE_THRESHOLD) : null;
+        long threshold = 0;
+        if (value != null) {
+            try {
+                threshold = Long.parseLong(value.toString().trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid slow rule threshold '{}' - it must be a number of milliseconds", value);
+            }
+        }
+        slowRuleThreshold = TimeUnit.MILLISECONDS.toNanos(Math.max(0, threshold));
+    }
+
+    /**
+     * Records that a rule has been triggered.
+     *
+     * @param engine the rule engine
+     * @param rule the id which identifies the rule within the engine, e.g. its UID
+     */
+    static public void triggered(String engine, String rule) {
+        getStatistics(engine, rule).triggered();
+    }
+
+    /**
+     * Records an execution of a rule.
+     *
+     * @param engine the rule engine
+     * @param rule the id which identifies the rule within the engine, e.g. its UID
+     * @param queueWait the time in nanoseconds between the trigger and the start of the execution
+     * @param conditionTime the time in nanoseconds spent evaluating the conditions of the rule
+     * @param actionTime the time in nanoseconds spent executing the actions of the rule
+     * @param failed true, if the execution failed
+     */
+    static public void executed(String engine, String rule, long queueWait, long conditionTime, long actionTime,
+            boolean failed) {
+        getStatistics(engine, rule).executed(queueWait, conditionTime, actionTime, failed);
+        long threshold = slowRuleThreshold;
+        if (threshold > 0 && conditionTime + actionTime >= threshold) {
+            logger.warn("Execution of {} rule '{}' took {} ms (conditions {} ms, actions {} ms) after waiting {} ms",
+                    new Object[] { engine, rule, millis(conditionTime + actionTime), millis(conditionTime),
+                            millis(actionTime), millis(queueWait) });
+        }
+    }
+
+    /**
+     * Returns the profiles of all rules which have been triggered or executed since the last reset.
+     *
+     * @return the profiles of the rules
+     */
+    static public List<RuleProfile> getProfiles() {
+        List<RuleProfile> profiles = new ArrayList<>();
+        for (RuleStatistics ruleStatistics : statistics.values()) {
+            profiles.add(ruleStatistics.getProfile());
+        }
+        return profiles;
+    }
+
+    /**
+     * Removes the recorded data of all rules.
+     */
+    static public void reset() {
+        statistics.clear();
+    }
+
+    static private RuleStatistics getStatistics(String engine, String rule) {
+        String key = engine + ":" + rule;
+        RuleStatistics ruleStatistics = statistics.get(key);
+        if (ruleStatistics == null) {
+            ruleStatistics = new RuleStatistics(engine, rule);
+            RuleStatistics existing = statistics.putIfAbsent(key, ruleStatistics);
+            if (existing != null) {
+                ruleStatistics = existing;
+            }
+        }
+        return ruleStatistics;
+    }
+
+    static private long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * The recorded data of a rule. Times are kept in nanoseconds, the histogram counts the execution times in
+     * microseconds.
+     */
+    static class RuleStatistics {
+
+        /** values below this number of microseconds have their own bucket */
+        private static final int LINEAR_BUCKETS = 16;
+
+        /** every power of two above is divided into this number of buckets */
+        private static final int SUB_BUCKETS = 8;
+
+        private static final int SUB_BUCKET_BITS = 3;
+
+        /** the largest tracked power of two, i.e. about 2^40 microseconds or 12 days */
+        private static final int MAX_EXPONENT = 40;
+
+        private final String engine;
+        private final String rule;
+
+        private long triggered;
+        private long executed;
+        private long failed;
+        private long totalQueueWait;
+        private long maxQueueWait;
+        private long totalConditionTime;
+        private long totalActionTime;
+        private long maxTime;
+        private final long[] histogram = new long[LINEAR_BUCKETS + (MAX_EXPONENT - 3) * SUB_BUCKETS];
+
+        RuleStatistics(String engine, String rule) {
+            this.engine = engine;
+            this.rule = rule;
+        }
+
+        synchronized void triggered() {
+            triggered++;
+        }
+
+        synchronized void executed(long queueWait, long conditionTime, long actionTime, boolean failed) {
+            long time = conditionTime + actionTime;
+            executed++;
+            if (failed) {
+                this.failed++;
+            }
+            totalQueueWait += queueWait;
+            maxQueueWait = Math.max(maxQueueWait, queueWait);
+            totalConditionTime += conditionTime;
+            totalActionTime += actionTime;
+            maxTime = Math.max(maxTime, time);
+            histogram[bucket(TimeUnit.NANOSECONDS.toMicros(time))]++;
+        }
+
+        synchronized RuleProfile getProfile() {
+            return new RuleProfile(engine, rule, triggered, executed, failed, average(totalQueueWait),
+                    toMillis(maxQueueWait), average(totalConditionTime), average(totalActionTime),
+                    toMillis(totalConditionTime + totalActionTime), percentile(0.5), percentile(0.99),
+                    toMillis(maxTime));
+        }
+
+        private double average(long total) {
+            return executed > 0 ? toMillis(total) / executed : 0;
+        }
+
+        /**
+         * @return the upper bound of the bucket which contains the given percentile in milliseconds
+         */
+        private double percentile(double percentile) {
+            long rank = (long) Math.ceil(percentile * executed);
+            long count = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                count += histogram[i];
+                if (count >= rank && count > 0) {
+                    return Math.min(upperBound(i), maxTime / 1000) / 1000.0;
+                }
+            }
+            return 0;
+        }
+
+        static int bucket(long micros) {
+            if (micros < LINEAR_BUCKETS) {
+                return (int) Math.max(0, micros);
+            }
+            int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+            int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < LINEAR_BUCKETS) {
+                return bucket;
+            }
+            int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+            int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1000000.0;
+        }
+
+    }
+
+}
@@ -8,9 +8,12 @@
 package org.eclipse.smarthome.core.common.registry;
 
 import java.util.Collection;
+import java.util.Collections;
 
+import org.eclipse.smarthome.core.storage.CodecAwareStorageService;
 import org.eclipse.smarthome.core.storage.Storage;
 import org.eclipse.smarthome.core.storage.StorageService;
+import org.eclipse.smarthome.core.storage.ValueCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +34,7 @@ import com.google.common.collect.ImmutableList;
  * </p>
  *
  * @author Dennis Nobel - Initial contribution
+ * @author Markus Mazurczak - Added value codecs
  *
  * @param <E>
  *            type of the element
@@ -171,8 +175,25 @@ public abstract class AbstractManagedProvider<E, K, PE> extends AbstractProvider
      */
     protected abstract String keyToString(K key);
 
+    /**
+     * Returns the {@link ValueCodec}s for the persistable elements. They are passed to the {@link StorageService}
+     * when the storage is requested, if it is a {@link CodecAwareStorageService}, so that it can store the elements
+     * in a compact binary form. The default implementation returns no codecs, which means the elements are stored as
+     * JSON.
+     *
+     * @return the codecs (must not be null)
+     */
+    protected Collection<ValueCodec<?>> getValueCodecs() {
+        return Collections.emptyList();
+    }
+
     protected void setStorageService(StorageService storageService) {
-        this.storage = storageService.getStorage(getStorageName(), this.getClass().getClassLoader());
+        if (storageService instanceof CodecAwareStorageService) {
+            this.storage = ((CodecAwareStorageService) storageService).getStorage(getStorageName(),
+                    this.getClass().getClassLoader(), getValueCodecs());
+        } else {
+            this.storage = storageService.getStorage(getStorageName(), this.getClass().getClassLoader());
+        }
     }
 
     /**
@@ -7,15 +7,22 @@
  */
 package org.eclipse.smarthome.core.events;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
 /**
  * The {@link TopicEventFilter} is a default Eclipse SmartHome {@link EventFilter} implementation that ensures filtering
  * of events based on an event topic.
  * 
  * @author Stefan Bußweiler - Initial contribution
+ * @author Markus Mazurczak - Compile the regular expression once and support comma separated topic lists
+ * @author Markus Mazurczak - Validate topic lists
  */
 public class TopicEventFilter implements EventFilter {
 
-    private final String topicRegex;
+    private final Pattern topicRegex;
     
     /**
      * Constructs a new topic event filter.
@@ -24,12 +31,89 @@ public class TopicEventFilter implements EventFilter {
      * @see <a href="http://docs.oracle.com/javase/7/docs/api/java/util/regex/Pattern.html">Java Regex</a>
      */
     public TopicEventFilter(String topicRegex) {
-        this.topicRegex = topicRegex;
+        this.topicRegex = Pattern.compile(topicRegex);
     }
  
     @Override
     public boolean apply(Event event) {
-        return event.getTopic().matches(topicRegex);
+        return matches(event.getTopic());
+    }
+
+    /**
+     * Checks whether a topic matches this filter.
+     * 
+     * @param topic the topic
+     * @return true, if the topic matches the regular expression of this filter
+     */
+    public boolean matches(String topic) {
+        return topicRegex.matcher(topic).matches();
+    }
+
+    /**
+     * Constructs a topic event filter from a comma separated list of topics which may contain wildcards (*), e.g.
+     * "smarthome/items/*, smarthome/things". A topic matches, if it starts with one of the listed topics.
+     * 
+     * @param topics the comma separated list of topics, an empty list or null matches all topics
+     * @return the topic event filter
+     * @throws IllegalArgumentException if the list of topics is not valid (see {@link #isValidTopics(String)})
+     */
+    public static TopicEventFilter forTopics(String topics) {
+        if (!isValidTopics(topics)) {
+            throw new IllegalArgumentException("Invalid topic filter '" + topics + "'.");
+        }
+        List<String> regexes = convertToRegex(topics);
+        if (regexes.contains(".*")) {
+            return new TopicEventFilter(".*");
+        }
+        StringBuilder alternation = new StringBuilder();
+        for (String regex : regexes) {
+            if (alternation.length() > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(regex).append(')');
+        }
+        return new TopicEventFilter(alternation.toString());
+    }
+
+    /**
+     * Checks whether a comma separated list of topics only consists of letters, digits, underscores, slashes,
+     * wildcards (*) and white spaces, so it can be converted into a regular expression without any further special
+     * characters.
+     * 
+     * @param topics the comma separated list of topics
+     * @return true, if the list is valid, empty or null
+     */
+    public static boolean isValidTopics(String topics) {
+        if (topics == null) {
+            return true;
+        }
+        for (int i = 0; i < topics.length(); i++) {
+            char c = topics.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '*'
+                    || c == '/' || c == ',' || Character.isWhitespace(c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts a comma separated list of topics which may contain wildcards (*) into a list of regular expressions.
+     * 
+     * @param topics the comma separated list of topics
+     * @return the regular expressions, ".*" if the list is empty or null
+     */
+    public static List<String> convertToRegex(String topics) {
+        List<String> regexes = new ArrayList<String>();
+        if (topics == null || topics.isEmpty()) {
+            regexes.add(".*");
+        } else {
+            StringTokenizer tokenizer = new StringTokenizer(topics, ",");
+            while (tokenizer.hasMoreElements()) {
+                regexes.add(tokenizer.nextToken().trim().replace("*", ".*") + ".*");
+            }
+        }
+        return regexes;
     }
 
 }
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.internal.items;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.eclipse.smarthome.core.items.ManagedItemProvider.PersistedItem;
+import org.eclipse.smarthome.core.storage.ValueCodec;
+import org.eclipse.smarthome.core.storage.ValueCodecUtil;
+
+/**
+ * {@link ValueCodec} for the {@link PersistedItem}s of the managed item provider.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class PersistedItemCodec implements ValueCodec<PersistedItem> {
+
+    @Override
+    public Class<PersistedItem> getValueType() {
+        return PersistedItem.class;
+    }
+
+    @Override
+    public void encode(PersistedItem value, DataOutput out) throws IOException {
+        ValueCodecUtil.writeString(out, value.itemType);
+        ValueCodecUtil.writeString(out, value.baseItemType);
+        ValueCodecUtil.writeString(out, value.label);
+        ValueCodecUtil.writeString(out, value.category);
+        ValueCodecUtil.writeStrings(out, value.groupNames);
+        ValueCodecUtil.writeStrings(out, value.tags);
+    }
+
+    @Override
+    public PersistedItem decode(DataInput in) throws IOException {
+        PersistedItem value = new PersistedItem();
+        value.itemType = ValueCodecUtil.readString(in);
+        value.baseItemType = ValueCodecUtil.readString(in);
+        value.label = ValueCodecUtil.readString(in);
+        value.category = ValueCodecUtil.readString(in);
+        value.groupNames = ValueCodecUtil.readStrings(in, new ArrayList<String>());
+        value.tags = ValueCodecUtil.readStrings(in, new HashSet<String>());
+        return value;
+    }
+
+}
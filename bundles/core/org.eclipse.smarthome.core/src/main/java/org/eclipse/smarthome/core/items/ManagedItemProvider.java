@@ -9,14 +9,17 @@ package org.eclipse.smarthome.core.items;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.smarthome.core.common.registry.AbstractManagedProvider;
+import org.eclipse.smarthome.core.internal.items.PersistedItemCodec;
 import org.eclipse.smarthome.core.items.ManagedItemProvider.PersistedItem;
 import org.eclipse.smarthome.core.storage.StorageService;
+import org.eclipse.smarthome.core.storage.ValueCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +34,7 @@ import org.slf4j.LoggerFactory;
  * @author Thomas Eichstaedt-Engelen
  * @author Kai Kreuzer - improved return values
  * @author Alex Tugarev - added tags
+ * @author Markus Mazurczak - added binary codec
  */
 public class ManagedItemProvider extends AbstractManagedProvider<Item, String, PersistedItem>implements ItemProvider {
 
@@ -56,6 +60,9 @@ public class ManagedItemProvider extends AbstractManagedProvider<Item, String, P
 
     private Collection<ItemFactory> itemFactories = new CopyOnWriteArrayList<ItemFactory>();
 
+    private final Collection<ValueCodec<?>> valueCodecs = Collections
+            .<ValueCodec<?>> singletonList(new PersistedItemCodec());
+
     /**
      * Removes an item and it´s member if recursive flag is set to true.
      *
@@ -135,6 +142,11 @@ public class ManagedItemProvider extends AbstractManagedProvider<Item, String, P
         return Item.class.getName();
     }
 
+    @Override
+    protected Collection<ValueCodec<?>> getValueCodecs() {
+        return valueCodecs;
+    }
+
     @Override
     protected String keyToString(String key) {
         return key;
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.storage;
+
+import java.util.Collection;
+
+/**
+ * A {@link CodecAwareStorageService} is a {@link StorageService} which can store the values of a {@link Storage} in
+ * a compact binary form written by {@link ValueCodec}s. Implementing it is optional, consumers which pass codecs have
+ * to check whether the {@link StorageService} they got is a {@link CodecAwareStorageService} and fall back to
+ * {@link StorageService#getStorage(String, ClassLoader)} otherwise.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public interface CodecAwareStorageService extends StorageService {
+
+    /**
+     * Returns the {@link Storage} with the given {@code name} and a given {@link ClassLoader}, which may use the given
+     * {@link ValueCodec}s to store the values of their types in a compact binary form. Whether the codecs are used is
+     * up to the {@link StorageService} and its configuration, values can always be stored as JSON instead.
+     *
+     * @param name
+     *            the name of the {@link StorageService} to return
+     * @param classLoader
+     *            the class loader which should be used by the {@link Storage}
+     * @param valueCodecs
+     *            the codecs for the values of the storage (must not be null), they must be passed whenever the
+     *            storage is requested, as values which have been stored in binary form can only be read with them
+     * @return a ready to use {@link Storage}, never {@code null}
+     */
+    <T> Storage<T> getStorage(String name, ClassLoader classLoader, Collection<ValueCodec<?>> valueCodecs);
+
+}
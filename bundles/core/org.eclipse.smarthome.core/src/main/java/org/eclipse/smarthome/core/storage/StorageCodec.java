@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+/**
+ * The {@link StorageCodec} turns stored values into bytes and back. It can be used by {@link StorageService}
+ * implementations and supports two formats:
+ * <ul>
+ * <li>binary: {@code 'B' [type id] [codec payload]} - used for all types for which the codec has been given a
+ * {@link ValueCodec}, if binary encoding is enabled. The class name is interned in the {@link TypeTable}.</li>
+ * <li>JSON: {@code 'J' [class name] [UTF-8 JSON]} - used for all other types or if binary encoding is disabled (the
+ * default), which keeps the stored data readable for debugging and export.</li>
+ * </ul>
+ * Values which are stored in the format that is not preferred by the current configuration can be detected with
+ * {@link #needsMigration(byte[])} and simply be re-encoded.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class StorageCodec {
+
+    public static final byte FORMAT_BINARY = 'B';
+
+    public static final byte FORMAT_JSON = 'J';
+
+    private final Logger logger = LoggerFactory.getLogger(StorageCodec.class);
+
+    private final TypeTable typeTable;
+
+    private final Gson mapper;
+
+    /** the value codecs by the names of their value types */
+    private final Map<String, ValueCodec<?>> valueCodecs = new HashMap<>();
+
+    private volatile boolean binary = false;
+
+    /**
+     * Creates a codec.
+     *
+     * @param typeTable the table to intern the class names of binary values in
+     * @param mapper the {@code Gson} instance used for the JSON format
+     * @param valueCodecs the codecs for the types which can be stored in binary form
+     */
+    public StorageCodec(TypeTable typeTable, Gson mapper, Collection<ValueCodec<?>> valueCodecs) {
+        this.typeTable = typeTable;
+        this.mapper = mapper;
+        for (ValueCodec<?> valueCodec : valueCodecs) {
+            this.valueCodecs.put(valueCodec.getValueType().getName(), valueCodec);
+        }
+    }
+
+    /**
+     * Enables or disables the binary format for newly encoded values. It is disabled by default.
+     *
+     * @param binary true to use the binary format wherever possible, false to always use JSON
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Checks whether the given bytes have been produced by this codec.
+     *
+     * @param data the stored bytes
+     * @return true if the bytes are in the binary or JSON format of this codec
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length > 0 && (data[0] == FORMAT_BINARY || data[0] == FORMAT_JSON);
+    }
+
+    /**
+     * Encodes the given value.
+     *
+     * @param value the value (must not be null)
+     * @return the encoded value
+     * @throws IOException if the value cannot be encoded
+     */
+    public byte[] encode(Object value) throws IOException {
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot serialize NULL");
+        }
+
+        String typeName = value.getClass().getName();
+        ValueCodec<Object> codec = binary ? getCodec(typeName) : null;
+        if (codec != null) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(FORMAT_BINARY);
+                ValueCodecUtil.writeVarInt(out, typeTable.getId(typeName));
+                codec.encode(value, out);
+                out.flush();
+                return bytes.toByteArray();
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Couldn't encode value of type '{}' in binary form, using JSON: {}", typeName,
+                        e.getMessage());
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_JSON);
+        ValueCodecUtil.writeString(out, typeName);
+        out.write(mapper.toJson(value).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the given bytes.
+     *
+     * @param data the bytes which have been produced by {@link #encode(Object)}
+     * @param classLoader the class loader to load the value type with, may be null
+     * @return the decoded value
+     * @throws IOException if the value cannot be decoded
+     */
+    public Object decode(byte[] data, ClassLoader classLoader) throws IOException {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        byte format = in.readByte();
+
+        if (format == FORMAT_BINARY) {
+            int typeId = ValueCodecUtil.readVarInt(in);
+            String typeName = typeTable.getTypeName(typeId);
+            if (typeName == null) {
+                throw new IOException("Unknown type id " + typeId);
+            }
+            ValueCodec<Object> codec = getCodec(typeName);
+            if (codec == null) {
+                throw new IOException("No codec available for type '" + typeName + "'");
+            }
+            return codec.decode(in);
+        } else if (format == FORMAT_JSON) {
+            String typeName = ValueCodecUtil.readString(in);
+            int offset = data.length - bytes.available();
+            String json = new String(data, offset, data.length - offset, StandardCharsets.UTF_8);
+            try {
+                Class<?> valueType = classLoader == null ? Class.forName(typeName) : classLoader.loadClass(typeName);
+                return mapper.fromJson(json, valueType);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown type '" + typeName + "'", e);
+            }
+        } else {
+            throw new IOException("Unknown format " + format);
+        }
+    }
+
+    /**
+     * Checks whether the given bytes should be re-encoded, because they are not in the format this codec would use
+     * now, i.e. binary values while binary encoding is disabled or JSON values for which a codec has become available.
+     *
+     * @param data the stored bytes
+     * @return true if the value should be decoded and encoded again
+     * @throws IOException if the bytes cannot be read
+     */
+    public boolean needsMigration(byte[] data) throws IOException {
+        if (!isEncoded(data)) {
+            return true;
+        }
+        if (data[0] == FORMAT_BINARY) {
+            return !binary;
+        }
+        if (!binary) {
+            return false;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1));
+        return hasCodec(ValueCodecUtil.readString(in));
+    }
+
+    /**
+     * Checks whether values of the given type can be stored in binary form.
+     *
+     * @param typeName the fully qualified class name of the type
+     * @return true if this codec has a {@link ValueCodec} for the type
+     */
+    public boolean hasCodec(String typeName) {
+        return valueCodecs.containsKey(typeName);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValueCodec<Object> getCodec(String typeName) {
+        return (ValueCodec<Object>) valueCodecs.get(typeName);
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The {@link TypeTable} interns the class names of stored values, so that binary values only need to carry a small
+ * numeric id instead of the fully qualified class name. The table itself has to be persisted by the
+ * {@link StorageService}, which is notified about every newly assigned id through the {@link Listener}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class TypeTable {
+
+    /**
+     * Gets notified about newly interned types. The notification happens before the id is handed out, so the
+     * listener can persist the entry before any value referring to it is written.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a type has been interned.
+         *
+         * @param id the assigned id
+         * @param typeName the fully qualified class name
+         */
+        void typeAdded(int id, String typeName);
+
+    }
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private final Map<Integer, String> typeNames = new HashMap<>();
+
+    private final Listener listener;
+
+    private int nextId;
+
+    /**
+     * Creates a type table.
+     *
+     * @param entries the previously persisted entries (id to class name)
+     * @param listener the listener to notify about new entries, may be null
+     */
+    public TypeTable(Map<Integer, String> entries, Listener listener) {
+        this.listener = listener;
+        for (Entry<Integer, String> entry : entries.entrySet()) {
+            ids.put(entry.getValue(), entry.getKey());
+            typeNames.put(entry.getKey(), entry.getValue());
+            nextId = Math.max(nextId, entry.getKey() + 1);
+        }
+    }
+
+    /**
+     * Returns the id of the given type and assigns a new one if the type is not known yet.
+     *
+     * @param typeName the fully qualified class name
+     * @return the id
+     */
+    public synchronized int getId(String typeName) {
+        Integer id = ids.get(typeName);
+        if (id == null) {
+            id = nextId++;
+            if (listener != null) {
+                listener.typeAdded(id, typeName);
+            }
+            ids.put(typeName, id);
+            typeNames.put(id, typeName);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the type with the given id.
+     *
+     * @param id the id
+     * @return the fully qualified class name or null if the id is unknown
+     */
+    public synchronized String getTypeName(int id) {
+        return typeNames.get(id);
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A {@link ValueCodec} writes values of one particular type in a compact binary form, which is much smaller and
+ * faster to read than the JSON representation {@link StorageService}s use by default. Codecs are passed to the storage
+ * which holds the values (see {@link CodecAwareStorageService#getStorage(String, ClassLoader, java.util.Collection)}).
+ * <p>
+ * The binary form must stay readable by later versions of the codec, i.e. changes to the format have to be
+ * backwards compatible (for instance by writing a version byte first).
+ *
+ * @author Markus Mazurczak - Initial contribution
+ *
+ * @param <T> the type of the values
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Returns the type of values handled by this codec. Instances of subclasses are not handled, each concrete class
+     * needs its own codec.
+     *
+     * @return the value type (must not be null)
+     */
+    Class<T> getValueType();
+
+    /**
+     * Writes the given value.
+     *
+     * @param value the value (not null)
+     * @param out the output to write to
+     * @throws IOException if the value cannot be written, in which case the storage falls back to JSON
+     */
+    void encode(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads a value which has been written by {@link #encode(Object, DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the value
+     * @throws IOException if the value cannot be read
+     */
+    T decode(DataInput in) throws IOException;
+
+}
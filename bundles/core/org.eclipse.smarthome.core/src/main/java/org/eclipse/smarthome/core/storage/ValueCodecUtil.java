@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.core.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The {@link ValueCodecUtil} offers methods to read and write the building blocks of stored values in a compact
+ * binary form. It is meant to be used by {@link ValueCodec} implementations.
+ * <p>
+ * Values of configuration maps are written with a type tag. Just like the JSON deserialization of the storages,
+ * numbers are always read back as {@link BigDecimal}s.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public final class ValueCodecUtil {
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_FALSE = 3;
+    private static final byte TAG_DECIMAL = 4;
+    private static final byte TAG_LIST = 5;
+    private static final byte TAG_MAP = 6;
+
+    private ValueCodecUtil() {
+    }
+
+    /**
+     * Writes a non-negative int in a variable length encoding (7 bits per byte).
+     *
+     * @param out the output
+     * @param value the value, must not be negative
+     * @throws IOException if writing fails
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Writes a string which might be null. Other than {@link DataOutput#writeUTF(String)} the length of the string is
+     * not limited.
+     *
+     * @param out the output
+     * @param value the string or null
+     * @throws IOException if writing fails
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a collection of strings which might be null.
+     *
+     * @param out the output
+     * @param values the strings or null
+     * @throws IOException if writing fails
+     */
+    public static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        if (values == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, values.size() + 1);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * Reads a collection of strings into the given target.
+     *
+     * @param in the input
+     * @param target the collection to add the strings to
+     * @return the target or null if a null collection has been written
+     * @throws IOException if reading fails
+     */
+    public static <C extends Collection<String>> C readStrings(DataInput in, C target) throws IOException {
+        int size = readVarInt(in);
+        if (size == 0) {
+            return null;
+        }
+        for (int i = 1; i < size; i++) {
+            target.add(readString(in));
+        }
+        return target;
+    }
+
+    /**
+     * Writes a map of strings which might be null.
+     *
+     * @param out the output
+     * @param map the map or null
+     * @throws IOException if writing fails
+     */
+    public static void writeStringMap(DataOutput out, Map<String, String> map) throws IOException {
+        if (map == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, map.size() + 1);
+        for (Entry<String, String> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    public static Map<String, String> readStringMap(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        if (size == 0) {
+            return null;
+        }
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 1; i < size; i++) {
+            map.put(readString(in), readString(in));
+        }
+        return map;
+    }
+
+    /**
+     * Writes a map of configuration values which might be null. Supported values are strings, booleans, numbers as
+     * well as lists and maps thereof.
+     *
+     * @param out the output
+     * @param map the map or null
+     * @throws IOException if writing fails or the map contains an unsupported value
+     */
+    public static void writeValueMap(DataOutput out, Map<String, ?> map) throws IOException {
+        if (map == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, map.size() + 1);
+        for (Entry<String, ?> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    public static Map<String, Object> readValueMap(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        if (size == 0) {
+            return null;
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 1; i < size; i++) {
+            map.put(readString(in), readValue(in));
+        }
+        return map;
+    }
+
+    /**
+     * Writes a single configuration value together with its type.
+     *
+     * @param out the output
+     * @param value the value or null
+     * @throws IOException if writing fails or the value is of an unsupported type
+     */
+    public static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Number) {
+            BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+            out.writeByte(TAG_DECIMAL);
+            out.writeInt(decimal.scale());
+            writeVarInt(out, unscaled.length);
+            out.write(unscaled);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TAG_LIST);
+            writeVarInt(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_MAP);
+            writeVarInt(out, map.size());
+            for (Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String)) {
+                    throw new IOException("Unsupported map key type " + entry.getKey());
+                }
+                writeString(out, (String) entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            throw new IOException("Unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    public static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_DECIMAL:
+                int scale = in.readInt();
+                byte[] unscaled = new byte[readVarInt(in)];
+                in.readFully(unscaled);
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            case TAG_LIST:
+                int size = readVarInt(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case TAG_MAP:
+                int entries = readVarInt(in);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < entries; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                return map;
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.console.internal.extension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.smarthome.core.common.RuleProfile;
+import org.eclipse.smarthome.core.common.RuleProfiler;
+import org.eclipse.smarthome.io.console.Console;
+import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
+
+/**
+ * Console command extension to show the execution profiles of the rules recorded by the {@link RuleProfiler}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class RulesConsoleCommandExtension extends AbstractConsoleCommandExtension {
+
+    private static final String SUBCMD_PROFILE = "profile";
+    private static final String PROFILE_RESET = "reset";
+
+    private static final String FORMAT = "%-10s %-30s %9s %9s %6s %10s %10s %10s %10s %10s %12s";
+
+    public RulesConsoleCommandExtension() {
+        super("rules", "Access the rule execution profiles.");
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Arrays.asList(new String[] {
+                buildCommandUsage(SUBCMD_PROFILE, "lists the rules with the most execution time first (times in ms)"),
+                buildCommandUsage(SUBCMD_PROFILE + " " + PROFILE_RESET, "removes all recorded profiles") });
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 1 && SUBCMD_PROFILE.equals(args[0])) {
+            printProfiles(console);
+        } else if (args.length == 2 && SUBCMD_PROFILE.equals(args[0]) && PROFILE_RESET.equals(args[1])) {
+            RuleProfiler.reset();
+            console.println("Rule profiles have been reset.");
+        } else {
+            printUsage(console);
+        }
+    }
+
+    private void printProfiles(Console console) {
+        List<RuleProfile> profiles = RuleProfiler.getProfiles();
+        if (profiles.isEmpty()) {
+            console.println("No rules have been triggered yet.");
+            return;
+        }
+        Collections.sort(profiles, new Comparator<RuleProfile>() {
+            @Override
+            public int compare(RuleProfile profile1, RuleProfile profile2) {
+                return Double.compare(profile2.getTotalTime(), profile1.getTotalTime());
+            }
+        });
+        console.println(String.format(FORMAT, "Engine", "Rule", "Triggered", "Executed", "Failed", "Avg wait",
+                "Max wait", "Avg cond", "Avg action", "p50", "p99"));
+        for (RuleProfile profile : profiles) {
+            console.println(String.format(FORMAT, profile.getEngine(), profile.getRule(), profile.getTriggered(),
+                    profile.getExecuted(), profile.getFailed(), format(profile.getAverageQueueWait()),
+                    format(profile.getMaxQueueWait()), format(profile.getAverageConditionTime()),
+                    format(profile.getAverageActionTime()), format(profile.getP50()), format(profile.getP99())));
+        }
+    }
+
+    private static String format(double millis) {
+        return String.format("%.2f", millis);
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.core.test.item
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import org.eclipse.smarthome.core.events.Event
+import org.eclipse.smarthome.core.items.GroupItem
+import org.eclipse.smarthome.core.items.events.ItemStateChangedEvent
+import org.eclipse.smarthome.core.items.events.ItemUpdatedEvent
+import org.eclipse.smarthome.core.library.items.SwitchItem
+import org.eclipse.smarthome.core.library.types.OnOffType
+import org.eclipse.smarthome.io.rest.core.internal.EnrichedDTOCache
+import org.eclipse.smarthome.io.rest.core.internal.RegistryVersionTracker
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @author Markus Mazurczak - Initial contribution
+ */
+class EnrichedDTOCacheTest {
+
+    RegistryVersionTracker registryVersionTracker
+    EnrichedDTOCache cache
+    URI uri = new URI("http://localhost/rest/")
+
+    @Before
+    void setUp() {
+        registryVersionTracker = new RegistryVersionTracker()
+        cache = new EnrichedDTOCache(registryVersionTracker)
+    }
+
+    @Test
+    void 'assert states are patched into cached item DTOs'() {
+        def item = new SwitchItem("Switch")
+        def group = new GroupItem("Group")
+        group.addMember(item)
+
+        def first = cache.map(item, false, uri)
+        assertThat first.state, is("NULL")
+        assertThat first.link, is("http://localhost/rest/items/Switch")
+
+        item.setState(OnOffType.ON)
+        registryVersionTracker.receive([getType: { ItemStateChangedEvent.TYPE }] as Event)
+        def second = cache.map(item, false, uri)
+        assertThat second.state, is("ON")
+        assertThat first.state, is("NULL")
+
+        assertThat cache.map(group, false, uri).members.length, is(0)
+        assertThat cache.map(group, true, uri).members.collect { it.state }, is(["ON"])
+    }
+
+    @Test
+    void 'assert item DTOs are rebuilt after a definition change'() {
+        def item = new SwitchItem("Switch")
+        item.setLabel("Light")
+        assertThat cache.map(item, false, uri).label, is("Light")
+
+        // the cache relies on the registry events for changes of the definition
+        item.setLabel("Kitchen Light")
+        assertThat cache.map(item, false, uri).label, is("Light")
+        registryVersionTracker.receive([getType: { ItemUpdatedEvent.TYPE }] as Event)
+        assertThat cache.map(item, false, uri).label, is("Kitchen Light")
+
+        // a new item object of the same name is never answered with a cached DTO
+        def newItem = new SwitchItem("Switch")
+        newItem.setLabel("Hall Light")
+        assertThat cache.map(newItem, false, uri).label, is("Hall Light")
+    }
+}
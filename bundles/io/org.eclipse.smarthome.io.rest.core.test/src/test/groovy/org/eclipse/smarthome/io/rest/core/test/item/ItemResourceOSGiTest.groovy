@@ -19,12 +19,15 @@ import org.eclipse.smarthome.core.items.ItemProvider
 import org.eclipse.smarthome.core.items.ManagedItemProvider
 import org.eclipse.smarthome.core.library.items.DimmerItem
 import org.eclipse.smarthome.core.library.items.SwitchItem
+import org.eclipse.smarthome.io.rest.core.item.ItemEventDTO
 import org.eclipse.smarthome.io.rest.core.item.ItemResource
 import org.eclipse.smarthome.test.OSGiTest
 import org.junit.After
 import org.junit.Before
 import org.junit.Test
 
+import com.google.gson.Gson
+
 
 /**
  * ItemResourceOSGiTest tests the ItemResource REST resource on the OSGi level. 
@@ -76,9 +79,9 @@ class ItemResourceOSGiTest extends OSGiTest {
         ] as ItemProvider
         registerService itemProvider
 
-        assertThat containsItems(itemResource.getItems(null, "Tag1", false).getEntity(), ["Item1", "Item2"]), is(true)
-        assertThat containsItems(itemResource.getItems(null, "Tag2", false).getEntity(), ["Item2", "Item3"]), is(true)
-        assertThat itemResource.getItems(null, "NotExistingTag", false).getEntity().size(), is(0)
+        assertThat containsItems(itemResource.getItems(null, "Tag1", false, null, 0, null, null).getEntity().elements, ["Item1", "Item2"]), is(true)
+        assertThat containsItems(itemResource.getItems(null, "Tag2", false, null, 0, null, null).getEntity().elements, ["Item2", "Item3"]), is(true)
+        assertThat itemResource.getItems(null, "NotExistingTag", false, null, 0, null, null).getEntity().elements.size(), is(0)
     }
     
     @Test
@@ -97,19 +100,19 @@ class ItemResourceOSGiTest extends OSGiTest {
         ] as ItemProvider
         registerService itemProvider
         
-        assertThat containsItems(itemResource.getItems("Switch", null, false).getEntity(), ["Item1", "Item2"]), is(true)
-        assertThat containsItems(itemResource.getItems("Dimmer", null, false).getEntity(), ["Item3"]), is(true)
-        assertThat itemResource.getItems(null, "Color", false).getEntity().size(), is(0)
+        assertThat containsItems(itemResource.getItems("Switch", null, false, null, 0, null, null).getEntity().elements, ["Item1", "Item2"]), is(true)
+        assertThat containsItems(itemResource.getItems("Dimmer", null, false, null, 0, null, null).getEntity().elements, ["Item3"]), is(true)
+        assertThat itemResource.getItems(null, "Color", false, null, 0, null, null).getEntity().elements.size(), is(0)
     }
     
     @Test
     void 'assert addTag and removeTag works'() {
         managedItemProvider.add(new SwitchItem("Switch"))
-        assertThat itemResource.getItems(null, "MyTag", false).getEntity().size(), is(0)
+        assertThat itemResource.getItems(null, "MyTag", false, null, 0, null, null).getEntity().elements.size(), is(0)
         itemResource.addTag("Switch", "MyTag")
-        assertThat itemResource.getItems(null, "MyTag", false).getEntity().size(), is(1)
+        assertThat itemResource.getItems(null, "MyTag", false, null, 0, null, null).getEntity().elements.size(), is(1)
         itemResource.removeTag("Switch", "MyTag")
-        assertThat itemResource.getItems(null, "MyTag", false).getEntity().size(), is(0)
+        assertThat itemResource.getItems(null, "MyTag", false, null, 0, null, null).getEntity().elements.size(), is(0)
     }
     
     @Test
@@ -133,6 +136,54 @@ class ItemResourceOSGiTest extends OSGiTest {
         assertThat response.status, is(Status.METHOD_NOT_ALLOWED.code)
     }
     
+    @Test
+    void 'assert getItems supports paging, field selection and entity tags'() {
+        def itemProvider = [
+            getAll: {
+                return [new SwitchItem("Item3"), new SwitchItem("Item1"), new SwitchItem("Item2")]
+            },
+            addProviderChangeListener: {},
+            removeProviderChangeListener: {},
+        ] as ItemProvider
+        registerService itemProvider
+
+        Response response = itemResource.getItems("Switch", null, false, "name,type", 1, 1, null)
+        assertThat response.status, is(Status.OK.code)
+        def output = new ByteArrayOutputStream()
+        response.entity.write(output)
+        assertThat new Gson().fromJson(output.toString("UTF-8"), List), is([[name: "Item2", type: "SwitchItem"]])
+
+        // the registry events of the new items are delivered asynchronously and change the entity tag
+        waitForAssert {
+            response = itemResource.getItems("Switch", null, false, "name,type", 1, 1, null)
+            def entityTag = "\"${response.entityTag.value}\"" as String
+            assertThat itemResource.getItems("Switch", null, false, "name,type", 1, 1, entityTag).status, is(Status.NOT_MODIFIED.code)
+            assertThat itemResource.getItems("Switch", null, false, "name,type", 0, 1, entityTag).status, is(Status.OK.code)
+        }
+
+        assertThat itemResource.getItems("Switch", null, false, null, -1, null, null).status, is(Status.BAD_REQUEST.code)
+    }
+
+    @Test
+    void 'assert postItemEvents validates every entry'() {
+        managedItemProvider.add(new SwitchItem("Switch"))
+
+        def itemEvents = [
+            [item: "Switch", command: "ON"],
+            [item: "Switch", state: "OFF"],
+            [item: "UnknownItem", command: "ON"],
+            [item: "Switch", command: "UP"],
+            [item: "Switch", command: "ON", state: "ON"]
+        ].collect { it as ItemEventDTO }
+
+        Response response = itemResource.postItemEvents(itemEvents)
+        assertThat response.status, is(Status.OK.code)
+        assertThat response.entity.collect { it.status }, is([200, 200, 404, 400, 400])
+        assertThat response.entity.collect { it.item }, is(["Switch", "Switch", "UnknownItem", "Switch", "Switch"])
+
+        assertThat itemResource.postItemEvents(null).status, is(Status.BAD_REQUEST.code)
+    }
+
     private containsItems(Object entity, List<String> itemNames) {
         def allFound = true
         itemNames.each { itemName ->
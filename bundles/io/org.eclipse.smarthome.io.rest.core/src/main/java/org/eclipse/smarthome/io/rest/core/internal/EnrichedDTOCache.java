@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.core.internal;
+
+import java.net.URI;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.smarthome.core.items.GroupItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.dto.ThingDTO;
+import org.eclipse.smarthome.core.thing.dto.ThingDTOMapper;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.StateDescription;
+import org.eclipse.smarthome.io.rest.core.item.EnrichedGroupItemDTO;
+import org.eclipse.smarthome.io.rest.core.item.EnrichedItemDTO;
+import org.eclipse.smarthome.io.rest.core.item.EnrichedItemDTOMapper;
+import org.eclipse.smarthome.io.rest.core.thing.EnrichedThingDTO;
+
+/**
+ * The {@link EnrichedDTOCache} maps items and things into enriched DTOs like {@link EnrichedItemDTOMapper} and
+ * {@link org.eclipse.smarthome.io.rest.core.thing.EnrichedThingDTOMapper}, but builds the static part of a DTO (the
+ * item or thing DTO, the state description and the link) only once per definition change. The state of an item is
+ * compared with the state the cached DTO was built for and only transformed again if it has changed. Each call
+ * returns a new DTO, so the cached parts are never modified by a caller.
+ * <p>
+ * The cache is invalidated as a whole when the definition version of the {@link RegistryVersionTracker} changes or
+ * when the registry returns a different object for an item or thing. Group members are looked up on every call, so
+ * the cache never contains the DTO of a group with drill down.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class EnrichedDTOCache {
+
+    private final RegistryVersionTracker registryVersionTracker;
+
+    private final ConcurrentMap<Entry<String, URI>, ItemEntry> items = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<ThingUID, ThingEntry> things = new ConcurrentHashMap<>();
+
+    private volatile long version = -1;
+
+    public EnrichedDTOCache(RegistryVersionTracker registryVersionTracker) {
+        this.registryVersionTracker = registryVersionTracker;
+    }
+
+    /**
+     * Maps an item into an enriched item DTO.
+     *
+     * @param item the item
+     * @param drillDown true, if the members of groups should be mapped as well
+     * @param uri the base uri of the link or null
+     * @return the enriched item DTO
+     */
+    public EnrichedItemDTO map(Item item, boolean drillDown, URI uri) {
+        return map(item, drillDown, uri, currentVersion());
+    }
+
+    /**
+     * Maps a thing into an enriched thing DTO.
+     *
+     * @param thing the thing
+     * @param uri the base uri of the link of its item or null
+     * @return the enriched thing DTO
+     */
+    public EnrichedThingDTO map(Thing thing, URI uri) {
+        long version = currentVersion();
+        ThingEntry entry = things.get(thing.getUID());
+        if (entry == null || entry.version != version || entry.thing != thing) {
+            entry = new ThingEntry(version, thing, ThingDTOMapper.map(thing));
+            things.put(thing.getUID(), entry);
+        }
+        GroupItem groupItem = thing.getLinkedItem();
+        EnrichedGroupItemDTO groupItemDTO = groupItem != null ? (EnrichedGroupItemDTO) map(groupItem, true, uri,
+                version) : null;
+        return new EnrichedThingDTO(entry.thingDTO, thing.getStatusInfo(), groupItemDTO);
+    }
+
+    private EnrichedItemDTO map(Item item, boolean drillDown, URI uri, long version) {
+        // the state is read before the template is built, so a concurrent change is detected by the next call
+        State state = item.getState();
+        Entry<String, URI> key = new SimpleImmutableEntry<>(item.getName(), uri);
+        ItemEntry entry = items.get(key);
+        if (entry == null || entry.version != version || entry.item != item) {
+            // the members of groups are added below, so the cached DTO does not depend on drill down
+            EnrichedItemDTO template = EnrichedItemDTOMapper.map(item, false, uri);
+            entry = new ItemEntry(version, item, template, item.getStateDescription(), state);
+            items.put(key, entry);
+        }
+
+        StateText stateText = entry.stateText;
+        if (!stateText.state.equals(state)) {
+            stateText = new StateText(state, EnrichedItemDTOMapper.considerTransformation(state.toString(),
+                    entry.stateDescription));
+            entry.stateText = stateText;
+        }
+
+        EnrichedItemDTO template = entry.template;
+        if (item instanceof GroupItem) {
+            List<EnrichedItemDTO> members = new ArrayList<>();
+            if (drillDown) {
+                for (Item member : ((GroupItem) item).getMembers()) {
+                    members.add(map(member, true, uri, version));
+                }
+            }
+            return new EnrichedGroupItemDTO(template, members.toArray(new EnrichedItemDTO[members.size()]),
+                    template.link, stateText.text, template.stateDescription);
+        } else {
+            return new EnrichedItemDTO(template, template.link, stateText.text, template.stateDescription);
+        }
+    }
+
+    private long currentVersion() {
+        long version = registryVersionTracker.getDefinitionVersion();
+        if (version != this.version) {
+            synchronized (this) {
+                if (version != this.version) {
+                    // drops the entries of removed items and things
+                    items.clear();
+                    things.clear();
+                    this.version = version;
+                }
+            }
+        }
+        return version;
+    }
+
+    private static class ItemEntry {
+
+        final long version;
+        final Item item;
+        final EnrichedItemDTO template;
+        final StateDescription stateDescription;
+        volatile StateText stateText;
+
+        ItemEntry(long version, Item item, EnrichedItemDTO template, StateDescription stateDescription, State state) {
+            this.version = version;
+            this.item = item;
+            this.template = template;
+            this.stateDescription = stateDescription;
+            this.stateText = new StateText(state, template.state);
+        }
+
+    }
+
+    private static class StateText {
+
+        final State state;
+        final String text;
+
+        StateText(State state, String text) {
+            this.state = state;
+            this.text = text;
+        }
+
+    }
+
+    private static class ThingEntry {
+
+        final long version;
+        final Thing thing;
+        final ThingDTO thingDTO;
+
+        ThingEntry(long version, Thing thing, ThingDTO thingDTO) {
+            this.version = version;
+            this.thing = thing;
+            this.thingDTO = thingDTO;
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.core.internal;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.events.EventFilter;
+import org.eclipse.smarthome.core.events.EventSubscriber;
+import org.eclipse.smarthome.core.items.events.ItemAddedEvent;
+import org.eclipse.smarthome.core.items.events.ItemRemovedEvent;
+import org.eclipse.smarthome.core.items.events.ItemStateChangedEvent;
+import org.eclipse.smarthome.core.items.events.ItemUpdatedEvent;
+import org.eclipse.smarthome.core.thing.events.ThingAddedEvent;
+import org.eclipse.smarthome.core.thing.events.ThingRemovedEvent;
+import org.eclipse.smarthome.core.thing.events.ThingStatusInfoChangedEvent;
+import org.eclipse.smarthome.core.thing.events.ThingUpdatedEvent;
+import org.eclipse.smarthome.core.thing.link.events.ItemChannelLinkAddedEvent;
+import org.eclipse.smarthome.core.thing.link.events.ItemChannelLinkRemovedEvent;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The {@link RegistryVersionTracker} counts the changes of the item and thing registries, of the item states, of the
+ * thing states and of the item channel links, i.e. of everything which is contained in the item and thing DTOs. It
+ * is used to compute strong entity tags for the item and thing lists, so unchanged lists can be answered with a
+ * "304 Not Modified". Changes of definitions, i.e. all changes except for item state and thing status changes, are
+ * additionally counted in a separate definition version, which is used to invalidate cached DTOs.
+ * <p>
+ * The events are delivered asynchronously, so a response might already contain a change which has not been counted
+ * yet. Its entity tag then refers to the previous version and becomes invalid as soon as the event has arrived.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class RegistryVersionTracker implements EventSubscriber {
+
+    /** distinguishes the entity tags of different runtime instances */
+    private static final String INSTANCE = Long.toHexString(System.currentTimeMillis());
+
+    private final Set<String> subscribedEventTypes = ImmutableSet.of(ItemAddedEvent.TYPE, ItemRemovedEvent.TYPE,
+            ItemUpdatedEvent.TYPE, ItemStateChangedEvent.TYPE, ThingAddedEvent.TYPE, ThingRemovedEvent.TYPE,
+            ThingUpdatedEvent.TYPE, ThingStatusInfoChangedEvent.TYPE, ItemChannelLinkAddedEvent.TYPE,
+            ItemChannelLinkRemovedEvent.TYPE);
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong definitionVersion = new AtomicLong();
+
+    @Override
+    public Set<String> getSubscribedEventTypes() {
+        return subscribedEventTypes;
+    }
+
+    @Override
+    public EventFilter getEventFilter() {
+        return null;
+    }
+
+    @Override
+    public void receive(Event event) {
+        if (!ItemStateChangedEvent.TYPE.equals(event.getType())
+                && !ThingStatusInfoChangedEvent.TYPE.equals(event.getType())) {
+            definitionVersion.incrementAndGet();
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return the number of changes which have been counted so far
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return the number of definition changes which have been counted so far
+     */
+    public long getDefinitionVersion() {
+        return definitionVersion.get();
+    }
+
+    /**
+     * Returns the entity tag of a response which only depends on the current version and the given parameters of the
+     * request. The version must be read before the response is computed.
+     *
+     * @param version the version
+     * @param parameters the parameters of the request (can contain null)
+     * @return the entity tag
+     */
+    public static EntityTag getEntityTag(long version, Object... parameters) {
+        return new EntityTag(INSTANCE + "-" + Long.toHexString(version) + "-"
+                + Integer.toHexString(Arrays.hashCode(parameters)));
+    }
+
+}
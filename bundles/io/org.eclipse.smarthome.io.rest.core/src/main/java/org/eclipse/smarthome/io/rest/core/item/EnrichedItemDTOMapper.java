@@ -24,6 +24,7 @@ import org.eclipse.smarthome.io.rest.core.internal.RESTCoreActivator;
  *
  * @author Dennis Nobel - Initial contribution
  * @author Jochen Hiller - Fix #473630 - handle optional dependency to TransformationHelper
+ * @author Markus Mazurczak - Public state transformation for the DTO cache
  */
 public class EnrichedItemDTOMapper {
 
@@ -89,7 +90,14 @@ public class EnrichedItemDTOMapper {
         }
     }
 
-    private static String considerTransformation(String state, StateDescription stateDescription) {
+    /**
+     * Transforms a state for the REST API, if the pattern of its state description is a transformation.
+     *
+     * @param state the state as string
+     * @param stateDescription the state description of the item (can be null)
+     * @return the transformed state
+     */
+    public static String considerTransformation(String state, StateDescription stateDescription) {
         if (stateDescription != null && stateDescription.getPattern() != null) {
             try {
                 return TransformationHelper.transform(RESTCoreActivator.getBundleContext(),
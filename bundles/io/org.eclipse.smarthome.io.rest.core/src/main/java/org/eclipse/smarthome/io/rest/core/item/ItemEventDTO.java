@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.core.item;
+
+/**
+ * This is a data transfer object that is used to send a command or a state update to an item as part of a batch.
+ * Exactly one of {@link #command} and {@link #state} must be set.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class ItemEventDTO {
+
+    public String item;
+    public String command;
+    public String state;
+
+    public ItemEventDTO() {
+    }
+
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.core.item;
+
+/**
+ * This is a data transfer object that is used to serialize the result of a single {@link ItemEventDTO} of a batch.
+ * The status is the HTTP status code the entry would have been answered with as a single request.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class ItemEventResultDTO {
+
+    public String item;
+    public int status;
+    public String message;
+
+    public ItemEventResultDTO(String item, int status, String message) {
+        this.item = item;
+        this.status = status;
+        this.message = message;
+    }
+
+}
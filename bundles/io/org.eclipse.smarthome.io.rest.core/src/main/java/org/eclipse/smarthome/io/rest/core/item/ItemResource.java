@@ -7,16 +7,24 @@
  */
 package org.eclipse.smarthome.io.rest.core.item;
 
+import java.net.URI;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -25,11 +33,14 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 
+import org.eclipse.smarthome.core.events.Event;
 import org.eclipse.smarthome.core.events.EventPublisher;
 import org.eclipse.smarthome.core.items.ActiveItem;
 import org.eclipse.smarthome.core.items.GenericItem;
@@ -48,10 +59,17 @@ import org.eclipse.smarthome.core.library.types.UpDownType;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.core.types.TypeParser;
+import org.eclipse.smarthome.io.rest.EntityTagUtil;
+import org.eclipse.smarthome.io.rest.JSONStreamingOutput;
 import org.eclipse.smarthome.io.rest.RESTResource;
+import org.eclipse.smarthome.io.rest.core.internal.EnrichedDTOCache;
+import org.eclipse.smarthome.io.rest.core.internal.RegistryVersionTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -78,6 +96,9 @@ import io.swagger.annotations.ApiResponses;
  * @author Chris Jackson - Added method to write complete item bean
  * @author Stefan Bußweiler - Migration to new ESH event concept
  * @author Yordan Zhelev - Added Swagger annotations
+ * @author Markus Mazurczak - Added paging, projection, streaming and entity tags to the item list
+ * @author Markus Mazurczak - Added batch of commands and state updates
+ * @author Markus Mazurczak - Cached enriched item DTOs
  *
  */
 @Path(ItemResource.PATH_ITEMS)
@@ -93,6 +114,9 @@ public class ItemResource implements RESTResource {
     private EventPublisher eventPublisher;
     private ManagedItemProvider managedItemProvider;
     private Set<ItemFactory> itemFactories = new HashSet<>();
+    private RegistryVersionTracker registryVersionTracker;
+
+    private EnrichedDTOCache dtoCache;
 
     protected void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
@@ -118,6 +142,16 @@ public class ItemResource implements RESTResource {
         this.managedItemProvider = null;
     }
 
+    protected void setRegistryVersionTracker(RegistryVersionTracker registryVersionTracker) {
+        this.registryVersionTracker = registryVersionTracker;
+        this.dtoCache = new EnrichedDTOCache(registryVersionTracker);
+    }
+
+    protected void unsetRegistryVersionTracker(RegistryVersionTracker registryVersionTracker) {
+        this.registryVersionTracker = null;
+        this.dtoCache = null;
+    }
+
     protected void addItemFactory(ItemFactory itemFactory) {
         this.itemFactories.add(itemFactory);
     }
@@ -132,14 +166,31 @@ public class ItemResource implements RESTResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @ApiOperation(value = "Get all available items.", response = EnrichedItemDTO.class, responseContainer = "List")
-    @ApiResponses(value = { @ApiResponse(code = 200, message = "OK") })
+    @ApiResponses(value = { @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 304, message = "Not modified"),
+            @ApiResponse(code = 400, message = "Invalid offset or limit") })
     public Response getItems(@QueryParam("type") @ApiParam(value = "item type filter", required = false) String type,
             @QueryParam("tags") @ApiParam(value = "item tag filter", required = false) String tags,
-            @DefaultValue("false") @QueryParam("recursive") @ApiParam(value = "get member items recursivly", required = false) boolean recursive) {
+            @DefaultValue("false") @QueryParam("recursive") @ApiParam(value = "get member items recursivly", required = false) boolean recursive,
+            @QueryParam("fields") @ApiParam(value = "comma separated list of the fields to return", required = false) String fields,
+            @DefaultValue("0") @QueryParam("offset") @ApiParam(value = "number of items to skip (ordered by name)", required = false) int offset,
+            @QueryParam("limit") @ApiParam(value = "maximum number of items to return (ordered by name)", required = false) Integer limit,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         logger.debug("Received HTTP GET request at '{}'", uriInfo.getPath());
 
-        Object responseObject = getItemBeans(type, tags, recursive);
-        return Response.ok(responseObject).build();
+        if (offset < 0 || (limit != null && limit < 0)) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        EntityTag entityTag = RegistryVersionTracker.getEntityTag(registryVersionTracker.getVersion(), type, tags,
+                recursive, fields, offset, limit);
+        if (EntityTagUtil.matches(ifNoneMatch, entityTag)) {
+            return Response.notModified(entityTag).build();
+        }
+
+        Iterable<EnrichedItemDTO> beans = getItemBeans(type, tags, recursive, offset, limit);
+        return Response.ok(new JSONStreamingOutput(beans, JSONStreamingOutput.parseFields(fields))).tag(entityTag)
+                .build();
     }
 
     @GET
@@ -215,20 +266,8 @@ public class ItemResource implements RESTResource {
             @PathParam("itemname") @ApiParam(value = "item name", required = true) String itemname,
             @ApiParam(value = "valid item command (e.g. ON, OFF, UP, DOWN, REFRESH)", required = true) String value) {
         Item item = getItem(itemname);
-        Command command = null;
         if (item != null) {
-            if ("toggle".equalsIgnoreCase(value) && (item instanceof SwitchItem || item instanceof RollershutterItem)) {
-                if (OnOffType.ON.equals(item.getStateAs(OnOffType.class)))
-                    command = OnOffType.OFF;
-                if (OnOffType.OFF.equals(item.getStateAs(OnOffType.class)))
-                    command = OnOffType.ON;
-                if (UpDownType.UP.equals(item.getStateAs(UpDownType.class)))
-                    command = UpDownType.DOWN;
-                if (UpDownType.DOWN.equals(item.getStateAs(UpDownType.class)))
-                    command = UpDownType.UP;
-            } else {
-                command = TypeParser.parseCommand(item.getAcceptedCommandTypes(), value);
-            }
+            Command command = parseCommand(item, value, null);
             if (command != null) {
                 logger.debug("Received HTTP POST request at '{}' with value '{}'.", uriInfo.getPath(), value);
                 eventPublisher.post(ItemEventFactory.createCommandEvent(itemname, command));
@@ -244,6 +283,65 @@ public class ItemResource implements RESTResource {
         }
     }
 
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(value = "Sends commands and state updates to several items.", response = ItemEventResultDTO.class, responseContainer = "List")
+    @ApiResponses(value = { @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "No list of commands and state updates given") })
+    public Response postItemEvents(
+            @ApiParam(value = "list of item names together with a command or a state", required = true) List<ItemEventDTO> itemEvents) {
+        if (itemEvents == null) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+        logger.debug("Received HTTP POST request at '{}' with {} entries.", uriInfo.getPath(), itemEvents.size());
+
+        // validate all entries before the first event is sent, so the valid ones are published in one go
+        List<ItemEventResultDTO> results = new ArrayList<>(itemEvents.size());
+        List<Event> events = new ArrayList<>(itemEvents.size());
+        Map<Entry<List<Class<? extends Command>>, String>, Command> parsedCommands = new HashMap<>();
+        Map<Entry<List<Class<? extends State>>, String>, State> parsedStates = new HashMap<>();
+        for (ItemEventDTO itemEvent : itemEvents) {
+            String itemName = itemEvent != null ? itemEvent.item : null;
+            Item item = itemName != null ? getItem(itemName) : null;
+            if (item == null) {
+                results.add(new ItemEventResultDTO(itemName, Status.NOT_FOUND.getStatusCode(), "Item not found"));
+            } else if ((itemEvent.command == null) == (itemEvent.state == null)) {
+                results.add(new ItemEventResultDTO(itemName, Status.BAD_REQUEST.getStatusCode(),
+                        "Either a command or a state is required"));
+            } else if (itemEvent.command != null) {
+                Command command = parseCommand(item, itemEvent.command, parsedCommands);
+                if (command != null) {
+                    events.add(ItemEventFactory.createCommandEvent(itemName, command));
+                    results.add(new ItemEventResultDTO(itemName, Status.OK.getStatusCode(), null));
+                } else {
+                    results.add(new ItemEventResultDTO(itemName, Status.BAD_REQUEST.getStatusCode(),
+                            "Invalid command '" + itemEvent.command + "'"));
+                }
+            } else {
+                Entry<List<Class<? extends State>>, String> key = new SimpleImmutableEntry<>(
+                        item.getAcceptedDataTypes(), itemEvent.state);
+                State state = parsedStates.get(key);
+                if (state == null) {
+                    state = TypeParser.parseState(item.getAcceptedDataTypes(), itemEvent.state);
+                    parsedStates.put(key, state);
+                }
+                if (state != null) {
+                    events.add(ItemEventFactory.createStateEvent(itemName, state));
+                    results.add(new ItemEventResultDTO(itemName, Status.OK.getStatusCode(), null));
+                } else {
+                    results.add(new ItemEventResultDTO(itemName, Status.BAD_REQUEST.getStatusCode(),
+                            "Invalid state '" + itemEvent.state + "'"));
+                }
+            }
+        }
+
+        for (Event event : events) {
+            eventPublisher.post(event);
+        }
+        return Response.ok(results).build();
+    }
+
     @PUT
     @Path("/{itemName: [a-zA-Z_0-9]*}/members/{memberItemName: [a-zA-Z_0-9]*}")
     @ApiOperation(value = "Adds a new member to a group item.")
@@ -459,8 +557,43 @@ public class ItemResource implements RESTResource {
         return null;
     }
 
-    private List<EnrichedItemDTO> getItemBeans(String type, String tags, boolean recursive) {
-        List<EnrichedItemDTO> beans = new LinkedList<>();
+    /**
+     * Parses a command for an item. "toggle" is accepted for switches and rollershutters and is resolved by the
+     * current state of the item.
+     *
+     * @param item the item
+     * @param value the command as a string
+     * @param parsedCommands the commands which have already been parsed for other items (can be null)
+     * @return the command or null if the value is not a valid command for the item
+     */
+    private Command parseCommand(Item item, String value,
+            Map<Entry<List<Class<? extends Command>>, String>, Command> parsedCommands) {
+        Command command = null;
+        if ("toggle".equalsIgnoreCase(value) && (item instanceof SwitchItem || item instanceof RollershutterItem)) {
+            if (OnOffType.ON.equals(item.getStateAs(OnOffType.class)))
+                command = OnOffType.OFF;
+            if (OnOffType.OFF.equals(item.getStateAs(OnOffType.class)))
+                command = OnOffType.ON;
+            if (UpDownType.UP.equals(item.getStateAs(UpDownType.class)))
+                command = UpDownType.DOWN;
+            if (UpDownType.DOWN.equals(item.getStateAs(UpDownType.class)))
+                command = UpDownType.UP;
+        } else if (parsedCommands == null) {
+            command = TypeParser.parseCommand(item.getAcceptedCommandTypes(), value);
+        } else {
+            Entry<List<Class<? extends Command>>, String> key = new SimpleImmutableEntry<>(
+                    item.getAcceptedCommandTypes(), value);
+            command = parsedCommands.get(key);
+            if (command == null) {
+                command = TypeParser.parseCommand(item.getAcceptedCommandTypes(), value);
+                parsedCommands.put(key, command);
+            }
+        }
+        return command;
+    }
+
+    private Iterable<EnrichedItemDTO> getItemBeans(String type, String tags, final boolean recursive, int offset,
+            Integer limit) {
         Collection<Item> items;
         if (tags == null) {
             if (type == null) {
@@ -476,18 +609,37 @@ public class ItemResource implements RESTResource {
                 items = itemRegistry.getItemsByTagAndType(type, tagList);
             }
         }
-        if (items != null) {
-            for (Item item : items) {
-                beans.add(EnrichedItemDTOMapper.map(item, recursive, uriInfo.getBaseUri()));
-            }
+        if (items == null) {
+            return Collections.emptyList();
+        }
+        if (offset > 0 || limit != null) {
+            // a page is only well defined for a stable order
+            List<Item> sortedItems = new ArrayList<>(items);
+            Collections.sort(sortedItems, new Comparator<Item>() {
+                @Override
+                public int compare(Item item1, Item item2) {
+                    return item1.getName().compareTo(item2.getName());
+                }
+            });
+            int from = Math.min(offset, sortedItems.size());
+            int to = limit != null ? (int) Math.min((long) from + limit, sortedItems.size()) : sortedItems.size();
+            items = sortedItems.subList(from, to);
         }
-        return beans;
+
+        // the base URI has to be read while the request is processed, the DTOs are mapped while they are written
+        final URI baseUri = uriInfo.getBaseUri();
+        return Iterables.transform(items, new Function<Item, EnrichedItemDTO>() {
+            @Override
+            public EnrichedItemDTO apply(Item item) {
+                return dtoCache.map(item, recursive, baseUri);
+            }
+        });
     }
 
     private EnrichedItemDTO getItemDataBean(String itemname) {
         Item item = getItem(itemname);
         if (item != null) {
-            return EnrichedItemDTOMapper.map(item, true, uriInfo.getBaseUri());
+            return dtoCache.map(item, true, uriInfo.getBaseUri());
         } else {
             logger.info("Received HTTP GET request at '{}' for the unknown item '{}'.", uriInfo.getPath(), itemname);
             throw new WebApplicationException(404);
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.core.profiler;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.smarthome.core.common.RuleProfile;
+import org.eclipse.smarthome.core.common.RuleProfiler;
+import org.eclipse.smarthome.io.rest.RESTResource;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * This class acts as a REST resource for the execution profiles of the rules recorded by the {@link RuleProfiler}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+@Path(RuleProfileResource.PATH_PROFILER)
+@Api(value = RuleProfileResource.PATH_PROFILER)
+public class RuleProfileResource implements RESTResource {
+
+    /** The URI path to this resource */
+    public static final String PATH_PROFILER = "profiler";
+
+    @GET
+    @Path("/rules")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(value = "Get the execution profiles of all triggered rules. All times are given in milliseconds.", response = RuleProfile.class, responseContainer = "List")
+    @ApiResponses(value = { @ApiResponse(code = 200, message = "OK") })
+    public Response getRuleProfiles() {
+        return Response.ok(RuleProfiler.getProfiles()).build();
+    }
+
+    @DELETE
+    @Path("/rules")
+    @ApiOperation(value = "Removes the execution profiles of all rules.")
+    @ApiResponses(value = { @ApiResponse(code = 200, message = "OK") })
+    public Response resetRuleProfiles() {
+        RuleProfiler.reset();
+        return Response.ok().build();
+    }
+
+}
@@ -8,10 +8,13 @@
 package org.eclipse.smarthome.io.rest.core.thing;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -25,6 +28,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -52,11 +56,18 @@ import org.eclipse.smarthome.core.thing.link.ItemChannelLink;
 import org.eclipse.smarthome.core.thing.link.ItemChannelLinkRegistry;
 import org.eclipse.smarthome.core.thing.link.ManagedItemChannelLinkProvider;
 import org.eclipse.smarthome.io.rest.ConfigUtil;
+import org.eclipse.smarthome.io.rest.EntityTagUtil;
+import org.eclipse.smarthome.io.rest.JSONStreamingOutput;
 import org.eclipse.smarthome.io.rest.LocaleUtil;
 import org.eclipse.smarthome.io.rest.RESTResource;
+import org.eclipse.smarthome.io.rest.core.internal.EnrichedDTOCache;
+import org.eclipse.smarthome.io.rest.core.internal.RegistryVersionTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -71,6 +82,8 @@ import io.swagger.annotations.ApiResponses;
  * @author Kai Kreuzer - refactored for using the OSGi JAX-RS connector
  * @author Thomas Höfer - added validation of configuration
  * @author Yordan Zhelev - Added Swagger annotations
+ * @author Markus Mazurczak - Added paging, projection, streaming and entity tags to the thing list
+ * @author Markus Mazurczak - Cached enriched thing DTOs
  */
 @Path(ThingResource.PATH_THINGS)
 @Api(value = ThingResource.PATH_THINGS)
@@ -89,6 +102,9 @@ public class ThingResource implements RESTResource {
     private ManagedThingProvider managedThingProvider;
     private ThingRegistry thingRegistry;
     private ConfigStatusService configStatusService;
+    private RegistryVersionTracker registryVersionTracker;
+
+    private EnrichedDTOCache dtoCache;
 
     @Context
     private UriInfo uriInfo;
@@ -125,11 +141,28 @@ public class ThingResource implements RESTResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @ApiOperation(value = "Get all available things.", response = EnrichedThingDTO.class, responseContainer = "Set")
-    @ApiResponses(value = { @ApiResponse(code = 200, message = "OK") })
-    public Response getAll() {
+    @ApiResponses(value = { @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 304, message = "Not modified"),
+            @ApiResponse(code = 400, message = "Invalid offset or limit") })
+    public Response getAll(
+            @QueryParam("fields") @ApiParam(value = "comma separated list of the fields to return", required = false) String fields,
+            @DefaultValue("0") @QueryParam("offset") @ApiParam(value = "number of things to skip (ordered by UID)", required = false) int offset,
+            @QueryParam("limit") @ApiParam(value = "maximum number of things to return (ordered by UID)", required = false) Integer limit,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        if (offset < 0 || (limit != null && limit < 0)) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        EntityTag entityTag = RegistryVersionTracker.getEntityTag(registryVersionTracker.getVersion(), fields,
+                offset, limit);
+        if (EntityTagUtil.matches(ifNoneMatch, entityTag)) {
+            return Response.notModified(entityTag).build();
+        }
+
         Collection<Thing> things = thingRegistry.getAll();
-        Set<EnrichedThingDTO> thingBeans = convertToListBean(things);
-        return Response.ok(thingBeans).build();
+        Iterable<EnrichedThingDTO> thingBeans = convertToListBean(things, offset, limit);
+        return Response.ok(new JSONStreamingOutput(thingBeans, JSONStreamingOutput.parseFields(fields)))
+                .tag(entityTag).build();
     }
 
     @GET
@@ -141,7 +174,7 @@ public class ThingResource implements RESTResource {
     public Response getByUID(@PathParam("thingUID") @ApiParam(value = "thingUID") String thingUID) {
         Thing thing = thingRegistry.get((new ThingUID(thingUID)));
         if (thing != null) {
-            return Response.ok(EnrichedThingDTOMapper.map(thing, uriInfo.getBaseUri())).build();
+            return Response.ok(dtoCache.map(thing, uriInfo.getBaseUri())).build();
         } else {
             return Response.status(Status.NO_CONTENT).build();
         }
@@ -362,13 +395,39 @@ public class ThingResource implements RESTResource {
         this.configStatusService = null;
     }
 
-    private Set<EnrichedThingDTO> convertToListBean(Collection<Thing> things) {
-        Set<EnrichedThingDTO> thingBeans = new LinkedHashSet<>();
-        for (Thing thing : things) {
-            EnrichedThingDTO thingBean = EnrichedThingDTOMapper.map(thing, uriInfo.getBaseUri());
-            thingBeans.add(thingBean);
+    protected void setRegistryVersionTracker(RegistryVersionTracker registryVersionTracker) {
+        this.registryVersionTracker = registryVersionTracker;
+        this.dtoCache = new EnrichedDTOCache(registryVersionTracker);
+    }
+
+    protected void unsetRegistryVersionTracker(RegistryVersionTracker registryVersionTracker) {
+        this.registryVersionTracker = null;
+        this.dtoCache = null;
+    }
+
+    private Iterable<EnrichedThingDTO> convertToListBean(Collection<Thing> things, int offset, Integer limit) {
+        if (offset > 0 || limit != null) {
+            // a page is only well defined for a stable order
+            List<Thing> sortedThings = new ArrayList<>(things);
+            Collections.sort(sortedThings, new Comparator<Thing>() {
+                @Override
+                public int compare(Thing thing1, Thing thing2) {
+                    return thing1.getUID().getAsString().compareTo(thing2.getUID().getAsString());
+                }
+            });
+            int from = Math.min(offset, sortedThings.size());
+            int to = limit != null ? (int) Math.min((long) from + limit, sortedThings.size()) : sortedThings.size();
+            things = sortedThings.subList(from, to);
         }
-        return thingBeans;
+
+        // the base URI has to be read while the request is processed, the DTOs are mapped while they are written
+        final URI baseUri = uriInfo.getBaseUri();
+        return Iterables.transform(things, new Function<Thing, EnrichedThingDTO>() {
+            @Override
+            public EnrichedThingDTO apply(Thing thing) {
+                return dtoCache.map(thing, baseUri);
+            }
+        });
     }
 
     private Channel findChannel(String channelId, Thing thing) {
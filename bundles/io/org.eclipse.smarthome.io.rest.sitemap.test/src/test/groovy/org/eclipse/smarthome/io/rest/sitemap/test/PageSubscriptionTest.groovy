@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.sitemap.test
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.Executor
+
+import org.eclipse.emf.common.util.BasicEList
+import org.eclipse.smarthome.core.items.GenericItem
+import org.eclipse.smarthome.core.items.ItemNotFoundException
+import org.eclipse.smarthome.core.library.items.SwitchItem
+import org.eclipse.smarthome.core.library.types.OnOffType
+import org.eclipse.smarthome.io.rest.sitemap.internal.PageDTO
+import org.eclipse.smarthome.io.rest.sitemap.internal.PageSubscription
+import org.eclipse.smarthome.model.sitemap.ColorArray
+import org.eclipse.smarthome.model.sitemap.Frame
+import org.eclipse.smarthome.model.sitemap.VisibilityRule
+import org.eclipse.smarthome.model.sitemap.Widget
+import org.eclipse.smarthome.ui.items.ItemUIRegistry
+import org.glassfish.jersey.media.sse.EventOutput
+import org.glassfish.jersey.media.sse.OutboundEvent
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests for {@link PageSubscription}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class PageSubscriptionTest {
+
+    Map<String, GenericItem> items
+    Map<Widget, List<Widget>> children
+    ItemUIRegistry registry
+    List<OutboundEvent> written
+    boolean failWrites
+    Set<PageSubscription> subscriptions
+
+    @Before
+    void setUp() {
+        items = [:]
+        ["Switch", "Other", "Visible"].each {
+            items[it] = new SwitchItem(it)
+            items[it].setState(OnOffType.OFF)
+        }
+        children = [:]
+        registry = [
+            getItem : { String name ->
+                if (!items.containsKey(name)) {
+                    throw new ItemNotFoundException(name)
+                }
+                items[name]
+            },
+            getItemState : { String name -> items[name]?.getState() },
+            getLabel : { Widget w -> "Label" },
+            getCategory : { Widget w -> "switch" },
+            getVisiblity : { Widget w -> w.getVisibility().every { items[it.getItem()].getState() == OnOffType.ON } },
+            getLabelColor : { Widget w -> null },
+            getValueColor : { Widget w -> null },
+            getChildren : { w -> new BasicEList<Widget>(children[w] ?: []) }
+        ] as ItemUIRegistry
+        written = []
+        failWrites = false
+        subscriptions = new CopyOnWriteArraySet<PageSubscription>()
+    }
+
+    @Test
+    void 'assert all widgets are indexed by their ids in the page regardless of their visibility'() {
+        def a = widget("Switch")
+        def b = widget("Other", "Visible")
+        def frame = frame("Visible", a, b)
+        def c = widget("Switch")
+
+        def index = PageSubscription.indexWidgets(registry, "p", [frame, c])
+
+        assertThat index.keySet() as List, is(["p_0", "p_0_0", "p_0_0_1", "p_1"])
+        assertThat index["p_0_0"], is(sameInstance(a))
+        assertThat index["p_0_0_1"], is(sameInstance(b))
+        assertThat index["p_1"], is(sameInstance(c))
+    }
+
+    @Test
+    void 'assert the page is sent first and only the changed fields of dependent widgets follow'() {
+        def subscription = subscribe(widget("Switch"), widget("Other"))
+        assertThat written.collect { it.getName() }, is(["page"])
+        assertThat subscriptions, is([subscription] as Set)
+
+        items.Switch.setState(OnOffType.ON)
+        assertThat written.size(), is(2)
+        assertThat written[1].getName(), is("widget")
+        def delta = written[1].getData()
+        assertThat delta.widgetId, is("p_0")
+        assertThat delta.state, is("ON")
+        assertThat delta.label, is(nullValue())
+        assertThat delta.visibility, is(nullValue())
+
+        // an update with the same state is not a change
+        items.Switch.setState(OnOffType.ON)
+        assertThat written.size(), is(2)
+    }
+
+    @Test
+    void 'assert a hidden widget is reported when it becomes visible'() {
+        subscribe(widget("Switch", "Visible"))
+
+        items.Visible.setState(OnOffType.ON)
+        assertThat written.size(), is(2)
+        assertThat written[1].getData().widgetId, is("p_0")
+        assertThat written[1].getData().visibility, is(true)
+        assertThat written[1].getData().state, is(nullValue())
+
+        items.Switch.setState(OnOffType.ON)
+        assertThat written.size(), is(3)
+        assertThat written[2].getData().state, is("ON")
+    }
+
+    @Test
+    void 'assert the children of a hidden frame are subscribed to'() {
+        def child = widget("Switch")
+        subscribe(frame("Visible", child))
+
+        items.Switch.setState(OnOffType.ON)
+        assertThat written.size(), is(2)
+        assertThat written[1].getData().widgetId, is("p_0_0")
+    }
+
+    @Test
+    void 'assert a closed subscription does not listen to the items anymore'() {
+        def subscription = subscribe(widget("Switch"))
+        subscription.close()
+
+        assertThat subscriptions.isEmpty(), is(true)
+        items.Switch.setState(OnOffType.ON)
+        assertThat written.size(), is(1)
+    }
+
+    @Test
+    void 'assert a failed write closes the subscription'() {
+        subscribe(widget("Switch"))
+        failWrites = true
+
+        items.Switch.setState(OnOffType.ON)
+        assertThat subscriptions.isEmpty(), is(true)
+    }
+
+    @Test
+    void 'assert the events are written by the writer and a pending write does not block the ping'() {
+        def pending = []
+        def subscription = subscribe({ Runnable task -> pending << task } as Executor, 10, widget("Switch"))
+        assertThat written.isEmpty(), is(true)
+        assertThat pending.size(), is(1)
+
+        subscription.ping()
+        items.Switch.setState(OnOffType.ON)
+        assertThat written.isEmpty(), is(true)
+        assertThat pending.size(), is(1)
+
+        pending.remove(0).run()
+        assertThat written.collect { it.getName() }, is(["page", null, "widget"])
+        assertThat written[1].getComment(), is("ping")
+    }
+
+    @Test
+    void 'assert a subscription whose queue overflows is closed'() {
+        def pending = []
+        subscribe({ Runnable task -> pending << task } as Executor, 2, widget("Switch"))
+
+        items.Switch.setState(OnOffType.ON)
+        assertThat subscriptions.size(), is(1)
+        items.Switch.setState(OnOffType.OFF)
+        assertThat subscriptions.isEmpty(), is(true)
+
+        pending.remove(0).run()
+        assertThat written.isEmpty(), is(true)
+    }
+
+    private PageSubscription subscribe(Widget... widgets) {
+        return subscribe({ Runnable task -> task.run() } as Executor, 10, widgets)
+    }
+
+    private PageSubscription subscribe(Executor writer, int capacity, Widget... widgets) {
+        def output = new EventOutput() {
+                    void write(OutboundEvent event) {
+                        if (failWrites) {
+                            throw new IOException("closed")
+                        }
+                        written << event
+                    }
+                }
+        def subscription = new PageSubscription(registry, PageSubscription.indexWidgets(registry, "p", widgets as List),
+                output, { Runnable task -> task.run() } as Executor, writer, capacity, subscriptions)
+        subscription.start(new PageDTO())
+        return subscription
+    }
+
+    private Widget widget(String item, String visibilityItem = null) {
+        def visibility = new BasicEList<VisibilityRule>()
+        if (visibilityItem != null) {
+            visibility.add([getItem : { visibilityItem }] as VisibilityRule)
+        }
+        [
+            getItem : { item },
+            getVisibility : { visibility },
+            getLabelColor : { new BasicEList<ColorArray>() },
+            getValueColor : { new BasicEList<ColorArray>() }
+        ] as Widget
+    }
+
+    private Frame frame(String visibilityItem, Widget... widgets) {
+        def visibility = new BasicEList<VisibilityRule>()
+        visibility.add([getItem : { visibilityItem }] as VisibilityRule)
+        Frame frame = [
+            getItem : { null },
+            getVisibility : { visibility },
+            getLabelColor : { new BasicEList<ColorArray>() },
+            getValueColor : { new BasicEList<ColorArray>() }
+        ] as Frame
+        children[frame] = widgets as List
+        return frame
+    }
+}
@@ -0,0 +1,389 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.sitemap.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.eclipse.smarthome.core.items.GenericItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.items.StateChangeListener;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.model.sitemap.ColorArray;
+import org.eclipse.smarthome.model.sitemap.Frame;
+import org.eclipse.smarthome.model.sitemap.VisibilityRule;
+import org.eclipse.smarthome.model.sitemap.Widget;
+import org.eclipse.smarthome.ui.items.ItemUIRegistry;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link PageSubscription} pushes the changes of the widgets of a page to a client through server-sent events. It
+ * keeps an index from the items to the widgets which depend on them (through their item, their visibility rules or
+ * their color rules), so a state change only leads to the re-evaluation of the affected widgets. Only the fields
+ * which differ from what has been sent before are sent as a {@link WidgetDeltaDTO}.
+ * <p>
+ * Hidden widgets are part of the index as well, so a client learns about a widget which becomes visible; as such a
+ * widget is not part of the page it has received, the client has to reload the page.
+ * </p>
+ * <p>
+ * The following events are sent:
+ * <ul>
+ * <li>{@code page}: the complete {@link PageDTO} as the base for all following changes</li>
+ * <li>{@code widget}: the changes of a widget</li>
+ * </ul>
+ * State changes are collected and evaluated by the given executor, so the thread which changes a state never waits
+ * for a client. The events are put into a bounded queue, which is written to the client by a task of the writer
+ * executor, so a slow client neither blocks the evaluation nor the ping of other subscriptions. At most one writer
+ * task of a subscription is submitted at a time. If the queue overflows or the writer executor rejects the task, the
+ * subscription is closed.
+ * </p>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ *
+ */
+public class PageSubscription implements StateChangeListener, Runnable {
+
+    private final Logger logger = LoggerFactory.getLogger(PageSubscription.class);
+
+    private final ItemUIRegistry itemUIRegistry;
+
+    private final Map<String, Widget> widgets;
+
+    private final EventOutput eventOutput;
+
+    private final Executor executor;
+
+    private final Executor writer;
+
+    private final BlockingQueue<OutboundEvent> queue;
+
+    private final Collection<PageSubscription> subscriptions;
+
+    /** the ids of the widgets which depend on an item by the name of the item */
+    private final Map<String, List<String>> index = new HashMap<>();
+
+    /** the last state which has been sent of each widget by its id */
+    private final Map<String, WidgetState> sent = new HashMap<>();
+
+    private final Set<GenericItem> items = new HashSet<>();
+
+    private final Set<String> changedItems = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                OutboundEvent event;
+                while (!closed && (event = queue.poll()) != null) {
+                    eventOutput.write(event);
+                }
+            } catch (IOException e) {
+                logger.debug("Closing the subscription of a page as the client has closed the connection.");
+                close();
+            } finally {
+                writing.set(false);
+            }
+            // events might have been offered after the loop ended
+            if (!queue.isEmpty() && !closed && writing.compareAndSet(false, true)) {
+                drain();
+            }
+        }
+    };
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a subscription.
+     *
+     * @param itemUIRegistry the registry to evaluate the widgets with
+     * @param widgets the widgets of the page by the ids they have in the {@link PageDTO}
+     * @param eventOutput the output to send the events to
+     * @param executor the executor to evaluate the changes with
+     * @param writer the executor to write the events to the client with
+     * @param capacity the maximum number of events which have not been written yet
+     * @param subscriptions the collection of all open subscriptions, the subscription removes itself when it is closed
+     */
+    public PageSubscription(ItemUIRegistry itemUIRegistry, Map<String, Widget> widgets, EventOutput eventOutput,
+            Executor executor, Executor writer, int capacity, Collection<PageSubscription> subscriptions) {
+        this.itemUIRegistry = itemUIRegistry;
+        this.widgets = widgets;
+        this.eventOutput = eventOutput;
+        this.executor = executor;
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.subscriptions = subscriptions;
+    }
+
+    /**
+     * Indexes the widgets of a page and the children of its frames by the ids they have in the {@link PageDTO}. All
+     * widgets are indexed regardless of their visibility.
+     *
+     * @param itemUIRegistry the registry to get the children of the frames with
+     * @param pageId the id of the page
+     * @param widgets the widgets of the page
+     * @return the widgets by their ids
+     */
+    static Map<String, Widget> indexWidgets(ItemUIRegistry itemUIRegistry, String pageId, List<Widget> widgets) {
+        Map<String, Widget> index = new LinkedHashMap<>();
+        int cntWidget = 0;
+        for (Widget widget : widgets) {
+            indexWidget(itemUIRegistry, widget, pageId + "_" + cntWidget, index);
+            cntWidget++;
+        }
+        return index;
+    }
+
+    private static void indexWidget(ItemUIRegistry itemUIRegistry, Widget widget, String widgetId,
+            Map<String, Widget> index) {
+        index.put(widgetId, widget);
+        if (widget instanceof Frame) {
+            // the same ids as in SitemapResource#createWidgetBean
+            int cntWidget = 0;
+            for (Widget child : itemUIRegistry.getChildren((Frame) widget)) {
+                widgetId += "_" + cntWidget;
+                indexWidget(itemUIRegistry, child, widgetId, index);
+                cntWidget++;
+            }
+        }
+    }
+
+    /**
+     * Sends the page and starts listening to the items its widgets depend on.
+     *
+     * @param page the page
+     */
+    public synchronized void start(PageDTO page) {
+        subscriptions.add(this);
+        for (Entry<String, Widget> entry : widgets.entrySet()) {
+            sent.put(entry.getKey(), new WidgetState(entry.getValue()));
+            for (String itemName : getItemNames(entry.getValue())) {
+                List<String> widgetIds = index.get(itemName);
+                if (widgetIds == null) {
+                    widgetIds = new ArrayList<>();
+                    index.put(itemName, widgetIds);
+                }
+                widgetIds.add(entry.getKey());
+            }
+        }
+        for (String itemName : index.keySet()) {
+            try {
+                Item item = itemUIRegistry.getItem(itemName);
+                if (item instanceof GenericItem) {
+                    items.add((GenericItem) item);
+                    ((GenericItem) item).addStateChangeListener(this);
+                }
+            } catch (ItemNotFoundException e) {
+                // ignore
+            }
+        }
+        send("page", page);
+    }
+
+    /**
+     * Stops listening to the items and closes the event output.
+     */
+    public void close() {
+        closed = true;
+        queue.clear();
+        subscriptions.remove(this);
+        for (GenericItem item : items) {
+            item.removeStateChangeListener(this);
+        }
+        try {
+            eventOutput.close();
+        } catch (IOException e) {
+            // the client has already closed the connection
+        }
+    }
+
+    /**
+     * Sends a comment to detect closed connections, even if no widget changes.
+     */
+    public void ping() {
+        send(new OutboundEvent.Builder().comment("ping").build());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stateChanged(Item item, State oldState, State newState) {
+        changedItems.add(item.getName());
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stateUpdated(Item item, State state) {
+        // ignore if the state did not change
+    }
+
+    /**
+     * Sends the changes of all widgets which depend on the changed items.
+     */
+    @Override
+    public synchronized void run() {
+        scheduled.set(false);
+        Set<String> widgetIds = new HashSet<>();
+        for (String itemName : changedItems) {
+            changedItems.remove(itemName);
+            List<String> dependent = index.get(itemName);
+            if (dependent != null) {
+                widgetIds.addAll(dependent);
+            }
+        }
+        for (String widgetId : widgetIds) {
+            if (closed) {
+                return;
+            }
+            WidgetState current = new WidgetState(widgets.get(widgetId));
+            WidgetDeltaDTO delta = sent.get(widgetId).diff(current);
+            if (delta != null) {
+                delta.widgetId = widgetId;
+                sent.put(widgetId, current);
+                send("widget", delta);
+            }
+        }
+    }
+
+    private void send(String name, Object data) {
+        send(new OutboundEvent.Builder().name(name).mediaType(MediaType.APPLICATION_JSON_TYPE).data(data).build());
+    }
+
+    private void send(OutboundEvent event) {
+        if (closed) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            logger.debug("Closing the subscription of a page as the client does not keep up with the changes.");
+            close();
+            return;
+        }
+        if (writing.compareAndSet(false, true)) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        try {
+            writer.execute(drainer);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Closing the subscription of a page as no thread is left to write its events.");
+            writing.set(false);
+            close();
+        }
+    }
+
+    private Set<String> getItemNames(Widget widget) {
+        Set<String> itemNames = new HashSet<>();
+        if (widget.getItem() != null) {
+            itemNames.add(widget.getItem());
+        }
+        for (VisibilityRule rule : widget.getVisibility()) {
+            itemNames.add(rule.getItem());
+        }
+        for (ColorArray color : widget.getLabelColor()) {
+            if (color.getItem() != null) {
+                itemNames.add(color.getItem());
+            }
+        }
+        for (ColorArray color : widget.getValueColor()) {
+            if (color.getItem() != null) {
+                itemNames.add(color.getItem());
+            }
+        }
+        return itemNames;
+    }
+
+    /**
+     * The fields of a widget which can change with the state of an item.
+     */
+    private class WidgetState {
+
+        private final String label;
+        private final String state;
+        private final String icon;
+        private final boolean visibility;
+        private final String labelcolor;
+        private final String valuecolor;
+
+        private WidgetState(Widget widget) {
+            label = itemUIRegistry.getLabel(widget);
+            State itemState = widget.getItem() != null ? itemUIRegistry.getItemState(widget.getItem()) : null;
+            state = itemState != null ? itemState.toString() : null;
+            icon = itemUIRegistry.getCategory(widget);
+            visibility = itemUIRegistry.getVisiblity(widget);
+            labelcolor = itemUIRegistry.getLabelColor(widget);
+            valuecolor = itemUIRegistry.getValueColor(widget);
+        }
+
+        /**
+         * @return the fields of the given state which differ from this state or null if there are none
+         */
+        private WidgetDeltaDTO diff(WidgetState current) {
+            WidgetDeltaDTO delta = new WidgetDeltaDTO();
+            boolean changed = false;
+            if (!ObjectUtils.equals(label, current.label)) {
+                delta.label = current.label;
+                changed = true;
+            }
+            if (!ObjectUtils.equals(state, current.state)) {
+                delta.state = current.state;
+                changed = true;
+            }
+            if (!ObjectUtils.equals(icon, current.icon)) {
+                delta.icon = current.icon;
+                changed = true;
+            }
+            if (visibility != current.visibility) {
+                delta.visibility = current.visibility;
+                changed = true;
+            }
+            if (!ObjectUtils.equals(labelcolor, current.labelcolor)) {
+                delta.labelcolor = current.labelcolor;
+                changed = true;
+            }
+            if (!ObjectUtils.equals(valuecolor, current.valuecolor)) {
+                delta.valuecolor = current.valuecolor;
+                changed = true;
+            }
+            return changed ? delta : null;
+        }
+    }
+
+}
@@ -10,10 +10,19 @@ package org.eclipse.smarthome.io.rest.sitemap.internal;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -22,6 +31,11 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.container.TimeoutHandler;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
@@ -31,6 +45,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
@@ -55,6 +70,8 @@ import org.eclipse.smarthome.model.sitemap.Video;
 import org.eclipse.smarthome.model.sitemap.Webview;
 import org.eclipse.smarthome.model.sitemap.Widget;
 import org.eclipse.smarthome.ui.items.ItemUIRegistry;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,6 +90,7 @@ import io.swagger.annotations.ApiResponses;
  * @author Kai Kreuzer - Initial contribution and API
  * @author Chris Jackson
  * @author Yordan Zhelev - Added Swagger annotations
+ * @author Markus Mazurczak - Asynchronous long-polling, subscriptions to the changes of a page
  */
 @Path(SitemapResource.PATH_SITEMAPS)
 @Api(value = SitemapResource.PATH_SITEMAPS)
@@ -84,6 +102,25 @@ public class SitemapResource implements RESTResource {
 
     private static final long TIMEOUT_IN_MS = 30000;
 
+    private static final String THREAD_POOL_NAME = "sitemapResource";
+
+    private static final String EVENTS_THREAD_POOL_NAME = "sitemapEvents";
+
+    private static final long PING_INTERVAL_IN_MS = 30000;
+
+    /**
+     * the maximum number of threads which write the events of page subscriptions at the same time. Writes block until
+     * the client has received the event, so the writers do not use a shared thread pool. Each subscription uses at most
+     * one writer thread; subscriptions which find no free writer are closed.
+     */
+    private static final int MAX_WRITER_THREADS = 100;
+
+    /** the time in seconds an idle writer thread is kept */
+    private static final long WRITER_KEEP_ALIVE_SECONDS = 60;
+
+    /** the maximum number of events which may be queued for a subscription before it is closed */
+    private static final int SUBSCRIPTION_QUEUE_SIZE = 1000;
+
     @Context
     UriInfo uriInfo;
 
@@ -91,6 +128,48 @@ public class SitemapResource implements RESTResource {
 
     private java.util.List<SitemapProvider> sitemapProviders = new ArrayList<>();
 
+    private final Set<PageSubscription> subscriptions = new CopyOnWriteArraySet<>();
+
+    private ScheduledFuture<?> pingJob;
+
+    private ExecutorService writers;
+
+    protected void activate() {
+        writers = new ThreadPoolExecutor(0, MAX_WRITER_THREADS, WRITER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "ESH-sitemap-writer-" + threadNumber.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        pingJob = ThreadPoolManager.getScheduledPool(EVENTS_THREAD_POOL_NAME).scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (PageSubscription subscription : subscriptions) {
+                    subscription.ping();
+                }
+            }
+        }, PING_INTERVAL_IN_MS, PING_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+    }
+
+    protected void deactivate() {
+        if (pingJob != null) {
+            pingJob.cancel(false);
+            pingJob = null;
+        }
+        for (PageSubscription subscription : subscriptions) {
+            subscription.close();
+        }
+        if (writers != null) {
+            writers.shutdownNow();
+            writers = null;
+        }
+    }
+
     public void setItemUIRegistry(ItemUIRegistry itemUIRegistry) {
         this.itemUIRegistry = itemUIRegistry;
     }
@@ -137,19 +216,51 @@ public class SitemapResource implements RESTResource {
     @ApiOperation(value = "Polls the data for a sitemap.", response = PageDTO.class)
     @ApiResponses(value = { @ApiResponse(code = 200, message = "OK"),
             @ApiResponse(code = 404, message = "Sitemap with requested name does not exist or page does not exist, or page refers to a non-linkable widget") })
-    public Response getPageData(@Context HttpHeaders headers,
+    public void getPageData(@Context HttpHeaders headers,
             @PathParam("sitemapname") @ApiParam(value = "sitemap name") String sitemapname,
-            @PathParam("pageid") @ApiParam(value = "page id") String pageId) {
+            @PathParam("pageid") @ApiParam(value = "page id") String pageId,
+            @Suspended AsyncResponse asyncResponse) {
         logger.debug("Received HTTP GET request at '{}'", uriInfo.getPath());
+        URI uri = uriInfo.getBaseUriBuilder().build();
 
         if (headers.getRequestHeader("X-Atmosphere-Transport") != null) {
             // Make the REST-API pseudo-compatible with openHAB 1.x
             // The client asks Atmosphere for server push functionality,
-            // so we do a simply listening for changes on the appropriate items
-            blockUnlessChangeOccurs(sitemapname, pageId);
+            // so we suspend the request until a change occurs on the appropriate items
+            new PageChangeListener(sitemapname, pageId, uri, asyncResponse).start(getPageItems(sitemapname, pageId));
+            return;
+        }
+        respond(sitemapname, pageId, uri, asyncResponse);
+    }
+
+    @GET
+    @Path("/{sitemapname: [a-zA-Z_0-9]*}/{pageid: [a-zA-Z_0-9]*}/events")
+    @Produces(SseFeature.SERVER_SENT_EVENTS)
+    @ApiOperation(value = "Subscribes to the changes of the widgets of a page.", response = EventOutput.class)
+    @ApiResponses(value = { @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 404, message = "Sitemap with requested name does not exist or page does not exist, or page refers to a non-linkable widget") })
+    public Object getPageEvents(@PathParam("sitemapname") @ApiParam(value = "sitemap name") String sitemapname,
+            @PathParam("pageid") @ApiParam(value = "page id") String pageId) {
+        logger.debug("Received HTTP GET request at '{}'", uriInfo.getPath());
+        PageDTO page = getPageBean(sitemapname, pageId, uriInfo.getBaseUriBuilder().build());
+
+        Map<String, Widget> widgets = PageSubscription.indexWidgets(itemUIRegistry, pageId,
+                getPageWidgets(sitemapname, pageId));
+
+        EventOutput eventOutput = new EventOutput();
+        new PageSubscription(itemUIRegistry, widgets, eventOutput,
+                ThreadPoolManager.getScheduledPool(EVENTS_THREAD_POOL_NAME), writers, SUBSCRIPTION_QUEUE_SIZE,
+                subscriptions).start(page);
+        return eventOutput;
+    }
+
+    private void respond(String sitemapname, String pageId, URI uri, AsyncResponse asyncResponse) {
+        try {
+            Object responseObject = getPageBean(sitemapname, pageId, uri);
+            asyncResponse.resume(Response.ok(responseObject).build());
+        } catch (RuntimeException e) {
+            asyncResponse.resume(e);
         }
-        Object responseObject = getPageBean(sitemapname, pageId, uriInfo.getBaseUriBuilder().build());
-        return Response.ok(responseObject).build();
     }
 
     private PageDTO getPageBean(String sitemapName, String pageId, URI uri) {
@@ -293,14 +404,15 @@ public class SitemapResource implements RESTResource {
             LinkableWidget linkableWidget = (LinkableWidget) widget;
             EList<Widget> children = itemUIRegistry.getChildren(linkableWidget);
             if (widget instanceof Frame) {
+                // hidden children are counted as well, so the ids do not change with the visibility
                 int cntWidget = 0;
                 for (Widget child : children) {
                     widgetId += "_" + cntWidget;
                     WidgetDTO subWidget = createWidgetBean(sitemapName, child, drillDown, uri, widgetId);
                     if (subWidget != null) {
                         bean.widgets.add(subWidget);
-                        cntWidget++;
                     }
+                    cntWidget++;
                 }
             } else if (children.size() > 0) {
                 String pageName = itemUIRegistry.getWidgetId(linkableWidget);
@@ -427,50 +539,23 @@ public class SitemapResource implements RESTResource {
         return null;
     }
 
-    private void blockUnlessChangeOccurs(String sitemapname, String pageId) {
+    private Set<GenericItem> getPageItems(String sitemapname, String pageId) {
+        return getAllItems(getPageWidgets(sitemapname, pageId));
+    }
+
+    private java.util.List<Widget> getPageWidgets(String sitemapname, String pageId) {
         Sitemap sitemap = getSitemap(sitemapname);
         if (sitemap != null) {
             if (pageId.equals(sitemap.getName())) {
-                waitForChanges(sitemap.getChildren());
+                return sitemap.getChildren();
             } else {
                 Widget pageWidget = itemUIRegistry.getWidget(sitemap, pageId);
                 if (pageWidget instanceof LinkableWidget) {
-                    EList<Widget> children = itemUIRegistry.getChildren((LinkableWidget) pageWidget);
-                    waitForChanges(children);
+                    return itemUIRegistry.getChildren((LinkableWidget) pageWidget);
                 }
             }
         }
-    }
-
-    /**
-     * This method only returns when a change has occurred to any item on the
-     * page to display or if the timeout is reached
-     *
-     * @param widgets
-     *            the widgets of the page to observe
-     */
-    private boolean waitForChanges(EList<Widget> widgets) {
-        long startTime = (new Date()).getTime();
-        boolean timeout = false;
-        BlockingStateChangeListener listener = new BlockingStateChangeListener();
-        // let's get all items for these widgets
-        Set<GenericItem> items = getAllItems(widgets);
-        for (GenericItem item : items) {
-            item.addStateChangeListener(listener);
-        }
-        while (!listener.hasChangeOccurred() && !timeout) {
-            timeout = (new Date()).getTime() - startTime > TIMEOUT_IN_MS;
-            try {
-                Thread.sleep(300);
-            } catch (InterruptedException e) {
-                timeout = true;
-                break;
-            }
-        }
-        for (GenericItem item : items) {
-            item.removeStateChangeListener(listener);
-        }
-        return !timeout;
+        return new ArrayList<Widget>();
     }
 
     /**
@@ -480,7 +565,7 @@ public class SitemapResource implements RESTResource {
      *            the widget list to get the items for added to all bundles containing REST resources
      * @return all items that are represented by the list of widgets
      */
-    private Set<GenericItem> getAllItems(EList<Widget> widgets) {
+    private Set<GenericItem> getAllItems(java.util.List<Widget> widgets) {
         Set<GenericItem> items = new HashSet<GenericItem>();
         if (itemUIRegistry != null) {
             for (Widget widget : widgets) {
@@ -506,39 +591,109 @@ public class SitemapResource implements RESTResource {
     }
 
     /**
-     * This is a state change listener, which is merely used to determine, if a
-     * state change has occurred on one of a list of items.
+     * This is a state change listener, which keeps a suspended request of a page until a state change has occurred on
+     * one of the items of the page or the timeout is reached. The page is then created and sent by a thread of the
+     * pool, so neither the request nor the thread which has changed the state is blocked. The listener is removed from
+     * the items as soon as the response has been sent or the client has disconnected.
      *
      * @author Kai Kreuzer - Initial contribution and API
+     * @author Markus Mazurczak - Resumes an asynchronous response instead of being polled
      *
      */
-    private static class BlockingStateChangeListener implements StateChangeListener {
+    private class PageChangeListener implements StateChangeListener, TimeoutHandler, CompletionCallback,
+            ConnectionCallback {
 
-        private boolean changed = false;
+        private final String sitemapName;
+        private final String pageId;
+        private final URI uri;
+        private final AsyncResponse asyncResponse;
+
+        private final AtomicBoolean changed = new AtomicBoolean();
+
+        private Set<GenericItem> items;
+
+        private PageChangeListener(String sitemapName, String pageId, URI uri, AsyncResponse asyncResponse) {
+            this.sitemapName = sitemapName;
+            this.pageId = pageId;
+            this.uri = uri;
+            this.asyncResponse = asyncResponse;
+        }
+
+        /**
+         * Starts listening to the given items.
+         *
+         * @param items the items of the page
+         */
+        private void start(Set<GenericItem> items) {
+            this.items = items;
+            asyncResponse.setTimeoutHandler(this);
+            asyncResponse.register(this);
+            asyncResponse.setTimeout(TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+            for (GenericItem item : items) {
+                item.addStateChangeListener(this);
+            }
+        }
 
         /**
          * {@inheritDoc}
          */
         @Override
         public void stateChanged(Item item, State oldState, State newState) {
-            changed = true;
+            resume();
         }
 
         /**
-         * determines, whether a state change has occurred since its creation
-         *
-         * @return true, if a state has changed
+         * {@inheritDoc}
+         */
+        @Override
+        public void stateUpdated(Item item, State state) {
+            // ignore if the state did not change
+        }
+
+        /**
+         * {@inheritDoc}
          */
-        public boolean hasChangeOccurred() {
-            return changed;
+        @Override
+        public void handleTimeout(AsyncResponse asyncResponse) {
+            resume();
         }
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public void stateUpdated(Item item, State state) {
-            // ignore if the state did not change
+        public void onComplete(Throwable throwable) {
+            // called after the page has been sent or sending it has failed
+            stop();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDisconnect(AsyncResponse disconnected) {
+            // a suspended response is not completed if the client disconnects, so the page is not sent anymore
+            changed.set(true);
+            stop();
+        }
+
+        private void resume() {
+            if (changed.compareAndSet(false, true)) {
+                stop();
+                // the scheduled pool queues the responses, a bounded pool would discard them if many clients wake up
+                ThreadPoolManager.getScheduledPool(THREAD_POOL_NAME).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        respond(sitemapName, pageId, uri, asyncResponse);
+                    }
+                });
+            }
+        }
+
+        private void stop() {
+            for (GenericItem item : items) {
+                item.removeStateChangeListener(this);
+            }
         }
     }
 
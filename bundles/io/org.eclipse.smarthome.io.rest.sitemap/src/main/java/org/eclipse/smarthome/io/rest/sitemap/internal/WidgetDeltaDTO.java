@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.sitemap.internal;
+
+/**
+ * This is a data transfer object that is used to serialize the changes of a widget. Only the fields which have
+ * changed are set, all others are null.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ *
+ */
+public class WidgetDeltaDTO {
+
+    public String widgetId;
+
+    public String label;
+    public String state;
+    public String icon;
+    public Boolean visibility;
+    public String labelcolor;
+    public String valuecolor;
+
+    public WidgetDeltaDTO() {
+    }
+
+}
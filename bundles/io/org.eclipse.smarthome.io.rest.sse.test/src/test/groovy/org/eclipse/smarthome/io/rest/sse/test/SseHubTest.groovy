@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.sse.test
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+import org.eclipse.smarthome.core.events.Event
+import org.eclipse.smarthome.core.events.TopicEventFilter
+import org.eclipse.smarthome.io.rest.sse.internal.SseEventOutput
+import org.eclipse.smarthome.io.rest.sse.internal.SseHub
+import org.glassfish.jersey.media.sse.OutboundEvent
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests for {@link SseHub}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class SseHubTest {
+
+    SseHub hub
+    List<Runnable> tasks
+    Executor executor
+
+    @Before
+    void setUp() {
+        hub = new SseHub()
+        tasks = []
+        executor = { Runnable task -> tasks << task } as Executor
+    }
+
+    @Test
+    void 'assert compiled topic filters match like the regexes they are made of'() {
+        assertThat TopicEventFilter.forTopics("").matches("smarthome/items/a/added"), is(true)
+        assertThat TopicEventFilter.forTopics(null).matches("smarthome/items/a/added"), is(true)
+        assertThat TopicEventFilter.forTopics(",    *, smarthome/items").matches("qivicon/x"), is(true)
+
+        def filter = TopicEventFilter.forTopics("smarthome/items/*/added, smarthome/things")
+        assertThat filter.matches("smarthome/items/a/added"), is(true)
+        assertThat filter.matches("smarthome/items/a/removed"), is(false)
+        assertThat filter.matches("smarthome/things/b/updated"), is(true)
+        assertThat filter.matches("qivicon/things/b/updated"), is(false)
+    }
+
+    @Test
+    void 'assert events are serialized once and only queued for matching clients'() {
+        def written = [:].withDefault { [] }
+        def items1 = output(written, 10)
+        def items2 = output(written, 10)
+        def things = output(written, 10)
+        hub.add("smarthome/items", items1)
+        hub.add("smarthome/items", items2)
+        hub.add("smarthome/things", things)
+
+        hub.broadcast(event("smarthome/items/a/added"))
+        tasks.each { it.run() }
+
+        assertThat written[items1].size(), is(1)
+        assertThat written[items2].size(), is(1)
+        assertThat written[things].size(), is(0)
+        assertThat written[items1][0], is(sameInstance(written[items2][0]))
+        assertThat written[items1][0].data, is('{"topic":"smarthome/items/a/added","payload":"{}","type":"ItemAddedEvent"}')
+    }
+
+    @Test
+    void 'assert a client which does not keep up is disconnected'() {
+        def written = [:].withDefault { [] }
+        def slow = output(written, 2)
+        def fast = output(written, 10)
+        hub.add("", slow)
+        hub.add("", fast)
+
+        3.times { hub.broadcast(event("smarthome/items/a/added")) }
+
+        assertThat slow.isClosed(), is(true)
+        assertThat fast.isClosed(), is(false)
+        assertThat hub.size(), is(1)
+    }
+
+    @Test
+    void 'assert a client is disconnected if no writer is left'() {
+        def output = new SseEventOutput(10, { Runnable task -> throw new RejectedExecutionException() } as Executor)
+        hub.add("", output)
+
+        hub.broadcast(event("smarthome/items/a/added"))
+
+        assertThat output.isClosed(), is(true)
+        assertThat hub.size(), is(0)
+    }
+
+    private SseEventOutput output(Map written, int capacity) {
+        def output
+        output = new SseEventOutput(capacity, executor) {
+                    void write(OutboundEvent event) {
+                        written[output] << event
+                    }
+                }
+        return output
+    }
+
+    private Event event(String topic) {
+        [
+            getTopic : { topic },
+            getType : { "ItemAddedEvent" },
+            getPayload : { "{}" },
+            getSource : { null }
+        ] as Event
+    }
+}
@@ -9,7 +9,11 @@ package org.eclipse.smarthome.io.rest.sse;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletRequest;
@@ -26,9 +30,9 @@ import javax.ws.rs.core.UriInfo;
 
 import org.eclipse.smarthome.core.events.Event;
 import org.eclipse.smarthome.io.rest.sse.internal.SseEventOutput;
+import org.eclipse.smarthome.io.rest.sse.internal.SseHub;
 import org.eclipse.smarthome.io.rest.sse.internal.util.SseUtil;
 import org.glassfish.jersey.media.sse.EventOutput;
-import org.glassfish.jersey.media.sse.SseBroadcaster;
 import org.glassfish.jersey.media.sse.SseFeature;
 
 import io.swagger.annotations.Api;
@@ -42,6 +46,7 @@ import io.swagger.annotations.ApiResponses;
  *
  * @author Ivan Iliev - Initial Contribution and API
  * @author Yordan Zhelev - Added Swagger annotations
+ * @author Markus Mazurczak - Topic-indexed hub and bounded client queues
  *
  */
 @Path(SseResource.PATH_EVENTS)
@@ -51,9 +56,22 @@ public class SseResource {
 
     public final static String PATH_EVENTS = "events";
 
-    private final SseBroadcaster broadcaster;
+    /**
+     * the maximum number of threads which write events to the clients at the same time. Writes block until the client
+     * has received the event, so the writers do not use a shared thread pool. Each client uses at most one writer
+     * thread; clients which find no free writer are disconnected.
+     */
+    private static final int MAX_WRITER_THREADS = 100;
+
+    /** the time in seconds an idle writer thread is kept */
+    private static final long WRITER_KEEP_ALIVE_SECONDS = 60;
+
+    /** the maximum number of events which may be queued for a client before it is disconnected */
+    private static final int CLIENT_QUEUE_SIZE = 1000;
 
-    private final ExecutorService executorService;
+    private final SseHub hub;
+
+    private final ExecutorService writers;
 
     @Context
     private UriInfo uriInfo;
@@ -65,8 +83,22 @@ public class SseResource {
     private HttpServletRequest request;
 
     public SseResource() {
-        this.executorService = Executors.newSingleThreadExecutor();
-        this.broadcaster = new SseBroadcaster();
+        this.hub = new SseHub();
+        this.writers = new ThreadPoolExecutor(0, MAX_WRITER_THREADS, WRITER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "ESH-sse-writer-" + threadNumber.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    protected void deactivate() {
+        writers.shutdownNow();
     }
 
     /**
@@ -93,8 +125,8 @@ public class SseResource {
 
         // construct an EventOutput that will only write out events that match
         // the given filter
-        final EventOutput eventOutput = new SseEventOutput(eventFilter);
-        broadcaster.add(eventOutput);
+        final SseEventOutput eventOutput = new SseEventOutput(CLIENT_QUEUE_SIZE, writers);
+        hub.add(eventFilter, eventOutput);
 
         if (!SseUtil.SERVLET3_SUPPORT) {
             // if we don't have sevlet 3.0 async support, we want to make sure
@@ -117,7 +149,8 @@ public class SseResource {
 
     /**
      * Broadcasts an event described by the given parameter to all currently
-     * listening clients.
+     * listening clients. The event is only queued for the clients, so this
+     * method does not block.
      *
      * @param sseEventType
      *            the SSE event type
@@ -125,11 +158,6 @@ public class SseResource {
      *            the event
      */
     public void broadcastEvent(final Event event) {
-        executorService.execute(new Runnable() {
-            @Override
-            public void run() {
-                broadcaster.broadcast(SseUtil.buildEvent(event));
-            }
-        });
+        hub.broadcast(event);
     }
 }
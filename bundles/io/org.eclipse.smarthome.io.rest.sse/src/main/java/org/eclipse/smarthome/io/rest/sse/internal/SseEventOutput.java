@@ -8,39 +8,109 @@
 package org.eclipse.smarthome.io.rest.sse.internal;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.eclipse.smarthome.io.rest.sse.beans.EventBean;
-import org.eclipse.smarthome.io.rest.sse.internal.util.SseUtil;
 import org.glassfish.jersey.media.sse.EventOutput;
 import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * {@link EventOutput} implementation that takes a filter parameter and only writes out events that match this filter.
- * Should only be used when the {@link OutboundEvent}s sent through this {@link EventOutput} contain a data object of
- * type {@link EventBean}
- * 
+ * {@link EventOutput} implementation with a bounded queue of outgoing events. Events are offered to the queue without
+ * blocking and are written by a task of the given executor, so a slow client does not delay the broadcast to others.
+ * At most one task of an output is submitted at a time. If the queue of a client overflows or the executor rejects the
+ * task, the client is disconnected; SSE clients reconnect automatically.
+ *
  * @author Ivan Iliev - Initial contribution and API
- * 
+ * @author Markus Mazurczak - Bounded queue of outgoing events
+ *
  */
 public class SseEventOutput extends EventOutput {
 
-    private List<String> regexFilters;
+    private final Logger logger = LoggerFactory.getLogger(SseEventOutput.class);
 
-    public SseEventOutput(String topicFilter) {
+    private final BlockingQueue<OutboundEvent> queue;
+
+    private final Executor executor;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                OutboundEvent event;
+                while (!isClosed() && (event = queue.poll()) != null) {
+                    write(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Closing SSE connection after a failed write: {}", e.getMessage());
+                closeQuietly();
+            } finally {
+                draining.set(false);
+            }
+            // events might have been offered after the loop ended
+            if (!queue.isEmpty() && !isClosed() && draining.compareAndSet(false, true)) {
+                drain();
+            }
+        }
+    };
+
+    /**
+     * Creates an output.
+     *
+     * @param capacity the maximum number of events which have not been written yet
+     * @param executor the executor to write the events with
+     */
+    public SseEventOutput(int capacity, Executor executor) {
         super();
-        this.regexFilters = SseUtil.convertToRegex(topicFilter);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.executor = executor;
     }
 
-    @Override
-    public void write(OutboundEvent chunk) throws IOException {
-        EventBean event = (EventBean) chunk.getData();
+    /**
+     * Queues an event to be written to the client.
+     *
+     * @param event the event
+     * @return false, if this output is closed (also if it has been closed because its queue overflowed)
+     */
+    public boolean offer(OutboundEvent event) {
+        if (isClosed()) {
+            return false;
+        }
+        if (!queue.offer(event)) {
+            logger.debug("Closing SSE connection, as the client does not keep up with the events.");
+            closeQuietly();
+            return false;
+        }
+        if (draining.compareAndSet(false, true)) {
+            return drain();
+        }
+        return true;
+    }
 
-        for (String filter : regexFilters) {
-            if (event.topic.matches(filter)) {
-                super.write(chunk);
-                return;
-            }
+    private boolean drain() {
+        try {
+            executor.execute(drainer);
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.debug("Closing SSE connection, as no thread is left to write its events.");
+            draining.set(false);
+            closeQuietly();
+            return false;
+        }
+    }
+
+    private void closeQuietly() {
+        queue.clear();
+        try {
+            close();
+        } catch (IOException e) {
+            logger.debug("Failed to close SSE connection: {}", e.getMessage());
         }
     }
 
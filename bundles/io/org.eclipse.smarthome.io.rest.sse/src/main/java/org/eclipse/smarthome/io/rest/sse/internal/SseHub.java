@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.sse.internal;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.events.TopicEventFilter;
+import org.eclipse.smarthome.io.rest.sse.internal.util.SseUtil;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+
+/**
+ * The {@link SseHub} distributes events to the connected SSE clients. Clients are grouped by their topic filter,
+ * which is compiled once when the first client subscribes with it, so the topic of an event is matched once per
+ * distinct filter instead of once per client. Each event is serialized at most once and the resulting
+ * {@link OutboundEvent} is shared by all clients it is sent to.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class SseHub {
+
+    private final ConcurrentMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a client.
+     *
+     * @param topicFilter the topic filter of the client
+     * @param output the output of the client
+     */
+    public void add(String topicFilter, SseEventOutput output) {
+        String key = topicFilter != null ? topicFilter : "";
+        while (true) {
+            Subscription subscription = subscriptions.get(key);
+            if (subscription == null) {
+                Subscription newSubscription = new Subscription(TopicEventFilter.forTopics(topicFilter));
+                subscription = subscriptions.putIfAbsent(key, newSubscription);
+                if (subscription == null) {
+                    subscription = newSubscription;
+                }
+            }
+            subscription.outputs.add(output);
+            // the subscription might have been removed as empty in the meantime
+            if (subscriptions.get(key) == subscription) {
+                return;
+            }
+            subscription.outputs.remove(output);
+        }
+    }
+
+    /**
+     * Sends an event to all clients whose topic filter matches. Clients which have been closed are removed.
+     *
+     * @param event the event
+     */
+    public void broadcast(Event event) {
+        OutboundEvent outboundEvent = null;
+        Iterator<Entry<String, Subscription>> iterator = subscriptions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<String, Subscription> entry = iterator.next();
+            Subscription subscription = entry.getValue();
+            if (subscription.filter.matches(event.getTopic())) {
+                for (SseEventOutput output : subscription.outputs) {
+                    if (outboundEvent == null) {
+                        outboundEvent = SseUtil.buildEvent(event);
+                    }
+                    if (!output.offer(outboundEvent)) {
+                        subscription.outputs.remove(output);
+                    }
+                }
+            } else {
+                for (SseEventOutput output : subscription.outputs) {
+                    if (output.isClosed()) {
+                        subscription.outputs.remove(output);
+                    }
+                }
+            }
+            if (subscription.outputs.isEmpty()) {
+                subscriptions.remove(entry.getKey(), subscription);
+            }
+        }
+    }
+
+    /**
+     * @return the number of connected clients
+     */
+    public int size() {
+        int size = 0;
+        for (Subscription subscription : subscriptions.values()) {
+            size += subscription.outputs.size();
+        }
+        return size;
+    }
+
+    private static class Subscription {
+
+        final TopicEventFilter filter;
+        final Set<SseEventOutput> outputs = new CopyOnWriteArraySet<>();
+
+        Subscription(TopicEventFilter filter) {
+            this.filter = filter;
+        }
+
+    }
+
+}
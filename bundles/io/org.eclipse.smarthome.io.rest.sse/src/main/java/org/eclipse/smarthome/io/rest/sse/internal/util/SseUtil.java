@@ -7,26 +7,28 @@
  */
 package org.eclipse.smarthome.io.rest.sse.internal.util;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.StringTokenizer;
 
 import javax.servlet.ServletRequest;
 import javax.ws.rs.core.MediaType;
 
-import org.apache.commons.lang.StringUtils;
 import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.events.TopicEventFilter;
 import org.eclipse.smarthome.io.rest.sse.beans.EventBean;
 import org.glassfish.jersey.media.sse.OutboundEvent;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
 /**
  * Utility class containing helper methods for the SSE implementation.
  * 
  * @author Ivan Iliev - Initial Contribution and API
  * @author Dennis Nobel - Changed EventBean
+ * @author Markus Mazurczak - Serialize the event data once, validate topic filters by the TopicEventFilter
  */
 public class SseUtil {
-    static final String TOPIC_VALIDATE_PATTERN = "(\\w*\\*?\\/?,?\\s*)*";
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
 
     static {
         boolean servlet3 = false;
@@ -46,7 +48,8 @@ public class SseUtil {
 
     /**
      * Creates a new {@link OutboundEvent} object containing an {@link EventBean} created for the given Eclipse
-     * SmartHome {@link Event}.
+     * SmartHome {@link Event}. The bean is serialized to JSON right away, so the event can be written to any number
+     * of clients without serializing it again.
      * 
      * @param event the event
      * 
@@ -60,7 +63,7 @@ public class SseUtil {
 
         OutboundEvent.Builder eventBuilder = new OutboundEvent.Builder();
         OutboundEvent outboundEvent = eventBuilder.name("message").mediaType(MediaType.APPLICATION_JSON_TYPE)
-                .data(eventBean).build();
+                .data(String.class, GSON.toJson(eventBean)).build();
 
         return outboundEvent;
     }
@@ -101,29 +104,17 @@ public class SseUtil {
      * 
      */
     public static boolean isValidTopicFilter(String topicFilter) {
-        return StringUtils.isEmpty(topicFilter) || topicFilter.matches(TOPIC_VALIDATE_PATTERN);
+        return TopicEventFilter.isValidTopics(topicFilter);
     }
 
     /**
      * Splits the given topicFilter at any commas (",") and for each token replaces any wildcards(*) with the regex
-     * pattern (.*)
+     * pattern (.*), see {@link TopicEventFilter#convertToRegex(String)}
      * 
      * @param topicFilter
      * @return
      */
     public static List<String> convertToRegex(String topicFilter) {
-        List<String> filters = new ArrayList<String>();
-
-        if (StringUtils.isEmpty(topicFilter)) {
-            filters.add(".*");
-        } else {
-            StringTokenizer tokenizer = new StringTokenizer(topicFilter, ",");
-            while (tokenizer.hasMoreElements()) {
-                String regex = tokenizer.nextToken().trim().replace("*", ".*") + ".*";
-                filters.add(regex);
-            }
-        }
-
-        return filters;
+        return TopicEventFilter.convertToRegex(topicFilter);
     }
 }
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.test.filter
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
+
+import javax.ws.rs.core.EntityTag
+import javax.ws.rs.core.HttpHeaders
+import javax.ws.rs.core.MediaType
+import javax.ws.rs.core.MultivaluedHashMap
+import javax.ws.rs.ext.WriterInterceptorContext
+
+import org.eclipse.smarthome.io.rest.internal.filter.CompressionInterceptor
+import org.junit.Test
+
+/**
+ * Test for the {@link CompressionInterceptor} interceptor.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class CompressionInterceptorTest {
+
+    private static final byte[] CONTENT = ("thing type " * 200).getBytes("UTF-8")
+
+    @Test
+    void 'assert the encoding is negotiated'() {
+        assertThat CompressionInterceptor.negotiate(["deflate, gzip;q=0.5"]), is("gzip")
+        assertThat CompressionInterceptor.negotiate(["gzip;q=0, deflate"]), is("deflate")
+        assertThat CompressionInterceptor.negotiate(["identity"]), is(nullValue())
+        assertThat CompressionInterceptor.negotiate(null), is(nullValue())
+    }
+
+    @Test
+    void 'assert tagged entities are compressed and their tags weakened'() {
+        def interceptor = createInterceptor("gzip, deflate")
+        def headers = new MultivaluedHashMap<String, Object>()
+        headers.putSingle("ETag", new EntityTag("digest"))
+        def output = new ByteArrayOutputStream()
+        interceptor.aroundWriteTo(createContext(CONTENT, headers, output))
+
+        assertThat headers.getFirst("Content-Encoding"), is("gzip")
+        assertThat headers.getFirst("ETag").weak, is(true)
+        assertThat new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes, is(CONTENT)
+
+        // the second response is taken from the cache
+        def cachedOutput = new ByteArrayOutputStream()
+        headers = new MultivaluedHashMap<String, Object>()
+        headers.putSingle("ETag", new EntityTag("digest"))
+        interceptor.aroundWriteTo(createContext(CONTENT, headers, cachedOutput))
+        assertThat cachedOutput.toByteArray(), is(output.toByteArray())
+    }
+
+    @Test
+    void 'assert other entities are compressed while they are written'() {
+        def interceptor = createInterceptor("deflate")
+        def headers = new MultivaluedHashMap<String, Object>()
+        def output = new ByteArrayOutputStream()
+        interceptor.aroundWriteTo(createContext("entity", headers, output))
+
+        assertThat headers.getFirst("Content-Encoding"), is("deflate")
+        assertThat new InflaterInputStream(new ByteArrayInputStream(output.toByteArray())).bytes, is(CONTENT)
+    }
+
+    @Test
+    void 'assert small entities are not compressed'() {
+        def headers = new MultivaluedHashMap<String, Object>()
+        def output = new ByteArrayOutputStream()
+        createInterceptor("gzip").aroundWriteTo(createContext("small".getBytes("UTF-8"), headers, output))
+
+        assertThat headers.containsKey("Content-Encoding"), is(false)
+        assertThat output.toString("UTF-8"), is("small")
+    }
+
+    private CompressionInterceptor createInterceptor(String acceptEncoding) {
+        def interceptor = new CompressionInterceptor()
+        interceptor.httpHeaders = [getRequestHeader: { name -> [acceptEncoding] }] as HttpHeaders
+        return interceptor
+    }
+
+    private WriterInterceptorContext createContext(Object entity, headers, OutputStream output) {
+        def outputStream = output
+        return [
+            getEntity: { entity },
+            getHeaders: { headers },
+            getMediaType: { MediaType.APPLICATION_JSON_TYPE },
+            getOutputStream: { outputStream },
+            setOutputStream: { outputStream = it },
+            proceed: { outputStream.write(entity instanceof byte[] ? entity : CONTENT) }
+        ] as WriterInterceptorContext
+    }
+}
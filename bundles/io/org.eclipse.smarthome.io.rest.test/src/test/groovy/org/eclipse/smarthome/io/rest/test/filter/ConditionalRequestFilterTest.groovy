@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.test.filter
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import java.lang.annotation.Annotation
+
+import javax.ws.rs.container.ContainerRequestContext
+import javax.ws.rs.container.ContainerResponseContext
+import javax.ws.rs.core.EntityTag
+import javax.ws.rs.core.MediaType
+import javax.ws.rs.core.MultivaluedHashMap
+import javax.ws.rs.core.StreamingOutput
+import javax.ws.rs.ext.MessageBodyWriter
+import javax.ws.rs.ext.Providers
+
+import org.eclipse.smarthome.io.rest.internal.filter.ConditionalRequestFilter
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Test for the {@link ConditionalRequestFilter} filter.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class ConditionalRequestFilterTest {
+
+    private ConditionalRequestFilter filter
+
+    @Before
+    void setUp() {
+        filter = new ConditionalRequestFilter()
+        def writer = [
+            writeTo: { entity, type, genericType, annotations, mediaType, headers, OutputStream output ->
+                output.write(entity.toString().getBytes("UTF-8"))
+            }
+        ] as MessageBodyWriter
+        filter.providers = [getMessageBodyWriter: { type, genericType, annotations, mediaType -> writer }] as Providers
+    }
+
+    @Test
+    void 'assert responses are tagged and answered with not modified'() {
+        def response = new ResponseContextMock("thing types")
+        filter.filter(getRequestContextMock("GET", null), response.context)
+
+        EntityTag entityTag = response.headers.getFirst("ETag")
+        assertThat response.status, is(200)
+        assertThat new String(response.entity, "UTF-8"), is("thing types")
+
+        response = new ResponseContextMock("thing types")
+        filter.filter(getRequestContextMock("GET", "W/\"${entityTag.value}\"" as String), response.context)
+        assertThat response.status, is(304)
+        assertThat response.entity, is(nullValue())
+
+        response = new ResponseContextMock("other thing types")
+        filter.filter(getRequestContextMock("GET", "\"${entityTag.value}\"" as String), response.context)
+        assertThat response.status, is(200)
+        assertThat response.headers.getFirst("ETag").value, is(not(entityTag.value))
+    }
+
+    @Test
+    void 'assert streamed and already tagged responses are not touched'() {
+        def streamed = [write: {}] as StreamingOutput
+        def response = new ResponseContextMock(streamed)
+        filter.filter(getRequestContextMock("GET", null), response.context)
+        assertThat response.entity, is(streamed)
+        assertThat response.headers.containsKey("ETag"), is(false)
+
+        response = new ResponseContextMock("items")
+        response.headers.putSingle("ETag", new EntityTag("version"))
+        filter.filter(getRequestContextMock("GET", "\"version\""), response.context)
+        assertThat response.status, is(200)
+        assertThat response.entity, is("items")
+
+        response = new ResponseContextMock("item")
+        filter.filter(getRequestContextMock("PUT", null), response.context)
+        assertThat response.headers.containsKey("ETag"), is(false)
+    }
+
+    private ContainerRequestContext getRequestContextMock(String method, String ifNoneMatch) {
+        return [
+            getMethod: { method },
+            getHeaderString: { name -> name == "If-None-Match" ? ifNoneMatch : null }
+        ] as ContainerRequestContext
+    }
+
+    private static class ResponseContextMock {
+        int status = 200
+        Object entity
+        MultivaluedHashMap<String, Object> headers = new MultivaluedHashMap<>()
+
+        ResponseContextMock(Object entity) {
+            this.entity = entity
+        }
+
+        ContainerResponseContext getContext() {
+            return [
+                getStatus: { status },
+                setStatus: { status = it },
+                hasEntity: { entity != null },
+                getEntity: { entity },
+                getEntityClass: { entity.getClass() },
+                getEntityType: { entity.getClass() },
+                getEntityAnnotations: { new Annotation[0] },
+                getMediaType: { MediaType.APPLICATION_JSON_TYPE },
+                getHeaders: { headers },
+                setEntity: { Object[] args -> entity = args == null ? null : args[0] }
+            ] as ContainerResponseContext
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.websocket.test
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint
+import org.eclipse.jetty.websocket.api.Session
+import org.eclipse.jetty.websocket.api.StatusCode
+import org.eclipse.jetty.websocket.api.WriteCallback
+import org.eclipse.smarthome.io.rest.websocket.internal.WebSocketConnection
+import org.eclipse.smarthome.io.rest.websocket.internal.WebSocketHub
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests for {@link WebSocketConnection}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class WebSocketConnectionTest {
+
+    List<String> written
+    List<WriteCallback> pending
+    boolean completeImmediately
+    Integer closedWith
+    Session session
+
+    @Before
+    void setUp() {
+        written = []
+        pending = []
+        completeImmediately = false
+        closedWith = null
+        def remote = [
+            sendString : { String frame, WriteCallback callback ->
+                written << frame
+                if (completeImmediately) {
+                    callback.writeSuccess()
+                } else {
+                    pending << callback
+                }
+            }
+        ] as RemoteEndpoint
+        session = [
+            getRemote : { remote },
+            getRemoteAddress : { null },
+            isOpen : { closedWith == null },
+            close : { int statusCode, String reason -> closedWith = statusCode }
+        ] as Session
+    }
+
+    @Test
+    void 'assert the topic filter accepts the listed topics'() {
+        def connection = connect(10, null)
+        assertThat connection.accepts("qivicon/things/b/updated"), is(true)
+
+        connection.setTopicFilter("smarthome/items/*/added, smarthome/things")
+        assertThat connection.accepts("smarthome/items/a/added"), is(true)
+        assertThat connection.accepts("smarthome/items/a/removed"), is(false)
+        assertThat connection.accepts("smarthome/things/b/updated"), is(true)
+        assertThat connection.accepts("qivicon/things/b/updated"), is(false)
+
+        connection.setTopicFilter("")
+        assertThat connection.accepts("qivicon/things/b/updated"), is(true)
+    }
+
+    @Test
+    void 'assert an invalid topic filter is rejected and the previous filter is kept'() {
+        def connection = connect(10, "smarthome/things")
+        try {
+            connection.setTopicFilter("smarthome/(a+)+")
+            fail("IllegalArgumentException expected")
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertThat connection.accepts("smarthome/things/b/updated"), is(true)
+        assertThat connection.accepts("smarthome/items/a/added"), is(false)
+    }
+
+    @Test
+    void 'assert only one frame is written at a time'() {
+        def connection = connect(10, null)
+        connection.offer("a")
+        connection.offer("b")
+        connection.offer("c")
+        assertThat written, is(["a"])
+        assertThat connection.getQueueSize(), is(2)
+
+        complete()
+        assertThat written, is(["a", "b"])
+        complete()
+        complete()
+        assertThat written, is(["a", "b", "c"])
+        assertThat connection.getSent(), is(3L)
+        assertThat pending.size(), is(0)
+
+        connection.offer("d")
+        assertThat written, is(["a", "b", "c", "d"])
+    }
+
+    @Test
+    void 'assert writes which complete immediately do not recurse'() {
+        def connection = connect(10000, null)
+        connection.offer("first")
+        10000.times { connection.offer("frame") }
+
+        completeImmediately = true
+        complete()
+        assertThat written.size(), is(10001)
+        assertThat connection.getSent(), is(10001L)
+        assertThat connection.getQueueSize(), is(0)
+    }
+
+    @Test
+    void 'assert frames which overflow the queue are dropped and the client is notified'() {
+        def connection = connect(2, null)
+        connection.offer("a")
+        connection.offer("b")
+        connection.offer("c")
+        connection.offer("d")
+        connection.offer("e")
+        assertThat connection.getDropped(), is(2L)
+        assertThat connection.getHighWatermark(), is(2)
+
+        completeImmediately = true
+        complete()
+        assertThat written, is(["a", '["d",2]', "b", "c"])
+    }
+
+    @Test
+    void 'assert a failed write closes the connection'() {
+        def connection = connect(10, null)
+        connection.offer("a")
+        connection.offer("b")
+        pending.remove(0).writeFailed(new IOException("broken pipe"))
+
+        assertThat closedWith, is(StatusCode.SERVER_ERROR)
+        assertThat written, is(["a"])
+        assertThat connection.getSent(), is(0L)
+    }
+
+    private WebSocketConnection connect(int capacity, String topicFilter) {
+        def connection = new WebSocketConnection(new WebSocketHub(), capacity, topicFilter)
+        connection.onWebSocketConnect(session)
+        return connection
+    }
+
+    private void complete() {
+        pending.remove(0).writeSuccess()
+    }
+}
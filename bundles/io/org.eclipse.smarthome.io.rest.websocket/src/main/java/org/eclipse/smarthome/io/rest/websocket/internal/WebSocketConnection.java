@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.websocket.internal;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.smarthome.core.events.TopicEventFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link WebSocketConnection} is the server side of a single WebSocket. Outgoing frames are offered to a bounded
+ * queue without blocking and are written asynchronously, one frame at a time, so a slow client neither delays the
+ * broadcast to others nor occupies a thread while its frames are written. If the queue of a client overflows, frames
+ * are dropped and the client is told how many it has missed as soon as the queue has room again.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class WebSocketConnection implements WebSocketListener {
+
+    private final Logger logger = LoggerFactory.getLogger(WebSocketConnection.class);
+
+    private final WebSocketHub hub;
+
+    private final BlockingQueue<String> queue;
+
+    /** true while frames are written, at most one frame of a connection is written at a time */
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private final long connectedSince = System.currentTimeMillis();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong droppedSinceNotice = new AtomicLong();
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile int highWatermark;
+
+    private volatile Session session;
+
+    private volatile String remoteAddress = "";
+
+    private volatile TopicEventFilter topicFilter;
+
+    /**
+     * Creates a connection.
+     *
+     * @param hub the hub which broadcasts the events and handles the commands
+     * @param capacity the maximum number of frames which have not been written yet
+     * @param topicFilter the initial topic filter (can be null)
+     */
+    public WebSocketConnection(WebSocketHub hub, int capacity, String topicFilter) {
+        this.hub = hub;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        setTopicFilter(topicFilter);
+    }
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        this.session = session;
+        InetSocketAddress address = session.getRemoteAddress();
+        if (address != null) {
+            remoteAddress = address.getHostString() + ":" + address.getPort();
+        }
+        hub.addConnection(this);
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        String reply = hub.handleFrame(this, message);
+        if (reply != null) {
+            offer(reply);
+        }
+    }
+
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int len) {
+        close(StatusCode.BAD_DATA, "binary frames are not supported");
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        session = null;
+        queue.clear();
+        hub.removeConnection(this);
+    }
+
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        logger.debug("WebSocket error of {}: {}", remoteAddress, cause.getMessage());
+    }
+
+    /**
+     * Sets the topic filter which decides which events are sent to the client. The syntax is the same as the one of
+     * the SSE resource, i.e. a comma separated list of topics which may contain wildcards (*).
+     *
+     * @param topicFilter the topic filter or null to send all events
+     * @throws IllegalArgumentException if the topic filter is not valid, the previous filter is kept then
+     */
+    public void setTopicFilter(String topicFilter) {
+        this.topicFilter = TopicEventFilter.forTopics(topicFilter);
+    }
+
+    /**
+     * Checks whether an event of the given topic has to be sent to the client.
+     *
+     * @param topic the topic of the event
+     * @return true, if the event has to be sent
+     */
+    public boolean accepts(String topic) {
+        return isOpen() && topicFilter.matches(topic);
+    }
+
+    /**
+     * Queues a frame to be written to the client. If the queue is full, the frame is dropped.
+     *
+     * @param frame the text of the frame
+     */
+    public void offer(String frame) {
+        if (!isOpen()) {
+            return;
+        }
+        if (!queue.offer(frame)) {
+            dropped.incrementAndGet();
+            droppedSinceNotice.incrementAndGet();
+            return;
+        }
+        int size = queue.size();
+        if (size > highWatermark) {
+            highWatermark = size;
+        }
+        if (writing.compareAndSet(false, true)) {
+            writeFrames();
+        }
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @param statusCode the status code of the close frame
+     * @param reason the reason sent to the client
+     */
+    public void close(int statusCode, String reason) {
+        Session session = this.session;
+        if (session != null) {
+            session.close(statusCode, reason);
+        }
+    }
+
+    void commandHandled(boolean accepted) {
+        commands.incrementAndGet();
+        if (!accepted) {
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the queued frames until the queue is empty or a write does not complete immediately. In the latter case
+     * the callback of the write continues with the next frame. The caller must have set {@link #writing}.
+     */
+    private void writeFrames() {
+        while (true) {
+            Session session = this.session;
+            String frame = session != null && session.isOpen() ? nextFrame() : null;
+            if (frame == null) {
+                writing.set(false);
+                // frames might have been offered after the queue has been found empty
+                if (queue.isEmpty() || !isOpen() || !writing.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            FrameCallback callback = new FrameCallback();
+            try {
+                session.getRemote().sendString(frame, callback);
+            } catch (RuntimeException e) {
+                callback.writeFailed(e);
+            }
+            if (!callback.completedImmediately()) {
+                return;
+            }
+        }
+    }
+
+    private String nextFrame() {
+        if (droppedSinceNotice.get() > 0 && !queue.isEmpty()) {
+            return WebSocketHub.createDropFrame(droppedSinceNotice.getAndSet(0));
+        }
+        return queue.poll();
+    }
+
+    private boolean isOpen() {
+        Session session = this.session;
+        return session != null && session.isOpen();
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public long getConnectedSince() {
+        return connectedSince;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getCommands() {
+        return commands.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * The callback of a single frame. If the write completes before {@link RemoteEndpoint#sendString} has returned,
+     * the loop of {@link WebSocketConnection#writeFrames()} continues with the next frame, otherwise the callback does.
+     * This way a client which keeps up does not cause a recursion per frame.
+     */
+    private class FrameCallback implements WriteCallback {
+
+        private static final int PENDING = 0;
+        private static final int RETURNED = 1;
+        private static final int COMPLETED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private volatile boolean failed;
+
+        @Override
+        public void writeSuccess() {
+            sent.incrementAndGet();
+            if (!state.compareAndSet(PENDING, COMPLETED)) {
+                writeFrames();
+            }
+        }
+
+        @Override
+        public void writeFailed(Throwable cause) {
+            // the writing flag is not reset, so no further frames are written to the closed connection
+            failed = true;
+            state.set(COMPLETED);
+            logger.debug("Closing WebSocket connection after a failed write: {}", cause.getMessage());
+            close(StatusCode.SERVER_ERROR, "write failed");
+        }
+
+        /**
+         * Called after {@link RemoteEndpoint#sendString} has returned.
+         *
+         * @return true, if the frame has already been written and the caller continues with the next one
+         */
+        boolean completedImmediately() {
+            return !state.compareAndSet(PENDING, RETURNED) && !failed;
+        }
+
+    }
+
+}
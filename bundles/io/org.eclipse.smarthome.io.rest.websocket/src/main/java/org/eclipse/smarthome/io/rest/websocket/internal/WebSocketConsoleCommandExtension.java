@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.websocket.internal;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.smarthome.io.console.Console;
+import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
+
+/**
+ * Console command extension to show the open WebSocket connections and their statistics.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class WebSocketConsoleCommandExtension extends AbstractConsoleCommandExtension {
+
+    private static final String SUBCMD_LIST = "list";
+
+    private WebSocketHub hub;
+
+    public WebSocketConsoleCommandExtension() {
+        super("websocket", "Show the open WebSocket connections.");
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Collections.singletonList(buildCommandUsage(SUBCMD_LIST,
+                "lists the open connections with the number of sent, dropped and received frames"));
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 1 && SUBCMD_LIST.equals(args[0])) {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            for (WebSocketConnection connection : hub.getConnections()) {
+                console.println(String.format(
+                        "%s connected since %s: sent %d, dropped %d, commands %d (rejected %d), queue %d (max %d)",
+                        connection.getRemoteAddress(), format.format(new Date(connection.getConnectedSince())),
+                        connection.getSent(), connection.getDropped(), connection.getCommands(),
+                        connection.getRejected(), connection.getQueueSize(), connection.getHighWatermark()));
+            }
+            console.println(hub.getConnections().size() + " connection(s)");
+        } else {
+            printUsage(console);
+        }
+    }
+
+    protected void setWebSocketHub(WebSocketHub hub) {
+        this.hub = hub;
+    }
+
+    protected void unsetWebSocketHub(WebSocketHub hub) {
+        this.hub = null;
+    }
+
+}
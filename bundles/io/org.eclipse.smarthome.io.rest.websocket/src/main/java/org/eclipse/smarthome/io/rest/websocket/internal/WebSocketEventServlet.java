@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.websocket.internal;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
+import org.eclipse.jetty.websocket.servlet.WebSocketCreator;
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+/**
+ * Servlet which upgrades requests to WebSockets and creates a {@link WebSocketConnection} for each of them. The
+ * initial topic filter of a connection can be passed in the query parameter <code>topics</code>. The upgrade is refused
+ * with "400 Bad Request" if the topic filter is not valid.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class WebSocketEventServlet extends WebSocketServlet {
+
+    private static final long serialVersionUID = 3815462097632104384L;
+
+    private static final int MAX_TEXT_MESSAGE_SIZE = 64 * 1024;
+
+    private final WebSocketHub hub;
+
+    public WebSocketEventServlet(WebSocketHub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void init() throws ServletException {
+        // the factory implementation is loaded through the context class loader, which does not see it in OSGi
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(WebSocketEventServlet.class.getClassLoader());
+        try {
+            super.init();
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        factory.getPolicy().setIdleTimeout(hub.getIdleTimeout());
+        factory.getPolicy().setMaxTextMessageSize(MAX_TEXT_MESSAGE_SIZE);
+        factory.setCreator(new WebSocketCreator() {
+            @Override
+            public Object createWebSocket(ServletUpgradeRequest request, ServletUpgradeResponse response) {
+                String topicFilter = request.getHttpServletRequest().getParameter("topics");
+                try {
+                    return hub.createConnection(topicFilter);
+                } catch (IllegalArgumentException e) {
+                    try {
+                        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                    } catch (IOException ignored) {
+                        // the upgrade is refused anyway
+                    }
+                    return null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public String getServletInfo() {
+        return "Eclipse SmartHome WebSocket";
+    }
+
+}
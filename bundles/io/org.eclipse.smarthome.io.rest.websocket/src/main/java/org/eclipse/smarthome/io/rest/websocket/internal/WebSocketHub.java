@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.websocket.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import javax.servlet.ServletException;
+
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.events.EventFilter;
+import org.eclipse.smarthome.core.events.EventPublisher;
+import org.eclipse.smarthome.core.events.EventSubscriber;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.events.ItemEventFactory;
+import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.TypeParser;
+import org.osgi.service.http.HttpService;
+import org.osgi.service.http.NamespaceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * The {@link WebSocketHub} registers the WebSocket servlet and broadcasts all events of the event bus to the connected
+ * clients. In the other direction, clients can send commands and state updates over the same connection.
+ * <p>
+ * All frames are compact JSON arrays whose first element is the frame type:
+ * <ul>
+ * <li><code>["s", topics]</code> (client): sets the topic filter of the connection</li>
+ * <li><code>["c", id, item, command]</code> (client): sends a command to an item</li>
+ * <li><code>["u", id, item, state]</code> (client): posts a state update for an item</li>
+ * <li><code>["e", topic, type, payload]</code> (server): an event of the event bus</li>
+ * <li><code>["r", id, status, message]</code> (server): the result of a command or state update, the status is one
+ * of the HTTP status codes 200, 400 and 404</li>
+ * <li><code>["d", count]</code> (server): the number of events which have been dropped because the client did not keep
+ * up with them</li>
+ * </ul>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class WebSocketHub implements EventSubscriber {
+
+    public static final String WEBSOCKET_ALIAS = "/ws";
+
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final long DEFAULT_IDLE_TIMEOUT = 300000;
+
+    private final Logger logger = LoggerFactory.getLogger(WebSocketHub.class);
+
+    private final Set<String> subscribedEventTypes = Collections.singleton(EventSubscriber.ALL_EVENT_TYPES);
+
+    private final Set<WebSocketConnection> connections = new CopyOnWriteArraySet<>();
+
+    private final JsonParser parser = new JsonParser();
+
+    private HttpService httpService;
+
+    private ItemRegistry itemRegistry;
+
+    private EventPublisher eventPublisher;
+
+    private volatile int queueSize = DEFAULT_QUEUE_SIZE;
+
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    protected void setHttpService(HttpService httpService) {
+        this.httpService = httpService;
+    }
+
+    protected void unsetHttpService(HttpService httpService) {
+        this.httpService = null;
+    }
+
+    protected void setItemRegistry(ItemRegistry itemRegistry) {
+        this.itemRegistry = itemRegistry;
+    }
+
+    protected void unsetItemRegistry(ItemRegistry itemRegistry) {
+        this.itemRegistry = null;
+    }
+
+    protected void setEventPublisher(EventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    protected void unsetEventPublisher(EventPublisher eventPublisher) {
+        this.eventPublisher = null;
+    }
+
+    protected void activate(Map<String, Object> config) {
+        modified(config);
+        try {
+            logger.debug("Starting up WebSocket servlet at {}", WEBSOCKET_ALIAS);
+            httpService.registerServlet(WEBSOCKET_ALIAS, new WebSocketEventServlet(this),
+                    new Hashtable<String, String>(), httpService.createDefaultHttpContext());
+        } catch (NamespaceException | ServletException e) {
+            logger.error("Error during WebSocket servlet startup: {}", e.getMessage());
+        }
+    }
+
+    protected void modified(Map<String, Object> config) {
+        if (config != null) {
+            queueSize = (int) Math.min(getPositive(config, "queueSize", DEFAULT_QUEUE_SIZE), Integer.MAX_VALUE);
+            idleTimeout = getPositive(config, "idleTimeout", DEFAULT_IDLE_TIMEOUT);
+        }
+    }
+
+    protected void deactivate() {
+        httpService.unregister(WEBSOCKET_ALIAS);
+        for (WebSocketConnection connection : connections) {
+            connection.close(StatusCode.SHUTDOWN, "shutdown");
+        }
+        connections.clear();
+    }
+
+    private long getPositive(Map<String, Object> config, String name, long defaultValue) {
+        Object value = config.get(name);
+        if (value != null) {
+            try {
+                long number = Long.parseLong(value.toString());
+                if (number > 0) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+                // handled below
+            }
+            logger.warn("Ignoring invalid value '{}' of '{}'.", value, name);
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public Set<String> getSubscribedEventTypes() {
+        return subscribedEventTypes;
+    }
+
+    @Override
+    public EventFilter getEventFilter() {
+        return null;
+    }
+
+    @Override
+    public void receive(Event event) {
+        // the frame is only serialized if at least one client is interested and then only once
+        String frame = null;
+        for (WebSocketConnection connection : connections) {
+            if (connection.accepts(event.getTopic())) {
+                if (frame == null) {
+                    frame = createEventFrame(event);
+                }
+                connection.offer(frame);
+            }
+        }
+    }
+
+    /**
+     * Creates the connection for a new WebSocket.
+     *
+     * @param topicFilter the initial topic filter (can be null)
+     * @return the connection
+     */
+    WebSocketConnection createConnection(String topicFilter) {
+        return new WebSocketConnection(this, queueSize, topicFilter);
+    }
+
+    long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    void addConnection(WebSocketConnection connection) {
+        connections.add(connection);
+    }
+
+    void removeConnection(WebSocketConnection connection) {
+        connections.remove(connection);
+    }
+
+    /**
+     * @return the currently open connections
+     */
+    public Collection<WebSocketConnection> getConnections() {
+        return Collections.unmodifiableSet(connections);
+    }
+
+    /**
+     * Handles a frame received from a client.
+     *
+     * @param connection the connection the frame has been received on
+     * @param text the text of the frame
+     * @return the frame to reply with or null
+     */
+    String handleFrame(WebSocketConnection connection, String text) {
+        JsonArray frame;
+        try {
+            JsonElement element = parser.parse(text);
+            if (!element.isJsonArray() || element.getAsJsonArray().size() == 0) {
+                return createResultFrame(null, 400, "Frame must be a non-empty JSON array.");
+            }
+            frame = element.getAsJsonArray();
+        } catch (JsonParseException e) {
+            return createResultFrame(null, 400, "Frame is not valid JSON.");
+        }
+
+        String type = getString(frame, 0);
+        if ("s".equals(type)) {
+            try {
+                connection.setTopicFilter(getString(frame, 1));
+            } catch (IllegalArgumentException e) {
+                return createResultFrame(null, 400, e.getMessage());
+            }
+            return null;
+        } else if ("c".equals(type) || "u".equals(type)) {
+            JsonElement id = frame.size() > 1 ? frame.get(1) : null;
+            return handleItemFrame(connection, "c".equals(type), id, getString(frame, 2), getString(frame, 3));
+        } else {
+            return createResultFrame(null, 400, "Unknown frame type '" + type + "'.");
+        }
+    }
+
+    private String handleItemFrame(WebSocketConnection connection, boolean command, JsonElement id,
+            String itemName, String value) {
+        if (itemName == null || value == null) {
+            return reject(connection, id, 400, "Item name and value are required.");
+        }
+        Item item;
+        try {
+            item = itemRegistry.getItem(itemName);
+        } catch (ItemNotFoundException e) {
+            return reject(connection, id, 404, "Item '" + itemName + "' does not exist.");
+        }
+        if (command) {
+            Command parsed = TypeParser.parseCommand(item.getAcceptedCommandTypes(), value);
+            if (parsed == null) {
+                return reject(connection, id, 400, "Command '" + value + "' is not valid for item '" + itemName
+                        + "'.");
+            }
+            eventPublisher.post(ItemEventFactory.createCommandEvent(itemName, parsed));
+        } else {
+            State parsed = TypeParser.parseState(item.getAcceptedDataTypes(), value);
+            if (parsed == null) {
+                return reject(connection, id, 400, "State '" + value + "' is not valid for item '" + itemName + "'.");
+            }
+            eventPublisher.post(ItemEventFactory.createStateEvent(itemName, parsed));
+        }
+        connection.commandHandled(true);
+        return createResultFrame(id, 200, "OK");
+    }
+
+    private static String reject(WebSocketConnection connection, JsonElement id, int status, String message) {
+        connection.commandHandled(false);
+        return createResultFrame(id, status, message);
+    }
+
+    private static String getString(JsonArray frame, int index) {
+        if (frame.size() <= index || !frame.get(index).isJsonPrimitive()) {
+            return null;
+        }
+        return frame.get(index).getAsString();
+    }
+
+    static String createEventFrame(Event event) {
+        JsonArray frame = new JsonArray();
+        frame.add(new JsonPrimitive("e"));
+        frame.add(new JsonPrimitive(event.getTopic()));
+        frame.add(new JsonPrimitive(event.getType()));
+        frame.add(new JsonPrimitive(event.getPayload()));
+        return frame.toString();
+    }
+
+    static String createResultFrame(JsonElement id, int status, String message) {
+        JsonArray frame = new JsonArray();
+        frame.add(new JsonPrimitive("r"));
+        frame.add(id);
+        frame.add(new JsonPrimitive(status));
+        frame.add(new JsonPrimitive(message));
+        return frame.toString();
+    }
+
+    static String createDropFrame(long count) {
+        JsonArray frame = new JsonArray();
+        frame.add(new JsonPrimitive("d"));
+        frame.add(new JsonPrimitive(count));
+        return frame.toString();
+    }
+
+}
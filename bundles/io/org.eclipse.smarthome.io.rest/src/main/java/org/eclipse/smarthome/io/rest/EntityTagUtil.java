@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest;
+
+import javax.ws.rs.core.EntityTag;
+
+/**
+ * {@link EntityTagUtil} provides helper methods for working with entity tags in REST resources.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class EntityTagUtil {
+
+    /**
+     * Checks whether the value of an "If-None-Match" HTTP header matches the given entity tag. As required for this
+     * header, the weak comparison is used, so tags which have been weakened when the response was compressed match as
+     * well. Only quoted tags and "*" are accepted.
+     *
+     * @param ifNoneMatch
+     *            value of the "If-None-Match" HTTP header (can be null)
+     * @param entityTag
+     *            the entity tag of the current response
+     * @return true if the client already has the current response
+     */
+    public static boolean matches(String ifNoneMatch, EntityTag entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String quoted = "\"" + entityTag.getValue() + "\"";
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(quoted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * {@link JSONStreamingOutput} writes the elements of an {@link Iterable} as a JSON array directly to the response.
+ * The elements are serialized one after the other, so a lazily computed {@link Iterable} (e.g. one which maps the
+ * entities of a registry into DTOs) never has to be held in memory as a whole.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class JSONStreamingOutput implements StreamingOutput {
+
+    private static final Gson GSON = new Gson();
+
+    private final Iterable<?> elements;
+
+    private final Set<String> fields;
+
+    /**
+     * Creates a streaming output.
+     *
+     * @param elements the elements to write
+     * @param fields the fields of the elements to write or null to write all fields
+     */
+    public JSONStreamingOutput(Iterable<?> elements, Set<String> fields) {
+        this.elements = elements;
+        this.fields = fields;
+    }
+
+    /**
+     * Parses the value of a "fields" query parameter.
+     *
+     * @param fields a comma separated list of field names (can be null)
+     * @return the field names or null if all fields should be written
+     */
+    public static Set<String> parseFields(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return null;
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            if (!field.trim().isEmpty()) {
+                result.add(field.trim());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+        writer.beginArray();
+        for (Object element : elements) {
+            if (element == null) {
+                writer.nullValue();
+            } else if (fields == null) {
+                GSON.toJson(element, element.getClass(), writer);
+            } else {
+                GSON.toJson(project(GSON.toJsonTree(element)), writer);
+            }
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    private JsonElement project(JsonElement element) {
+        if (!element.isJsonObject()) {
+            return element;
+        }
+        JsonObject projection = new JsonObject();
+        for (Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+            if (fields.contains(entry.getKey())) {
+                projection.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return projection;
+    }
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.internal.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * An interceptor which compresses responses with gzip or deflate, depending on the "Accept-Encoding" header of the
+ * request. The entity tag of a compressed response is weakened, as the compressed representation is not byte-wise
+ * identical to the uncompressed one.
+ * <p>
+ * Entities which have been serialized by the {@link ConditionalRequestFilter} are identified by their entity tag.
+ * Their compressed forms are kept in a small cache, so unchanged responses (e.g. thing types) are only compressed
+ * once.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+@Provider
+public class CompressionInterceptor implements WriterInterceptor {
+
+    private static final String GZIP = "gzip";
+
+    private static final String DEFLATE = "deflate";
+
+    private static final String SERVER_SENT_EVENTS = "text/event-stream";
+
+    /** serialized entities below this size are sent uncompressed */
+    private static final int MIN_SIZE = 1024;
+
+    private static final int CACHE_ENTRIES = 64;
+
+    private static final int MAX_CACHED_SIZE = 1024 * 1024;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
+    private final Map<String, byte[]> cache = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > CACHE_ENTRIES;
+        }
+    };
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        String encoding = negotiate(httpHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING));
+        Object entity = context.getEntity();
+        if (encoding == null || headers.containsKey(HttpHeaders.CONTENT_ENCODING) || isEventStream(context)
+                || (entity instanceof byte[] && ((byte[]) entity).length < MIN_SIZE)) {
+            context.proceed();
+            return;
+        }
+
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String entityTag = weakenEntityTag(headers);
+
+        if (entity instanceof byte[] && entityTag != null) {
+            String key = entityTag + "/" + encoding;
+            byte[] compressed;
+            synchronized (cache) {
+                compressed = cache.get(key);
+            }
+            if (compressed == null) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                DeflaterOutputStream compressor = compress(output, encoding);
+                compressor.write((byte[]) entity);
+                compressor.finish();
+                compressed = output.toByteArray();
+                if (compressed.length <= MAX_CACHED_SIZE) {
+                    synchronized (cache) {
+                        cache.put(key, compressed);
+                    }
+                }
+            }
+            context.getOutputStream().write(compressed);
+        } else {
+            DeflaterOutputStream compressor = compress(context.getOutputStream(), encoding);
+            context.setOutputStream(compressor);
+            context.proceed();
+            compressor.finish();
+        }
+    }
+
+    private static DeflaterOutputStream compress(OutputStream output, String encoding) throws IOException {
+        return GZIP.equals(encoding) ? new GZIPOutputStream(output) : new DeflaterOutputStream(output);
+    }
+
+    private static boolean isEventStream(WriterInterceptorContext context) {
+        MediaType mediaType = context.getMediaType();
+        return mediaType != null && SERVER_SENT_EVENTS.equals(mediaType.getType() + "/" + mediaType.getSubtype());
+    }
+
+    /**
+     * Marks the entity tag of the response as weak.
+     *
+     * @return the value of the entity tag or null if the response has none
+     */
+    private static String weakenEntityTag(MultivaluedMap<String, Object> headers) {
+        Object header = headers.getFirst(HttpHeaders.ETAG);
+        if (header == null) {
+            return null;
+        }
+        EntityTag entityTag = header instanceof EntityTag ? (EntityTag) header : EntityTag.valueOf(header.toString());
+        headers.putSingle(HttpHeaders.ETAG, new EntityTag(entityTag.getValue(), true));
+        return entityTag.getValue();
+    }
+
+    /**
+     * Selects the content encoding for a response.
+     *
+     * @param acceptEncodings the values of the "Accept-Encoding" headers (can be null)
+     * @return gzip or deflate, if accepted by the client, or null
+     */
+    static String negotiate(List<String> acceptEncodings) {
+        if (acceptEncodings == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String acceptEncoding : acceptEncodings) {
+            for (String element : acceptEncoding.split(",")) {
+                String[] parameters = element.split(";");
+                String coding = parameters[0].trim().toLowerCase();
+                if (isRejected(parameters)) {
+                    continue;
+                }
+                if (GZIP.equals(coding) || "x-gzip".equals(coding) || "*".equals(coding)) {
+                    return GZIP;
+                } else if (DEFLATE.equals(coding)) {
+                    deflate = true;
+                }
+            }
+        }
+        return deflate ? DEFLATE : null;
+    }
+
+    private static boolean isRejected(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.io.rest.internal.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.Providers;
+
+import org.eclipse.smarthome.io.rest.EntityTagUtil;
+
+/**
+ * A filter which adds an entity tag to the successful responses of GET requests and answers requests whose
+ * "If-None-Match" header contains this tag with a "304 Not Modified". The tag is the MD5 digest of the serialized
+ * entity, so the entity is serialized by this filter and replaced by its bytes.
+ * <p>
+ * Responses which already carry an entity tag (e.g. one computed from a registry version), which are streamed or which
+ * are server sent events are not touched.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+@Provider
+public class ConditionalRequestFilter implements ContainerResponseFilter {
+
+    private static final String SERVER_SENT_EVENTS = "text/event-stream";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Context
+    private Providers providers;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+            throws IOException {
+        if (!isApplicable(requestContext, responseContext)) {
+            return;
+        }
+
+        byte[] content = serialize(responseContext);
+        if (content == null) {
+            return;
+        }
+
+        EntityTag entityTag = new EntityTag(digest(content));
+        responseContext.getHeaders().putSingle(HttpHeaders.ETAG, entityTag);
+        if (EntityTagUtil.matches(requestContext.getHeaderString(HttpHeaders.IF_NONE_MATCH), entityTag)) {
+            responseContext.setStatus(Status.NOT_MODIFIED.getStatusCode());
+            responseContext.setEntity(null);
+        } else {
+            responseContext.setEntity(content, responseContext.getEntityAnnotations(),
+                    responseContext.getMediaType());
+        }
+    }
+
+    private boolean isApplicable(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (!HttpMethod.GET.equals(requestContext.getMethod())
+                || responseContext.getStatus() != Status.OK.getStatusCode() || !responseContext.hasEntity()
+                || responseContext.getHeaders().containsKey(HttpHeaders.ETAG)) {
+            return false;
+        }
+        MediaType mediaType = responseContext.getMediaType();
+        if (mediaType != null && SERVER_SENT_EVENTS.equals(mediaType.getType() + "/" + mediaType.getSubtype())) {
+            return false;
+        }
+        Object entity = responseContext.getEntity();
+        return !(entity instanceof StreamingOutput || entity instanceof InputStream || entity instanceof File);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private byte[] serialize(ContainerResponseContext responseContext) throws IOException {
+        MessageBodyWriter writer = providers.getMessageBodyWriter(responseContext.getEntityClass(),
+                responseContext.getEntityType(), responseContext.getEntityAnnotations(),
+                responseContext.getMediaType());
+        if (writer == null) {
+            return null;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.writeTo(responseContext.getEntity(), responseContext.getEntityClass(),
+                responseContext.getEntityType(), responseContext.getEntityAnnotations(),
+                responseContext.getMediaType(), responseContext.getHeaders(), output);
+        return output.toByteArray();
+    }
+
+    private static String digest(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
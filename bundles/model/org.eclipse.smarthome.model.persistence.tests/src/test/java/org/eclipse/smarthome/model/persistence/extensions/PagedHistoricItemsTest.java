@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.persistence.extensions;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
+import org.eclipse.smarthome.core.types.State;
+import org.junit.Test;
+
+/**
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class PagedHistoricItemsTest {
+
+    @Test
+    public void testAllPagesAreQueried() {
+        PagingService service = new PagingService(2500, true);
+        assertEquals(2500, count(new PagedHistoricItems(service, new FilterCriteria())));
+        assertEquals(3, service.queries);
+    }
+
+    @Test
+    public void testEmptyPageAfterFullPages() {
+        PagingService service = new PagingService(2000, true);
+        assertEquals(2000, count(new PagedHistoricItems(service, new FilterCriteria())));
+        assertEquals(3, service.queries);
+    }
+
+    @Test
+    public void testServiceWhichIgnoresPaging() {
+        PagingService service = new PagingService(PagedHistoricItems.PAGE_SIZE, false);
+        assertEquals(PagedHistoricItems.PAGE_SIZE, count(new PagedHistoricItems(service, new FilterCriteria())));
+        assertEquals(2, service.queries);
+
+        service = new PagingService(2 * PagedHistoricItems.PAGE_SIZE, false);
+        assertEquals(2 * PagedHistoricItems.PAGE_SIZE, count(new PagedHistoricItems(service, new FilterCriteria())));
+        assertEquals(1, service.queries);
+    }
+
+    private int count(Iterable<HistoricItem> items) {
+        int count = 0;
+        for (HistoricItem item : items) {
+            assertEquals(new DecimalType(count), item.getState());
+            count++;
+        }
+        return count;
+    }
+
+    private static class PagingService implements QueryablePersistenceService {
+
+        private final int size;
+        private final boolean paging;
+        private int queries = 0;
+
+        PagingService(int size, boolean paging) {
+            this.size = size;
+            this.paging = paging;
+        }
+
+        @Override
+        public String getName() {
+            return "paging";
+        }
+
+        @Override
+        public void store(Item item) {
+        }
+
+        @Override
+        public void store(Item item, String alias) {
+        }
+
+        @Override
+        public Iterable<HistoricItem> query(FilterCriteria filter) {
+            queries++;
+            int from = paging ? filter.getPageNumber() * filter.getPageSize() : 0;
+            int to = paging ? Math.min(size, from + filter.getPageSize()) : size;
+            List<HistoricItem> items = new ArrayList<HistoricItem>();
+            for (int i = from; i < to; i++) {
+                final int index = i;
+                items.add(new HistoricItem() {
+                    @Override
+                    public Date getTimestamp() {
+                        return new Date(index * 1000L);
+                    }
+
+                    @Override
+                    public State getState() {
+                        return new DecimalType(index);
+                    }
+
+                    @Override
+                    public String getName() {
+                        return "Test";
+                    }
+                });
+            }
+            return items;
+        }
+    }
+
+}
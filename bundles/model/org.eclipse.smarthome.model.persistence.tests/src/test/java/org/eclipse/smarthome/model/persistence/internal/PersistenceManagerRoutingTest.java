@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.persistence.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.smarthome.core.items.GroupItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.persistence.PersistenceService;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.model.core.EventType;
+import org.eclipse.smarthome.model.core.ModelRepository;
+import org.eclipse.smarthome.model.persistence.persistence.AllConfig;
+import org.eclipse.smarthome.model.persistence.persistence.GroupConfig;
+import org.eclipse.smarthome.model.persistence.persistence.ItemConfig;
+import org.eclipse.smarthome.model.persistence.persistence.PersistenceConfiguration;
+import org.eclipse.smarthome.model.persistence.persistence.PersistenceModel;
+import org.eclipse.smarthome.model.persistence.persistence.Strategy;
+import org.eclipse.smarthome.model.persistence.scoping.GlobalStrategies;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests which persistence services the {@link PersistenceManager} passes the states of an item to, i.e. how the
+ * persistence configurations are matched against the items and how the routing table follows the changes of the
+ * models and the items.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class PersistenceManagerRoutingTest {
+
+    private final List<String> queued = new ArrayList<String>();
+
+    private final List<Item> items = new ArrayList<Item>();
+
+    private ModelRepository modelRepository;
+
+    private ItemRegistry itemRegistry;
+
+    private PersistenceManager manager;
+
+    private SwitchItem kitchen;
+
+    private NumberItem temperature;
+
+    private GroupItem livingRoom;
+
+    @Before
+    public void setUp() throws ItemNotFoundException {
+        kitchen = new SwitchItem("Kitchen");
+        temperature = new NumberItem("Temperature");
+        livingRoom = new GroupItem("LivingRoom");
+        livingRoom.addMember(temperature);
+        items.addAll(Arrays.asList(kitchen, temperature, livingRoom));
+
+        itemRegistry = mock(ItemRegistry.class);
+        when(itemRegistry.getItems()).thenReturn(items);
+        when(itemRegistry.getItem("Kitchen")).thenReturn(kitchen);
+        when(itemRegistry.getItem("Temperature")).thenReturn(temperature);
+        when(itemRegistry.getItem("LivingRoom")).thenReturn(livingRoom);
+        modelRepository = mock(ModelRepository.class);
+        when(modelRepository.getAllModelNamesOfType("persist")).thenReturn(Collections.<String> emptyList());
+
+        manager = new PersistenceManager() {
+            @Override
+            boolean queueState(String serviceName, Item item, String alias, State state, Date timestamp) {
+                queued.add(serviceName + ":" + item.getName() + (alias != null ? ":" + alias : ""));
+                return true;
+            }
+        };
+        manager.persistenceServices.put("a", mock(PersistenceService.class));
+        manager.persistenceServices.put("b", mock(PersistenceService.class));
+        manager.setModelRepository(modelRepository);
+        manager.setItemRegistry(itemRegistry);
+    }
+
+    @Test
+    public void testItemConfigOnlyMatchesTheItem() {
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), itemConfig("Kitchen")));
+
+        assertQueued(changed(kitchen), "a:Kitchen");
+        assertQueued(changed(temperature));
+    }
+
+    @Test
+    public void testGroupConfigMatchesTheMembers() {
+        GroupItem sensors = new GroupItem("Sensors");
+        NumberItem humidity = new NumberItem("Humidity");
+        sensors.addMember(humidity);
+        livingRoom.addMember(sensors);
+        items.add(sensors);
+        items.add(humidity);
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), groupConfig("LivingRoom")));
+
+        assertQueued(changed(temperature), "a:Temperature");
+        assertQueued(changed(humidity), "a:Humidity");
+        assertQueued(changed(livingRoom));
+        assertQueued(changed(kitchen));
+    }
+
+    @Test
+    public void testGroupConfigOfAMissingGroupMatchesNothing() {
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), groupConfig("Missing")));
+
+        assertQueued(changed(kitchen));
+        assertQueued(changed(temperature));
+    }
+
+    @Test
+    public void testAllConfigMatchesEveryItem() {
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), mock(AllConfig.class)));
+
+        assertQueued(changed(kitchen), "a:Kitchen");
+        assertQueued(changed(temperature), "a:Temperature");
+        assertQueued(changed(livingRoom), "a:LivingRoom");
+    }
+
+    @Test
+    public void testChangeAndUpdateStrategiesAreDistinguished() {
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), itemConfig("Kitchen")),
+                config(null, strategies(GlobalStrategies.UPDATE), itemConfig("Temperature")));
+
+        assertQueued(changed(kitchen), "a:Kitchen");
+        assertQueued(updated(kitchen));
+        assertQueued(changed(temperature));
+        assertQueued(updated(temperature), "a:Temperature");
+    }
+
+    @Test
+    public void testDefaultStrategiesOnlyApplyToConfigsWithoutStrategies() {
+        addModel("a", strategies(GlobalStrategies.UPDATE), config(null, strategies(), itemConfig("Kitchen")),
+                config(null, strategies(GlobalStrategies.CHANGE), itemConfig("Temperature")));
+
+        assertQueued(updated(kitchen), "a:Kitchen");
+        assertQueued(changed(kitchen));
+        assertQueued(updated(temperature));
+        assertQueued(changed(temperature), "a:Temperature");
+    }
+
+    @Test
+    public void testConfigsWithoutChangeOrUpdateStrategyAreNotRouted() {
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.RESTORE), itemConfig("Kitchen")));
+
+        assertQueued(changed(kitchen));
+        assertQueued(updated(kitchen));
+    }
+
+    @Test
+    public void testEveryMatchingConfigAndServiceIsRoutedWithItsAlias() {
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), mock(AllConfig.class)),
+                config("KitchenLight", strategies(GlobalStrategies.CHANGE), itemConfig("Kitchen")));
+        addModel("b", strategies(GlobalStrategies.CHANGE), config(null, strategies(), itemConfig("Kitchen")));
+
+        assertQueued(changed(kitchen), "a:Kitchen", "a:Kitchen:KitchenLight", "b:Kitchen");
+        assertQueued(changed(temperature), "a:Temperature");
+    }
+
+    @Test
+    public void testRoutesFollowTheModels() {
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), itemConfig("Kitchen")));
+        addModel("b", strategies(), config(null, strategies(GlobalStrategies.CHANGE), itemConfig("Kitchen")));
+        assertQueued(changed(kitchen), "a:Kitchen", "b:Kitchen");
+
+        // a modified model replaces the routes of its service only
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), itemConfig("Temperature")));
+        assertQueued(changed(kitchen), "b:Kitchen");
+        assertQueued(changed(temperature), "a:Temperature");
+
+        manager.modelChanged("b.persist", EventType.REMOVED);
+        assertQueued(changed(kitchen));
+        assertQueued(changed(temperature), "a:Temperature");
+    }
+
+    @Test
+    public void testModelsOfUnknownServicesAreNotRouted() {
+        addModel("c", strategies(), config(null, strategies(GlobalStrategies.CHANGE), itemConfig("Kitchen")));
+
+        assertQueued(changed(kitchen));
+    }
+
+    @Test
+    public void testRoutesFollowTheItems() throws ItemNotFoundException {
+        addModel("a", strategies(), config(null, strategies(GlobalStrategies.CHANGE), groupConfig("LivingRoom")),
+                config(null, strategies(GlobalStrategies.CHANGE), itemConfig("Window")));
+
+        SwitchItem window = new SwitchItem("Window");
+        items.add(window);
+        manager.added(window);
+        assertQueued(changed(window), "a:Window");
+
+        items.remove(window);
+        manager.removed(window);
+        assertQueued(changed(window));
+
+        // a new member of the group is routed as soon as it is added
+        SwitchItem lamp = new SwitchItem("Lamp");
+        livingRoom.addMember(lamp);
+        items.add(lamp);
+        manager.added(lamp);
+        assertQueued(changed(lamp), "a:Lamp");
+
+        // the members of a group are rerouted when the group is updated
+        GroupItem newLivingRoom = new GroupItem("LivingRoom");
+        newLivingRoom.addMember(lamp);
+        items.set(items.indexOf(livingRoom), newLivingRoom);
+        when(itemRegistry.getItem("LivingRoom")).thenReturn(newLivingRoom);
+        manager.updated(livingRoom, newLivingRoom);
+        assertQueued(changed(lamp), "a:Lamp");
+        assertQueued(changed(temperature));
+
+        // the members of a group are no longer routed when the group is removed
+        items.remove(newLivingRoom);
+        when(itemRegistry.getItem("LivingRoom")).thenThrow(new ItemNotFoundException("LivingRoom"));
+        manager.removed(newLivingRoom);
+        assertQueued(changed(lamp));
+    }
+
+    @Test
+    public void testStrategiesOfAServiceWithoutDefaults() {
+        PersistenceConfiguration withoutStrategies = config(null, strategies(), itemConfig("Kitchen"));
+        PersistenceConfiguration withStrategies = config(null, strategies(GlobalStrategies.CHANGE),
+                itemConfig("Kitchen"));
+
+        assertFalse(manager.hasStrategy("c", withoutStrategies, GlobalStrategies.CHANGE));
+        assertTrue(manager.hasStrategy("c", withStrategies, GlobalStrategies.CHANGE));
+    }
+
+    private void addModel(String serviceName, List<Strategy> defaults, PersistenceConfiguration... configs) {
+        PersistenceModel model = mock(PersistenceModel.class);
+        when(model.getDefaults()).thenReturn(new BasicEList<Strategy>(defaults));
+        when(model.getConfigs()).thenReturn(new BasicEList<PersistenceConfiguration>(Arrays.asList(configs)));
+        when(model.getStrategies()).thenReturn(new BasicEList<Strategy>());
+        when(modelRepository.getModel(serviceName + ".persist")).thenReturn(model);
+        manager.modelChanged(serviceName + ".persist", EventType.MODIFIED);
+    }
+
+    private PersistenceConfiguration config(String alias, List<Strategy> strategies, EObject... itemConfigs) {
+        PersistenceConfiguration config = mock(PersistenceConfiguration.class);
+        when(config.getAlias()).thenReturn(alias);
+        when(config.getStrategies()).thenReturn(new BasicEList<Strategy>(strategies));
+        when(config.getItems()).thenReturn(new BasicEList<EObject>(Arrays.asList(itemConfigs)));
+        return config;
+    }
+
+    private List<Strategy> strategies(Strategy... strategies) {
+        return Arrays.asList(strategies);
+    }
+
+    private ItemConfig itemConfig(String itemName) {
+        ItemConfig itemConfig = mock(ItemConfig.class);
+        when(itemConfig.getItem()).thenReturn(itemName);
+        return itemConfig;
+    }
+
+    private GroupConfig groupConfig(String groupName) {
+        GroupConfig groupConfig = mock(GroupConfig.class);
+        when(groupConfig.getGroup()).thenReturn(groupName);
+        return groupConfig;
+    }
+
+    private Collection<String> changed(Item item) {
+        queued.clear();
+        manager.stateChanged(item, OnOffType.OFF, OnOffType.ON);
+        return new ArrayList<String>(queued);
+    }
+
+    private Collection<String> updated(Item item) {
+        queued.clear();
+        manager.stateUpdated(item, OnOffType.ON);
+        return new ArrayList<String>(queued);
+    }
+
+    private void assertQueued(Collection<String> actual, String... expected) {
+        assertEquals(expected.length, actual.size());
+        assertTrue(actual.containsAll(Arrays.asList(expected)));
+    }
+
+}
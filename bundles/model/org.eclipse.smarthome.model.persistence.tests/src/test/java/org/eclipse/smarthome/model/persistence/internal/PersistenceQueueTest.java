@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.persistence.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.persistence.BatchPersistenceService;
+import org.eclipse.smarthome.core.persistence.PersistenceEntry;
+import org.eclipse.smarthome.core.persistence.PersistenceService;
+import org.eclipse.smarthome.core.types.State;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class PersistenceQueueTest {
+
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    };
+
+    private NumberItem item;
+
+    @Before
+    public void setUp() {
+        item = new NumberItem("Number");
+        item.setState(new DecimalType(-1));
+    }
+
+    @Test
+    public void testBatchesKeepOrderAndReportedStates() {
+        TestBatchPersistenceService service = new TestBatchPersistenceService();
+        PersistenceQueue queue = new PersistenceQueue(service, executor, 1000, 100);
+        for (int i = 0; i < 250; i++) {
+            queue.add(new PersistenceEntry(item, null, new DecimalType(i), new Date()));
+        }
+        assertEquals(1, tasks.size());
+        assertEquals(250, queue.getDepth());
+
+        runTasks();
+        assertEquals(3, service.batches.size());
+        assertEquals(100, service.batches.get(0).size());
+        assertEquals(50, service.batches.get(2).size());
+        for (int i = 0; i < 250; i++) {
+            assertEquals(new DecimalType(i), service.batches.get(i / 100).get(i % 100).getState());
+        }
+        assertEquals(0, queue.getDepth());
+        assertEquals(250, queue.getMaxDepth());
+        assertEquals(250, queue.getStoredCount());
+        assertEquals(3, queue.getBatchCount());
+    }
+
+    @Test
+    public void testOldestEntriesAreDroppedWhenFull() {
+        TestBatchPersistenceService service = new TestBatchPersistenceService();
+        PersistenceQueue queue = new PersistenceQueue(service, executor, 10, 100);
+        for (int i = 0; i < 15; i++) {
+            queue.add(new PersistenceEntry(item, null, new DecimalType(i), new Date()));
+        }
+        assertEquals(10, queue.getDepth());
+        assertEquals(5, queue.getDroppedCount());
+
+        runTasks();
+        assertEquals(1, service.batches.size());
+        assertEquals(new DecimalType(5), service.batches.get(0).get(0).getState());
+        assertEquals(new DecimalType(14), service.batches.get(0).get(9).getState());
+    }
+
+    @Test
+    public void testCloseStoresRemainingEntriesOfSimpleServices() {
+        final List<String> names = new ArrayList<String>();
+        PersistenceService service = new PersistenceService() {
+            @Override
+            public String getName() {
+                return "simple";
+            }
+
+            @Override
+            public void store(Item item) {
+                store(item, null);
+            }
+
+            @Override
+            public void store(Item item, String alias) {
+                names.add(alias != null ? alias : item.getName());
+            }
+        };
+        PersistenceQueue queue = new PersistenceQueue(service, executor, 10, 100);
+        queue.add(new PersistenceEntry(item, null, new DecimalType(1), new Date()));
+        queue.add(new PersistenceEntry(item, "Alias", new DecimalType(2), new Date()));
+
+        queue.close();
+        assertEquals(2, names.size());
+        assertEquals("Number", names.get(0));
+        assertEquals("Alias", names.get(1));
+        assertFalse(queue.add(new PersistenceEntry(item, null, new DecimalType(3), new Date())));
+
+        // the task which has been scheduled before closing must not do anything
+        runTasks();
+        assertEquals(2, names.size());
+        assertEquals(0, queue.getFailedCount());
+    }
+
+    @Test
+    public void testSimpleServicesGetTheReportedStates() {
+        final List<State> states = new ArrayList<State>();
+        PersistenceService service = new PersistenceService() {
+            @Override
+            public String getName() {
+                return "simple";
+            }
+
+            @Override
+            public void store(Item item) {
+                store(item, null);
+            }
+
+            @Override
+            public void store(Item item, String alias) {
+                states.add(item.getState());
+                assertEquals(item.getState(), item.getStateAs(OnOffType.class));
+                assertEquals("Switch", item.getName());
+            }
+        };
+        SwitchItem switchItem = new SwitchItem("Switch");
+        PersistenceQueue queue = new PersistenceQueue(service, executor, 10, 100);
+        switchItem.setState(OnOffType.ON);
+        queue.add(new PersistenceEntry(switchItem, null, switchItem.getState(), new Date()));
+        switchItem.setState(OnOffType.OFF);
+        queue.add(new PersistenceEntry(switchItem, null, switchItem.getState(), new Date()));
+
+        runTasks();
+        assertEquals(2, states.size());
+        assertEquals(OnOffType.ON, states.get(0));
+        assertEquals(OnOffType.OFF, states.get(1));
+        assertEquals(2, queue.getStoredCount());
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static class TestBatchPersistenceService implements BatchPersistenceService {
+
+        private final List<List<PersistenceEntry>> batches = new ArrayList<List<PersistenceEntry>>();
+
+        @Override
+        public String getName() {
+            return "batch";
+        }
+
+        @Override
+        public void store(Item item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void store(Item item, String alias) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void store(Collection<PersistenceEntry> entries) {
+            batches.add(new ArrayList<PersistenceEntry>(entries));
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.persistence.extensions;
+
+import java.math.BigDecimal;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService;
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService.Aggregate;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * Computes all {@link Aggregate}s in a single pass over historic items, for persistence services which are not
+ * {@link AggregatingPersistenceService}s. The values are accumulated as primitives, only the historic items holding
+ * the minimum and the maximum are kept.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class Aggregation {
+
+    private final String name;
+
+    private HistoricItem first;
+    private HistoricItem last;
+    private HistoricItem min;
+    private HistoricItem max;
+    private HistoricItem lastNumeric;
+
+    private double minValue;
+    private double maxValue;
+    private double sum;
+    private long count;
+
+    /**
+     * @param name the name of the returned historic items
+     */
+    Aggregation(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates an aggregation of all given historic items.
+     *
+     * @param name the name of the returned historic items
+     * @param historicItems the historic items in ascending order
+     * @return the aggregation
+     */
+    static Aggregation of(String name, Iterable<HistoricItem> historicItems) {
+        Aggregation aggregation = new Aggregation(name);
+        for (HistoricItem historicItem : historicItems) {
+            aggregation.add(historicItem);
+        }
+        return aggregation;
+    }
+
+    void add(HistoricItem historicItem) {
+        if (first == null) {
+            first = historicItem;
+        }
+        last = historicItem;
+
+        State state = historicItem.getState();
+        if (state instanceof DecimalType) {
+            double value = ((DecimalType) state).doubleValue();
+            if (min == null || value < minValue) {
+                min = historicItem;
+                minValue = value;
+            }
+            if (max == null || value > maxValue) {
+                max = historicItem;
+                maxValue = value;
+            }
+            sum += value;
+            count++;
+            lastNumeric = historicItem;
+        }
+    }
+
+    /**
+     * @param aggregate the aggregate to return
+     * @return the aggregate as described by {@link AggregatingPersistenceService#aggregate} or null if there are no
+     *         states to aggregate
+     */
+    HistoricItem get(Aggregate aggregate) {
+        switch (aggregate) {
+            case FIRST:
+                return first;
+            case LAST:
+                return last;
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            default:
+                break;
+        }
+        if (count == 0) {
+            return null;
+        }
+        BigDecimal value;
+        if (aggregate == Aggregate.COUNT) {
+            value = BigDecimal.valueOf(count);
+        } else if (aggregate == Aggregate.SUM) {
+            value = BigDecimal.valueOf(sum);
+        } else {
+            value = BigDecimal.valueOf(sum / count);
+        }
+        return new SimpleHistoricItem(name, new DecimalType(value), lastNumeric.getTimestamp());
+    }
+
+}
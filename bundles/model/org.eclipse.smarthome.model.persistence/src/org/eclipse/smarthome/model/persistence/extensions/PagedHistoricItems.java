@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.persistence.extensions;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
+
+/**
+ * Runs a query page by page while it is iterated, so that a long history is never held in memory at once and an
+ * iteration which stops early only queries the first pages.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class PagedHistoricItems implements Iterable<HistoricItem> {
+
+    static final int PAGE_SIZE = 1000;
+
+    /** the number of pages which can be queried before the index of the first entry of a page overflows */
+    static final int MAX_PAGES = Integer.MAX_VALUE / PAGE_SIZE;
+
+    private final QueryablePersistenceService service;
+    private final FilterCriteria filter;
+
+    /**
+     * @param service the service to query
+     * @param filter the filter, its page number and page size are overwritten
+     */
+    PagedHistoricItems(QueryablePersistenceService service, FilterCriteria filter) {
+        this.service = service;
+        this.filter = filter;
+    }
+
+    @Override
+    public Iterator<HistoricItem> iterator() {
+        return new Iterator<HistoricItem>() {
+
+            private int pageNumber = 0;
+            private int pageCount = 0;
+            private boolean lastPage = false;
+            private Iterator<HistoricItem> page = null;
+            private HistoricItem first = null;
+            private HistoricItem next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && (page == null || !page.hasNext())) {
+                    // a page with less entries is the last one, a page with more entries means that the service
+                    // does not support paging and has returned all entries at once
+                    if (lastPage || (page != null && pageCount != PAGE_SIZE) || pageNumber == MAX_PAGES) {
+                        lastPage = true;
+                        return false;
+                    }
+                    filter.setPageSize(PAGE_SIZE);
+                    filter.setPageNumber(pageNumber++);
+                    page = service.query(filter).iterator();
+                    pageCount = 0;
+                    if (page.hasNext()) {
+                        next = page.next();
+                        // a service which does not support paging returns the first page again
+                        if (first != null && isSame(first, next)) {
+                            next = null;
+                            lastPage = true;
+                            return false;
+                        }
+                        first = next;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public HistoricItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                pageCount++;
+                if (next != null) {
+                    HistoricItem item = next;
+                    next = null;
+                    return item;
+                }
+                return page.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static boolean isSame(HistoricItem item1, HistoricItem item2) {
+        return item1.getTimestamp().equals(item2.getTimestamp()) && item1.getName().equals(item2.getName())
+                && item1.getState().equals(item2.getState());
+    }
+
+}
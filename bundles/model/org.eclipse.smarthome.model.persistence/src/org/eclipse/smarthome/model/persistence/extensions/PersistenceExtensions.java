@@ -9,7 +9,6 @@ package org.eclipse.smarthome.model.persistence.extensions;
 
 import java.util.Calendar;
 import java.util.Collections;
-import java.util.Date;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -17,6 +16,8 @@ import java.util.Map;
 
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService;
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService.Aggregate;
 import org.eclipse.smarthome.core.persistence.FilterCriteria;
 import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
 import org.eclipse.smarthome.core.persistence.HistoricItem;
@@ -37,6 +38,7 @@ import org.slf4j.LoggerFactory;
  * @author Kai Kreuzer - Initial contribution and API
  * @author Chris Jackson
  * @author Gaël L'hopital
+ * @author Markus Mazurczak - Aggregates computed by the persistence service
  *
  */
 public class PersistenceExtensions implements ManagedService {
@@ -204,6 +206,10 @@ public class PersistenceExtensions implements ManagedService {
      * @return true, if item state was updated
      */
     static public Boolean updatedSince(Item item, AbstractInstant timestamp, String serviceName) {
+        PersistenceService service = services.get(serviceName);
+        if (service instanceof AggregatingPersistenceService) {
+            return aggregateSince(item, timestamp, serviceName, Aggregate.FIRST)[0] != null;
+        }
         Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
         if (result.iterator().hasNext()) {
             return true;
@@ -240,41 +246,12 @@ public class PersistenceExtensions implements ManagedService {
      * @return a historic item with the maximum state value since the given point in time
      */
     static public HistoricItem maximumSince(final Item item, AbstractInstant timestamp, String serviceName) {
-        Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-        Iterator<HistoricItem> it = result.iterator();
-        HistoricItem maximumHistoricItem = null;
-        DecimalType maximum = (DecimalType) item.getStateAs(DecimalType.class);
-        while (it.hasNext()) {
-            HistoricItem historicItem = it.next();
-            State state = historicItem.getState();
-            if (state instanceof DecimalType) {
-                DecimalType value = (DecimalType) state;
-                if (maximum == null || value.compareTo(maximum) > 0) {
-                    maximum = value;
-                    maximumHistoricItem = historicItem;
-                }
-            }
-        }
-        if (maximumHistoricItem == null && maximum != null) {
+        HistoricItem maximumHistoricItem = aggregateSince(item, timestamp, serviceName, Aggregate.MAX)[0];
+        DecimalType current = (DecimalType) item.getStateAs(DecimalType.class);
+        if (current != null && (maximumHistoricItem == null
+                || ((DecimalType) maximumHistoricItem.getState()).compareTo(current) <= 0)) {
             // the maximum state is the current one, so construct a historic item on the fly
-            final DecimalType state = maximum;
-            return new HistoricItem() {
-
-                @Override
-                public Date getTimestamp() {
-                    return Calendar.getInstance().getTime();
-                }
-
-                @Override
-                public State getState() {
-                    return state;
-                }
-
-                @Override
-                public String getName() {
-                    return item.getName();
-                }
-            };
+            return new SimpleHistoricItem(item.getName(), current, Calendar.getInstance().getTime());
         } else {
             return maximumHistoricItem;
         }
@@ -308,41 +285,12 @@ public class PersistenceExtensions implements ManagedService {
      * @return the historic item with the minimum state value since the given point in time
      */
     static public HistoricItem minimumSince(final Item item, AbstractInstant timestamp, String serviceName) {
-        Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-        Iterator<HistoricItem> it = result.iterator();
-        HistoricItem minimumHistoricItem = null;
-        DecimalType minimum = (DecimalType) item.getStateAs(DecimalType.class);
-        while (it.hasNext()) {
-            HistoricItem historicItem = it.next();
-            State state = historicItem.getState();
-            if (state instanceof DecimalType) {
-                DecimalType value = (DecimalType) state;
-                if (minimum == null || value.compareTo(minimum) < 0) {
-                    minimum = value;
-                    minimumHistoricItem = historicItem;
-                }
-            }
-        }
-        if (minimumHistoricItem == null && minimum != null) {
+        HistoricItem minimumHistoricItem = aggregateSince(item, timestamp, serviceName, Aggregate.MIN)[0];
+        DecimalType current = (DecimalType) item.getStateAs(DecimalType.class);
+        if (current != null && (minimumHistoricItem == null
+                || ((DecimalType) minimumHistoricItem.getState()).compareTo(current) >= 0)) {
             // the minimal state is the current one, so construct a historic item on the fly
-            final DecimalType state = minimum;
-            return new HistoricItem() {
-
-                @Override
-                public Date getTimestamp() {
-                    return Calendar.getInstance().getTime();
-                }
-
-                @Override
-                public State getState() {
-                    return state;
-                }
-
-                @Override
-                public String getName() {
-                    return item.getName();
-                }
-            };
+            return new SimpleHistoricItem(item.getName(), current, Calendar.getInstance().getTime());
         } else {
             return minimumHistoricItem;
         }
@@ -374,8 +322,7 @@ public class PersistenceExtensions implements ManagedService {
      * @return the average state value since the given point in time
      */
     static public DecimalType averageSince(Item item, AbstractInstant timestamp, String serviceName) {
-        Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-        Iterator<HistoricItem> it = result.iterator();
+        HistoricItem[] aggregates = aggregateSince(item, timestamp, serviceName, Aggregate.SUM, Aggregate.COUNT);
 
         DecimalType value = (DecimalType) item.getStateAs(DecimalType.class);
         if (value == null) {
@@ -383,20 +330,48 @@ public class PersistenceExtensions implements ManagedService {
         }
 
         double average = value.doubleValue();
-        int quantity = 1;
-        while (it.hasNext()) {
-            State state = it.next().getState();
-            if (state instanceof DecimalType) {
-                value = (DecimalType) state;
-                average += value.doubleValue();
-                quantity++;
-            }
+        long quantity = 1;
+        if (aggregates[0] != null && aggregates[1] != null) {
+            average += ((DecimalType) aggregates[0].getState()).doubleValue();
+            quantity += ((DecimalType) aggregates[1].getState()).longValue();
         }
         average /= quantity;
 
         return new DecimalType(average);
     }
 
+    /**
+     * Computes aggregates of the states of an item since a certain point in time. If the persistence service is an
+     * {@link AggregatingPersistenceService}, it computes them itself, otherwise all states are queried page by page
+     * and aggregated in a single pass.
+     *
+     * @param item the item to compute the aggregates for
+     * @param timestamp the point in time to start with
+     * @param serviceName the name of the {@link PersistenceService} to use
+     * @param aggregates the aggregates to compute
+     * @return the historic items with the results, the entries are null if there were no states to aggregate
+     */
+    static private HistoricItem[] aggregateSince(Item item, AbstractInstant timestamp, String serviceName,
+            Aggregate... aggregates) {
+        HistoricItem[] result = new HistoricItem[aggregates.length];
+        PersistenceService service = services.get(serviceName);
+        if (service instanceof AggregatingPersistenceService) {
+            AggregatingPersistenceService aService = (AggregatingPersistenceService) service;
+            FilterCriteria filter = new FilterCriteria();
+            filter.setBeginDate(timestamp.toDate());
+            filter.setItemName(item.getName());
+            for (int i = 0; i < aggregates.length; i++) {
+                result[i] = aService.aggregate(filter, aggregates[i]);
+            }
+        } else {
+            Aggregation aggregation = Aggregation.of(item.getName(), getAllStatesSince(item, timestamp, serviceName));
+            for (int i = 0; i < aggregates.length; i++) {
+                result[i] = aggregation.get(aggregates[i]);
+            }
+        }
+        return result;
+    }
+
     static private Iterable<HistoricItem> getAllStatesSince(Item item, AbstractInstant timestamp, String serviceName) {
         PersistenceService service = services.get(serviceName);
         if (service instanceof QueryablePersistenceService) {
@@ -405,7 +380,7 @@ public class PersistenceExtensions implements ManagedService {
             filter.setBeginDate(timestamp.toDate());
             filter.setItemName(item.getName());
             filter.setOrdering(Ordering.ASCENDING);
-            return qService.query(filter);
+            return new PagedHistoricItems(qService, filter);
         } else {
             LoggerFactory.getLogger(PersistenceExtensions.class).warn(
                     "There is no queryable persistence service registered with the name '{}'", serviceName);
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.persistence.extensions;
+
+import java.util.Date;
+
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * A {@link HistoricItem} for states which have not been returned by a persistence service as such, e.g. the current
+ * state of an item or a computed aggregate.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class SimpleHistoricItem implements HistoricItem {
+
+    private final String name;
+    private final State state;
+    private final Date timestamp;
+
+    SimpleHistoricItem(String name, State state, Date timestamp) {
+        this.name = name;
+        this.state = state;
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + " -> " + state + " (" + timestamp + ")";
+    }
+
+}
@@ -7,6 +7,8 @@
  */
 package org.eclipse.smarthome.model.persistence.internal;
 
+import java.util.Date;
+
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.persistence.PersistenceService;
@@ -25,6 +27,7 @@ import org.slf4j.LoggerFactory;
  * scans through the relevant configurations and persists the concerned items.
  *
  * @author Kai Kreuzer - Initial contribution and API
+ * @author Markus Mazurczak - Store the states through the persistence queue
  */
 public class PersistItemsJob implements Job {
 
@@ -49,11 +52,11 @@ public class PersistItemsJob implements Job {
                     PersistenceModel persistModel = (PersistenceModel) model;
                     for (PersistenceConfiguration config : persistModel.getConfigs()) {
                         if (hasStrategy(persistModel, config, strategyName)) {
+                            Date timestamp = new Date();
                             for (Item item : persistenceManager.getAllItems(config)) {
-                                long startTime = System.currentTimeMillis();
-                                persistenceService.store(item, config.getAlias());
-                                logger.trace("Storing item '{}' with persistence service '{}' took {}ms", new Object[] {
-                                        item.getName(), modelName, System.currentTimeMillis() - startTime });
+                                // like state events, the states are stored through the queue, which keeps their order
+                                persistenceManager.queueState(modelName, item, config.getAlias(), item.getState(),
+                                        timestamp);
                             }
                         }
                     }
@@ -11,8 +11,10 @@ import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -21,8 +23,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
@@ -32,6 +36,7 @@ import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
 import org.eclipse.smarthome.core.items.StateChangeListener;
 import org.eclipse.smarthome.core.persistence.FilterCriteria;
 import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.PersistenceEntry;
 import org.eclipse.smarthome.core.persistence.PersistenceService;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.core.types.State;
@@ -62,8 +67,19 @@ import org.slf4j.LoggerFactory;
 /**
  * This class is the central part of the persistence management and delegation. It reads the persistence
  * models, schedules timers and manages the invocation of {@link PersistenceService}s upon events.
+ * <p>
+ * Item states are not stored in the thread which reports them, but passed to a {@link PersistenceQueue} per service,
+ * so a slow service does not delay the item updates. To find the services for a state without evaluating the
+ * persistence configurations, the manager keeps a routing table with the {@link PersistenceRoute}s of every item,
+ * which is updated whenever a model or an item changes. The following configuration parameters are supported:
+ * <ul>
+ * <li>queueSize: the maximum number of states waiting to be stored per service (default 10000)</li>
+ * <li>batchSize: the maximum number of states passed to a service at once (default 100)</li>
+ * </ul>
  *
  * @author Kai Kreuzer - Initial contribution and API
+ * @author Markus Mazurczak - Store states asynchronously in batches
+ * @author Markus Mazurczak - Routing table for state events
  *
  */
 public class PersistenceManager implements ModelRepositoryChangeListener,
@@ -73,6 +89,12 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
 
     private static PersistenceManager instance;
 
+    private static final String THREAD_POOL_NAME = "persistence";
+
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
     // the scheduler used for timer events
     private Scheduler scheduler;
 
@@ -82,6 +104,16 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
 
     /* default */Map<String, PersistenceService> persistenceServices = new HashMap<String, PersistenceService>();
 
+    /** keeps the queue of states to store for each persistence service */
+    private final ConcurrentMap<String, PersistenceQueue> queues = new ConcurrentHashMap<String, PersistenceQueue>();
+
+    /** keeps the routes of every item which is persisted on change or update, modified only while synchronized */
+    private final ConcurrentMap<String, PersistenceRoute[]> routes = new ConcurrentHashMap<String, PersistenceRoute[]>();
+
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
     /** keeps a list of configurations for each persistence service */
     protected Map<String, List<PersistenceConfiguration>> persistenceConfigurations = new ConcurrentHashMap<String, List<PersistenceConfiguration>>();
 
@@ -102,7 +134,19 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
         return instance;
     }
 
-    public void activate() {
+    public void activate(Map<String, Object> config) {
+        modified(config);
+    }
+
+    public void modified(Map<String, Object> config) {
+        if (config != null) {
+            queueSize = getInt(config, "queueSize", DEFAULT_QUEUE_SIZE);
+            batchSize = getInt(config, "batchSize", DEFAULT_BATCH_SIZE);
+        }
+        for (PersistenceQueue queue : queues.values()) {
+            queue.setCapacity(queueSize);
+            queue.setBatchSize(batchSize);
+        }
     }
 
     public void deactivate() {
@@ -135,11 +179,17 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
     public void unsetItemRegistry(ItemRegistry itemRegistry) {
         itemRegistry.removeRegistryChangeListener(this);
         this.itemRegistry = null;
+        updateRoutes();
     }
 
     public void addPersistenceService(PersistenceService persistenceService) {
         logger.debug("Initializing {} persistence service.", persistenceService.getName());
         persistenceServices.put(persistenceService.getName(), persistenceService);
+        PersistenceQueue oldQueue = queues.put(persistenceService.getName(), new PersistenceQueue(persistenceService,
+                ThreadPoolManager.getScheduledPool(THREAD_POOL_NAME), queueSize, batchSize));
+        if (oldQueue != null) {
+            oldQueue.close();
+        }
         stopEventHandling(persistenceService.getName());
         startEventHandling(persistenceService.getName());
     }
@@ -147,6 +197,12 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
     public void removePersistenceService(PersistenceService persistenceService) {
         stopEventHandling(persistenceService.getName());
         persistenceServices.remove(persistenceService.getName());
+        PersistenceQueue queue = queues.get(persistenceService.getName());
+        if (queue != null && queue.getService() == persistenceService
+                && queues.remove(persistenceService.getName(), queue)) {
+            // store what is left, as the service is still available while it is unbound
+            queue.close();
+        }
     }
 
     @Override
@@ -174,8 +230,11 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
         if (modelRepository != null) {
             PersistenceModel model = (PersistenceModel) modelRepository.getModel(modelName + ".persist");
             if (model != null) {
-                persistenceConfigurations.put(modelName, model.getConfigs());
-                defaultStrategies.put(modelName, model.getDefaults());
+                synchronized (routes) {
+                    defaultStrategies.put(modelName, model.getDefaults());
+                    persistenceConfigurations.put(modelName, model.getConfigs());
+                }
+                updateRoutes(modelName);
                 for (PersistenceConfiguration config : model.getConfigs()) {
                     if (hasStrategy(modelName, config, GlobalStrategies.RESTORE)) {
                         for (Item item : getAllItems(config)) {
@@ -194,45 +253,136 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
      * @param modelName the name of the persistence model without file extension
      */
     private void stopEventHandling(String modelName) {
-        persistenceConfigurations.remove(modelName);
-        defaultStrategies.remove(modelName);
+        synchronized (routes) {
+            // the routes are computed from both maps, so they are changed together
+            persistenceConfigurations.remove(modelName);
+            defaultStrategies.remove(modelName);
+        }
+        updateRoutes(modelName);
         removeTimers(modelName);
     }
 
     @Override
     public void stateChanged(Item item, State oldState, State newState) {
-        handleStateEvent(item, true);
+        handleStateEvent(item, newState, true);
     }
 
     @Override
     public void stateUpdated(Item item, State state) {
-        handleStateEvent(item, false);
+        handleStateEvent(item, state, false);
     }
 
     /**
-     * Calls all persistence services which use change or update policy for the given item
+     * Queues the state for all persistence services which use change or update policy for the given item
      * 
      * @param item the item to persist
+     * @param state the reported state of the item
      * @param onlyChanges true, if it has the change strategy, false otherwise
      */
-    private void handleStateEvent(Item item, boolean onlyChanges) {
-        synchronized (persistenceConfigurations) {
+    private void handleStateEvent(Item item, State state, boolean onlyChanges) {
+        PersistenceRoute[] itemRoutes = routes.get(item.getName());
+        if (itemRoutes == null) {
+            return;
+        }
+        Date timestamp = new Date();
+        for (PersistenceRoute route : itemRoutes) {
+            if (onlyChanges ? route.isOnChange() : route.isOnUpdate()) {
+                queueState(route.getServiceName(), item, route.getAlias(), state, timestamp);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the routes of all items.
+     */
+    private void updateRoutes() {
+        synchronized (routes) {
+            if (itemRegistry == null) {
+                routes.clear();
+                return;
+            }
+            Set<String> itemNames = new HashSet<String>();
+            for (Item item : itemRegistry.getItems()) {
+                itemNames.add(item.getName());
+                List<PersistenceRoute> itemRoutes = new ArrayList<PersistenceRoute>();
+                for (Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
+                    addRoutes(itemRoutes, item, entry.getKey(), entry.getValue());
+                }
+                putRoutes(item.getName(), itemRoutes);
+            }
+            routes.keySet().retainAll(itemNames);
+        }
+    }
+
+    /**
+     * Recomputes the routes of an item. As the routes of the members of a group depend on the group, all routes are
+     * recomputed for group items.
+     *
+     * @param item the item which has been added or updated
+     */
+    private void updateRoutes(Item item) {
+        if (item instanceof GroupItem) {
+            updateRoutes();
+            return;
+        }
+        synchronized (routes) {
+            List<PersistenceRoute> itemRoutes = new ArrayList<PersistenceRoute>();
             for (Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
-                String serviceName = entry.getKey();
-                if (persistenceServices.containsKey(serviceName)) {
-                    for (PersistenceConfiguration config : entry.getValue()) {
-                        if (hasStrategy(serviceName, config, onlyChanges ? GlobalStrategies.CHANGE
-                                : GlobalStrategies.UPDATE)) {
-                            if (appliesToItem(config, item)) {
-                                persistenceServices.get(serviceName).store(item, config.getAlias());
-                            }
+                addRoutes(itemRoutes, item, entry.getKey(), entry.getValue());
+            }
+            putRoutes(item.getName(), itemRoutes);
+        }
+    }
+
+    /**
+     * Recomputes the routes of all items to a persistence service after its model has been added, changed or
+     * removed.
+     *
+     * @param serviceName the name of the persistence service
+     */
+    private void updateRoutes(String serviceName) {
+        synchronized (routes) {
+            if (itemRegistry == null) {
+                return;
+            }
+            List<PersistenceConfiguration> configs = persistenceConfigurations.get(serviceName);
+            for (Item item : itemRegistry.getItems()) {
+                List<PersistenceRoute> itemRoutes = new ArrayList<PersistenceRoute>();
+                PersistenceRoute[] currentRoutes = routes.get(item.getName());
+                if (currentRoutes != null) {
+                    for (PersistenceRoute route : currentRoutes) {
+                        if (!route.getServiceName().equals(serviceName)) {
+                            itemRoutes.add(route);
                         }
                     }
                 }
+                if (configs != null) {
+                    addRoutes(itemRoutes, item, serviceName, configs);
+                }
+                putRoutes(item.getName(), itemRoutes);
             }
         }
     }
 
+    private void addRoutes(List<PersistenceRoute> itemRoutes, Item item, String serviceName,
+            List<PersistenceConfiguration> configs) {
+        for (PersistenceConfiguration config : configs) {
+            boolean onChange = hasStrategy(serviceName, config, GlobalStrategies.CHANGE);
+            boolean onUpdate = hasStrategy(serviceName, config, GlobalStrategies.UPDATE);
+            if ((onChange || onUpdate) && appliesToItem(config, item)) {
+                itemRoutes.add(new PersistenceRoute(serviceName, config.getAlias(), onChange, onUpdate));
+            }
+        }
+    }
+
+    private void putRoutes(String itemName, List<PersistenceRoute> itemRoutes) {
+        if (itemRoutes.isEmpty()) {
+            routes.remove(itemName);
+        } else {
+            routes.put(itemName, itemRoutes.toArray(new PersistenceRoute[itemRoutes.size()]));
+        }
+    }
+
     /**
      * Checks if a given persistence configuration entry has a certain strategy for the given service
      * 
@@ -242,7 +392,9 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
      * @return true, if it has the given strategy
      */
     protected boolean hasStrategy(String serviceName, PersistenceConfiguration config, Strategy strategy) {
-        if (defaultStrategies.get(serviceName).contains(strategy) && config.getStrategies().isEmpty()) {
+        // the defaults are missing if the model has been removed meanwhile
+        List<Strategy> defaults = defaultStrategies.get(serviceName);
+        if (defaults != null && defaults.contains(strategy) && config.getStrategies().isEmpty()) {
             return true;
         } else {
             for (Strategy s : config.getStrategies()) {
@@ -336,13 +488,20 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
     @Override
     public void allItemsChanged(Collection<String> oldItemNames) {
         for (Item item : itemRegistry.getItems()) {
-            added(item);
+            initialize(item);
+            addStateChangeListener(item);
         }
+        updateRoutes();
     }
 
     @Override
     public void added(Item item) {
         initialize(item);
+        addStateChangeListener(item);
+        updateRoutes(item);
+    }
+
+    private void addStateChangeListener(Item item) {
         if (item instanceof GenericItem) {
             GenericItem genericItem = (GenericItem) item;
             genericItem.addStateChangeListener(this);
@@ -403,6 +562,13 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
             GenericItem genericItem = (GenericItem) item;
             genericItem.removeStateChangeListener(this);
         }
+        if (item instanceof GroupItem) {
+            updateRoutes();
+        } else {
+            synchronized (routes) {
+                routes.remove(item.getName());
+            }
+        }
     }
 
     /**
@@ -471,7 +637,39 @@ public class PersistenceManager implements ModelRepositoryChangeListener,
 
     @Override
     public void updated(Item oldItem, Item item) {
-        // not needed here
+        // the group memberships might have changed
+        if (oldItem instanceof GroupItem) {
+            updateRoutes();
+        } else {
+            updateRoutes(item);
+        }
+    }
+
+    /**
+     * Adds a state to the queue of a persistence service.
+     *
+     * @param serviceName the name of the persistence service
+     * @param item the item to persist
+     * @param alias the alias under which the state should be persisted or null
+     * @param state the state to persist
+     * @param timestamp the time the state has been reported
+     * @return false if the service is not available
+     */
+    /* default */boolean queueState(String serviceName, Item item, String alias, State state, Date timestamp) {
+        PersistenceQueue queue = queues.get(serviceName);
+        return queue != null && queue.add(new PersistenceEntry(item, alias, state, timestamp));
+    }
+
+    private int getInt(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.toString());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid value '{}' for '{}'.", value, key);
+            }
+        }
+        return defaultValue;
     }
 
 }
@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.persistence.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.smarthome.core.persistence.BatchPersistenceService;
+import org.eclipse.smarthome.core.persistence.PersistenceEntry;
+import org.eclipse.smarthome.core.persistence.PersistenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link PersistenceQueue} decouples a {@link PersistenceService} from the threads which report item states.
+ * States are collected in a bounded queue and passed to the service in batches by a single task at a time, so the
+ * order of the states is kept. {@link BatchPersistenceService}s receive each batch in one call, other services are
+ * called once per entry.
+ * <p>
+ * If the service cannot keep up and the queue is full, the oldest entries are dropped. The number of dropped and
+ * stored entries, the depth of the queue and the time the service needs to store a batch are recorded and can be read
+ * through the getters of this class.
+ * </p>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class PersistenceQueue implements Runnable {
+
+    /** the number of batches a task stores before it hands its thread back to the pool */
+    private static final int MAX_BATCHES_PER_RUN = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(PersistenceQueue.class);
+
+    private final PersistenceService service;
+
+    private final Executor executor;
+
+    private final Queue<PersistenceEntry> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Object storeLock = new Object();
+
+    private volatile int capacity;
+
+    private volatile int batchSize;
+
+    private volatile boolean closed;
+
+    private volatile boolean dropping;
+
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong storedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong storeTime = new AtomicLong();
+    private final AtomicLong maxStoreTime = new AtomicLong();
+
+    /**
+     * Creates a queue.
+     *
+     * @param service the service to pass the entries to
+     * @param executor the executor to run the store tasks on
+     * @param capacity the maximum number of entries to keep
+     * @param batchSize the maximum number of entries to store at once
+     */
+    public PersistenceQueue(PersistenceService service, Executor executor, int capacity, int batchSize) {
+        this.service = service;
+        this.executor = executor;
+        setCapacity(capacity);
+        setBatchSize(batchSize);
+    }
+
+    public PersistenceService getService() {
+        return service;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /**
+     * Adds an entry and schedules a task to store it, if none is running yet.
+     *
+     * @param entry the entry to store
+     * @return false if the queue has already been closed
+     */
+    public boolean add(PersistenceEntry entry) {
+        if (closed) {
+            return false;
+        }
+
+        queue.add(entry);
+        int current = depth.incrementAndGet();
+        while (current > capacity) {
+            PersistenceEntry oldest = queue.poll();
+            if (oldest == null) {
+                break;
+            }
+            current = depth.decrementAndGet();
+            droppedCount.incrementAndGet();
+            if (!dropping) {
+                dropping = true;
+                logger.warn("Persistence service '{}' cannot keep up, dropping the oldest states (queue size {}).",
+                        service.getName(), capacity);
+            }
+            logger.trace("Dropped state {} for persistence service '{}'.", oldest, service.getName());
+        }
+        updateMaxDepth(current);
+
+        schedule();
+        return true;
+    }
+
+    /**
+     * Closes the queue and stores the remaining entries in the calling thread.
+     */
+    public void close() {
+        closed = true;
+        synchronized (storeLock) {
+            while (storeBatch()) {
+            }
+        }
+        logger.debug("Closed persistence queue of '{}': {} states stored in {} batches (average {}ms, maximum {}ms), "
+                + "{} failed, {} dropped, maximum depth {}.", new Object[] { service.getName(), getStoredCount(),
+                getBatchCount(), getAverageStoreTime(), getMaxStoreTime(), getFailedCount(), getDroppedCount(),
+                getMaxDepth() });
+    }
+
+    @Override
+    public void run() {
+        try {
+            synchronized (storeLock) {
+                for (int i = 0; i < MAX_BATCHES_PER_RUN && !closed; i++) {
+                    if (!storeBatch()) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        // entries might have been added after the last batch has been taken, but before the flag has been reset
+        if (!closed && !queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * @return the number of entries which are waiting to be stored
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return the highest number of entries which have been waiting at the same time
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * @return the number of entries which have been dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of entries which have been passed to the service successfully
+     */
+    public long getStoredCount() {
+        return storedCount.get();
+    }
+
+    /**
+     * @return the number of entries for which the service has thrown an exception
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return the number of batches which have been passed to the service
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return the average time the service needed to store a batch in milliseconds
+     */
+    public long getAverageStoreTime() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(storeTime.get() / batches);
+    }
+
+    /**
+     * @return the maximum time the service needed to store a batch in milliseconds
+     */
+    public long getMaxStoreTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxStoreTime.get());
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                logger.warn("Could not schedule storing the states for persistence service '{}': {}",
+                        service.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Takes the next batch from the queue and passes it to the service. Must be called while holding the store lock.
+     *
+     * @return false if the queue was empty
+     */
+    private boolean storeBatch() {
+        int size = batchSize;
+        List<PersistenceEntry> batch = new ArrayList<>(Math.min(size, Math.max(depth.get(), 1)));
+        while (batch.size() < size) {
+            PersistenceEntry entry = queue.poll();
+            if (entry == null) {
+                break;
+            }
+            depth.decrementAndGet();
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) {
+            dropping = false;
+            return false;
+        }
+
+        long start = System.nanoTime();
+        if (service instanceof BatchPersistenceService) {
+            try {
+                ((BatchPersistenceService) service).store(batch);
+                storedCount.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                failedCount.addAndGet(batch.size());
+                logger.error("Persistence service '{}' failed to store {} states: {}", new Object[] {
+                        service.getName(), batch.size(), e.getMessage() }, e);
+            }
+        } else {
+            for (PersistenceEntry entry : batch) {
+                try {
+                    service.store(entry.getItem(), entry.getAlias());
+                    storedCount.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failedCount.incrementAndGet();
+                    logger.error("Persistence service '{}' failed to store the state of '{}': {}", new Object[] {
+                            service.getName(), entry.getName(), e.getMessage() }, e);
+                }
+            }
+        }
+        long duration = System.nanoTime() - start;
+
+        batchCount.incrementAndGet();
+        storeTime.addAndGet(duration);
+        long max = maxStoreTime.get();
+        while (duration > max && !maxStoreTime.compareAndSet(max, duration)) {
+            max = maxStoreTime.get();
+        }
+        logger.trace("Storing {} states with persistence service '{}' took {}ms", new Object[] { batch.size(),
+                service.getName(), TimeUnit.NANOSECONDS.toMillis(duration) });
+        return true;
+    }
+
+    private void updateMaxDepth(int current) {
+        int max = maxDepth.get();
+        while (current > max && !maxDepth.compareAndSet(max, current)) {
+            max = maxDepth.get();
+        }
+    }
+
+}
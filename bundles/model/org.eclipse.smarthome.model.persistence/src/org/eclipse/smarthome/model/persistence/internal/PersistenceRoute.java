@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.persistence.internal;
+
+/**
+ * A {@link PersistenceRoute} is an entry of the routing table of the {@link PersistenceManager}. It tells that the
+ * states of an item have to be passed to a persistence service, because a persistence configuration of the service
+ * applies to the item and has the change or update strategy.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class PersistenceRoute {
+
+    private final String serviceName;
+    private final String alias;
+    private final boolean onChange;
+    private final boolean onUpdate;
+
+    public PersistenceRoute(String serviceName, String alias, boolean onChange, boolean onUpdate) {
+        this.serviceName = serviceName;
+        this.alias = alias;
+        this.onChange = onChange;
+        this.onUpdate = onUpdate;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return the alias of the persistence configuration or null if it does not have an alias
+     */
+    public String getAlias() {
+        return alias;
+    }
+
+    /**
+     * @return true, if the configuration has the change strategy
+     */
+    public boolean isOnChange() {
+        return onChange;
+    }
+
+    /**
+     * @return true, if the configuration has the update strategy
+     */
+    public boolean isOnUpdate() {
+        return onUpdate;
+    }
+
+    @Override
+    public String toString() {
+        return serviceName + (alias != null ? " as " + alias : "") + (onChange ? " on change" : "")
+                + (onUpdate ? " on update" : "");
+    }
+
+}
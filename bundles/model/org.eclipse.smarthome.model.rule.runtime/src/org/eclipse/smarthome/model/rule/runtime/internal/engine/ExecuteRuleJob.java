@@ -7,7 +7,10 @@
  */
 package org.eclipse.smarthome.model.rule.runtime.internal.engine;
 
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.smarthome.core.common.RuleProfiler;
 import org.eclipse.smarthome.model.core.ModelRepository;
 import org.eclipse.smarthome.model.rule.rules.Rule;
 import org.eclipse.smarthome.model.rule.rules.RuleModel;
@@ -29,6 +32,7 @@ import com.google.inject.Injector;
  * and simply executes it.
  *
  * @author Kai Kreuzer - Initial contribution and API
+ * @author Markus Mazurczak - Cached rule scripts, profiling
  */
 public class ExecuteRuleJob implements Job {
 
@@ -40,6 +44,9 @@ public class ExecuteRuleJob implements Job {
     @Inject
     private Injector injector;
 
+    @Inject
+    private RuleScriptCache scriptCache;
+
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
         String modelName = (String) context.getJobDetail().getJobDataMap().get(JOB_DATA_RULEMODEL);
@@ -54,12 +61,22 @@ public class ExecuteRuleJob implements Job {
                 RuleModel ruleModel = (RuleModel) model;
                 Rule rule = getRule(ruleModel, ruleName);
                 if (rule != null) {
-                    Script script = scriptEngine.newScriptFromXExpression(rule.getScript());
-                    logger.debug("Executing scheduled rule '{}'", rule.getName());
+                    String ruleId = RuleExecutor.getRuleId(modelName, ruleName);
+                    RuleProfiler.triggered(RuleEngineImpl.PROFILER_ENGINE, ruleId);
+                    long queueWait = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis()
+                            - context.getScheduledFireTime().getTime()));
+                    long start = System.nanoTime();
+                    boolean failed = true;
                     try {
+                        Script script = scriptCache.get(rule, scriptEngine);
+                        logger.debug("Executing scheduled rule '{}'", rule.getName());
                         script.execute(RuleContextHelper.getContext(rule, injector));
+                        failed = false;
                     } catch (ScriptExecutionException e) {
                         logger.error("Error during the execution of rule {}", rule.getName(), e.getCause());
+                    } finally {
+                        RuleProfiler.executed(RuleEngineImpl.PROFILER_ENGINE, ruleId, queueWait, 0,
+                                System.nanoTime() - start, failed);
                     }
                 } else {
                     logger.debug("Scheduled rule '{}' does not exist", ruleName);
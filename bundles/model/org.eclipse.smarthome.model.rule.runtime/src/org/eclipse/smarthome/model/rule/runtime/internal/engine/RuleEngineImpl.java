@@ -15,13 +15,16 @@ import static org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleTrigg
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.smarthome.core.common.RuleProfiler;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
@@ -39,10 +42,10 @@ import org.eclipse.smarthome.model.rule.jvmmodel.RulesJvmModelInferrer;
 import org.eclipse.smarthome.model.rule.rules.Rule;
 import org.eclipse.smarthome.model.rule.rules.RuleModel;
 import org.eclipse.smarthome.model.rule.runtime.RuleEngine;
+import org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleExecutor.ExecutionPolicy;
 import org.eclipse.smarthome.model.script.engine.Script;
 import org.eclipse.smarthome.model.script.engine.ScriptEngine;
 import org.eclipse.smarthome.model.script.engine.ScriptExecutionException;
-import org.eclipse.smarthome.model.script.engine.ScriptExecutionThread;
 import org.eclipse.xtext.naming.QualifiedName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,22 +60,38 @@ import com.google.inject.Injector;
  *
  * @author Kai Kreuzer - Initial contribution and API
  * @author Oliver Libutzki - Bugfixing
+ * @author Markus Mazurczak - Bounded rule executor with per-rule execution policies, cached rule scripts, profiling
  *
  */
 @SuppressWarnings("restriction")
 public class RuleEngineImpl extends AbstractItemEventSubscriber implements ItemRegistryChangeListener, StateChangeListener,
         ModelRepositoryChangeListener, RuleEngine {
 
+    /** the name of this rule engine in the {@link RuleProfiler} */
+    static final String PROFILER_ENGINE = "dsl";
+
+    private static final String CONFIG_THREADS = "threads";
+    private static final String CONFIG_QUEUE_SIZE = "queueSize";
+    private static final String CONFIG_POLICY = "policy";
+    private static final String CONFIG_POLICIES = "policies";
+
+    private static final int DEFAULT_THREADS = 5;
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+
     private final Logger logger = LoggerFactory.getLogger(RuleEngineImpl.class);
 
     protected final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
 
+    private RuleExecutor ruleExecutor;
+
     private ItemRegistry itemRegistry;
     private ModelRepository modelRepository;
     private ScriptEngine scriptEngine;
 
     private RuleTriggerManager triggerManager;
 
+    private RuleScriptCache scriptCache;
+
     private Injector injector;
     
     private ScheduledFuture<?> startupJob;
@@ -84,9 +103,13 @@ public class RuleEngineImpl extends AbstractItemEventSubscriber implements ItemR
         }
     };
 
-    public void activate() {
+    public void activate(Map<String, Object> config) {
+        ruleExecutor = new RuleExecutor(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+        modified(config);
+
         injector = RulesStandaloneSetup.getInjector();
         triggerManager = injector.getInstance(RuleTriggerManager.class);
+        scriptCache = injector.getInstance(RuleScriptCache.class);
 
         if (!isEnabled()) {
             logger.info("Rule engine is disabled.");
@@ -113,11 +136,42 @@ public class RuleEngineImpl extends AbstractItemEventSubscriber implements ItemR
         scheduleStartupRules();
     }
 
+    public void modified(Map<String, Object> config) {
+        int threads = getPositive(config, CONFIG_THREADS, DEFAULT_THREADS);
+        int queueSize = getPositive(config, CONFIG_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        ExecutionPolicy defaultPolicy = ExecutionPolicy.QUEUE;
+        Map<String, ExecutionPolicy> policies = new HashMap<>();
+        if (config != null) {
+            Object policy = config.get(CONFIG_POLICY);
+            if (policy != null) {
+                defaultPolicy = parsePolicy(policy.toString().trim(), ExecutionPolicy.QUEUE);
+            }
+            Object rulePolicies = config.get(CONFIG_POLICIES);
+            if (rulePolicies != null) {
+                // e.g. "Rule A=skip, demo.rules:Rule B=coalesce"
+                for (String entry : rulePolicies.toString().split(",")) {
+                    int index = entry.lastIndexOf('=');
+                    if (index > 0) {
+                        policies.put(entry.substring(0, index).trim(),
+                                parsePolicy(entry.substring(index + 1).trim(), defaultPolicy));
+                    } else if (!entry.trim().isEmpty()) {
+                        logger.warn("Ignoring the rule execution policy '{}', as it is not of the form 'rule=policy'.",
+                                entry.trim());
+                    }
+                }
+            }
+        }
+        ruleExecutor.configure(threads, queueSize, defaultPolicy, policies);
+    }
+
     public void deactivate() {
         // execute all scripts that were registered for system shutdown
         executeRules(triggerManager.getRules(SHUTDOWN));
         triggerManager.clearAll();
         triggerManager = null;
+        scriptCache.clear();
+        // the shutdown rules which are still waiting are executed before the workers terminate
+        ruleExecutor.shutdown();
     }
 
     public void setItemRegistry(ItemRegistry itemRegistry) {
@@ -233,10 +287,14 @@ public class RuleEngineImpl extends AbstractItemEventSubscriber implements ItemR
             if (isEnabled() && modelName.endsWith("rules")) {
                 RuleModel model = (RuleModel) modelRepository.getModel(modelName);
 
-                // remove the rules from the trigger sets
+                // the rules of the model have been replaced, so their prepared scripts are outdated
+                scriptCache.clear();
+
+                // remove the rules from the trigger sets and their queues from the executor
                 if (type == org.eclipse.smarthome.model.core.EventType.REMOVED
                         || type == org.eclipse.smarthome.model.core.EventType.MODIFIED) {
                     triggerManager.removeRuleModel(model);
+                    ruleExecutor.removeModel(modelName);
                 }
 
                 // add new and modified rules to the trigger sets
@@ -263,7 +321,7 @@ public class RuleEngineImpl extends AbstractItemEventSubscriber implements ItemR
 
             for (Rule rule : startupRules) {
                 try {
-                    Script script = scriptEngine.newScriptFromXExpression(rule.getScript());
+                    Script script = scriptCache.get(rule, scriptEngine);
                     logger.debug("Executing startup rule '{}'", rule.getName());
                     RuleEvaluationContext context = new RuleEvaluationContext();
                     context.setGlobalContext(RuleContextHelper.getContext(rule, injector));
@@ -285,29 +343,58 @@ public class RuleEngineImpl extends AbstractItemEventSubscriber implements ItemR
         }
     }
 
-    protected synchronized void executeRule(Rule rule) {
+    protected void executeRule(Rule rule) {
         executeRule(rule, new RuleEvaluationContext());
     }
 
-    protected synchronized void executeRule(Rule rule, RuleEvaluationContext context) {
-        Script script = scriptEngine.newScriptFromXExpression(rule.getScript());
+    protected void executeRule(final Rule rule, final RuleEvaluationContext context) {
+        final String modelName = getModelName(rule);
+        final String ruleName = rule.getName();
+        final String ruleId = RuleExecutor.getRuleId(modelName, ruleName);
+        final long triggerTime = System.nanoTime();
+        RuleProfiler.triggered(PROFILER_ENGINE, ruleId);
+        ruleExecutor.execute(modelName, ruleName, new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    Script script = scriptCache.get(rule, scriptEngine);
+
+                    logger.debug("Executing rule '{}'", ruleName);
 
-        logger.debug("Executing rule '{}'", rule.getName());
+                    context.setGlobalContext(RuleContextHelper.getContext(rule, injector));
 
-        context.setGlobalContext(RuleContextHelper.getContext(rule, injector));
+                    script.execute(context);
+                    failed = false;
+                } catch (ScriptExecutionException e) {
+                    String msg = e.getCause().getMessage();
+                    if (msg == null) {
+                        logger.error("Error during the execution of rule '{}'", ruleName, e.getCause());
+                    } else {
+                        logger.error("Error during the execution of rule '{}': {}", new Object[] { ruleName, msg });
+                    }
+                } finally {
+                    // DSL rules have no conditions, so all the time is spent in the actions
+                    RuleProfiler.executed(PROFILER_ENGINE, ruleId, start - triggerTime, 0, System.nanoTime() - start,
+                            failed);
+                }
+            }
+        });
+    }
 
-        ScriptExecutionThread thread = new ScriptExecutionThread(rule.getName(), script, context);
-        thread.start();
+    static String getModelName(Rule rule) {
+        return rule.eResource() != null ? rule.eResource().getURI().path() : null;
     }
 
-    protected synchronized void executeRules(Iterable<Rule> rules) {
+    protected void executeRules(Iterable<Rule> rules) {
         for (Rule rule : rules) {
             RuleEvaluationContext context = new RuleEvaluationContext();
             executeRule(rule, context);
         }
     }
 
-    protected synchronized void executeRules(Iterable<Rule> rules, Command command) {
+    protected void executeRules(Iterable<Rule> rules, Command command) {
         for (Rule rule : rules) {
             RuleEvaluationContext context = new RuleEvaluationContext();
             context.newValue(QualifiedName.create(RulesJvmModelInferrer.VAR_RECEIVED_COMMAND), command);
@@ -315,7 +402,7 @@ public class RuleEngineImpl extends AbstractItemEventSubscriber implements ItemR
         }
     }
 
-    protected synchronized void executeRules(Iterable<Rule> rules, State oldState) {
+    protected void executeRules(Iterable<Rule> rules, State oldState) {
         for (Rule rule : rules) {
             RuleEvaluationContext context = new RuleEvaluationContext();
             context.newValue(QualifiedName.create(RulesJvmModelInferrer.VAR_PREVIOUS_STATE), oldState);
@@ -323,6 +410,39 @@ public class RuleEngineImpl extends AbstractItemEventSubscriber implements ItemR
         }
     }
 
+    private ExecutionPolicy parsePolicy(String value, ExecutionPolicy defaultPolicy) {
+        switch (value.toLowerCase()) {
+            case "queue":
+                return ExecutionPolicy.QUEUE;
+            case "skip":
+                return ExecutionPolicy.SKIP_IF_RUNNING;
+            case "coalesce":
+                return ExecutionPolicy.COALESCE;
+            default:
+                logger.warn("Unknown rule execution policy '{}', using '{}' instead.", value,
+                        defaultPolicy.name().toLowerCase());
+                return defaultPolicy;
+        }
+    }
+
+    private int getPositive(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config != null ? config.get(key) : null;
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value.toString().trim());
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        logger.warn("Invalid value '{}' for the rule engine setting '{}', using {} instead.", new Object[] { value,
+                key, defaultValue });
+        return defaultValue;
+    }
+
     /**
      * we need to be able to deactivate the rule execution, otherwise the openHAB designer
      * would also execute the rules.
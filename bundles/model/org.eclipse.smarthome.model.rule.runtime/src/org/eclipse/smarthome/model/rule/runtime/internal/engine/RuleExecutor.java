@@ -0,0 +1,369 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.rule.runtime.internal.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link RuleExecutor} executes triggered rules on a bounded pool of worker threads. The executions of the same
+ * rule never run in parallel, they are kept in a queue per rule. As the names of the rules are only unique within a
+ * model, a rule is identified by the name of its model together with its name. What happens with an execution which
+ * is triggered while the rule is still running or waiting is decided by the {@link ExecutionPolicy} of the rule.
+ * <p>
+ * A rule occupies a worker for one execution at a time, so a rule with a long queue does not starve the others.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class RuleExecutor {
+
+    /**
+     * Decides what happens with an execution of a rule which is triggered while the rule is running or waiting.
+     */
+    public enum ExecutionPolicy {
+        /** the execution is appended to the queue of the rule (as long as the queue is not full) */
+        QUEUE,
+        /** the execution is skipped */
+        SKIP_IF_RUNNING,
+        /** the execution replaces the one which is waiting, so at most one execution waits */
+        COALESCE
+    }
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final Logger logger = LoggerFactory.getLogger(RuleExecutor.class);
+
+    private final ThreadPoolExecutor workers;
+
+    /** the queues of the rules by model and rule name, also used to guard the state of the queues */
+    private final Map<String, RuleQueue> queues = new HashMap<>();
+
+    private volatile int maxQueueSize;
+
+    private volatile ExecutionPolicy defaultPolicy = ExecutionPolicy.QUEUE;
+
+    private volatile Map<String, ExecutionPolicy> policies = Collections.emptyMap();
+
+    /**
+     * Creates an executor.
+     *
+     * @param threads the number of worker threads
+     * @param maxQueueSize the maximum number of executions which wait for the same rule
+     */
+    public RuleExecutor(int threads, int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+        this.workers = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "ESH-rules-" + threadNumber.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Changes the configuration of the executor. Executions which are already waiting are not affected.
+     *
+     * @param threads the number of worker threads
+     * @param maxQueueSize the maximum number of executions which wait for the same rule
+     * @param defaultPolicy the policy of all rules without an own policy
+     * @param policies the policies by rule name, or by model and rule name in the form <code>model:rule</code>
+     */
+    public void configure(int threads, int maxQueueSize, ExecutionPolicy defaultPolicy,
+            Map<String, ExecutionPolicy> policies) {
+        if (threads > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(threads);
+            workers.setCorePoolSize(threads);
+        } else {
+            workers.setCorePoolSize(threads);
+            workers.setMaximumPoolSize(threads);
+        }
+        this.maxQueueSize = maxQueueSize;
+        this.defaultPolicy = defaultPolicy;
+        this.policies = Collections.unmodifiableMap(new HashMap<>(policies));
+    }
+
+    /**
+     * Triggers an execution of a rule.
+     *
+     * @param modelName the name of the model of the rule
+     * @param ruleName the name of the rule
+     * @param execution the execution, which must not throw any exception
+     */
+    public void execute(String modelName, String ruleName, Runnable execution) {
+        String ruleId = getRuleId(modelName, ruleName);
+        RuleQueue queue;
+        synchronized (queues) {
+            queue = queues.get(ruleId);
+            if (queue == null) {
+                queue = new RuleQueue(ruleId, ruleName);
+                queues.put(ruleId, queue);
+            }
+            queue.removed = false;
+            queue.triggered++;
+            if (queue.active) {
+                switch (getPolicy(ruleId, ruleName)) {
+                    case SKIP_IF_RUNNING:
+                        queue.skipped++;
+                        return;
+                    case COALESCE:
+                        if (queue.pending.pollLast() != null) {
+                            queue.coalesced++;
+                        }
+                        break;
+                    default:
+                        if (queue.pending.size() >= maxQueueSize) {
+                            queue.dropped++;
+                            logger.warn("Dropping an execution of rule '{}', as {} executions are already waiting.",
+                                    ruleId, queue.pending.size());
+                            return;
+                        }
+                }
+                queue.pending.add(execution);
+                queue.maxDepth = Math.max(queue.maxDepth, queue.pending.size());
+                return;
+            }
+            queue.pending.add(execution);
+            queue.maxDepth = Math.max(queue.maxDepth, queue.pending.size());
+            queue.active = true;
+        }
+        submit(queue);
+    }
+
+    /**
+     * @return the current statistics of all rules which have been triggered so far
+     */
+    public List<RuleQueueStatistics> getStatistics() {
+        List<RuleQueueStatistics> statistics = new ArrayList<>();
+        synchronized (queues) {
+            for (RuleQueue queue : queues.values()) {
+                statistics.add(new RuleQueueStatistics(queue.ruleId, getPolicy(queue.ruleId, queue.ruleName),
+                        queue.pending.size(), queue.maxDepth, queue.triggered, queue.executed, queue.skipped,
+                        queue.coalesced, queue.dropped));
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Removes the queues and statistics of all rules of a model, as the model has been modified or removed. The queues
+     * of rules which are running or waiting are removed as soon as their last execution has finished.
+     *
+     * @param modelName the name of the model
+     */
+    public void removeModel(String modelName) {
+        String prefix = getRuleId(modelName, "");
+        synchronized (queues) {
+            Iterator<RuleQueue> iterator = queues.values().iterator();
+            while (iterator.hasNext()) {
+                RuleQueue queue = iterator.next();
+                if (queue.ruleId.startsWith(prefix)) {
+                    if (queue.active) {
+                        queue.removed = true;
+                    } else {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of rules which wait for a worker thread
+     */
+    public int getWaitingRules() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Shuts the executor down. Executions which are already waiting are still executed.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Returns the id which identifies a rule.
+     *
+     * @param modelName the name of the model of the rule, might be <code>null</code>
+     * @param ruleName the name of the rule
+     * @return the id of the rule in the form <code>model:rule</code>
+     */
+    public static String getRuleId(String modelName, String ruleName) {
+        return modelName != null ? modelName + ":" + ruleName : ruleName;
+    }
+
+    private ExecutionPolicy getPolicy(String ruleId, String ruleName) {
+        ExecutionPolicy policy = policies.get(ruleId);
+        if (policy == null) {
+            policy = policies.get(ruleName);
+        }
+        return policy != null ? policy : defaultPolicy;
+    }
+
+    private void submit(RuleQueue queue) {
+        try {
+            workers.execute(queue);
+        } catch (RejectedExecutionException e) {
+            // the executor has been shut down, so the waiting executions are run by the caller
+            queue.run();
+        }
+    }
+
+    /**
+     * The waiting executions of a rule. While a queue is active, it is either waiting for a worker or one of its
+     * executions is running.
+     */
+    private class RuleQueue implements Runnable {
+
+        final String ruleId;
+        final String ruleName;
+        final Deque<Runnable> pending = new ArrayDeque<>();
+        boolean active;
+        boolean removed;
+        int maxDepth;
+        long triggered;
+        long executed;
+        long skipped;
+        long coalesced;
+        long dropped;
+
+        RuleQueue(String ruleId, String ruleName) {
+            this.ruleId = ruleId;
+            this.ruleName = ruleName;
+        }
+
+        @Override
+        public void run() {
+            Runnable execution;
+            synchronized (queues) {
+                execution = pending.poll();
+            }
+            try {
+                if (execution != null) {
+                    execution.run();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error during the execution of rule '{}'", ruleId, e);
+            } finally {
+                boolean more;
+                synchronized (queues) {
+                    if (execution != null) {
+                        executed++;
+                    }
+                    more = !pending.isEmpty();
+                    active = more;
+                    if (!more && removed) {
+                        queues.remove(ruleId);
+                    }
+                }
+                if (more) {
+                    // the next execution queues up behind the other rules
+                    submit(this);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * A snapshot of the statistics of the queue of a rule.
+     */
+    public static class RuleQueueStatistics {
+
+        private final String ruleId;
+        private final ExecutionPolicy policy;
+        private final int queueDepth;
+        private final int maxQueueDepth;
+        private final long triggered;
+        private final long executed;
+        private final long skipped;
+        private final long coalesced;
+        private final long dropped;
+
+        RuleQueueStatistics(String ruleId, ExecutionPolicy policy, int queueDepth, int maxQueueDepth,
+                long triggered, long executed, long skipped, long coalesced, long dropped) {
+            this.ruleId = ruleId;
+            this.policy = policy;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.triggered = triggered;
+            this.executed = executed;
+            this.skipped = skipped;
+            this.coalesced = coalesced;
+            this.dropped = dropped;
+        }
+
+        /**
+         * @return the id of the rule in the form <code>model:rule</code>
+         */
+        public String getRuleId() {
+            return ruleId;
+        }
+
+        public ExecutionPolicy getPolicy() {
+            return policy;
+        }
+
+        /**
+         * @return the number of executions which are currently waiting
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * @return the maximum number of executions which have been waiting at the same time
+         */
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public long getTriggered() {
+            return triggered;
+        }
+
+        public long getExecuted() {
+            return executed;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+    }
+
+}
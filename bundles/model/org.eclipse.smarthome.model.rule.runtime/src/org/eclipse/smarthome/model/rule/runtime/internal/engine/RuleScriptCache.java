@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.rule.runtime.internal.engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.smarthome.model.rule.rules.Rule;
+import org.eclipse.smarthome.model.script.engine.Script;
+import org.eclipse.smarthome.model.script.engine.ScriptEngine;
+
+import com.google.inject.Singleton;
+
+/**
+ * The {@link RuleScriptCache} keeps the prepared script of each rule, so it is not created again from the rule's
+ * expression for every execution. The global evaluation context is not cached here, as the {@link RuleContextHelper}
+ * already keeps it on the rule model. The cache must be cleared whenever a rule model is added, modified or removed,
+ * as the rules are then replaced by new objects.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+@Singleton
+public class RuleScriptCache {
+
+    private final ConcurrentMap<Rule, PreparedScript> scripts = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the prepared script of a rule, which is created on the first call and whenever the script engine has
+     * changed.
+     *
+     * @param rule the rule
+     * @param scriptEngine the script engine to create the script with
+     * @return the script of the rule
+     */
+    public Script get(Rule rule, ScriptEngine scriptEngine) {
+        PreparedScript preparedScript = scripts.get(rule);
+        if (preparedScript == null || preparedScript.scriptEngine != scriptEngine) {
+            preparedScript = new PreparedScript(scriptEngine, scriptEngine.newScriptFromXExpression(rule.getScript()));
+            scripts.put(rule, preparedScript);
+        }
+        return preparedScript.script;
+    }
+
+    /**
+     * Removes all prepared scripts.
+     */
+    public void clear() {
+        scripts.clear();
+    }
+
+    private static class PreparedScript {
+
+        private final ScriptEngine scriptEngine;
+        private final Script script;
+
+        PreparedScript(ScriptEngine scriptEngine, Script script) {
+            this.scriptEngine = scriptEngine;
+            this.script = script;
+        }
+
+    }
+
+}
@@ -16,13 +16,18 @@ import static org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleTrigg
 import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.smarthome.core.items.Item;
@@ -52,7 +57,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
@@ -62,8 +66,12 @@ import com.google.inject.Injector;
  * This is a helper class which deals with everything about rule triggers.
  * It keeps lists of which rule must be executed for which trigger and takes
  * over the evaluation of states and trigger conditions for the rule engine.
+ * <p>
+ * The event triggers of an item are compiled into an {@link ItemTriggerIndex}, which holds the parsed states and
+ * commands of the triggers, so matching an event only takes a few lookups.
  *
  * @author Kai Kreuzer - Initial contribution and API
+ * @author Markus Mazurczak - Indexed trigger matching
  *
  */
 public class RuleTriggerManager {
@@ -87,6 +95,10 @@ public class RuleTriggerManager {
     private Set<Rule> systemShutdownTriggeredRules = new CopyOnWriteArraySet<>();
     private Set<Rule> timerEventTriggeredRules = new CopyOnWriteArraySet<>();
 
+    // the compiled event triggers by item name, which are only valid for the current index version
+    private final ConcurrentMap<String, ItemTriggerIndex> triggerIndexes = new ConcurrentHashMap<>();
+    private final AtomicInteger indexVersion = new AtomicInteger();
+
     // the scheduler used for timer events
     private Scheduler scheduler;
 
@@ -170,29 +182,7 @@ public class RuleTriggerManager {
         return internalGetRules(triggerType, item, null, command);
     }
 
-    private Iterable<Rule> getAllRules(TriggerTypes type, String itemName) {
-        switch (type) {
-            case STARTUP:
-                return systemStartupTriggeredRules;
-            case SHUTDOWN:
-                return systemShutdownTriggeredRules;
-            case UPDATE:
-                return updateEventTriggeredRules.get(itemName);
-            case CHANGE:
-                return changedEventTriggeredRules.get(itemName);
-            case COMMAND:
-                return commandEventTriggeredRules.get(itemName);
-            default:
-                return Sets.newHashSet();
-        }
-    }
-
     private Iterable<Rule> internalGetRules(TriggerTypes triggerType, Item item, Type oldType, Type newType) {
-        List<Rule> result = Lists.newArrayList();
-        Iterable<Rule> rules = getAllRules(triggerType, item.getName());
-        if (rules == null) {
-            rules = Lists.newArrayList();
-        }
         switch (triggerType) {
             case STARTUP:
                 return systemStartupTriggeredRules;
@@ -202,80 +192,73 @@ public class RuleTriggerManager {
                 return timerEventTriggeredRules;
             case UPDATE:
                 if (newType instanceof State) {
-                    State state = (State) newType;
-                    for (Rule rule : rules) {
-                        for (EventTrigger t : rule.getEventtrigger()) {
-                            if (t instanceof UpdateEventTrigger) {
-                                UpdateEventTrigger ut = (UpdateEventTrigger) t;
-                                if (ut.getItem().equals(item.getName())) {
-                                    if (ut.getState() != null) {
-                                        State triggerState = TypeParser.parseState(item.getAcceptedDataTypes(),
-                                                ut.getState());
-                                        if (!state.equals(triggerState)) {
-                                            continue;
-                                        }
-                                    }
-                                    result.add(rule);
-                                }
-                            }
-                        }
-                    }
+                    return getTriggerIndex(item).getUpdateRules((State) newType);
                 }
                 break;
             case CHANGE:
                 if (newType instanceof State && oldType instanceof State) {
-                    State newState = (State) newType;
-                    State oldState = (State) oldType;
-                    for (Rule rule : rules) {
-                        for (EventTrigger t : rule.getEventtrigger()) {
-                            if (t instanceof ChangedEventTrigger) {
-                                ChangedEventTrigger ct = (ChangedEventTrigger) t;
-                                if (ct.getItem().equals(item.getName())) {
-                                    if (ct.getOldState() != null) {
-                                        State triggerOldState = TypeParser.parseState(item.getAcceptedDataTypes(),
-                                                ct.getOldState());
-                                        if (!oldState.equals(triggerOldState)) {
-                                            continue;
-                                        }
-                                    }
-                                    if (ct.getNewState() != null) {
-                                        State triggerNewState = TypeParser.parseState(item.getAcceptedDataTypes(),
-                                                ct.getNewState());
-                                        if (!newState.equals(triggerNewState)) {
-                                            continue;
-                                        }
-                                    }
-                                    result.add(rule);
-                                }
-                            }
-                        }
-                    }
+                    return getTriggerIndex(item).getChangeRules((State) oldType, (State) newType);
                 }
                 break;
             case COMMAND:
                 if (newType instanceof Command) {
-                    final Command command = (Command) newType;
-                    for (Rule rule : rules) {
-                        for (final EventTrigger t : rule.getEventtrigger()) {
-                            if (t instanceof CommandEventTrigger) {
-                                final CommandEventTrigger ct = (CommandEventTrigger) t;
-                                if (ct.getItem().equals(item.getName())) {
-                                    if (ct.getCommand() != null) {
-                                        final Command triggerCommand = TypeParser.parseCommand(
-                                                item.getAcceptedCommandTypes(), ct.getCommand());
-                                        if (!command.equals(triggerCommand)) {
-                                            continue;
-                                        }
-                                    }
-                                    result.add(rule);
-                                }
-                            }
-                        }
-                    }
+                    return getTriggerIndex(item).getCommandRules((Command) newType);
                 }
                 break;
         }
-        return result;
+        return Collections.emptySet();
+    }
+
+    private ItemTriggerIndex getTriggerIndex(Item item) {
+        int version = indexVersion.get();
+        ItemTriggerIndex index = triggerIndexes.get(item.getName());
+        if (index == null || index.version != version || !index.isValidFor(item)) {
+            index = buildTriggerIndex(item, version);
+            triggerIndexes.put(item.getName(), index);
+        }
+        return index;
+    }
+
+    private synchronized ItemTriggerIndex buildTriggerIndex(Item item, int version) {
+        String itemName = item.getName();
+        ItemTriggerIndex index = new ItemTriggerIndex(version, item);
+        for (Rule rule : getRuleSet(updateEventTriggeredRules, itemName)) {
+            for (EventTrigger t : rule.getEventtrigger()) {
+                if (t instanceof UpdateEventTrigger && ((UpdateEventTrigger) t).getItem().equals(itemName)) {
+                    index.addUpdateTrigger(rule, ((UpdateEventTrigger) t).getState());
+                }
+            }
+        }
+        for (Rule rule : getRuleSet(changedEventTriggeredRules, itemName)) {
+            for (EventTrigger t : rule.getEventtrigger()) {
+                if (t instanceof ChangedEventTrigger && ((ChangedEventTrigger) t).getItem().equals(itemName)) {
+                    ChangedEventTrigger ct = (ChangedEventTrigger) t;
+                    index.addChangeTrigger(rule, ct.getOldState(), ct.getNewState());
+                }
+            }
+        }
+        for (Rule rule : getRuleSet(commandEventTriggeredRules, itemName)) {
+            for (EventTrigger t : rule.getEventtrigger()) {
+                if (t instanceof CommandEventTrigger && ((CommandEventTrigger) t).getItem().equals(itemName)) {
+                    index.addCommandTrigger(rule, ((CommandEventTrigger) t).getCommand());
+                }
+            }
+        }
+        return index;
+    }
+
+    private static Set<Rule> getRuleSet(Map<String, Set<Rule>> ruleSets, String itemName) {
+        Set<Rule> rules = ruleSets.get(itemName);
+        return rules != null ? rules : Collections.<Rule> emptySet();
+    }
+
+    /**
+     * Invalidates the compiled triggers of all items. Must be called after the rules have been changed and while still
+     * holding the lock, so that no index can be built from the old rules and be stored under the new version.
+     */
+    private void invalidateTriggerIndexes() {
+        indexVersion.incrementAndGet();
+        triggerIndexes.clear();
     }
 
     /**
@@ -283,7 +266,7 @@ public class RuleTriggerManager {
      * 
      * @param type the trigger type
      */
-    public void clear(TriggerTypes type) {
+    public synchronized void clear(TriggerTypes type) {
         switch (type) {
             case STARTUP:
                 systemStartupTriggeredRules.clear();
@@ -307,12 +290,13 @@ public class RuleTriggerManager {
                 timerEventTriggeredRules.clear();
                 break;
         }
+        invalidateTriggerIndexes();
     }
 
     /**
      * Removes all rules from all mapping tables.
      */
-    public void clearAll() {
+    public synchronized void clearAll() {
         clear(STARTUP);
         clear(SHUTDOWN);
         clear(UPDATE);
@@ -367,6 +351,7 @@ public class RuleTriggerManager {
                 }
             }
         }
+        invalidateTriggerIndexes();
     }
 
     /**
@@ -375,7 +360,7 @@ public class RuleTriggerManager {
      * @param type the trigger type for which the rule should be removed
      * @param rule the rule to add
      */
-    public void removeRule(TriggerTypes type, Rule rule) {
+    public synchronized void removeRule(TriggerTypes type, Rule rule) {
         switch (type) {
             case STARTUP:
                 systemStartupTriggeredRules.remove(rule);
@@ -397,6 +382,7 @@ public class RuleTriggerManager {
                 removeTimerRule(rule);
                 break;
         }
+        invalidateTriggerIndexes();
     }
 
     /**
@@ -404,7 +390,7 @@ public class RuleTriggerManager {
      * 
      * @param model the rule model
      */
-    public void addRuleModel(RuleModel model) {
+    public synchronized void addRuleModel(RuleModel model) {
         for (Rule rule : model.getRules()) {
             addRule(rule);
         }
@@ -415,13 +401,14 @@ public class RuleTriggerManager {
      * 
      * @param ruleModel the rule model
      */
-    public void removeRuleModel(RuleModel ruleModel) {
+    public synchronized void removeRuleModel(RuleModel ruleModel) {
         removeRules(UPDATE, updateEventTriggeredRules.values(), ruleModel);
         removeRules(CHANGE, changedEventTriggeredRules.values(), ruleModel);
         removeRules(COMMAND, commandEventTriggeredRules.values(), ruleModel);
         removeRules(STARTUP, Collections.singletonList(systemStartupTriggeredRules), ruleModel);
         removeRules(SHUTDOWN, Collections.singletonList(systemShutdownTriggeredRules), ruleModel);
         removeRules(TIMER, Collections.singletonList(timerEventTriggeredRules), ruleModel);
+        invalidateTriggerIndexes();
     }
 
     private void removeRules(TriggerTypes type, Collection<? extends Collection<Rule>> ruleSets, RuleModel model) {
@@ -525,4 +512,159 @@ public class RuleTriggerManager {
         }
         return jobIdentity;
     }
+
+    /**
+     * The event triggers of a single item with their parsed states and commands. The states and commands are parsed
+     * with the accepted types of the item, so the index has to be rebuilt if these change.
+     */
+    private static class ItemTriggerIndex {
+
+        final int version;
+        final List<Class<? extends State>> acceptedDataTypes;
+        final List<Class<? extends Command>> acceptedCommandTypes;
+
+        final Set<Rule> anyUpdate = new HashSet<>();
+        final ValueIndex<Set<Rule>> updates = new ValueIndex<>();
+        final Set<Rule> anyCommand = new HashSet<>();
+        final ValueIndex<Set<Rule>> commands = new ValueIndex<>();
+        final Set<Rule> anyChange = new HashSet<>();
+        final ValueIndex<Set<Rule>> changesFrom = new ValueIndex<>();
+        final ValueIndex<Set<Rule>> changesTo = new ValueIndex<>();
+        final ValueIndex<ValueIndex<Set<Rule>>> changesFromTo = new ValueIndex<>();
+
+        ItemTriggerIndex(int version, Item item) {
+            this.version = version;
+            this.acceptedDataTypes = item.getAcceptedDataTypes();
+            this.acceptedCommandTypes = item.getAcceptedCommandTypes();
+        }
+
+        boolean isValidFor(Item item) {
+            return acceptedDataTypes.equals(item.getAcceptedDataTypes())
+                    && acceptedCommandTypes.equals(item.getAcceptedCommandTypes());
+        }
+
+        void addUpdateTrigger(Rule rule, String state) {
+            if (state == null) {
+                anyUpdate.add(rule);
+            } else {
+                State triggerState = TypeParser.parseState(acceptedDataTypes, state);
+                if (triggerState != null) {
+                    getRules(updates, triggerState).add(rule);
+                }
+            }
+        }
+
+        void addCommandTrigger(Rule rule, String command) {
+            if (command == null) {
+                anyCommand.add(rule);
+            } else {
+                Command triggerCommand = TypeParser.parseCommand(acceptedCommandTypes, command);
+                if (triggerCommand != null) {
+                    getRules(commands, triggerCommand).add(rule);
+                }
+            }
+        }
+
+        void addChangeTrigger(Rule rule, String oldState, String newState) {
+            State triggerOldState = oldState != null ? TypeParser.parseState(acceptedDataTypes, oldState) : null;
+            State triggerNewState = newState != null ? TypeParser.parseState(acceptedDataTypes, newState) : null;
+            if ((oldState != null && triggerOldState == null) || (newState != null && triggerNewState == null)) {
+                // states which cannot be parsed never match
+                return;
+            }
+            if (triggerOldState == null && triggerNewState == null) {
+                anyChange.add(rule);
+            } else if (triggerNewState == null) {
+                getRules(changesFrom, triggerOldState).add(rule);
+            } else if (triggerOldState == null) {
+                getRules(changesTo, triggerNewState).add(rule);
+            } else {
+                ValueIndex<Set<Rule>> changes = changesFromTo.get(triggerOldState);
+                if (changes == null) {
+                    changes = new ValueIndex<>();
+                    changesFromTo.put(triggerOldState, changes);
+                }
+                getRules(changes, triggerNewState).add(rule);
+            }
+        }
+
+        Iterable<Rule> getUpdateRules(State state) {
+            return orEmpty(concat(nonEmpty(anyUpdate), updates.get(state)));
+        }
+
+        Iterable<Rule> getCommandRules(Command command) {
+            return orEmpty(concat(nonEmpty(anyCommand), commands.get(command)));
+        }
+
+        Iterable<Rule> getChangeRules(State oldState, State newState) {
+            ValueIndex<Set<Rule>> changes = changesFromTo.get(oldState);
+            return orEmpty(concat(concat(nonEmpty(anyChange), changesFrom.get(oldState)),
+                    concat(changesTo.get(newState), changes != null ? changes.get(newState) : null)));
+        }
+
+        private static Set<Rule> getRules(ValueIndex<Set<Rule>> index, Type value) {
+            Set<Rule> rules = index.get(value);
+            if (rules == null) {
+                rules = new HashSet<>();
+                index.put(value, rules);
+            }
+            return rules;
+        }
+
+        private static Set<Rule> nonEmpty(Set<Rule> rules) {
+            return rules.isEmpty() ? null : rules;
+        }
+
+        private static Iterable<Rule> orEmpty(Iterable<Rule> rules) {
+            return rules != null ? rules : Collections.<Rule> emptySet();
+        }
+
+        /**
+         * Concatenates two sets of rules, each of which may be null. A new iterable is only created if both are given.
+         */
+        private static Iterable<Rule> concat(Iterable<Rule> first, Iterable<Rule> second) {
+            if (first == null) {
+                return second;
+            } else if (second == null) {
+                return first;
+            }
+            return Iterables.concat(first, second);
+        }
+
+    }
+
+    /**
+     * Maps parsed states or commands to values. Enumeration types are looked up by hash, all other types are compared
+     * with {@link Object#equals(Object)}, as the hash codes of e.g. decimal types are not consistent with their
+     * equality.
+     */
+    private static class ValueIndex<V> {
+
+        private final Map<Type, V> enumValues = new HashMap<>();
+        private final List<Type> keys = new ArrayList<>(0);
+        private final List<V> values = new ArrayList<>(0);
+
+        V get(Type type) {
+            if (type instanceof Enum) {
+                return enumValues.get(type);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                if (type.equals(keys.get(i))) {
+                    return values.get(i);
+                }
+            }
+            return null;
+        }
+
+        void put(Type type, V value) {
+            if (type instanceof Enum) {
+                enumValues.put(type, value);
+            } else {
+                keys.add(type);
+                values.add(value);
+            }
+        }
+
+    }
+
 }
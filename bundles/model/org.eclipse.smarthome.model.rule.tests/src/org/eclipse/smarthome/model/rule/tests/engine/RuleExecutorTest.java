@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.rule.tests.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleExecutor;
+import org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleExecutor.ExecutionPolicy;
+import org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleExecutor.RuleQueueStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the execution policies and the queues of the {@link RuleExecutor}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class RuleExecutorTest {
+
+    private static final String MODEL = "test.rules";
+
+    private static final String RULE = "rule";
+
+    private RuleExecutor executor;
+
+    private List<String> executions = new CopyOnWriteArrayList<String>();
+
+    private CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        executor = new RuleExecutor(2, 2);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testQueuedExecutionsRunInOrder() throws InterruptedException {
+        CountDownLatch started = block(MODEL, RULE, "1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        record(MODEL, RULE, "2");
+        record(MODEL, RULE, "3");
+        assertEquals(Collections.singletonList("1"), executions);
+        assertStatistics(MODEL, RULE, 3, 0, 0, 0);
+
+        release.countDown();
+        awaitExecuted(MODEL, RULE, 3);
+        assertEquals(Arrays.asList("1", "2", "3"), executions);
+        assertEquals(2, getStatistics(MODEL, RULE).getMaxQueueDepth());
+    }
+
+    @Test
+    public void testRulesWithTheSameNameInOtherModelsDoNotWait() throws InterruptedException {
+        CountDownLatch started = block(MODEL, RULE, "1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute("other.rules", RULE, countDown(done, "2"));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("1", "2"), executions);
+        assertEquals(2, executor.getStatistics().size());
+    }
+
+    @Test
+    public void testSkipIfRunning() throws InterruptedException {
+        executor.configure(2, 2, ExecutionPolicy.QUEUE,
+                Collections.singletonMap(RULE, ExecutionPolicy.SKIP_IF_RUNNING));
+        CountDownLatch started = block(MODEL, RULE, "1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        record(MODEL, RULE, "2");
+        assertStatistics(MODEL, RULE, 2, 1, 0, 0);
+
+        release.countDown();
+        awaitExecuted(MODEL, RULE, 1);
+        assertEquals(Collections.singletonList("1"), executions);
+    }
+
+    @Test
+    public void testCoalesceKeepsTheLatestExecution() throws InterruptedException {
+        executor.configure(2, 2, ExecutionPolicy.QUEUE,
+                Collections.singletonMap(MODEL + ":" + RULE, ExecutionPolicy.COALESCE));
+        CountDownLatch started = block(MODEL, RULE, "1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        record(MODEL, RULE, "2");
+        record(MODEL, RULE, "3");
+        record(MODEL, RULE, "4");
+        assertStatistics(MODEL, RULE, 4, 0, 2, 0);
+        assertEquals(1, getStatistics(MODEL, RULE).getQueueDepth());
+
+        release.countDown();
+        awaitExecuted(MODEL, RULE, 2);
+        assertEquals(Arrays.asList("1", "4"), executions);
+    }
+
+    @Test
+    public void testPolicyOfAModelDoesNotApplyToOtherModels() throws InterruptedException {
+        executor.configure(2, 2, ExecutionPolicy.QUEUE,
+                Collections.singletonMap(MODEL + ":" + RULE, ExecutionPolicy.SKIP_IF_RUNNING));
+        record("other.rules", RULE, "1");
+        record(MODEL, RULE, "2");
+        awaitExecuted("other.rules", RULE, 1);
+        awaitExecuted(MODEL, RULE, 1);
+        assertEquals(ExecutionPolicy.QUEUE, getStatistics("other.rules", RULE).getPolicy());
+        assertEquals(ExecutionPolicy.SKIP_IF_RUNNING, getStatistics(MODEL, RULE).getPolicy());
+    }
+
+    @Test
+    public void testFullQueueDropsExecutions() throws InterruptedException {
+        CountDownLatch started = block(MODEL, RULE, "1");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        record(MODEL, RULE, "2");
+        record(MODEL, RULE, "3");
+        record(MODEL, RULE, "4");
+        RuleQueueStatistics statistics = getStatistics(MODEL, RULE);
+        assertEquals(2, statistics.getQueueDepth());
+        assertEquals(2, statistics.getMaxQueueDepth());
+        assertStatistics(MODEL, RULE, 4, 0, 0, 1);
+
+        release.countDown();
+        awaitExecuted(MODEL, RULE, 3);
+        assertEquals(Arrays.asList("1", "2", "3"), executions);
+    }
+
+    @Test
+    public void testRemovedModelReleasesItsQueues() throws InterruptedException {
+        record("other.rules", RULE, "1");
+        record(MODEL, "idle", "2");
+        awaitExecuted("other.rules", RULE, 1);
+        awaitExecuted(MODEL, "idle", 1);
+        CountDownLatch started = block(MODEL, RULE, "3");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        executor.removeModel(MODEL);
+        assertEquals(2, executor.getStatistics().size());
+        assertEquals(1, getStatistics(MODEL, RULE).getTriggered());
+
+        // the running rule keeps its queue until it has finished
+        release.countDown();
+        for (int i = 0; i < 500 && executor.getStatistics().size() > 1; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, executor.getStatistics().size());
+        assertEquals(1, getStatistics("other.rules", RULE).getExecuted());
+    }
+
+    private CountDownLatch block(String model, String rule, final String name) {
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute(model, rule, new Runnable() {
+            @Override
+            public void run() {
+                executions.add(name);
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return started;
+    }
+
+    private void record(String model, String rule, final String name) {
+        executor.execute(model, rule, new Runnable() {
+            @Override
+            public void run() {
+                executions.add(name);
+            }
+        });
+    }
+
+    private Runnable countDown(final CountDownLatch done, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                executions.add(name);
+                done.countDown();
+            }
+        };
+    }
+
+    private void awaitExecuted(String model, String rule, long executed) throws InterruptedException {
+        for (int i = 0; i < 500 && getStatistics(model, rule).getExecuted() < executed; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(executed, getStatistics(model, rule).getExecuted());
+    }
+
+    private RuleQueueStatistics getStatistics(String model, String rule) {
+        String ruleId = RuleExecutor.getRuleId(model, rule);
+        for (RuleQueueStatistics statistics : executor.getStatistics()) {
+            if (statistics.getRuleId().equals(ruleId)) {
+                return statistics;
+            }
+        }
+        fail("No statistics of rule " + ruleId);
+        return null;
+    }
+
+    private void assertStatistics(String model, String rule, long triggered, long skipped, long coalesced,
+            long dropped) {
+        RuleQueueStatistics statistics = getStatistics(model, rule);
+        assertEquals(triggered, statistics.getTriggered());
+        assertEquals(skipped, statistics.getSkipped());
+        assertEquals(coalesced, statistics.getCoalesced());
+        assertEquals(dropped, statistics.getDropped());
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.rule.tests.engine;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.model.core.EventType;
+import org.eclipse.smarthome.model.core.ModelRepository;
+import org.eclipse.smarthome.model.rule.RulesStandaloneSetup;
+import org.eclipse.smarthome.model.rule.rules.Rule;
+import org.eclipse.smarthome.model.rule.rules.RulesFactory;
+import org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleEngineImpl;
+import org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleScriptCache;
+import org.eclipse.smarthome.model.script.engine.Script;
+import org.eclipse.smarthome.model.script.engine.ScriptEngine;
+import org.eclipse.xtext.xbase.XbaseFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the {@link RuleScriptCache} prepares the script of a rule only once and that the cache is invalidated
+ * when the script engine changes, a rule model changes or the rule engine is deactivated.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class RuleScriptCacheTest {
+
+    private Rule rule;
+
+    private ScriptEngine scriptEngine;
+
+    private RuleEngineImpl ruleEngine;
+
+    @Before
+    public void setUp() {
+        rule = RulesFactory.eINSTANCE.createRule();
+        rule.setName("rule");
+        rule.setScript(XbaseFactory.eINSTANCE.createXBlockExpression());
+        scriptEngine = createScriptEngine();
+    }
+
+    @After
+    public void tearDown() {
+        if (ruleEngine != null) {
+            ruleEngine.deactivate();
+        }
+    }
+
+    @Test
+    public void testScriptIsPreparedOnce() {
+        RuleScriptCache cache = new RuleScriptCache();
+
+        Script script = cache.get(rule, scriptEngine);
+        assertSame(script, cache.get(rule, scriptEngine));
+        verify(scriptEngine, times(1)).newScriptFromXExpression(rule.getScript());
+    }
+
+    @Test
+    public void testScriptIsPreparedAgainForAnotherScriptEngine() {
+        RuleScriptCache cache = new RuleScriptCache();
+        ScriptEngine otherScriptEngine = createScriptEngine();
+
+        Script script = cache.get(rule, scriptEngine);
+        Script otherScript = cache.get(rule, otherScriptEngine);
+        assertNotSame(script, otherScript);
+        assertSame(otherScript, cache.get(rule, otherScriptEngine));
+        verify(scriptEngine, times(1)).newScriptFromXExpression(rule.getScript());
+        verify(otherScriptEngine, times(1)).newScriptFromXExpression(rule.getScript());
+    }
+
+    @Test
+    public void testClearRemovesTheScripts() {
+        RuleScriptCache cache = new RuleScriptCache();
+
+        Script script = cache.get(rule, scriptEngine);
+        cache.clear();
+        assertNotSame(script, cache.get(rule, scriptEngine));
+        verify(scriptEngine, times(2)).newScriptFromXExpression(rule.getScript());
+    }
+
+    @Test
+    public void testModelChangesClearTheCache() {
+        ModelRepository modelRepository = activateRuleEngine();
+        when(modelRepository.getModel("test.rules")).thenReturn(RulesFactory.eINSTANCE.createRuleModel());
+        RuleScriptCache cache = RulesStandaloneSetup.getInjector().getInstance(RuleScriptCache.class);
+
+        Script script = cache.get(rule, scriptEngine);
+        ruleEngine.modelChanged("other.items", EventType.MODIFIED);
+        assertSame(script, cache.get(rule, scriptEngine));
+
+        ruleEngine.modelChanged("test.rules", EventType.MODIFIED);
+        Script modifiedScript = cache.get(rule, scriptEngine);
+        assertNotSame(script, modifiedScript);
+
+        ruleEngine.modelChanged("test.rules", EventType.REMOVED);
+        assertNotSame(modifiedScript, cache.get(rule, scriptEngine));
+        verify(scriptEngine, times(3)).newScriptFromXExpression(rule.getScript());
+    }
+
+    @Test
+    public void testDeactivateClearsTheCache() {
+        activateRuleEngine();
+        RuleScriptCache cache = RulesStandaloneSetup.getInjector().getInstance(RuleScriptCache.class);
+
+        Script script = cache.get(rule, scriptEngine);
+        ruleEngine.deactivate();
+        ruleEngine = null;
+        assertNotSame(script, cache.get(rule, scriptEngine));
+        verify(scriptEngine, times(2)).newScriptFromXExpression(rule.getScript());
+    }
+
+    private ScriptEngine createScriptEngine() {
+        ScriptEngine scriptEngine = mock(ScriptEngine.class);
+        when(scriptEngine.newScriptFromXExpression(rule.getScript())).thenReturn(mock(Script.class),
+                mock(Script.class), mock(Script.class));
+        return scriptEngine;
+    }
+
+    private ModelRepository activateRuleEngine() {
+        ModelRepository modelRepository = mock(ModelRepository.class);
+        when(modelRepository.getAllModelNamesOfType("rules")).thenReturn(Collections.<String> emptyList());
+        ruleEngine = new RuleEngineImpl();
+        ruleEngine.setModelRepository(modelRepository);
+        ruleEngine.setItemRegistry(mock(ItemRegistry.class));
+        ruleEngine.setScriptEngine(scriptEngine);
+        ruleEngine.activate(null);
+        return modelRepository;
+    }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.model.rule.tests.engine;
+
+import static org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleTriggerManager.TriggerTypes.*;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.eclipse.smarthome.model.rule.rules.ChangedEventTrigger;
+import org.eclipse.smarthome.model.rule.rules.CommandEventTrigger;
+import org.eclipse.smarthome.model.rule.rules.EventTrigger;
+import org.eclipse.smarthome.model.rule.rules.Rule;
+import org.eclipse.smarthome.model.rule.rules.RuleModel;
+import org.eclipse.smarthome.model.rule.rules.RulesFactory;
+import org.eclipse.smarthome.model.rule.rules.UpdateEventTrigger;
+import org.eclipse.smarthome.model.rule.runtime.internal.engine.RuleTriggerManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+
+/**
+ * Tests the matching of item events with the event triggers of rules by the {@link RuleTriggerManager}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class RuleTriggerManagerTest {
+
+    private RuleTriggerManager triggerManager;
+
+    private SwitchItem switchItem = new SwitchItem("Switch");
+
+    private NumberItem numberItem = new NumberItem("Number");
+
+    @Before
+    public void setUp() {
+        triggerManager = new RuleTriggerManager(Guice.createInjector());
+    }
+
+    @Test
+    public void testChangedTriggers() {
+        Rule any = createRule("any", changed("Switch", null, null));
+        Rule toOn = createRule("to ON", changed("Switch", null, "ON"));
+        Rule fromOn = createRule("from ON", changed("Switch", "ON", null));
+        Rule fromOffToOn = createRule("from OFF to ON", changed("Switch", "OFF", "ON"));
+        Rule other = createRule("other", changed("Number", null, null));
+        addRules(any, toOn, fromOn, fromOffToOn, other);
+
+        assertRules(triggerManager.getRules(CHANGE, switchItem, OnOffType.OFF, OnOffType.ON), any, toOn, fromOffToOn);
+        assertRules(triggerManager.getRules(CHANGE, switchItem, OnOffType.ON, OnOffType.OFF), any, fromOn);
+        assertRules(triggerManager.getRules(CHANGE, switchItem, UnDefType.NULL, OnOffType.ON), any, toOn);
+        assertRules(getUpdateRules(switchItem, OnOffType.ON));
+    }
+
+    @Test
+    public void testDecimalTriggersMatchEqualValues() {
+        Rule update = createRule("update", updated("Number", "1"));
+        Rule command = createRule("command", command("Number", "1.0"));
+        Rule change = createRule("change", changed("Number", "1", "2.50"));
+        addRules(update, command, change);
+
+        assertRules(getUpdateRules(numberItem, new DecimalType("1.0")), update);
+        assertRules(getUpdateRules(numberItem, new DecimalType("1.5")));
+        assertRules(getCommandRules(numberItem, new DecimalType(1)), command);
+        assertRules(triggerManager.getRules(CHANGE, numberItem, new DecimalType(1), new DecimalType("2.5")), change);
+        assertRules(triggerManager.getRules(CHANGE, numberItem, new DecimalType(2), new DecimalType("2.5")));
+    }
+
+    @Test
+    public void testUnparsableTriggersNeverMatch() {
+        Rule update = createRule("update", updated("Switch", "FOO"));
+        Rule command = createRule("command", command("Switch", "FOO"));
+        Rule change = createRule("change", changed("Switch", "FOO", null));
+        Rule anyUpdate = createRule("any update", updated("Switch", null));
+        addRules(update, command, change, anyUpdate);
+
+        assertRules(getUpdateRules(switchItem, OnOffType.ON), anyUpdate);
+        assertRules(getCommandRules(switchItem, OnOffType.ON));
+        assertRules(triggerManager.getRules(CHANGE, switchItem, OnOffType.OFF, OnOffType.ON));
+    }
+
+    @Test
+    public void testRemovedRulesDoNotMatch() {
+        Rule rule = createRule("rule", updated("Switch", null));
+        RuleModel model = RulesFactory.eINSTANCE.createRuleModel();
+        model.getRules().add(rule);
+        triggerManager.addRuleModel(model);
+        assertRules(getUpdateRules(switchItem, OnOffType.ON), rule);
+
+        triggerManager.removeRuleModel(model);
+        assertRules(getUpdateRules(switchItem, OnOffType.ON));
+
+        triggerManager.addRuleModel(model);
+        assertRules(getUpdateRules(switchItem, OnOffType.ON), rule);
+        triggerManager.clearAll();
+        assertRules(getUpdateRules(switchItem, OnOffType.ON));
+    }
+
+    private void addRules(Rule... rules) {
+        for (Rule rule : rules) {
+            triggerManager.addRule(rule);
+        }
+    }
+
+    private Iterable<Rule> getUpdateRules(Item item, State state) {
+        return triggerManager.getRules(UPDATE, item, state);
+    }
+
+    private Iterable<Rule> getCommandRules(Item item, Command command) {
+        return triggerManager.getRules(COMMAND, item, command);
+    }
+
+    private void assertRules(Iterable<Rule> actual, Rule... expected) {
+        HashSet<Rule> actualRules = new HashSet<Rule>();
+        for (Rule rule : actual) {
+            actualRules.add(rule);
+        }
+        assertEquals(new HashSet<Rule>(Arrays.asList(expected)), actualRules);
+    }
+
+    private Rule createRule(String name, EventTrigger trigger) {
+        Rule rule = RulesFactory.eINSTANCE.createRule();
+        rule.setName(name);
+        rule.getEventtrigger().add(trigger);
+        return rule;
+    }
+
+    private EventTrigger changed(String item, String oldState, String newState) {
+        ChangedEventTrigger trigger = RulesFactory.eINSTANCE.createChangedEventTrigger();
+        trigger.setItem(item);
+        trigger.setOldState(oldState);
+        trigger.setNewState(newState);
+        return trigger;
+    }
+
+    private EventTrigger updated(String item, String state) {
+        UpdateEventTrigger trigger = RulesFactory.eINSTANCE.createUpdateEventTrigger();
+        trigger.setItem(item);
+        trigger.setState(state);
+        return trigger;
+    }
+
+    private EventTrigger command(String item, String command) {
+        CommandEventTrigger trigger = RulesFactory.eINSTANCE.createCommandEventTrigger();
+        trigger.setItem(item);
+        trigger.setCommand(command);
+        return trigger;
+    }
+
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.memory
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import org.eclipse.smarthome.core.library.items.NumberItem
+import org.eclipse.smarthome.core.library.items.StringItem
+import org.eclipse.smarthome.core.library.types.DecimalType
+import org.eclipse.smarthome.core.library.types.OnOffType
+import org.eclipse.smarthome.core.library.types.OpenClosedType
+import org.eclipse.smarthome.core.library.types.StringType
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService.Aggregate
+import org.eclipse.smarthome.core.persistence.FilterCriteria
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Operator
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering
+import org.eclipse.smarthome.core.persistence.NumericValueVisitor
+import org.eclipse.smarthome.core.persistence.PersistenceEntry
+import org.eclipse.smarthome.core.types.UnDefType
+import org.eclipse.smarthome.persistence.memory.internal.ItemBuffer
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests for the {@link MemoryPersistenceService} and its {@link ItemBuffer}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class MemoryPersistenceServiceTest {
+
+	MemoryPersistenceService service
+
+	@Before
+	void setUp() {
+		service = new MemoryPersistenceService()
+		service.activate([:])
+	}
+
+	@Test
+	void 'assert that stored states can be queried in both orders'() {
+		def item = new NumberItem("temperature")
+		[1, 2, 3].each {
+			item.state = new DecimalType(it)
+			service.store(item)
+		}
+		item.state = UnDefType.NULL
+		service.store(item)
+
+		def descending = service.query(new FilterCriteria().setItemName("temperature")).collect { it.state }
+		assertThat descending, is([
+			new DecimalType(3),
+			new DecimalType(2),
+			new DecimalType(1)
+		])
+
+		def ascending = service.query(new FilterCriteria().setItemName("temperature").setOrdering(Ordering.ASCENDING))
+		assertThat ascending.collect { it.state }, is([
+			new DecimalType(1),
+			new DecimalType(2),
+			new DecimalType(3)
+		])
+		assertThat ascending[0].name, is("temperature")
+		assertThat service.query(new FilterCriteria().setItemName("unknown")).iterator().hasNext(), is(false)
+	}
+
+	@Test
+	void 'assert that batches are stored with the reported states and timestamps'() {
+		def item = new NumberItem("power")
+		item.state = new DecimalType(3)
+		def now = System.currentTimeMillis()
+		service.store([
+			new PersistenceEntry(item, null, new DecimalType(1), new Date(now - 2000)),
+			new PersistenceEntry(item, "alias", new DecimalType(2), new Date(now - 1000))
+		])
+
+		def stored = service.query(new FilterCriteria().setItemName("power")).collect()
+		assertThat stored.size(), is(1)
+		assertThat stored[0].state, is(new DecimalType(1))
+		assertThat stored[0].timestamp.time, is(now - 2000)
+		assertThat service.query(new FilterCriteria().setItemName("alias")).collect { it.timestamp.time }, is([now - 1000])
+	}
+
+	@Test
+	void 'assert that paging and state filters are applied'() {
+		def item = new NumberItem("counter")
+		(1..10).each {
+			item.state = new DecimalType(it)
+			service.store(item)
+		}
+
+		def filter = new FilterCriteria().setItemName("counter").setPageSize(3).setPageNumber(1)
+		assertThat service.query(filter).collect { it.state.intValue() }, is([7, 6, 5])
+
+		filter = new FilterCriteria().setItemName("counter").setOperator(Operator.GT).setState(new DecimalType(8))
+		assertThat service.query(filter).collect { it.state.intValue() }, is([10, 9])
+
+		filter = new FilterCriteria().setItemName("counter").setOperator(Operator.EQ).setState(new DecimalType("4"))
+		assertThat service.query(filter).collect { it.state.intValue() }, is([4])
+	}
+
+	@Test
+	void 'assert that aliases and non-numeric states are supported'() {
+		def item = new StringItem("text")
+		item.state = new StringType("a")
+		service.store(item, "alias")
+		item.state = new StringType("b")
+		service.store(item, "alias")
+
+		def filter = new FilterCriteria().setItemName("alias").setOperator(Operator.NEQ).setState(new StringType("b"))
+		assertThat service.query(filter).collect { it.state }, is([new StringType("a")])
+		assertThat service.query(new FilterCriteria().setItemName("text")).iterator().hasNext(), is(false)
+	}
+
+	@Test
+	void 'assert that the buffer keeps the newest entries and finds date ranges'() {
+		def buffer = new ItemBuffer(5)
+		(1..8).each { buffer.add(it * 1000L, new DecimalType(it)) }
+		buffer.add(4000L, OnOffType.ON)
+
+		assertThat buffer.size(), is(5)
+		def all = buffer.query("item", 0, Long.MAX_VALUE, Operator.EQ, null, false, 0, Integer.MAX_VALUE)
+		assertThat all.collect { it.timestamp.time }, is([5000L, 6000L, 7000L, 8000L, 8000L])
+		assertThat all[4].state, is(OnOffType.ON)
+
+		def range = buffer.query("item", 6000, 7000, Operator.EQ, null, true, 0, Integer.MAX_VALUE)
+		assertThat range.collect { it.state }, is([new DecimalType(7), new DecimalType(6)])
+
+		buffer.removeOlderThan(7000)
+		assertThat buffer.size(), is(3)
+
+		buffer.setMaxCapacity(2)
+		all = buffer.query("item", 0, Long.MAX_VALUE, Operator.EQ, null, false, 0, Integer.MAX_VALUE)
+		assertThat all.collect { it.state }, is([new DecimalType(8), OnOffType.ON])
+	}
+
+	@Test
+	void 'assert that aggregates only regard numeric states of the range'() {
+		def buffer = new ItemBuffer(10)
+		[4, 8, 1, 5].eachWithIndex { value, i -> buffer.add((i + 1) * 1000L, new DecimalType(value)) }
+		buffer.add(5000L, new StringType("on"))
+
+		assertThat buffer.aggregate("item", 0, 4000, Aggregate.MIN).timestamp.time, is(3000L)
+		assertThat buffer.aggregate("item", 0, 4000, Aggregate.MAX).state, is(new DecimalType(8))
+		assertThat buffer.aggregate("item", 2000, 5000, Aggregate.SUM).state, is(new DecimalType(14))
+		assertThat buffer.aggregate("item", 2000, 5000, Aggregate.COUNT).state, is(new DecimalType(3))
+		assertThat buffer.aggregate("item", 0, 5000, Aggregate.AVG).state.doubleValue(), is(4.5d)
+		assertThat buffer.aggregate("item", 0, 5000, Aggregate.FIRST).state, is(new DecimalType(4))
+		assertThat buffer.aggregate("item", 0, 5000, Aggregate.LAST).state, is(new StringType("on"))
+		assertThat buffer.aggregate("item", 5000, 5000, Aggregate.AVG), is(nullValue())
+		assertThat buffer.aggregate("item", 6000, 7000, Aggregate.FIRST), is(nullValue())
+	}
+
+	@Test
+	void 'assert that switches and contacts count as 1 and 0'() {
+		def buffer = new ItemBuffer(10)
+		[OnOffType.ON, OnOffType.OFF, OnOffType.ON, OpenClosedType.OPEN, OpenClosedType.CLOSED].eachWithIndex { state, i ->
+			buffer.add((i + 1) * 1000L, state)
+		}
+
+		def all = buffer.query("item", 0, Long.MAX_VALUE, Operator.EQ, null, false, 0, Integer.MAX_VALUE)
+		assertThat all.collect { it.state }, is([OnOffType.ON, OnOffType.OFF, OnOffType.ON, OpenClosedType.OPEN,
+			OpenClosedType.CLOSED])
+		assertThat buffer.aggregate("item", 0, 3000, Aggregate.SUM).state, is(new DecimalType(2))
+		assertThat buffer.aggregate("item", 0, 5000, Aggregate.AVG).state.doubleValue(), is(0.6d)
+		assertThat buffer.aggregate("item", 0, 5000, Aggregate.MIN).state, is(OnOffType.OFF)
+
+		def on = buffer.query("item", 0, Long.MAX_VALUE, Operator.GT, new DecimalType(0), false, 0, Integer.MAX_VALUE)
+		assertThat on.collect { it.timestamp.time }, is([1000L, 3000L, 4000L])
+		def off = buffer.query("item", 0, Long.MAX_VALUE, Operator.EQ, OnOffType.OFF, false, 0, Integer.MAX_VALUE)
+		assertThat off.collect { it.timestamp.time }, is([2000L])
+
+		def values = []
+		buffer.stream(0, Long.MAX_VALUE, false, null, { long timestamp, double value -> values << value; true } as
+				NumericValueVisitor)
+		assertThat values, is([1d, 0d, 1d, 1d, 0d])
+	}
+
+	@Test
+	void 'assert that pages and streams can be resumed with the returned token'() {
+		def item = new NumberItem("temperature")
+		(1..5).each {
+			item.state = new DecimalType(it)
+			service.store(item)
+		}
+		def filter = new FilterCriteria().setItemName("temperature").setOrdering(Ordering.ASCENDING).setPageSize(2)
+
+		def states = []
+		def page = service.query(filter, null)
+		states += page.items.collect { it.state }
+		while (page.hasMore()) {
+			page = service.query(filter, page.resumeToken)
+			states += page.items.collect { it.state }
+		}
+		assertThat states, is((1..5).collect { new DecimalType(it) })
+
+		def values = []
+		def visitor = { long timestamp, double value -> values << value; values.size() < 3 } as NumericValueVisitor
+		def token = service.stream(filter, null, visitor)
+		assertThat values, is([1d, 2d, 3d])
+		visitor = { long timestamp, double value -> values << value; true } as NumericValueVisitor
+		assertThat service.stream(filter, token, visitor), is(nullValue())
+		assertThat values, is([1d, 2d, 3d, 4d, 5d])
+	}
+}
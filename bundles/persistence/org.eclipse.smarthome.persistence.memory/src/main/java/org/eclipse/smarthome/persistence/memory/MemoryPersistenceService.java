@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService;
+import org.eclipse.smarthome.core.persistence.BatchPersistenceService;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.HistoricItemPage;
+import org.eclipse.smarthome.core.persistence.NumericValueVisitor;
+import org.eclipse.smarthome.core.persistence.PersistenceEntry;
+import org.eclipse.smarthome.core.persistence.PersistenceQueries;
+import org.eclipse.smarthome.core.persistence.StreamingPersistenceService;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.eclipse.smarthome.persistence.memory.internal.ItemBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This is an {@link AggregatingPersistenceService} and {@link StreamingPersistenceService} which keeps the recent
+ * history of every item in memory (see {@link ItemBuffer}). It does not survive a restart, but answers queries about
+ * the last hours without any disk or network access, which makes it a good fit for rules and charts which only look
+ * at recent values. Switches and contacts count as 1 (on, open) and 0 in aggregates, numeric state filters and
+ * streams.
+ * <p>
+ * The following configuration parameters are supported:
+ * <ul>
+ * <li>maxEntries: the maximum number of entries kept per item (default 4096)</li>
+ * <li>retention: the number of minutes entries are kept (default 1440, i.e. one day)</li>
+ * </ul>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class MemoryPersistenceService implements AggregatingPersistenceService, StreamingPersistenceService,
+        BatchPersistenceService {
+
+    private final Logger logger = LoggerFactory.getLogger(MemoryPersistenceService.class);
+
+    private static final String SERVICE_NAME = "memory";
+
+    private static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final long DEFAULT_RETENTION = 24 * 60;
+
+    private static final Comparator<HistoricItem> TIMESTAMP_ORDER = new Comparator<HistoricItem>() {
+        @Override
+        public int compare(HistoricItem item1, HistoricItem item2) {
+            return item1.getTimestamp().compareTo(item2.getTimestamp());
+        }
+    };
+
+    private final ConcurrentMap<String, ItemBuffer> buffers = new ConcurrentHashMap<>();
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private long retention = DEFAULT_RETENTION;
+
+    public void activate(Map<String, Object> config) {
+        applyConfig(config);
+        logger.debug("Keeping up to {} entries per item for {} minutes in memory.", maxEntries, retention);
+    }
+
+    public void modified(Map<String, Object> config) {
+        applyConfig(config);
+        for (ItemBuffer buffer : buffers.values()) {
+            buffer.setMaxCapacity(maxEntries);
+        }
+    }
+
+    public void deactivate() {
+        buffers.clear();
+    }
+
+    @Override
+    public String getName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void store(Item item) {
+        store(item, null);
+    }
+
+    @Override
+    public void store(Item item, String alias) {
+        store(alias != null ? alias : item.getName(), item.getState(), System.currentTimeMillis());
+    }
+
+    @Override
+    public void store(Collection<PersistenceEntry> entries) {
+        for (PersistenceEntry entry : entries) {
+            store(entry.getName(), entry.getState(), entry.getTimestamp().getTime());
+        }
+    }
+
+    private void store(String name, State state, long timestamp) {
+        if (state == null || state instanceof UnDefType) {
+            return;
+        }
+
+        ItemBuffer buffer = buffers.get(name);
+        if (buffer == null) {
+            ItemBuffer newBuffer = new ItemBuffer(maxEntries);
+            buffer = buffers.putIfAbsent(name, newBuffer);
+            if (buffer == null) {
+                buffer = newBuffer;
+            }
+        }
+
+        buffer.removeOlderThan(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retention));
+        buffer.add(timestamp, state);
+    }
+
+    @Override
+    public Iterable<HistoricItem> query(FilterCriteria filter) {
+        long begin = getBegin(filter);
+        long end = filter.getEndDate() != null ? filter.getEndDate().getTime() : Long.MAX_VALUE;
+        boolean descending = filter.getOrdering() == Ordering.DESCENDING;
+        long skip = (long) filter.getPageNumber() * filter.getPageSize();
+        int limit = filter.getPageSize();
+
+        if (filter.getItemName() != null) {
+            ItemBuffer buffer = buffers.get(filter.getItemName());
+            if (buffer == null) {
+                return Collections.emptyList();
+            }
+            return buffer.query(filter.getItemName(), begin, end, filter.getOperator(), filter.getState(),
+                    descending, skip, limit);
+        }
+
+        // no item given: merge the results of all items and apply the paging afterwards
+        int maxResults = (int) Math.min(Integer.MAX_VALUE, skip + limit);
+        List<HistoricItem> result = new ArrayList<>();
+        for (Entry<String, ItemBuffer> entry : buffers.entrySet()) {
+            result.addAll(entry.getValue().query(entry.getKey(), begin, end, filter.getOperator(),
+                    filter.getState(), descending, 0, maxResults));
+        }
+        Collections.sort(result, descending ? Collections.reverseOrder(TIMESTAMP_ORDER) : TIMESTAMP_ORDER);
+        if (skip >= result.size()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(result.subList((int) skip, (int) Math.min(result.size(), skip + limit)));
+    }
+
+    @Override
+    public HistoricItem aggregate(FilterCriteria filter, Aggregate aggregate) {
+        ItemBuffer buffer = filter.getItemName() != null ? buffers.get(filter.getItemName()) : null;
+        if (buffer == null) {
+            return null;
+        }
+        long end = filter.getEndDate() != null ? filter.getEndDate().getTime() : Long.MAX_VALUE;
+        return buffer.aggregate(filter.getItemName(), getBegin(filter), end, aggregate);
+    }
+
+    @Override
+    public HistoricItemPage query(FilterCriteria filter, String resumeToken) {
+        ItemBuffer buffer = getBuffer(filter);
+        if (buffer == null) {
+            return new HistoricItemPage(Collections.<HistoricItem> emptyList(), null);
+        }
+        long end = filter.getEndDate() != null ? filter.getEndDate().getTime() : Long.MAX_VALUE;
+        return buffer.query(filter.getItemName(), getBegin(filter), end, filter.getOperator(), filter.getState(),
+                filter.getOrdering() == Ordering.DESCENDING, resumeToken,
+                Math.min(filter.getPageSize(), PersistenceQueries.DEFAULT_PAGE_SIZE));
+    }
+
+    @Override
+    public String stream(FilterCriteria filter, String resumeToken, NumericValueVisitor visitor) {
+        ItemBuffer buffer = getBuffer(filter);
+        if (buffer == null) {
+            return null;
+        }
+        long end = filter.getEndDate() != null ? filter.getEndDate().getTime() : Long.MAX_VALUE;
+        return buffer.stream(getBegin(filter), end, filter.getOrdering() == Ordering.DESCENDING, resumeToken, visitor);
+    }
+
+    private ItemBuffer getBuffer(FilterCriteria filter) {
+        if (filter.getItemName() == null) {
+            throw new IllegalArgumentException("The filter must contain an item name.");
+        }
+        return buffers.get(filter.getItemName());
+    }
+
+    private long getBegin(FilterCriteria filter) {
+        long begin = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retention);
+        if (filter.getBeginDate() != null) {
+            begin = Math.max(begin, filter.getBeginDate().getTime());
+        }
+        return begin;
+    }
+
+    private void applyConfig(Map<String, Object> config) {
+        if (config == null) {
+            return;
+        }
+
+        Object value = config.get("maxEntries");
+        if (value != null) {
+            try {
+                int entries = Integer.parseInt(value.toString());
+                if (entries > 0) {
+                    maxEntries = entries;
+                } else {
+                    logger.warn("Ignoring invalid maximum number of entries '{}'.", value);
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid maximum number of entries '{}'.", value);
+            }
+        }
+        value = config.get("retention");
+        if (value != null) {
+            try {
+                retention = Long.parseLong(value.toString());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid retention '{}'.", value);
+            }
+        }
+    }
+
+}
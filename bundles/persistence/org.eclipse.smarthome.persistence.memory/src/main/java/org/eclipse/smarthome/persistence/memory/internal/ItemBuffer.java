@@ -0,0 +1,482 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.memory.internal;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.OpenClosedType;
+import org.eclipse.smarthome.core.library.types.PercentType;
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService.Aggregate;
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Operator;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.HistoricItemPage;
+import org.eclipse.smarthome.core.persistence.NumericValueVisitor;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * The {@link ItemBuffer} is a ring buffer of the (timestamp, state) pairs of a single item. Timestamps and numeric
+ * values are kept in primitive arrays together with a small type tag, so that the common states (numbers,
+ * percentages, switches and contacts) are stored without any object per entry. All other states are kept as
+ * references in an additional array, which is only allocated when such a state is stored. Switches and contacts count
+ * as 1 (on, open) and 0, like in the other numeric persistence services, so they take part in aggregates, numeric state
+ * filters and streams.
+ * <p>
+ * The arrays start small and grow up to the maximum capacity. Once it is reached, the oldest entry is overwritten.
+ * Timestamps are kept in ascending order, so date ranges are found by binary search.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class ItemBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final byte KIND_DECIMAL = 0;
+    private static final byte KIND_PERCENT = 1;
+    private static final byte KIND_ONOFF = 2;
+    private static final byte KIND_OPENCLOSED = 3;
+    private static final byte KIND_OTHER = 4;
+
+    private int maxCapacity;
+
+    private long[] timestamps;
+    private double[] values;
+    private byte[] kinds;
+    private State[] others;
+
+    /** the physical index of the oldest entry */
+    private int head;
+
+    /** the number of entries */
+    private int size;
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param maxCapacity the maximum number of entries, must be positive
+     */
+    public ItemBuffer(int maxCapacity) {
+        if (maxCapacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        this.maxCapacity = maxCapacity;
+        allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+    }
+
+    /**
+     * Appends a state. If the timestamp is older than the newest entry (e.g. because the clock has been set back), the
+     * timestamp of the newest entry is used instead to keep the buffer ordered.
+     *
+     * @param timestamp the time in milliseconds
+     * @param state the state, must not be null
+     */
+    public synchronized void add(long timestamp, State state) {
+        if (size > 0) {
+            timestamp = Math.max(timestamp, timestamps[index(size - 1)]);
+        }
+
+        int capacity = timestamps.length;
+        int index;
+        if (size < capacity) {
+            index = index(size);
+            size++;
+        } else if (capacity < maxCapacity) {
+            resize(Math.min(maxCapacity, capacity * 2));
+            index = size;
+            size++;
+        } else {
+            index = head;
+            head = (head + 1) % capacity;
+        }
+
+        timestamps[index] = timestamp;
+        if (others != null) {
+            others[index] = null;
+        }
+        if (state.getClass() == DecimalType.class) {
+            kinds[index] = KIND_DECIMAL;
+            values[index] = ((DecimalType) state).doubleValue();
+        } else if (state.getClass() == PercentType.class) {
+            kinds[index] = KIND_PERCENT;
+            values[index] = ((PercentType) state).doubleValue();
+        } else if (state instanceof OnOffType) {
+            kinds[index] = KIND_ONOFF;
+            values[index] = state == OnOffType.ON ? 1 : 0;
+        } else if (state instanceof OpenClosedType) {
+            kinds[index] = KIND_OPENCLOSED;
+            values[index] = state == OpenClosedType.OPEN ? 1 : 0;
+        } else {
+            if (others == null) {
+                others = new State[timestamps.length];
+            }
+            kinds[index] = KIND_OTHER;
+            values[index] = state instanceof DecimalType ? ((DecimalType) state).doubleValue() : Double.NaN;
+            others[index] = state;
+        }
+    }
+
+    /**
+     * Removes all entries which are older than the given time.
+     *
+     * @param timestamp the time in milliseconds
+     */
+    public synchronized void removeOlderThan(long timestamp) {
+        removeFirst(lowerBound(timestamp));
+    }
+
+    /**
+     * Changes the maximum number of entries. If the buffer holds more entries, the oldest ones are dropped.
+     *
+     * @param maxCapacity the new maximum number of entries, must be positive
+     */
+    public synchronized void setMaxCapacity(int maxCapacity) {
+        if (maxCapacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        this.maxCapacity = maxCapacity;
+        if (timestamps.length > maxCapacity) {
+            if (size > maxCapacity) {
+                removeFirst(size - maxCapacity);
+            }
+            resize(maxCapacity);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Queries the buffer. Only the entries which are returned are turned into {@link HistoricItem}s.
+     *
+     * @param name the name of the returned historic items
+     * @param begin the minimum timestamp (inclusive)
+     * @param end the maximum timestamp (inclusive)
+     * @param operator the operator to compare the states with the given state
+     * @param state the state to compare the entries with or null to return all entries
+     * @param descending true to return the newest entries first
+     * @param skip the number of matching entries to skip
+     * @param limit the maximum number of entries to return
+     * @return the matching entries
+     */
+    public synchronized List<HistoricItem> query(String name, long begin, long end, Operator operator, State state,
+            boolean descending, long skip, int limit) {
+        List<HistoricItem> result = new ArrayList<>();
+        if (begin > end || limit <= 0) {
+            return result;
+        }
+
+        int from = lowerBound(begin);
+        int to = upperBound(end);
+        boolean numeric = state instanceof DecimalType;
+        double value = numeric ? ((DecimalType) state).doubleValue() : Double.NaN;
+
+        for (int i = 0; i < to - from && result.size() < limit; i++) {
+            int index = index(descending ? to - 1 - i : from + i);
+            if (state != null && !matches(index, operator, state, numeric, value)) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            result.add(new MemoryHistoricItem(name, getState(index), new Date(timestamps[index])));
+        }
+        return result;
+    }
+
+    /**
+     * Queries a page of the buffer. The resume token describes the last returned entry by its timestamp and its
+     * position among the entries with the same timestamp, so it stays valid while entries are added and removed.
+     *
+     * @param name the name of the returned historic items
+     * @param begin the minimum timestamp (inclusive)
+     * @param end the maximum timestamp (inclusive)
+     * @param operator the operator to compare the states with the given state
+     * @param state the state to compare the entries with or null to return all entries
+     * @param descending true to return the newest entries first
+     * @param resumeToken the token of the previous page or null to start with the first entry
+     * @param limit the maximum number of entries to return
+     * @return the page
+     * @throws IllegalArgumentException if the resume token is invalid
+     */
+    public synchronized HistoricItemPage query(String name, long begin, long end, Operator operator, State state,
+            boolean descending, String resumeToken, int limit) {
+        List<HistoricItem> result = new ArrayList<>();
+        int[] range = range(begin, end, descending, resumeToken);
+        int count = range[1] - range[0];
+        boolean numeric = state instanceof DecimalType;
+        double value = numeric ? ((DecimalType) state).doubleValue() : Double.NaN;
+
+        int i = 0;
+        int position = -1;
+        for (; i < count && result.size() < limit; i++) {
+            position = descending ? range[1] - 1 - i : range[0] + i;
+            int index = index(position);
+            if (state != null && !matches(index, operator, state, numeric, value)) {
+                continue;
+            }
+            result.add(new MemoryHistoricItem(name, getState(index), new Date(timestamps[index])));
+        }
+        return new HistoricItemPage(result, i < count ? token(position, descending) : null);
+    }
+
+    /**
+     * Passes the numeric values within a date range to a visitor.
+     *
+     * @param begin the minimum timestamp (inclusive)
+     * @param end the maximum timestamp (inclusive)
+     * @param descending true to visit the newest values first
+     * @param resumeToken the token returned by a previous call or null to start with the first value
+     * @param visitor the visitor
+     * @return the token to continue after the last visited value or null if all values have been visited
+     * @throws IllegalArgumentException if the resume token is invalid
+     */
+    public synchronized String stream(long begin, long end, boolean descending, String resumeToken,
+            NumericValueVisitor visitor) {
+        int[] range = range(begin, end, descending, resumeToken);
+        int count = range[1] - range[0];
+        for (int i = 0; i < count; i++) {
+            int position = descending ? range[1] - 1 - i : range[0] + i;
+            int index = index(position);
+            if (!Double.isNaN(values[index]) && !visitor.visit(timestamps[index], values[index])) {
+                return i + 1 < count ? token(position, descending) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the logical positions of the first entry and after the last entry which are left to visit
+     */
+    private int[] range(long begin, long end, boolean descending, String resumeToken) {
+        int from = lowerBound(begin);
+        int to = upperBound(end);
+        if (resumeToken != null) {
+            long[] token = parseToken(resumeToken);
+            if (descending) {
+                to = Math.min(to, Math.max(upperBound(token[0]) - (int) token[1], lowerBound(token[0])));
+            } else {
+                from = Math.max(from, Math.min(lowerBound(token[0]) + (int) token[1], upperBound(token[0])));
+            }
+        }
+        return new int[] { from, Math.max(from, to) };
+    }
+
+    /**
+     * @return the token for continuing after the entry at the given logical position
+     */
+    private String token(int position, boolean descending) {
+        long timestamp = timestamps[index(position)];
+        int skip = descending ? upperBound(timestamp) - position : position - lowerBound(timestamp) + 1;
+        return timestamp + ":" + skip;
+    }
+
+    private static long[] parseToken(String resumeToken) {
+        String[] parts = resumeToken.split(":");
+        try {
+            if (parts.length == 2) {
+                long[] token = { Long.parseLong(parts[0]), Long.parseLong(parts[1]) };
+                if (token[1] >= 0 && token[1] <= Integer.MAX_VALUE) {
+                    return token;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid resume token " + resumeToken);
+    }
+
+    /**
+     * Computes an aggregate of the entries within a date range without creating an object per entry.
+     *
+     * @param name the name of the returned historic item
+     * @param begin the minimum timestamp (inclusive)
+     * @param end the maximum timestamp (inclusive)
+     * @param aggregate the aggregate to compute
+     * @return the result or null if there are no entries to aggregate
+     */
+    public synchronized HistoricItem aggregate(String name, long begin, long end, Aggregate aggregate) {
+        int from = lowerBound(begin);
+        int to = upperBound(end);
+        if (begin > end || from >= to) {
+            return null;
+        }
+        if (aggregate == Aggregate.FIRST || aggregate == Aggregate.LAST) {
+            int index = index(aggregate == Aggregate.FIRST ? from : to - 1);
+            return new MemoryHistoricItem(name, getState(index), new Date(timestamps[index]));
+        }
+
+        // only numeric states, switches and contacts have a value, all others are stored as NaN
+        int found = -1;
+        int last = -1;
+        double sum = 0;
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            int index = index(i);
+            double value = values[index];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            if (found < 0 || (aggregate == Aggregate.MIN && value < values[found])
+                    || (aggregate == Aggregate.MAX && value > values[found])) {
+                found = index;
+            }
+            sum += value;
+            count++;
+            last = index;
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        BigDecimal result;
+        switch (aggregate) {
+            case MIN:
+            case MAX:
+                return new MemoryHistoricItem(name, getState(found), new Date(timestamps[found]));
+            case SUM:
+                result = BigDecimal.valueOf(sum);
+                break;
+            case COUNT:
+                result = BigDecimal.valueOf(count);
+                break;
+            default:
+                result = BigDecimal.valueOf(sum / count);
+                break;
+        }
+        return new MemoryHistoricItem(name, new DecimalType(result), new Date(timestamps[last]));
+    }
+
+    private boolean matches(int index, Operator operator, State state, boolean numeric, double value) {
+        if (numeric && !Double.isNaN(values[index])) {
+            double entry = values[index];
+            switch (operator) {
+                case EQ:
+                    return entry == value;
+                case NEQ:
+                    return entry != value;
+                case GT:
+                    return entry > value;
+                case LT:
+                    return entry < value;
+                case GTE:
+                    return entry >= value;
+                case LTE:
+                    return entry <= value;
+            }
+        }
+        switch (operator) {
+            case EQ:
+                return getState(index).equals(state);
+            case NEQ:
+                return !getState(index).equals(state);
+            default:
+                return false;
+        }
+    }
+
+    private State getState(int index) {
+        switch (kinds[index]) {
+            case KIND_DECIMAL:
+                return new DecimalType(BigDecimal.valueOf(values[index]));
+            case KIND_PERCENT:
+                return new PercentType(BigDecimal.valueOf(values[index]));
+            case KIND_ONOFF:
+                return values[index] != 0 ? OnOffType.ON : OnOffType.OFF;
+            case KIND_OPENCLOSED:
+                return values[index] != 0 ? OpenClosedType.OPEN : OpenClosedType.CLOSED;
+            default:
+                return others[index];
+        }
+    }
+
+    /**
+     * @return the logical position of the first entry with a timestamp not before the given one
+     */
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[index(mid)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the logical position of the first entry with a timestamp after the given one
+     */
+    private int upperBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[index(mid)] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void removeFirst(int count) {
+        if (others != null) {
+            for (int i = 0; i < count; i++) {
+                others[index(i)] = null;
+            }
+        }
+        head = index(count);
+        size -= count;
+    }
+
+    /**
+     * Maps a logical position (0 being the oldest entry) to the index in the arrays.
+     */
+    private int index(int position) {
+        int index = head + position;
+        return index < timestamps.length ? index : index - timestamps.length;
+    }
+
+    private void allocate(int capacity) {
+        timestamps = new long[capacity];
+        values = new double[capacity];
+        kinds = new byte[capacity];
+    }
+
+    private void resize(int capacity) {
+        long[] oldTimestamps = timestamps;
+        double[] oldValues = values;
+        byte[] oldKinds = kinds;
+        State[] oldOthers = others;
+        int oldHead = head;
+
+        allocate(capacity);
+        others = oldOthers == null ? null : new State[capacity];
+        for (int i = 0; i < size; i++) {
+            int oldIndex = (oldHead + i) % oldTimestamps.length;
+            timestamps[i] = oldTimestamps[oldIndex];
+            values[i] = oldValues[oldIndex];
+            kinds[i] = oldKinds[oldIndex];
+            if (others != null) {
+                others[i] = oldOthers[oldIndex];
+            }
+        }
+        head = 0;
+    }
+
+}
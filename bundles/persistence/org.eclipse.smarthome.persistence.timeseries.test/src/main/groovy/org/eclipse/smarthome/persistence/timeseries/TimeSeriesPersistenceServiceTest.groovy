@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import org.eclipse.smarthome.config.core.ConfigConstants
+import org.eclipse.smarthome.core.library.items.SwitchItem
+import org.eclipse.smarthome.core.library.types.OnOffType
+import org.eclipse.smarthome.core.persistence.FilterCriteria
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering
+import org.eclipse.smarthome.core.persistence.PersistenceEntry
+import org.eclipse.smarthome.persistence.timeseries.internal.TimeSeries
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Tests for the {@link TimeSeriesPersistenceService}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+class TimeSeriesPersistenceServiceTest {
+
+	File folder
+
+	String userData
+
+	TimeSeriesPersistenceService service
+
+	@Before
+	void setUp() {
+		folder = File.createTempFile('userdata', '')
+		folder.delete()
+		userData = System.getProperty(ConfigConstants.USERDATA_DIR_PROG_ARGUMENT)
+		System.setProperty(ConfigConstants.USERDATA_DIR_PROG_ARGUMENT, folder.absolutePath)
+		service = new TimeSeriesPersistenceService()
+		service.activate([maxPoints: 10])
+	}
+
+	@After
+	void tearDown() {
+		service.deactivate()
+		if (userData != null) {
+			System.setProperty(ConfigConstants.USERDATA_DIR_PROG_ARGUMENT, userData)
+		} else {
+			System.clearProperty(ConfigConstants.USERDATA_DIR_PROG_ARGUMENT)
+		}
+		folder.deleteDir()
+	}
+
+	@Test
+	void 'assert that queries return the stored states unless downsampling is allowed'() {
+		def item = new SwitchItem("switch")
+		long start = (long) (System.currentTimeMillis() / TimeSeries.DAY) * TimeSeries.DAY - 3 * TimeSeries.DAY
+		service.store((0..(2 * 24 * 60 - 1)).collect {
+			new PersistenceEntry(item, null, it % 2 == 0 ? OnOffType.ON : OnOffType.OFF,
+					new Date(start + it * TimeSeries.MINUTE))
+		})
+		service.rollup()
+
+		def filter = new FilterCriteria().setItemName("switch").setBeginDate(new Date(start))
+				.setOrdering(Ordering.ASCENDING)
+		def states = service.query(filter).collect { it.state }
+		assertThat states.size(), is(2 * 24 * 60)
+		assertThat states[0], is(OnOffType.ON)
+		assertThat states[1], is(OnOffType.OFF)
+
+		def downsampled = service.query(filter.setDownsampling(true)).collect { it.state }
+		// about 3.5 days with 10 points are answered from the hour tier
+		assertThat downsampled.size(), is(2 * 24)
+		assertThat downsampled[0].doubleValue(), is(0.5d)
+	}
+
+	@Test
+	void 'assert that the series of a previous run are rolled up and purged'() {
+		def item = new SwitchItem("switch")
+		long start = (long) (System.currentTimeMillis() / TimeSeries.DAY) * TimeSeries.DAY - 40 * TimeSeries.DAY
+		service.store([0, 39].collect {
+			new PersistenceEntry(item, null, OnOffType.ON, new Date(start + it * TimeSeries.DAY))
+		})
+		service.deactivate()
+
+		service = new TimeSeriesPersistenceService()
+		service.activate([maxPoints: 10])
+		service.rollup()
+
+		def series = new File(folder, "timeseries/switch")
+		assertThat new File(series, "raw/${start}.seg").exists(), is(false)
+		assertThat new File(series, "hour").list().findAll { it.endsWith(".seg") }.isEmpty(), is(false)
+		assertThat new File(series, "day/head.wal").exists(), is(true)
+	}
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import java.nio.ByteBuffer
+
+import org.eclipse.smarthome.core.library.types.DecimalType
+import org.eclipse.smarthome.core.library.types.OnOffType
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService.Aggregate
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Operator
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @author Markus Mazurczak - Initial contribution
+ */
+class TimeSeriesTest {
+
+	static final long START = 1420070400000L // 2015-01-01T00:00:00Z
+
+	File folder
+
+	SegmentCache cache = new SegmentCache(100000)
+
+	@Before
+	void setUp() {
+		folder = File.createTempFile('timeseries', '')
+		folder.delete()
+	}
+
+	@After
+	void tearDown() {
+		folder.deleteDir()
+	}
+
+	@Test
+	void 'assert columns are compressed and decoded losslessly'() {
+		long[] timestamps = (0..999).collect { START + it * 10000L + (it % 7 == 0 ? 3 : 0) + (it == 500 ? 5000000 : 0) }
+		double[] values = (0..999).collect { it % 100 == 0 ? Double.NaN : 20 + (it % 13) * 0.1 }
+
+		byte[] encodedTimestamps = ColumnCodec.encodeTimestamps(timestamps, 1000)
+		byte[] encodedValues = ColumnCodec.encodeValues(values, 1000)
+		assertThat encodedTimestamps.length < 1000, is(true)
+		assertThat encodedValues.length < 8000, is(true)
+
+		long[] decodedTimestamps = new long[1000]
+		double[] decodedValues = new double[1000]
+		ColumnCodec.decodeTimestamps(new BitReader(ByteBuffer.wrap(encodedTimestamps), 0), decodedTimestamps, 1000)
+		ColumnCodec.decodeValues(new BitReader(ByteBuffer.wrap(encodedValues), 0), decodedValues, 1000)
+		assertThat decodedTimestamps as List, is(timestamps as List)
+		1000.times {
+			assertThat Double.doubleToRawLongBits(decodedValues[it]), is(Double.doubleToRawLongBits(values[it]))
+		}
+	}
+
+	@Test
+	void 'assert points survive a restart and are sealed into segments'() {
+		def series = new TimeSeries(folder, cache)
+		(0..47).each { series.add(START + it * TimeSeries.HOUR, it, HistoricItemCollector.KIND_DECIMAL) }
+		series.close()
+
+		series = new TimeSeries(folder, cache)
+		assertThat new File(folder, "raw/${START}.seg").exists(), is(true)
+		assertThat collect(series, START, Long.MAX_VALUE, TimeSeries.RAW, false).size(), is(48)
+
+		def newest = collect(series, Long.MIN_VALUE, Long.MAX_VALUE, TimeSeries.RAW, true, 2)
+		assertThat newest.collect { it.state }, is([new DecimalType(47), new DecimalType(46)])
+		assertThat newest[0].timestamp.time, is(START + 47 * TimeSeries.HOUR)
+	}
+
+	@Test
+	void 'assert the write-ahead log is kept open until the head is sealed'() {
+		def tier = new Tier(folder, TimeSeries.DAY, 1, cache)
+		tier.append(START, [1] as double[])
+		def wal = tier.wal
+		tier.append(START + 1000, [2] as double[])
+		assertThat tier.wal, is(sameInstance(wal))
+
+		tier.append(START + TimeSeries.DAY, [3] as double[])
+		assertThat wal.isOpen(), is(false)
+		assertThat new File(folder, "${START}.seg").exists(), is(true)
+
+		wal = tier.wal
+		tier.close()
+		assertThat wal.isOpen(), is(false)
+
+		tier = new Tier(folder, TimeSeries.DAY, 1, cache)
+		assertThat scan(tier, START, Long.MAX_VALUE).collect { it.value }, is([1d, 2d, 3d])
+		tier.close()
+	}
+
+	@Test
+	void 'assert decoded segments are cached until they are purged'() {
+		def tier = new Tier(folder, TimeSeries.DAY, 1, cache)
+		(0..2).each { tier.append(START + it * TimeSeries.DAY, [it] as double[]) }
+
+		def first = scan(tier, START, START + TimeSeries.DAY - 1)
+		def second = scan(tier, START, START + TimeSeries.DAY - 1)
+		assertThat first.size(), is(1)
+		assertThat second[0].block, is(sameInstance(first[0].block))
+		assertThat cache.blocks.size(), is(1)
+
+		tier.purge(START + TimeSeries.DAY)
+		assertThat cache.blocks.isEmpty(), is(true)
+		assertThat scan(tier, START, Long.MAX_VALUE).size(), is(2)
+		tier.close()
+	}
+
+	@Test
+	void 'assert the cache evicts the least recently used segments'() {
+		cache = new SegmentCache(2)
+		def tier = new Tier(folder, TimeSeries.DAY, 1, cache)
+		(0..3).each { tier.append(START + it * TimeSeries.DAY, [it] as double[]) }
+
+		scan(tier, START, START + TimeSeries.DAY - 1)
+		scan(tier, START + TimeSeries.DAY, START + 2 * TimeSeries.DAY - 1)
+		scan(tier, START, START + TimeSeries.DAY - 1)
+		scan(tier, START + 2 * TimeSeries.DAY, START + 3 * TimeSeries.DAY - 1)
+		assertThat cache.blocks.keySet().collect { it.name }, is(["${START}.seg" as String,
+			"${START + 2 * TimeSeries.DAY}.seg" as String])
+		tier.close()
+	}
+
+	@Test
+	void 'assert rollups are written for completed intervals and used for long ranges'() {
+		def series = new TimeSeries(folder, cache)
+		(0..(3 * 24 * 60 - 1)).each {
+			series.add(START + it * TimeSeries.MINUTE, it % 60, HistoricItemCollector.KIND_DECIMAL)
+		}
+		series.rollup(START + 2 * TimeSeries.DAY + 30 * TimeSeries.MINUTE)
+
+		def days = collect(series, START, Long.MAX_VALUE, TimeSeries.DAYS, false)
+		// two days from the day tier, the first 30 minutes of the third day from the minute tier, the rest is raw
+		assertThat days.size(), is(2 + 30 + (24 * 60 - 30))
+		assertThat days[0].state, is(new DecimalType(29.5))
+		assertThat days[0].timestamp.time, is(START)
+		assertThat days[1].timestamp.time, is(START + TimeSeries.DAY)
+		assertThat days.last().timestamp.time, is(START + 3 * TimeSeries.DAY - TimeSeries.MINUTE)
+
+		def hours = collect(series, START, START + TimeSeries.DAY - 1, TimeSeries.HOURS, false)
+		assertThat hours.size(), is(24)
+		assertThat hours.collect { it.state }.unique(), is([new DecimalType(29.5)])
+	}
+
+	@Test
+	void 'assert state filters are applied to raw values'() {
+		def series = new TimeSeries(folder, cache)
+		series.add(START, 1, HistoricItemCollector.KIND_ONOFF)
+		series.add(START + 1000, 0, HistoricItemCollector.KIND_ONOFF)
+		series.add(START + 2000, 1, HistoricItemCollector.KIND_ONOFF)
+
+		def collector = new HistoricItemCollector("switch", Operator.EQ, OnOffType.OFF, 0, 10)
+		series.query(Long.MIN_VALUE, Long.MAX_VALUE, TimeSeries.RAW, false, collector)
+		assertThat collector.result.collect { it.timestamp.time }, is([START + 1000])
+	}
+
+	@Test
+	void 'assert aggregates combine rollups with the raw values at the edges of the range'() {
+		def series = new TimeSeries(folder, cache)
+		(0..(3 * 24 * 60 - 1)).each {
+			series.add(START + it * TimeSeries.MINUTE, it % 60, HistoricItemCollector.KIND_DECIMAL)
+		}
+		series.add(START + 3 * TimeSeries.DAY, 100, HistoricItemCollector.KIND_DECIMAL)
+		series.rollup(START + 3 * TimeSeries.DAY + 30 * TimeSeries.MINUTE)
+
+		// from 00:30 of the first day until the end, i.e. 2 days and 23.5 hours of minutes plus the last value
+		def collector = new AggregateCollector()
+		series.aggregate(START + 30 * TimeSeries.MINUTE, Long.MAX_VALUE, collector)
+		long count = 3 * 24 * 60 - 30 + 1
+		assertThat collector.getResult("item", Aggregate.COUNT).state, is(new DecimalType(count))
+		assertThat collector.getResult("item", Aggregate.SUM).state.longValue(), is(3 * 24 * 1770L - 435 + 100)
+		assertThat collector.getResult("item", Aggregate.MAX).state, is(new DecimalType(100))
+		assertThat collector.getResult("item", Aggregate.MIN).state, is(new DecimalType(0))
+
+		collector = new AggregateCollector()
+		series.aggregate(START + 10 * TimeSeries.MINUTE + 1, START + 12 * TimeSeries.MINUTE, collector)
+		assertThat collector.getResult("item", Aggregate.COUNT).state, is(new DecimalType(2))
+		assertThat collector.getResult("item", Aggregate.AVG).state, is(new DecimalType(11.5))
+	}
+
+	@Test
+	void 'assert queries continue after the points of a resume token'() {
+		def series = new TimeSeries(folder, cache)
+		[0, 1000, 1000, 1000, 2000].eachWithIndex { offset, i ->
+			series.add(START + offset, i, HistoricItemCollector.KIND_DECIMAL)
+		}
+
+		def collector = new HistoricItemCollector("item", Operator.EQ, null, 0, 3)
+		def visitor = new ResumingVisitor(collector, TimeSeries.RAW, null)
+		series.query(Long.MIN_VALUE, Long.MAX_VALUE, visitor.tier, false, visitor)
+		assertThat collector.result.collect { it.state }, is((0..2).collect { new DecimalType(it) })
+		assertThat visitor.resumeToken, is("0:${START + 1000}:2" as String)
+
+		collector = new HistoricItemCollector("item", Operator.EQ, null, 0, 3)
+		visitor = new ResumingVisitor(collector, TimeSeries.DAYS, visitor.resumeToken)
+		series.query(visitor.getBegin(Long.MIN_VALUE), Long.MAX_VALUE, visitor.tier, false, visitor)
+		assertThat collector.result.collect { it.state }, is((3..4).collect { new DecimalType(it) })
+		assertThat visitor.resumeToken, is(nullValue())
+
+		collector = new HistoricItemCollector("item", Operator.EQ, null, 0, 2)
+		visitor = new ResumingVisitor(collector, TimeSeries.RAW, "0:${START + 1000}:1")
+		series.query(Long.MIN_VALUE, visitor.getEnd(Long.MAX_VALUE), visitor.tier, true, visitor)
+		assertThat collector.result.collect { it.state }, is([new DecimalType(2), new DecimalType(1)])
+	}
+
+	private scan(Tier tier, long begin, long end) {
+		def points = []
+		tier.scan(begin, end, false, { block, index ->
+			points << [block: block, value: block.getValue(0, index)]
+			true
+		} as PointVisitor)
+		return points
+	}
+
+	private collect(TimeSeries series, long begin, long end, int tier, boolean descending, int limit = Integer.MAX_VALUE) {
+		def collector = new HistoricItemCollector("item", Operator.EQ, null, 0, limit)
+		series.query(begin, end, tier, descending, collector)
+		return collector.result
+	}
+}
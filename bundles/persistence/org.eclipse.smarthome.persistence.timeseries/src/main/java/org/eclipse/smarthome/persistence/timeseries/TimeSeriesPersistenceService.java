@@ -0,0 +1,404 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService;
+import org.eclipse.smarthome.core.persistence.BatchPersistenceService;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.HistoricItemPage;
+import org.eclipse.smarthome.core.persistence.NumericValueVisitor;
+import org.eclipse.smarthome.core.persistence.PersistenceEntry;
+import org.eclipse.smarthome.core.persistence.PersistenceQueries;
+import org.eclipse.smarthome.core.persistence.StreamingPersistenceService;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.persistence.timeseries.internal.AggregateCollector;
+import org.eclipse.smarthome.persistence.timeseries.internal.HistoricItemCollector;
+import org.eclipse.smarthome.persistence.timeseries.internal.NumericValueAdapter;
+import org.eclipse.smarthome.persistence.timeseries.internal.PointVisitor;
+import org.eclipse.smarthome.persistence.timeseries.internal.ResumingVisitor;
+import org.eclipse.smarthome.persistence.timeseries.internal.SegmentCache;
+import org.eclipse.smarthome.persistence.timeseries.internal.TimeSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This is an {@link AggregatingPersistenceService} and {@link StreamingPersistenceService} which stores the history of
+ * numeric items (numbers, percentages, switches and contacts) in local files without any external database (see
+ * {@link TimeSeries}). Other states are ignored.
+ * <p>
+ * Besides the raw values, rollups with the minimum, maximum and average value per minute, hour and day are written in
+ * the background. Queries which allow downsampling (see {@link FilterCriteria#setDownsampling(boolean)}) and have a
+ * begin date, but no state filter, are answered with the averages of the coarsest rollup tier which still delivers
+ * about {@code maxPoints} values for the requested range, so e.g. a chart of a whole year does not have to read every
+ * raw value. All other queries return the raw values. Aggregates are computed from the rollups of all intervals which
+ * lie completely within the requested range, so they are exact as long as the raw values at the edges of the range are
+ * retained. Switches and contacts count as 1 (on, open) and 0. The following configuration parameters are supported:
+ * <ul>
+ * <li>maxPoints: the number of values a query over a date range should roughly return (default 1000)</li>
+ * <li>rawRetention: the number of days raw values are kept (default 30)</li>
+ * <li>minuteRetention: the number of days the minute rollups are kept (default 365)</li>
+ * <li>hourRetention: the number of days the hour rollups are kept (default 1825)</li>
+ * <li>dayRetention: the number of days the day rollups are kept (default 0, i.e. forever)</li>
+ * </ul>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class TimeSeriesPersistenceService implements AggregatingPersistenceService, StreamingPersistenceService,
+        BatchPersistenceService {
+
+    private final Logger logger = LoggerFactory.getLogger(TimeSeriesPersistenceService.class);
+
+    private static final String SERVICE_NAME = "timeseries";
+
+    /** the folder name to store the time series in ({@code timeseries}) */
+    private static final String FOLDER_NAME = "timeseries";
+
+    private static final String THREAD_POOL_NAME = "persistence";
+
+    private static final String[] RETENTION_KEYS = { "rawRetention", "minuteRetention", "hourRetention",
+            "dayRetention" };
+
+    private static final long[] DEFAULT_RETENTIONS = { 30, 365, 1825, 0 };
+
+    /** the maximum number of decoded points kept in memory, i.e. about 24 MB of raw values */
+    private static final long MAX_CACHED_POINTS = 1000000;
+
+    private static final Comparator<HistoricItem> TIMESTAMP_ORDER = new Comparator<HistoricItem>() {
+        @Override
+        public int compare(HistoricItem item1, HistoricItem item2) {
+            return item1.getTimestamp().compareTo(item2.getTimestamp());
+        }
+    };
+
+    private final ConcurrentMap<String, TimeSeries> series = new ConcurrentHashMap<>();
+
+    private final SegmentCache cache = new SegmentCache(MAX_CACHED_POINTS);
+
+    private File folder;
+
+    private ScheduledFuture<?> rollupJob;
+
+    private int maxPoints = 1000;
+
+    private final long[] retentions = new long[DEFAULT_RETENTIONS.length];
+
+    public void activate(Map<String, Object> config) {
+        for (int i = 0; i < retentions.length; i++) {
+            retentions[i] = TimeUnit.DAYS.toMillis(DEFAULT_RETENTIONS[i]);
+        }
+        applyConfig(config);
+
+        folder = new File(ConfigConstants.getUserDataFolder() + File.separator + FOLDER_NAME);
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+
+        rollupJob = ThreadPoolManager.getScheduledPool(THREAD_POOL_NAME).scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                rollup();
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+        logger.debug("Storing time series in '{}'.", folder.getAbsolutePath());
+    }
+
+    public void modified(Map<String, Object> config) {
+        applyConfig(config);
+    }
+
+    public void deactivate() {
+        if (rollupJob != null) {
+            rollupJob.cancel(false);
+            rollupJob = null;
+        }
+        synchronized (series) {
+            for (Map.Entry<String, TimeSeries> entry : series.entrySet()) {
+                try {
+                    entry.getValue().close();
+                } catch (IOException e) {
+                    logger.warn("Could not close the time series of '{}': {}", entry.getKey(), e.getMessage());
+                }
+            }
+            series.clear();
+        }
+        cache.clear();
+    }
+
+    @Override
+    public String getName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void store(Item item) {
+        store(item, null);
+    }
+
+    @Override
+    public void store(Item item, String alias) {
+        store(alias != null ? alias : item.getName(), item.getState(), System.currentTimeMillis());
+    }
+
+    @Override
+    public void store(Collection<PersistenceEntry> entries) {
+        for (PersistenceEntry entry : entries) {
+            store(entry.getName(), entry.getState(), entry.getTimestamp().getTime());
+        }
+    }
+
+    private void store(String name, State state, long timestamp) {
+        double[] value = state == null ? null : HistoricItemCollector.toValue(state);
+        if (value == null) {
+            logger.trace("Ignoring state '{}' of '{}', as it is not numeric.", state, name);
+            return;
+        }
+
+        try {
+            getSeries(name, true).add(timestamp, value[0], (int) value[1]);
+        } catch (IOException e) {
+            logger.error("Could not store the state of '{}': {}", name, e.getMessage());
+        }
+    }
+
+    @Override
+    public Iterable<HistoricItem> query(FilterCriteria filter) {
+        long begin = filter.getBeginDate() != null ? filter.getBeginDate().getTime() : Long.MIN_VALUE;
+        long end = filter.getEndDate() != null ? filter.getEndDate().getTime() : Long.MAX_VALUE;
+        boolean descending = filter.getOrdering() == Ordering.DESCENDING;
+        long skip = (long) filter.getPageNumber() * filter.getPageSize();
+        int limit = filter.getPageSize();
+        int tier = getTier(filter, begin, end);
+
+        try {
+            if (filter.getItemName() != null) {
+                TimeSeries timeSeries = getSeries(filter.getItemName(), false);
+                if (timeSeries == null) {
+                    return Collections.emptyList();
+                }
+                HistoricItemCollector collector = new HistoricItemCollector(filter.getItemName(),
+                        filter.getOperator(), filter.getState(), skip, limit);
+                timeSeries.query(begin, end, tier, descending, collector);
+                return collector.getResult();
+            }
+
+            // no item given: merge the results of all items and apply the paging afterwards
+            int maxResults = (int) Math.min(Integer.MAX_VALUE, skip + limit);
+            List<HistoricItem> result = new ArrayList<>();
+            for (String name : getSeriesNames()) {
+                HistoricItemCollector collector = new HistoricItemCollector(name, filter.getOperator(),
+                        filter.getState(), 0, maxResults);
+                getSeries(name, false).query(begin, end, tier, descending, collector);
+                result.addAll(collector.getResult());
+            }
+            Collections.sort(result, descending ? Collections.reverseOrder(TIMESTAMP_ORDER) : TIMESTAMP_ORDER);
+            if (skip >= result.size()) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(result.subList((int) skip, (int) Math.min(result.size(), skip + limit)));
+        } catch (IOException e) {
+            logger.error("Could not query the time series: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public HistoricItem aggregate(FilterCriteria filter, Aggregate aggregate) {
+        String name = filter.getItemName();
+        if (name == null) {
+            return null;
+        }
+        long begin = filter.getBeginDate() != null ? filter.getBeginDate().getTime() : Long.MIN_VALUE;
+        long end = filter.getEndDate() != null ? filter.getEndDate().getTime() : Long.MAX_VALUE;
+
+        try {
+            TimeSeries timeSeries = getSeries(name, false);
+            if (timeSeries == null) {
+                return null;
+            }
+            if (aggregate == Aggregate.FIRST || aggregate == Aggregate.LAST) {
+                HistoricItemCollector collector = new HistoricItemCollector(name, null, null, 0, 1);
+                timeSeries.query(begin, end, TimeSeries.RAW, aggregate == Aggregate.LAST, collector);
+                return collector.getResult().isEmpty() ? null : collector.getResult().get(0);
+            }
+            AggregateCollector collector = new AggregateCollector();
+            timeSeries.aggregate(begin, end, collector);
+            return collector.getResult(name, aggregate);
+        } catch (IOException e) {
+            logger.error("Could not aggregate the time series of '{}': {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public HistoricItemPage query(FilterCriteria filter, String resumeToken) {
+        int limit = Math.min(filter.getPageSize(), PersistenceQueries.DEFAULT_PAGE_SIZE);
+        HistoricItemCollector collector = new HistoricItemCollector(filter.getItemName(), filter.getOperator(),
+                filter.getState(), 0, limit);
+        String nextToken = resume(filter, resumeToken, collector);
+        return new HistoricItemPage(collector.getResult(), nextToken);
+    }
+
+    @Override
+    public String stream(FilterCriteria filter, String resumeToken, NumericValueVisitor visitor) {
+        return resume(filter, resumeToken, new NumericValueAdapter(visitor));
+    }
+
+    /**
+     * Visits the points of a query after the position of a resume token.
+     *
+     * @return the token to continue after the last visited point or null if all points have been visited
+     */
+    private String resume(FilterCriteria filter, String resumeToken, PointVisitor visitor) {
+        if (filter.getItemName() == null) {
+            throw new IllegalArgumentException("The filter must contain an item name.");
+        }
+        long begin = filter.getBeginDate() != null ? filter.getBeginDate().getTime() : Long.MIN_VALUE;
+        long end = filter.getEndDate() != null ? filter.getEndDate().getTime() : Long.MAX_VALUE;
+        boolean descending = filter.getOrdering() == Ordering.DESCENDING;
+        ResumingVisitor resumingVisitor = new ResumingVisitor(visitor, getTier(filter, begin, end), resumeToken);
+
+        try {
+            TimeSeries timeSeries = getSeries(filter.getItemName(), false);
+            if (timeSeries == null) {
+                return null;
+            }
+            timeSeries.query(descending ? begin : resumingVisitor.getBegin(begin),
+                    descending ? resumingVisitor.getEnd(end) : end, resumingVisitor.getTier(), descending,
+                    resumingVisitor);
+            return resumingVisitor.getResumeToken();
+        } catch (IOException e) {
+            logger.error("Could not query the time series of '{}': {}", filter.getItemName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the coarsest tier which delivers about {@code maxPoints} values for the range of the filter, if it allows
+     *         downsampling, the raw tier otherwise
+     */
+    private int getTier(FilterCriteria filter, long begin, long end) {
+        int tier = TimeSeries.RAW;
+        if (filter.isDownsampling() && filter.getState() == null && filter.getBeginDate() != null) {
+            long resolution = (Math.min(end, System.currentTimeMillis()) - begin) / Math.max(maxPoints, 1);
+            for (int i = TimeSeries.DAYS; i > TimeSeries.RAW && tier == TimeSeries.RAW; i--) {
+                if (TimeSeries.getResolution(i) <= resolution) {
+                    tier = i;
+                }
+            }
+        }
+        return tier;
+    }
+
+    private TimeSeries getSeries(String name, boolean create) throws IOException {
+        TimeSeries timeSeries = series.get(name);
+        if (timeSeries == null) {
+            File seriesFolder = new File(folder, encode(name));
+            if (!create && !seriesFolder.exists()) {
+                return null;
+            }
+            synchronized (series) {
+                timeSeries = series.get(name);
+                if (timeSeries == null) {
+                    timeSeries = new TimeSeries(seriesFolder, cache);
+                    series.put(name, timeSeries);
+                }
+            }
+        }
+        return timeSeries;
+    }
+
+    private List<String> getSeriesNames() {
+        List<String> names = new ArrayList<>();
+        String[] folders = folder.list();
+        if (folders != null) {
+            for (String name : folders) {
+                try {
+                    names.add(URLDecoder.decode(name, "UTF-8"));
+                } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                    logger.debug("Ignoring unexpected folder '{}'.", name);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static String encode(String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8").replace(".", "%2E").replace("*", "%2A");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the rollups of and purges all time series in the folder, including the ones of items which have not been
+     * stored or queried since the service has been started.
+     */
+    private void rollup() {
+        long now = System.currentTimeMillis();
+        for (String name : getSeriesNames()) {
+            try {
+                TimeSeries timeSeries = getSeries(name, false);
+                if (timeSeries != null) {
+                    timeSeries.rollup(now);
+                    timeSeries.purge(now, retentions);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not write the rollups of '{}': {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void applyConfig(Map<String, Object> config) {
+        if (config == null) {
+            return;
+        }
+
+        Object value = config.get("maxPoints");
+        if (value != null) {
+            try {
+                maxPoints = Integer.parseInt(value.toString());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid maximum number of points '{}'.", value);
+            }
+        }
+        for (int i = 0; i < RETENTION_KEYS.length; i++) {
+            value = config.get(RETENTION_KEYS[i]);
+            if (value != null) {
+                try {
+                    retentions[i] = TimeUnit.DAYS.toMillis(Long.parseLong(value.toString()));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring invalid retention '{}' for '{}'.", value, RETENTION_KEYS[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.persistence.AggregatingPersistenceService.Aggregate;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+
+/**
+ * The {@link AggregateCollector} accumulates the minimum, maximum, sum and count of the visited points. Raw points
+ * contribute their value, rollups their precomputed columns, so a range can be aggregated from a few rollups (see
+ * {@link TimeSeries#aggregate(long, long, PointVisitor)}).
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class AggregateCollector implements PointVisitor {
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private double count;
+
+    private long minTimestamp;
+    private long maxTimestamp;
+    private long lastTimestamp;
+
+    @Override
+    public boolean visit(Block block, int index) {
+        long timestamp = block.getTimestamp(index);
+        double pointMin;
+        double pointMax;
+        if (block.columns.length == 2) {
+            pointMin = block.getValue(TimeSeries.VALUE, index);
+            pointMax = pointMin;
+            sum += pointMin;
+            count++;
+        } else {
+            pointMin = block.getValue(TimeSeries.MIN, index);
+            pointMax = block.getValue(TimeSeries.MAX, index);
+            sum += block.getValue(TimeSeries.SUM, index);
+            count += block.getValue(TimeSeries.COUNT, index);
+        }
+        if (pointMin < min) {
+            min = pointMin;
+            minTimestamp = timestamp;
+        }
+        if (pointMax > max) {
+            max = pointMax;
+            maxTimestamp = timestamp;
+        }
+        lastTimestamp = timestamp;
+        return true;
+    }
+
+    /**
+     * Returns an aggregate of the visited points.
+     *
+     * @param name the name of the returned historic item
+     * @param aggregate the aggregate, must not be {@link Aggregate#FIRST} or {@link Aggregate#LAST}
+     * @return the result or null if no point has been visited
+     */
+    public HistoricItem getResult(String name, Aggregate aggregate) {
+        if (count == 0) {
+            return null;
+        }
+        switch (aggregate) {
+            case MIN:
+                return new TimeSeriesHistoricItem(name, toState(min), new Date(minTimestamp));
+            case MAX:
+                return new TimeSeriesHistoricItem(name, toState(max), new Date(maxTimestamp));
+            case SUM:
+                return new TimeSeriesHistoricItem(name, toState(sum), new Date(lastTimestamp));
+            case COUNT:
+                return new TimeSeriesHistoricItem(name, new DecimalType((long) count), new Date(lastTimestamp));
+            case AVG:
+                return new TimeSeriesHistoricItem(name, toState(sum / count), new Date(lastTimestamp));
+            default:
+                throw new IllegalArgumentException("Unsupported aggregate " + aggregate);
+        }
+    }
+
+    private static DecimalType toState(double value) {
+        return new DecimalType(BigDecimal.valueOf(value));
+    }
+
+}
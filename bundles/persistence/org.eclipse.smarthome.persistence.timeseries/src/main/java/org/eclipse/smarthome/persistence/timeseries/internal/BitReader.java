@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@link BitReader} reads the bits written by a {@link BitWriter} from a region of a {@link ByteBuffer}, which is
+ * usually a memory-mapped segment file.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class BitReader {
+
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    private long position;
+
+    /**
+     * Creates a reader.
+     *
+     * @param buffer the buffer to read from (its position is not changed)
+     * @param offset the index of the first byte of the bit stream in the buffer
+     */
+    public BitReader(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    public boolean readBit() {
+        int b = buffer.get(offset + (int) (position >>> 3));
+        boolean bit = (b & (0x80 >>> (position & 7))) != 0;
+        position++;
+        return bit;
+    }
+
+    /**
+     * Reads the given number of bits as an unsigned value.
+     *
+     * @param count the number of bits (0..64)
+     * @return the value
+     */
+    public long readBits(int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 1) | (readBit() ? 1 : 0);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.util.Arrays;
+
+/**
+ * The {@link BitWriter} writes a stream of bits into a growing byte array (most significant bit first).
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class BitWriter {
+
+    private byte[] bytes;
+
+    private long bitCount;
+
+    public BitWriter(int initialSize) {
+        bytes = new byte[Math.max(initialSize, 8)];
+    }
+
+    public void writeBit(boolean bit) {
+        ensureCapacity(1);
+        if (bit) {
+            int index = (int) (bitCount >>> 3);
+            bytes[index] |= 0x80 >>> (bitCount & 7);
+        }
+        bitCount++;
+    }
+
+    /**
+     * Writes the lowest {@code count} bits of the given value.
+     *
+     * @param value the value
+     * @param count the number of bits (0..64)
+     */
+    public void writeBits(long value, int count) {
+        ensureCapacity(count);
+        for (int i = count - 1; i >= 0; i--) {
+            if (((value >>> i) & 1) != 0) {
+                int index = (int) (bitCount >>> 3);
+                bytes[index] |= 0x80 >>> (bitCount & 7);
+            }
+            bitCount++;
+        }
+    }
+
+    /**
+     * @return the written bytes, the last byte is padded with zero bits
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((bitCount + 7) >>> 3));
+    }
+
+    private void ensureCapacity(int bits) {
+        long required = (bitCount + bits + 7) >>> 3;
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, (int) Math.max(required, bytes.length * 2L));
+        }
+    }
+
+}
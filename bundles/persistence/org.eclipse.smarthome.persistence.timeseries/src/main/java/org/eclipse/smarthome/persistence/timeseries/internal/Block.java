@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Block} holds the decoded points of a segment in columns of primitive arrays: one column of timestamps in
+ * ascending order and a fixed number of value columns.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class Block {
+
+    long[] timestamps;
+
+    final double[][] columns;
+
+    int count;
+
+    public Block(int columnCount, int capacity) {
+        timestamps = new long[Math.max(capacity, 1)];
+        columns = new double[columnCount][timestamps.length];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int column, int index) {
+        return columns[column][index];
+    }
+
+    /**
+     * Appends a point.
+     *
+     * @param timestamp the timestamp, must not be before the last one
+     * @param values one value per column
+     */
+    public void add(long timestamp, double[] values) {
+        if (count == timestamps.length) {
+            int capacity = timestamps.length * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = Arrays.copyOf(columns[i], capacity);
+            }
+        }
+        timestamps[count] = timestamp;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][count] = values[i];
+        }
+        count++;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * @return the index of the first point with a timestamp not before the given one
+     */
+    public int lowerBound(long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the index of the first point with a timestamp after the given one
+     */
+    public int upperBound(long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
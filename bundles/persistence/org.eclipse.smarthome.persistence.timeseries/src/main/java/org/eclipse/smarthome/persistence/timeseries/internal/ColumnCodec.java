@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+/**
+ * The {@link ColumnCodec} compresses the columns of a segment as described for Facebook's Gorilla time series
+ * database:
+ * <ul>
+ * <li>Timestamps are stored as delta of deltas. Regular intervals therefore need a single bit per timestamp.</li>
+ * <li>Values are XORed with their predecessor. Unchanged values need a single bit, slowly changing values only store
+ * the meaningful bits of the XOR result.</li>
+ * </ul>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public final class ColumnCodec {
+
+    private ColumnCodec() {
+    }
+
+    /**
+     * Encodes the given timestamps.
+     *
+     * @param timestamps the timestamps in ascending order
+     * @param count the number of timestamps to encode
+     * @return the encoded column
+     */
+    public static byte[] encodeTimestamps(long[] timestamps, int count) {
+        BitWriter out = new BitWriter(count + 8);
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                out.writeBits(timestamps[0], 64);
+            } else {
+                long delta = timestamps[i] - previous;
+                long deltaOfDelta = delta - previousDelta;
+                if (deltaOfDelta == 0) {
+                    out.writeBit(false);
+                } else if (fits(deltaOfDelta, 7)) {
+                    out.writeBits(0x2, 2);
+                    out.writeBits(deltaOfDelta, 7);
+                } else if (fits(deltaOfDelta, 9)) {
+                    out.writeBits(0x6, 3);
+                    out.writeBits(deltaOfDelta, 9);
+                } else if (fits(deltaOfDelta, 12)) {
+                    out.writeBits(0xE, 4);
+                    out.writeBits(deltaOfDelta, 12);
+                } else {
+                    out.writeBits(0xF, 4);
+                    out.writeBits(deltaOfDelta, 64);
+                }
+                previousDelta = delta;
+            }
+            previous = timestamps[i];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes timestamps which have been encoded by {@link #encodeTimestamps(long[], int)}.
+     *
+     * @param in the reader positioned at the start of the column
+     * @param target the array to fill
+     * @param count the number of timestamps
+     */
+    public static void decodeTimestamps(BitReader in, long[] target, int count) {
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                previous = in.readBits(64);
+            } else {
+                long deltaOfDelta;
+                if (!in.readBit()) {
+                    deltaOfDelta = 0;
+                } else if (!in.readBit()) {
+                    deltaOfDelta = signed(in.readBits(7), 7);
+                } else if (!in.readBit()) {
+                    deltaOfDelta = signed(in.readBits(9), 9);
+                } else if (!in.readBit()) {
+                    deltaOfDelta = signed(in.readBits(12), 12);
+                } else {
+                    deltaOfDelta = in.readBits(64);
+                }
+                previousDelta += deltaOfDelta;
+                previous += previousDelta;
+            }
+            target[i] = previous;
+        }
+    }
+
+    /**
+     * Encodes the given values.
+     *
+     * @param values the values
+     * @param count the number of values to encode
+     * @return the encoded column
+     */
+    public static byte[] encodeValues(double[] values, int count) {
+        BitWriter out = new BitWriter(count + 8);
+        long previous = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 0; i < count; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            if (i == 0) {
+                out.writeBits(bits, 64);
+            } else {
+                long xor = bits ^ previous;
+                if (xor == 0) {
+                    out.writeBit(false);
+                } else {
+                    out.writeBit(true);
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                        // the meaningful bits fit into the previous window
+                        out.writeBit(false);
+                        out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                    } else {
+                        int length = 64 - leading - trailing;
+                        out.writeBit(true);
+                        out.writeBits(leading, 5);
+                        out.writeBits(length == 64 ? 0 : length, 6);
+                        out.writeBits(xor >>> trailing, length);
+                        previousLeading = leading;
+                        previousTrailing = trailing;
+                    }
+                }
+            }
+            previous = bits;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes values which have been encoded by {@link #encodeValues(double[], int)}.
+     *
+     * @param in the reader positioned at the start of the column
+     * @param target the array to fill
+     * @param count the number of values
+     */
+    public static void decodeValues(BitReader in, double[] target, int count) {
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                previous = in.readBits(64);
+            } else if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.readBits(5);
+                    int length = (int) in.readBits(6);
+                    if (length == 0) {
+                        length = 64;
+                    }
+                    trailing = 64 - leading - length;
+                }
+                long xor = in.readBits(64 - leading - trailing) << trailing;
+                previous ^= xor;
+            }
+            target[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+}
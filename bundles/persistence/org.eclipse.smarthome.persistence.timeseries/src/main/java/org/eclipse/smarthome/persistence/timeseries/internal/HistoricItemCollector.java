@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.OpenClosedType;
+import org.eclipse.smarthome.core.library.types.PercentType;
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Operator;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * The {@link HistoricItemCollector} turns the visited points into {@link HistoricItem}s. It applies the state filter
+ * and the paging of a query, so only the returned points are materialized. Raw points are returned with the state
+ * they have been stored from, rollups as the {@link DecimalType} average of their interval.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class HistoricItemCollector implements PointVisitor {
+
+    public static final int KIND_DECIMAL = 0;
+    public static final int KIND_PERCENT = 1;
+    public static final int KIND_ONOFF = 2;
+    public static final int KIND_OPENCLOSED = 3;
+
+    private final String name;
+    private final Operator operator;
+    private final State state;
+    private final int limit;
+    private long skip;
+
+    private final List<HistoricItem> result = new ArrayList<>();
+
+    /**
+     * Creates a collector.
+     *
+     * @param name the name of the returned historic items
+     * @param operator the operator to compare the states with the given state
+     * @param state the state to compare with or null to return all points
+     * @param skip the number of matching points to skip
+     * @param limit the maximum number of points to return
+     */
+    public HistoricItemCollector(String name, Operator operator, State state, long skip, int limit) {
+        this.name = name;
+        this.operator = operator;
+        this.state = state;
+        this.skip = skip;
+        this.limit = limit;
+    }
+
+    public List<HistoricItem> getResult() {
+        return result;
+    }
+
+    @Override
+    public boolean visit(Block block, int index) {
+        if (result.size() >= limit) {
+            return false;
+        }
+
+        State current;
+        double value;
+        if (block.columns.length == 2) {
+            value = block.getValue(TimeSeries.VALUE, index);
+            current = toState(value, (int) block.getValue(TimeSeries.KIND, index));
+        } else {
+            value = block.getValue(TimeSeries.SUM, index) / block.getValue(TimeSeries.COUNT, index);
+            current = new DecimalType(BigDecimal.valueOf(value));
+        }
+
+        if (state != null && !matches(current, value)) {
+            return true;
+        }
+        if (skip > 0) {
+            skip--;
+            return true;
+        }
+        result.add(new TimeSeriesHistoricItem(name, current, new Date(block.getTimestamp(index))));
+        return result.size() < limit;
+    }
+
+    /**
+     * Converts a state into the value to store.
+     *
+     * @param state the state
+     * @return the value and the kind of the state or null if the state is not supported
+     */
+    public static double[] toValue(State state) {
+        if (state.getClass() == DecimalType.class) {
+            return new double[] { ((DecimalType) state).doubleValue(), KIND_DECIMAL };
+        } else if (state.getClass() == PercentType.class) {
+            return new double[] { ((PercentType) state).doubleValue(), KIND_PERCENT };
+        } else if (state instanceof OnOffType) {
+            return new double[] { state == OnOffType.ON ? 1 : 0, KIND_ONOFF };
+        } else if (state instanceof OpenClosedType) {
+            return new double[] { state == OpenClosedType.OPEN ? 1 : 0, KIND_OPENCLOSED };
+        }
+        return null;
+    }
+
+    private static State toState(double value, int kind) {
+        switch (kind) {
+            case KIND_PERCENT:
+                return new PercentType(BigDecimal.valueOf(value));
+            case KIND_ONOFF:
+                return value != 0 ? OnOffType.ON : OnOffType.OFF;
+            case KIND_OPENCLOSED:
+                return value != 0 ? OpenClosedType.OPEN : OpenClosedType.CLOSED;
+            default:
+                return new DecimalType(BigDecimal.valueOf(value));
+        }
+    }
+
+    private boolean matches(State current, double value) {
+        if (state instanceof DecimalType) {
+            double compared = ((DecimalType) state).doubleValue();
+            switch (operator) {
+                case EQ:
+                    return value == compared;
+                case NEQ:
+                    return value != compared;
+                case GT:
+                    return value > compared;
+                case LT:
+                    return value < compared;
+                case GTE:
+                    return value >= compared;
+                case LTE:
+                    return value <= compared;
+            }
+        }
+        switch (operator) {
+            case EQ:
+                return current.equals(state);
+            case NEQ:
+                return !current.equals(state);
+            default:
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import org.eclipse.smarthome.core.persistence.NumericValueVisitor;
+
+/**
+ * Passes the visited points to a {@link NumericValueVisitor}: raw points with their value, rollups with the average
+ * of their interval.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class NumericValueAdapter implements PointVisitor {
+
+    private final NumericValueVisitor visitor;
+
+    public NumericValueAdapter(NumericValueVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    @Override
+    public boolean visit(Block block, int index) {
+        double value;
+        if (block.columns.length == 2) {
+            value = block.getValue(TimeSeries.VALUE, index);
+        } else {
+            value = block.getValue(TimeSeries.SUM, index) / block.getValue(TimeSeries.COUNT, index);
+        }
+        return visitor.visit(block.getTimestamp(index), value);
+    }
+
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.io.IOException;
+
+/**
+ * A {@link PointVisitor} is called for every point of a range which is scanned in a {@link Tier}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public interface PointVisitor {
+
+    /**
+     * Visits a point.
+     *
+     * @param block the block holding the point
+     * @param index the index of the point within the block
+     * @return true to continue the scan, false to stop it
+     * @throws IOException if the point cannot be processed
+     */
+    boolean visit(Block block, int index) throws IOException;
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.io.IOException;
+
+/**
+ * The {@link ResumingVisitor} continues a query after the point described by a resume token: it skips the given number
+ * of points with the timestamp of the token and passes all other points to its delegate. It keeps track of the last
+ * visited point, so that the token for the next call can be created.
+ * <p>
+ * Resume tokens have the format {@code <tier>:<timestamp>:<number of visited points with this timestamp>}, the tier
+ * is kept to answer all pages of a query from the same tier.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class ResumingVisitor implements PointVisitor {
+
+    private final PointVisitor delegate;
+
+    private final int tier;
+
+    private long skipTimestamp;
+
+    private long skip;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private long lastCount;
+
+    private boolean stopped;
+
+    /**
+     * Creates a visitor.
+     *
+     * @param delegate the visitor to pass the points to
+     * @param tier the tier to use if there is no resume token
+     * @param resumeToken the resume token or null to start with the first point
+     * @throws IllegalArgumentException if the resume token is invalid
+     */
+    public ResumingVisitor(PointVisitor delegate, int tier, String resumeToken) {
+        this.delegate = delegate;
+        if (resumeToken == null) {
+            this.tier = tier;
+            return;
+        }
+
+        String[] parts = resumeToken.split(":");
+        try {
+            if (parts.length == 3) {
+                this.tier = Integer.parseInt(parts[0]);
+                this.skipTimestamp = Long.parseLong(parts[1]);
+                this.skip = Long.parseLong(parts[2]);
+                if (this.tier >= TimeSeries.RAW && this.tier <= TimeSeries.DAYS && this.skip >= 0) {
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid resume token " + resumeToken);
+    }
+
+    /**
+     * @return the tier to query
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * @param begin the minimum timestamp of the query
+     * @return the minimum timestamp to query in ascending order
+     */
+    public long getBegin(long begin) {
+        return skip > 0 ? Math.max(begin, skipTimestamp) : begin;
+    }
+
+    /**
+     * @param end the maximum timestamp of the query
+     * @return the maximum timestamp to query in descending order
+     */
+    public long getEnd(long end) {
+        return skip > 0 ? Math.min(end, skipTimestamp) : end;
+    }
+
+    @Override
+    public boolean visit(Block block, int index) throws IOException {
+        long timestamp = block.getTimestamp(index);
+        if (timestamp == lastTimestamp) {
+            lastCount++;
+        } else {
+            lastTimestamp = timestamp;
+            lastCount = 1;
+        }
+        if (timestamp == skipTimestamp && lastCount <= skip) {
+            return true;
+        }
+        stopped = !delegate.visit(block, index);
+        return !stopped;
+    }
+
+    /**
+     * @return the token to continue after the last visited point or null if the delegate did not stop the query
+     */
+    public String getResumeToken() {
+        return stopped ? tier + ":" + lastTimestamp + ":" + lastCount : null;
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A {@link Segment} is an immutable file holding the points of one time partition in compressed columns (see
+ * {@link ColumnCodec}). The file layout is:
+ *
+ * <pre>
+ * int magic, byte version, byte column count, int point count, long first timestamp, long last timestamp,
+ * int timestamp column length, int[] value column lengths, timestamp column, value columns
+ * </pre>
+ *
+ * Segments are memory-mapped for reading.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public final class Segment {
+
+    private static final int MAGIC = 0x45535453;
+
+    private static final byte VERSION = 1;
+
+    private Segment() {
+    }
+
+    /**
+     * Writes the given block into a segment file. The file is written under a temporary name first and moved to its
+     * final name afterwards, so readers never see a partially written segment.
+     *
+     * @param file the segment file
+     * @param block the points to write, must not be empty
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, Block block) throws IOException {
+        byte[] timestamps = ColumnCodec.encodeTimestamps(block.timestamps, block.count);
+        byte[][] columns = new byte[block.columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = ColumnCodec.encodeValues(block.columns[i], block.count);
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmpFile)) {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(columns.length);
+            out.writeInt(block.count);
+            out.writeLong(block.timestamps[0]);
+            out.writeLong(block.timestamps[block.count - 1]);
+            out.writeInt(timestamps.length);
+            for (byte[] column : columns) {
+                out.writeInt(column.length);
+            }
+            out.write(timestamps);
+            for (byte[] column : columns) {
+                out.write(column);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads and decodes a segment file.
+     *
+     * @param file the segment file
+     * @return the points of the segment
+     * @throws IOException if the file cannot be read or is not a valid segment
+     */
+    public static Block read(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.limit() < 30 || buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION) {
+            throw new IOException("Invalid segment file " + file);
+        }
+        int columnCount = buffer.get(5);
+        int count = buffer.getInt(6);
+        int offset = 26;
+        int timestampLength = buffer.getInt(offset);
+        int[] columnLengths = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnLengths[i] = buffer.getInt(offset + 4 + 4 * i);
+        }
+        offset += 4 + 4 * columnCount;
+
+        Block block = new Block(columnCount, count);
+        ColumnCodec.decodeTimestamps(new BitReader(buffer, offset), block.timestamps, count);
+        offset += timestampLength;
+        for (int i = 0; i < columnCount; i++) {
+            ColumnCodec.decodeValues(new BitReader(buffer, offset), block.columns[i], count);
+            offset += columnLengths[i];
+        }
+        block.count = count;
+        return block;
+    }
+
+    /**
+     * Reads the last timestamp of a segment from its header.
+     *
+     * @param file the segment file
+     * @return the last timestamp
+     * @throws IOException if the file cannot be read
+     */
+    public static long readLastTimestamp(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(18);
+            return raf.readLong();
+        }
+    }
+
+    /**
+     * Reads the first timestamp of a segment from its header.
+     *
+     * @param file the segment file
+     * @return the first timestamp
+     * @throws IOException if the file cannot be read
+     */
+    public static long readFirstTimestamp(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(10);
+            return raf.readLong();
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * The {@link SegmentCache} keeps the decoded {@link Block}s of recently read {@link Segment}s, so that repeated queries
+ * over the same range (e.g. a chart which is refreshed) do not decode the compressed columns again. It is shared by all
+ * time series and evicts the least recently used blocks as soon as they hold more than the given number of points.
+ * <p>
+ * Segments are immutable, so a cached block only has to be invalidated when its file is replaced or deleted. The
+ * returned blocks must not be modified.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class SegmentCache {
+
+    private final long maxPoints;
+
+    private final LinkedHashMap<File, Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long points;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxPoints the maximum number of points of all cached blocks, 0 to disable the cache
+     */
+    public SegmentCache(long maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Returns the decoded points of a segment, which are read from the file if they are not cached.
+     *
+     * @param file the segment file
+     * @return the points of the segment, must not be modified
+     * @throws IOException if the file cannot be read
+     */
+    public Block get(File file) throws IOException {
+        synchronized (this) {
+            Block block = blocks.get(file);
+            if (block != null) {
+                return block;
+            }
+        }
+
+        // decode outside of the lock, so queries of other series are not blocked
+        Block block = Segment.read(file);
+        if (block.count <= maxPoints) {
+            synchronized (this) {
+                Block previous = blocks.put(file, block);
+                if (previous != null) {
+                    points -= previous.count;
+                }
+                points += block.count;
+                evict();
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Removes the block of a segment which has been replaced or deleted.
+     *
+     * @param file the segment file
+     */
+    public synchronized void invalidate(File file) {
+        Block block = blocks.remove(file);
+        if (block != null) {
+            points -= block.count;
+        }
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+        points = 0;
+    }
+
+    private void evict() {
+        Iterator<Entry<File, Block>> iterator = blocks.entrySet().iterator();
+        while (points > maxPoints && iterator.hasNext()) {
+            points -= iterator.next().getValue().count;
+            iterator.remove();
+        }
+    }
+
+}
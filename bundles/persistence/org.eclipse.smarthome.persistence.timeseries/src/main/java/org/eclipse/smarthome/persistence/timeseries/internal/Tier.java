@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Tier} stores the points of one resolution of a time series. Time is split into partitions of a fixed
+ * length. Completed partitions are kept as immutable {@link Segment} files ({@code <partition start>.seg}), the
+ * current partition (the head) is kept in memory and in a write-ahead log ({@code head.wal}) of fixed size records,
+ * which is replayed on startup. The head is sealed into a segment as soon as a point of a later partition is
+ * appended. The write-ahead log stays open until the head is sealed or the tier is closed, and the decoded segments
+ * are kept in a {@link SegmentCache}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class Tier {
+
+    private static final String SEGMENT_EXTENSION = ".seg";
+
+    private static final String WAL_FILE_NAME = "head.wal";
+
+    private final Logger logger = LoggerFactory.getLogger(Tier.class);
+
+    private final File folder;
+
+    private final File walFile;
+
+    private final long partitionLength;
+
+    private final int columnCount;
+
+    private final SegmentCache cache;
+
+    /** the segment files by the start of their partition */
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+
+    private final Block head;
+
+    private long headPartition = Long.MIN_VALUE;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /** the open write-ahead log or null if it has not been opened since the head was sealed */
+    private FileChannel wal;
+
+    /**
+     * Creates a tier and loads its state from the given folder.
+     *
+     * @param folder the folder of the tier, is created if it does not exist
+     * @param partitionLength the length of a partition in milliseconds
+     * @param columnCount the number of value columns
+     * @param cache the cache for the decoded segments
+     * @throws IOException if the existing files cannot be read
+     */
+    public Tier(File folder, long partitionLength, int columnCount, SegmentCache cache) throws IOException {
+        this.folder = folder;
+        this.walFile = new File(folder, WAL_FILE_NAME);
+        this.partitionLength = partitionLength;
+        this.columnCount = columnCount;
+        this.cache = cache;
+        this.head = new Block(columnCount, 64);
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create folder " + folder);
+        }
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_EXTENSION)) {
+                    try {
+                        segments.put(Long.valueOf(name.substring(0, name.length() - SEGMENT_EXTENSION.length())),
+                                file);
+                    } catch (NumberFormatException e) {
+                        logger.warn("Ignoring unexpected file '{}'.", file);
+                    }
+                } else if (name.endsWith(".tmp")) {
+                    file.delete();
+                }
+            }
+        }
+        if (!segments.isEmpty()) {
+            lastTimestamp = Segment.readLastTimestamp(segments.lastEntry().getValue());
+        }
+        replay();
+    }
+
+    public boolean isEmpty() {
+        return lastTimestamp == Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the timestamp of the oldest point or {@link Long#MIN_VALUE} if the tier is empty
+     */
+    public long getFirstTimestamp() throws IOException {
+        if (!segments.isEmpty()) {
+            return Segment.readFirstTimestamp(segments.firstEntry().getValue());
+        }
+        return head.count > 0 ? head.timestamps[0] : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the timestamp of the newest point or {@link Long#MIN_VALUE} if the tier is empty
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Appends a point.
+     *
+     * @param timestamp the timestamp, must not be before the last timestamp of this tier
+     * @param values one value per column
+     * @throws IOException if the point cannot be written
+     */
+    public void append(long timestamp, double[] values) throws IOException {
+        if (timestamp < lastTimestamp) {
+            throw new IllegalArgumentException("Points must be appended in chronological order.");
+        }
+        long partition = partition(timestamp);
+        if (head.count > 0 && partition != headPartition) {
+            seal();
+        }
+        headPartition = partition;
+
+        ByteBuffer record = ByteBuffer.allocate(8 + 8 * columnCount);
+        record.putLong(timestamp);
+        for (int i = 0; i < columnCount; i++) {
+            record.putDouble(values[i]);
+        }
+        record.flip();
+        writeWal(record);
+
+        head.add(timestamp, values);
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Visits all points within the given range.
+     *
+     * @param begin the minimum timestamp (inclusive)
+     * @param end the maximum timestamp (inclusive)
+     * @param descending true to visit the newest points first
+     * @param visitor the visitor
+     * @return false if the visitor stopped the scan
+     * @throws IOException if a segment cannot be read
+     */
+    public boolean scan(long begin, long end, boolean descending, PointVisitor visitor) throws IOException {
+        if (begin > end || isEmpty()) {
+            return true;
+        }
+
+        Long from = segments.floorKey(begin);
+        List<File> files = new ArrayList<>(segments.subMap(from != null ? from : begin, true, end, true).values());
+        if (head.count > 0 && headPartition <= end) {
+            files.add(null);
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            int fileIndex = descending ? files.size() - 1 - i : i;
+            File file = files.get(fileIndex);
+            Block block = file == null ? head : cache.get(file);
+            int low = block.lowerBound(begin);
+            int high = block.upperBound(end);
+            for (int j = 0; j < high - low; j++) {
+                if (!visitor.visit(block, descending ? high - 1 - j : low + j)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the head into a segment and clears the write-ahead log.
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    public void seal() throws IOException {
+        if (head.count == 0) {
+            return;
+        }
+
+        File file = new File(folder, headPartition + SEGMENT_EXTENSION);
+        Block block = head;
+        if (file.exists()) {
+            // should not happen, as timestamps only move forward - but never lose existing points
+            block = Segment.read(file);
+            for (int i = 0; i < head.count; i++) {
+                double[] values = new double[columnCount];
+                for (int c = 0; c < columnCount; c++) {
+                    values[c] = head.columns[c][i];
+                }
+                block.add(head.timestamps[i], values);
+            }
+        }
+        Segment.write(file, block);
+        cache.invalidate(file);
+        segments.put(headPartition, file);
+
+        head.clear();
+        closeWal();
+        if (walFile.exists() && !walFile.delete()) {
+            throw new IOException("Could not delete " + walFile);
+        }
+    }
+
+    /**
+     * Deletes all segments which only contain points older than the given time.
+     *
+     * @param timestamp the time in milliseconds
+     */
+    public void purge(long timestamp) {
+        Iterator<Entry<Long, File>> iterator = segments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<Long, File> entry = iterator.next();
+            if (entry.getKey() + partitionLength > timestamp) {
+                break;
+            }
+            if (entry.getValue().delete() || !entry.getValue().exists()) {
+                cache.invalidate(entry.getValue());
+                iterator.remove();
+            } else {
+                logger.warn("Could not delete expired segment '{}'.", entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Closes the write-ahead log. The head is not sealed, it is replayed when the tier is opened again.
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    public void close() throws IOException {
+        closeWal();
+    }
+
+    private long partition(long timestamp) {
+        long partition = timestamp - timestamp % partitionLength;
+        return timestamp < 0 && partition != timestamp ? partition - partitionLength : partition;
+    }
+
+    private void replay() throws IOException {
+        if (!walFile.exists()) {
+            return;
+        }
+
+        int recordLength = 8 + 8 * columnCount;
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(walFile.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long valid = size - size % recordLength;
+            buffer = ByteBuffer.allocate((int) valid);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            buffer.flip();
+            if (valid < size) {
+                logger.debug("Truncating torn record at the end of '{}'.", walFile);
+                channel.truncate(valid);
+            }
+        }
+
+        boolean sealed = false;
+        double[] values = new double[columnCount];
+        while (buffer.remaining() >= recordLength) {
+            long timestamp = buffer.getLong();
+            for (int i = 0; i < columnCount; i++) {
+                values[i] = buffer.getDouble();
+            }
+            if (timestamp < lastTimestamp) {
+                continue;
+            }
+            long partition = partition(timestamp);
+            if (head.count > 0 && partition != headPartition) {
+                // only happens if sealing failed before
+                seal();
+                sealed = true;
+            }
+            headPartition = partition;
+            head.add(timestamp, values);
+            lastTimestamp = timestamp;
+        }
+
+        if (sealed && head.count > 0) {
+            // sealing deleted the log, so write the remaining points again
+            ByteBuffer records = ByteBuffer.allocate(recordLength * head.count);
+            for (int i = 0; i < head.count; i++) {
+                records.putLong(head.timestamps[i]);
+                for (int c = 0; c < columnCount; c++) {
+                    records.putDouble(head.columns[c][i]);
+                }
+            }
+            records.flip();
+            writeWal(records);
+        }
+    }
+
+    private void writeWal(ByteBuffer records) throws IOException {
+        if (wal == null) {
+            wal = FileChannel.open(walFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        while (records.hasRemaining()) {
+            wal.write(records);
+        }
+    }
+
+    private void closeWal() throws IOException {
+        if (wal != null) {
+            FileChannel channel = wal;
+            wal = null;
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.persistence.timeseries.internal;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The {@link TimeSeries} holds the history of a single item in four {@link Tier}s:
+ * <ul>
+ * <li>{@code raw}: every stored value together with the kind of its state (partitioned by day)</li>
+ * <li>{@code minute}, {@code hour}, {@code day}: rollups with the columns min, max, sum and count of all raw values
+ * within a minute, an hour or a (UTC) day (partitioned by week, month and year)</li>
+ * </ul>
+ * Rollups are only written for completed intervals. Every rollup tier is computed from the next finer one, so
+ * {@link #rollup(long)} only has to look at the points which have been added since its last run.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class TimeSeries {
+
+    public static final long MINUTE = 60 * 1000L;
+    public static final long HOUR = 60 * MINUTE;
+    public static final long DAY = 24 * HOUR;
+
+    public static final int RAW = 0;
+    public static final int MINUTES = 1;
+    public static final int HOURS = 2;
+    public static final int DAYS = 3;
+
+    /** the columns of the raw tier */
+    public static final int VALUE = 0;
+    public static final int KIND = 1;
+
+    /** the columns of the rollup tiers */
+    public static final int MIN = 0;
+    public static final int MAX = 1;
+    public static final int SUM = 2;
+    public static final int COUNT = 3;
+
+    private static final String[] TIER_NAMES = { "raw", "minute", "hour", "day" };
+    private static final long[] RESOLUTIONS = { 0, MINUTE, HOUR, DAY };
+    private static final long[] PARTITION_LENGTHS = { DAY, 7 * DAY, 30 * DAY, 365 * DAY };
+
+    private final Tier[] tiers = new Tier[TIER_NAMES.length];
+
+    /**
+     * Opens a time series.
+     *
+     * @param folder the folder of the time series, is created if it does not exist
+     * @param cache the cache for the decoded segments of all tiers
+     * @throws IOException if the time series cannot be read
+     */
+    public TimeSeries(File folder, SegmentCache cache) throws IOException {
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = new Tier(new File(folder, TIER_NAMES[i]), PARTITION_LENGTHS[i], i == RAW ? 2 : 4, cache);
+        }
+    }
+
+    /**
+     * Closes the files of all tiers. The time series must not be used afterwards.
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        IOException error = null;
+        for (Tier tier : tiers) {
+            try {
+                tier.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Returns the resolution of a tier.
+     *
+     * @param tier the tier ({@link #RAW}, {@link #MINUTES}, {@link #HOURS} or {@link #DAYS})
+     * @return the length of an interval in milliseconds (0 for raw values)
+     */
+    public static long getResolution(int tier) {
+        return RESOLUTIONS[tier];
+    }
+
+    /**
+     * Adds a raw value. If the timestamp is before the last one (e.g. because the clock has been set back), the last
+     * timestamp is used instead.
+     *
+     * @param timestamp the time in milliseconds
+     * @param value the value
+     * @param kind the kind of state the value has been taken from
+     * @throws IOException if the value cannot be written
+     */
+    public synchronized void add(long timestamp, double value, int kind) throws IOException {
+        Tier raw = tiers[RAW];
+        raw.append(Math.max(timestamp, raw.getLastTimestamp()), new double[] { value, kind });
+    }
+
+    /**
+     * Writes the rollups of all intervals which have been completed before the given time.
+     *
+     * @param now the current time in milliseconds
+     * @throws IOException if the rollups cannot be written
+     */
+    public synchronized void rollup(long now) throws IOException {
+        for (int i = MINUTES; i <= DAYS; i++) {
+            rollup(tiers[i - 1], i - 1 == RAW, tiers[i], RESOLUTIONS[i], now);
+        }
+    }
+
+    /**
+     * Deletes the data which is older than the retention of each tier.
+     *
+     * @param now the current time in milliseconds
+     * @param retentions the retention of each tier in milliseconds, 0 to keep the data forever
+     */
+    public synchronized void purge(long now, long[] retentions) {
+        for (int i = 0; i < tiers.length; i++) {
+            if (retentions[i] > 0) {
+                tiers[i].purge(now - retentions[i]);
+            }
+        }
+    }
+
+    /**
+     * Visits the points of the given range. Rollup tiers only contain completed intervals, so the remaining part of
+     * the range is taken from the next finer tiers. The visitor can tell raw points from rollups by the number of
+     * columns of the {@link Block}.
+     *
+     * @param begin the minimum timestamp (inclusive)
+     * @param end the maximum timestamp (inclusive)
+     * @param tier the preferred tier
+     * @param descending true to visit the newest points first
+     * @param visitor the visitor
+     * @throws IOException if the data cannot be read
+     */
+    public synchronized void query(long begin, long end, int tier, boolean descending, PointVisitor visitor)
+            throws IOException {
+        long[] from = new long[tier + 1];
+        long[] to = new long[tier + 1];
+        long next = begin;
+        for (int i = tier; i >= RAW; i--) {
+            from[i] = next;
+            to[i] = end;
+            if (i > RAW) {
+                Tier rollups = tiers[i];
+                long covered = rollups.isEmpty() ? next - 1 : rollups.getLastTimestamp() + RESOLUTIONS[i] - 1;
+                to[i] = Math.min(end, covered);
+                next = Math.max(next, covered + 1);
+            }
+        }
+
+        for (int i = 0; i <= tier; i++) {
+            int current = descending ? i : tier - i;
+            if (!tiers[current].scan(from[current], to[current], descending, visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Visits the points which are needed to compute an exact aggregate of the given range. The range is covered by the
+     * rollups of the coarsest intervals which lie completely within it, the remaining parts at its beginning and its
+     * end are taken from the next finer tiers and finally from the raw values. The points are visited in ascending
+     * order.
+     *
+     * @param begin the minimum timestamp (inclusive)
+     * @param end the maximum timestamp (inclusive)
+     * @param visitor the visitor
+     * @throws IOException if the data cannot be read
+     */
+    public synchronized void aggregate(long begin, long end, PointVisitor visitor) throws IOException {
+        aggregate(DAYS, begin, end, visitor);
+    }
+
+    private boolean aggregate(int tier, long begin, long end, PointVisitor visitor) throws IOException {
+        if (begin > end) {
+            return true;
+        }
+        if (tier == RAW) {
+            return tiers[RAW].scan(begin, end, false, visitor);
+        }
+
+        Tier rollups = tiers[tier];
+        long resolution = RESOLUTIONS[tier];
+        // the first and the last interval which start and end within the range and have been rolled up already
+        long first = floor(begin, resolution) == begin ? begin : floor(begin, resolution) + resolution;
+        long last = rollups.isEmpty() ? Long.MIN_VALUE : Math.min(floor(end - resolution + 1, resolution),
+                rollups.getLastTimestamp());
+        if (first > last) {
+            return aggregate(tier - 1, begin, end, visitor);
+        }
+        return aggregate(tier - 1, begin, first - 1, visitor) && rollups.scan(first, last, false, visitor)
+                && aggregate(tier - 1, last + resolution, end, visitor);
+    }
+
+    private void rollup(Tier source, boolean raw, Tier target, long resolution, long now) throws IOException {
+        if (source.isEmpty()) {
+            return;
+        }
+        long begin = target.isEmpty() ? floor(source.getFirstTimestamp(), resolution)
+                : target.getLastTimestamp() + resolution;
+        long end = floor(now, resolution) - 1;
+        if (begin > end) {
+            return;
+        }
+
+        Aggregator aggregator = new Aggregator(target, raw, resolution);
+        source.scan(begin, end, false, aggregator);
+        aggregator.flush();
+    }
+
+    private static long floor(long timestamp, long resolution) {
+        long floor = timestamp - timestamp % resolution;
+        return timestamp < 0 && floor != timestamp ? floor - resolution : floor;
+    }
+
+    /**
+     * Combines the points of a finer tier into the intervals of a rollup tier.
+     */
+    private static class Aggregator implements PointVisitor {
+
+        private final Tier target;
+        private final boolean raw;
+        private final long resolution;
+
+        private final double[] values = new double[4];
+        private long interval = Long.MIN_VALUE;
+
+        Aggregator(Tier target, boolean raw, long resolution) {
+            this.target = target;
+            this.raw = raw;
+            this.resolution = resolution;
+        }
+
+        @Override
+        public boolean visit(Block block, int index) throws IOException {
+            long current = floor(block.getTimestamp(index), resolution);
+            if (current != interval) {
+                flush();
+                interval = current;
+                values[MIN] = Double.POSITIVE_INFINITY;
+                values[MAX] = Double.NEGATIVE_INFINITY;
+                values[SUM] = 0;
+                values[COUNT] = 0;
+            }
+            if (raw) {
+                double value = block.getValue(VALUE, index);
+                values[MIN] = Math.min(values[MIN], value);
+                values[MAX] = Math.max(values[MAX], value);
+                values[SUM] += value;
+                values[COUNT]++;
+            } else {
+                values[MIN] = Math.min(values[MIN], block.getValue(MIN, index));
+                values[MAX] = Math.max(values[MAX], block.getValue(MAX, index));
+                values[SUM] += block.getValue(SUM, index);
+                values[COUNT] += block.getValue(COUNT, index);
+            }
+            return true;
+        }
+
+        void flush() throws IOException {
+            if (interval != Long.MIN_VALUE && values[COUNT] > 0) {
+                target.append(interval, values);
+            }
+            interval = Long.MIN_VALUE;
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.storage.logstore.internal
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @author Markus Mazurczak - Initial contribution
+ */
+class AppendLogTest {
+
+	File file
+	AppendLog log
+
+	@Before
+	void setUp() {
+		file = File.createTempFile('storage', '.log')
+		file.delete()
+		log = new AppendLog(file, true)
+		log.open()
+	}
+
+	@After
+	void tearDown() {
+		log.close()
+		file.delete()
+	}
+
+	@Test
+	void 'assert latest values and removals survive a reopen'() {
+		10.times { log.put('storage', 'Key1', "Value$it".bytes) }
+		log.put('storage', 'Key2', 'Value'.bytes)
+		log.put('other', 'Key1', 'Other'.bytes)
+		log.remove('storage', 'Key2')
+
+		reopen()
+
+		assertThat new String(log.get('storage', 'Key1')), is('Value9')
+		assertThat log.get('storage', 'Key2'), is(nullValue())
+		assertThat new String(log.get('other', 'Key1')), is('Other')
+		assertThat log.getKeys('storage'), is(['Key1'])
+	}
+
+	@Test
+	void 'assert torn record at the end of the log is discarded'() {
+		log.put('storage', 'Key1', 'Value1'.bytes)
+		long validSize = log.getSize()
+		log.close()
+
+		def raf = new RandomAccessFile(file, 'rw')
+		raf.seek(validSize)
+		raf.writeInt(100)
+		raf.write([1, 2, 3] as byte[])
+		raf.close()
+
+		log = new AppendLog(file, true)
+		log.open()
+
+		assertThat log.getSize(), is(validSize)
+		assertThat file.length(), is(validSize)
+		assertThat new String(log.get('storage', 'Key1')), is('Value1')
+	}
+
+	@Test
+	void 'assert compaction drops garbage and keeps live entries'() {
+		100.times { log.put('storage', "Key${it % 5}", "Value$it".bytes) }
+		log.remove('storage', 'Key0')
+		assertThat log.needsCompaction(0.5, 0), is(true)
+
+		log.compact()
+
+		assertThat log.getGarbageSize(), is(0L)
+		assertThat file.length(), is(log.getSize())
+		assertThat log.getKeys('storage'), is(['Key1', 'Key2', 'Key3', 'Key4'])
+		assertThat new String(log.get('storage', 'Key4')), is('Value99')
+
+		reopen()
+
+		assertThat log.getKeys('storage'), is(['Key1', 'Key2', 'Key3', 'Key4'])
+		assertThat new String(log.get('storage', 'Key1')), is('Value96')
+	}
+
+	private void reopen() {
+		log.close()
+		log = new AppendLog(file, true)
+		log.open()
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.storage.logstore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.eclipse.smarthome.core.storage.Storage;
+import org.eclipse.smarthome.core.storage.StorageCodec;
+import org.eclipse.smarthome.storage.logstore.internal.AppendLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The LogStorage is a {@link Storage} whose entries are kept in the shared {@link AppendLog} of the
+ * {@link LogStorageService}. The values are serialized by the {@link StorageCodec} of the storage, i.e. in the compact
+ * binary format if binary serialization is enabled and the storage has a codec for their type and as JSON otherwise.
+ * Entries which are not in the configured format are converted when the storage is created.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class LogStorage<T> implements Storage<T> {
+
+    private final Logger logger = LoggerFactory.getLogger(LogStorage.class);
+
+    private final AppendLog log;
+    private final String name;
+    private final ClassLoader classLoader;
+    private final StorageCodec codec;
+
+    public LogStorage(AppendLog log, String name, ClassLoader classLoader, StorageCodec codec) {
+        this.log = log;
+        this.name = name;
+        this.classLoader = classLoader;
+        this.codec = codec;
+        migrate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T put(String key, T value) {
+        try {
+            return deserialize(log.put(name, key, serialize(value)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write entry '" + key + "' of storage '" + name + "'.", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T remove(String key) {
+        try {
+            return deserialize(log.remove(name, key));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not remove entry '" + key + "' of storage '" + name + "'.", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T get(String key) {
+        try {
+            return deserialize(log.get(name, key));
+        } catch (IOException e) {
+            logger.warn("Couldn't read entry '{}' of storage '{}'. Root cause is: {}",
+                    new Object[] { key, name, e.getMessage() });
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getKeys() {
+        return log.getKeys(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<T> getValues() {
+        Collection<T> values = new ArrayList<T>();
+        for (String key : getKeys()) {
+            T value = get(key);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Serializes the given {@code value} with the {@link StorageCodec}.
+     *
+     * @param value the {@code value} to store
+     * @return the serialized value
+     */
+    private byte[] serialize(T value) {
+        try {
+            return codec.encode(value);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize value '" + value + "'.", e);
+        }
+    }
+
+    /**
+     * Deserializes and instantiates an object of type {@code T} out of the given bytes. The classloader given to the
+     * storage (if any) is used in order to load the classes in the context of the calling bundle.
+     *
+     * @param serialized the serialized value, might be null
+     * @return the deserialized value or null if there is nothing to deserialize or deserialization failed
+     */
+    @SuppressWarnings("unchecked")
+    private T deserialize(byte[] serialized) {
+        if (serialized == null) {
+            // nothing to deserialize
+            return null;
+        }
+
+        try {
+            T value = (T) codec.decode(serialized, classLoader);
+            logger.trace("deserialized value '{}' from storage log", value);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Couldn't deserialize value in storage '{}'. Root cause is: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Re-encodes all entries which are not stored in the format the {@link StorageCodec} would use now.
+     */
+    private void migrate() {
+        int migrated = 0;
+        for (String key : getKeys()) {
+            try {
+                byte[] serialized = log.get(name, key);
+                if (serialized != null && codec.needsMigration(serialized)) {
+                    T value = deserialize(serialized);
+                    if (value != null) {
+                        log.put(name, key, serialize(value));
+                        migrated++;
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Couldn't migrate entry '{}' of storage '{}'. Root cause is: {}",
+                        new Object[] { key, name, e.getMessage() });
+            }
+        }
+        if (migrated > 0) {
+            logger.debug("Migrated {} entries of storage '{}' to the {} format.",
+                    new Object[] { migrated, name, codec.isBinary() ? "binary" : "JSON" });
+        }
+    }
+
+}
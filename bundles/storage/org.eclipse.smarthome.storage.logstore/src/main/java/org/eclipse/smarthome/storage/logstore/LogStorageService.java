@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.storage.logstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.config.core.PropertiesTypeAdapterFactory;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.storage.CodecAwareStorageService;
+import org.eclipse.smarthome.core.storage.Storage;
+import org.eclipse.smarthome.core.storage.StorageCodec;
+import org.eclipse.smarthome.core.storage.TypeTable;
+import org.eclipse.smarthome.core.storage.ValueCodec;
+import org.eclipse.smarthome.storage.logstore.internal.AppendLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * This implementation of {@link StorageService} keeps all storages in one append-only log file (see
+ * {@link AppendLog}). Writes are purely sequential, which suits flash based storage devices like SD cards much better
+ * than the random writes of a B-tree, and the index is rebuilt on startup with a single sequential scan.
+ * <p>
+ * The log is compacted in the background whenever the share of overwritten and removed records exceeds the
+ * configured ratio. The following configuration parameters are supported:
+ * <ul>
+ * <li>compactionInterval: minutes between two checks whether a compaction is needed (default 60)</li>
+ * <li>compactionRatio: share of garbage in the log (0..1) which triggers a compaction (default 0.5)</li>
+ * <li>sync: whether every write is forced to the storage device before it returns (default true)</li>
+ * <li>serialization: {@code json} to keep all values readable or {@code binary} to store the values of storages
+ * which have been requested with {@link ValueCodec}s in the compact binary format (default json). Existing entries
+ * are migrated to the configured format when their storage is opened.</li>
+ * </ul>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class LogStorageService implements CodecAwareStorageService {
+
+    private final Logger logger = LoggerFactory.getLogger(LogStorageService.class);
+
+    /** the name of the log file ({@code storage.log}) */
+    private static final String LOG_FILE_NAME = "storage.log";
+
+    /** the folder name to store the log file in ({@code logstore}) */
+    private static final String LOG_FOLDER_NAME = "logstore";
+
+    private static final String THREAD_POOL_NAME = "storage";
+
+    /** the name of the storage in the log which holds the {@link TypeTable} */
+    private static final String TYPE_TABLE_NAME = "org.eclipse.smarthome.storage.logstore.types";
+
+    private static final String SERIALIZATION_BINARY = "binary";
+
+    private static final long DEFAULT_COMPACTION_INTERVAL = 60;
+
+    private static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+    /** logs with less garbage than this are never compacted */
+    private static final long MIN_GARBAGE_SIZE = 64 * 1024;
+
+    /** holds the log all storages of this service are kept in */
+    private AppendLog log;
+
+    private ScheduledFuture<?> compactionJob;
+
+    private long compactionInterval = DEFAULT_COMPACTION_INTERVAL;
+
+    private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+
+    private boolean sync = true;
+
+    private volatile boolean binary = false;
+
+    private TypeTable typeTable;
+
+    /**
+     * the codecs of the storages which have been opened by their names, so that a changed configuration applies to all
+     * of them; a storage which is requested again replaces the codec of its name
+     */
+    private final Map<String, StorageCodec> codecs = new ConcurrentHashMap<>();
+
+    private Gson mapper;
+
+    public void activate(Map<String, Object> config) throws IOException {
+        applyConfig(config);
+
+        File folder = new File(ConfigConstants.getUserDataFolder() + File.separator + LOG_FOLDER_NAME);
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+
+        File logFile = new File(folder, LOG_FILE_NAME);
+        log = new AppendLog(logFile, sync);
+        log.open();
+        logger.debug("Opened storage log at '{}' ({} bytes).", logFile.getAbsolutePath(), log.getSize());
+
+        mapper = new GsonBuilder().registerTypeAdapterFactory(new PropertiesTypeAdapterFactory()).create();
+        typeTable = loadTypeTable();
+
+        compactIfNeeded();
+        scheduleCompaction();
+    }
+
+    public void modified(Map<String, Object> config) {
+        applyConfig(config);
+        log.setSync(sync);
+        for (StorageCodec codec : codecs.values()) {
+            codec.setBinary(binary);
+        }
+        scheduleCompaction();
+    }
+
+    public void deactivate() {
+        if (compactionJob != null) {
+            compactionJob.cancel(false);
+            compactionJob = null;
+        }
+        codecs.clear();
+        log.close();
+        logger.debug("Deactivated log-structured Storage Service.");
+    }
+
+    @Override
+    public <T> Storage<T> getStorage(String name, ClassLoader classLoader, Collection<ValueCodec<?>> valueCodecs) {
+        StorageCodec codec = new StorageCodec(typeTable, mapper, valueCodecs);
+        codec.setBinary(binary);
+        codecs.put(name, codec);
+        return new LogStorage<T>(log, name, classLoader, codec);
+    }
+
+    @Override
+    public <T> Storage<T> getStorage(String name, ClassLoader classLoader) {
+        return getStorage(name, classLoader, Collections.<ValueCodec<?>> emptyList());
+    }
+
+    @Override
+    public <T> Storage<T> getStorage(String name) {
+        return getStorage(name, null);
+    }
+
+    private void applyConfig(Map<String, Object> config) {
+        if (config == null) {
+            return;
+        }
+
+        Object value = config.get("compactionInterval");
+        if (value != null) {
+            try {
+                compactionInterval = Long.parseLong(value.toString());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid compaction interval '{}'.", value);
+            }
+        }
+        value = config.get("compactionRatio");
+        if (value != null) {
+            try {
+                compactionRatio = Double.parseDouble(value.toString());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid compaction ratio '{}'.", value);
+            }
+        }
+        value = config.get("sync");
+        if (value != null) {
+            sync = Boolean.parseBoolean(value.toString());
+        }
+        value = config.get("serialization");
+        if (value != null) {
+            binary = SERIALIZATION_BINARY.equalsIgnoreCase(value.toString());
+        }
+    }
+
+    private TypeTable loadTypeTable() throws IOException {
+        Map<Integer, String> entries = new HashMap<>();
+        for (String id : log.getKeys(TYPE_TABLE_NAME)) {
+            entries.put(Integer.valueOf(id), new String(log.get(TYPE_TABLE_NAME, id), StandardCharsets.UTF_8));
+        }
+        return new TypeTable(entries, new TypeTable.Listener() {
+            @Override
+            public void typeAdded(int id, String typeName) {
+                try {
+                    log.put(TYPE_TABLE_NAME, String.valueOf(id), typeName.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not store type '" + typeName + "'.", e);
+                }
+            }
+        });
+    }
+
+    private void scheduleCompaction() {
+        if (compactionJob != null) {
+            compactionJob.cancel(false);
+            compactionJob = null;
+        }
+        if (compactionInterval > 0) {
+            compactionJob = ThreadPoolManager.getScheduledPool(THREAD_POOL_NAME).scheduleWithFixedDelay(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            compactIfNeeded();
+                        }
+                    }, compactionInterval, compactionInterval, TimeUnit.MINUTES);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (!log.needsCompaction(compactionRatio, MIN_GARBAGE_SIZE)) {
+            return;
+        }
+        try {
+            log.compact();
+        } catch (IOException e) {
+            logger.error("Error while compacting the storage log: {}", e.getMessage(), e);
+        }
+    }
+
+}
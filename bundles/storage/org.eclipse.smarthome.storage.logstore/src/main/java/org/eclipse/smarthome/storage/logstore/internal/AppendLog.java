@@ -0,0 +1,521 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.storage.logstore.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link AppendLog} keeps the entries of all storages in a single append-only file. Every modification is
+ * appended as a checksummed record, an in-memory index points to the latest record of each key. On opening, the
+ * index is rebuilt by one sequential scan over the memory-mapped file, a torn or corrupt tail (e.g. after a power
+ * loss) is cut off at the last valid record.
+ * <p>
+ * Overwritten and removed entries remain in the file as garbage until {@link #compact()} rewrites the live records
+ * into a new file and atomically replaces the old one.
+ * <p>
+ * File layout: a 4 byte magic number followed by records of the form
+ * {@code [int length][int crc32][byte op][utf storage][utf key][value bytes]}, where length and checksum cover
+ * everything after the checksum.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class AppendLog {
+
+    private static final int MAGIC = 0x45534C31;
+
+    private static final int HEADER_SIZE = 4;
+
+    /** the length and checksum fields in front of every record body */
+    private static final int RECORD_PREFIX_SIZE = 8;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private final Logger logger = LoggerFactory.getLogger(AppendLog.class);
+
+    private final File file;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** storage name -> key -> position of the latest record */
+    private Map<String, SortedMap<String, RecordPointer>> index = new HashMap<>();
+
+    private FileChannel channel;
+
+    /** the end of the last valid record, i.e. the position of the next append */
+    private long size;
+
+    /** the number of bytes occupied by records which are still referenced from the index */
+    private long liveBytes;
+
+    private volatile boolean sync;
+
+    /**
+     * Creates a new log for the given file. The log has to be {@link #open()}ed before it can be used.
+     *
+     * @param file the log file, is created if it does not exist
+     * @param sync whether every append should be forced to the storage device before returning
+     */
+    public AppendLog(File file, boolean sync) {
+        this.file = file;
+        this.sync = sync;
+    }
+
+    /**
+     * Opens the log file and rebuilds the index from its records.
+     *
+     * @throws IOException if the file cannot be read or is not a storage log
+     */
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            File leftover = new File(file.getPath() + COMPACT_SUFFIX);
+            if (leftover.exists() && !leftover.delete()) {
+                logger.warn("Could not delete unfinished compaction file '{}'.", leftover.getAbsolutePath());
+            }
+            channel = openChannel();
+            load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the log file. Afterwards the log must not be used anymore.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            logger.warn("Error while closing storage log '{}': {}", file.getAbsolutePath(), e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Returns the value stored for the given key.
+     *
+     * @param storageName the name of the storage
+     * @param key the key
+     * @return the stored value or null if there is none
+     * @throws IOException if the record cannot be read or is corrupt
+     */
+    public byte[] get(String storageName, String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            RecordPointer pointer = getPointer(storageName, key);
+            return pointer == null ? null : readValue(pointer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a new value for the given key.
+     *
+     * @param storageName the name of the storage
+     * @param key the key
+     * @param value the value, must not be null
+     * @return the previous value or null if there was none
+     * @throws IOException if the record cannot be written
+     */
+    public byte[] put(String storageName, String key, byte[] value) throws IOException {
+        lock.writeLock().lock();
+        try {
+            RecordPointer previous = getPointer(storageName, key);
+            byte[] previousValue = previous == null ? null : readValue(previous);
+
+            ByteBuffer record = encode(OP_PUT, storageName, key, value);
+            RecordPointer pointer = append(record);
+            apply(OP_PUT, storageName, key, pointer);
+            return previousValue;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a removal marker for the given key.
+     *
+     * @param storageName the name of the storage
+     * @param key the key
+     * @return the removed value or null if there was none
+     * @throws IOException if the record cannot be written
+     */
+    public byte[] remove(String storageName, String key) throws IOException {
+        lock.writeLock().lock();
+        try {
+            RecordPointer previous = getPointer(storageName, key);
+            if (previous == null) {
+                return null;
+            }
+            byte[] previousValue = readValue(previous);
+
+            ByteBuffer record = encode(OP_REMOVE, storageName, key, null);
+            RecordPointer pointer = append(record);
+            apply(OP_REMOVE, storageName, key, pointer);
+            return previousValue;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the keys of the given storage in their natural order.
+     *
+     * @param storageName the name of the storage
+     * @return the keys, never null
+     */
+    public Collection<String> getKeys(String storageName) {
+        lock.readLock().lock();
+        try {
+            SortedMap<String, RecordPointer> entries = index.get(storageName);
+            if (entries == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(entries.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the current size of the log file in bytes.
+     *
+     * @return the size
+     */
+    public long getSize() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes occupied by overwritten or removed records.
+     *
+     * @return the number of garbage bytes
+     */
+    public long getGarbageSize() {
+        lock.readLock().lock();
+        try {
+            return size - HEADER_SIZE - liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether the share of garbage in the log exceeds the given ratio.
+     *
+     * @param garbageRatio the share of garbage (0..1) at which the log should be compacted
+     * @param minGarbageSize the minimum number of garbage bytes, below which a compaction is not worth it
+     * @return true if {@link #compact()} should be called
+     */
+    public boolean needsCompaction(double garbageRatio, long minGarbageSize) {
+        lock.readLock().lock();
+        try {
+            long garbage = size - HEADER_SIZE - liveBytes;
+            return garbage >= minGarbageSize && garbage >= size * garbageRatio;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites all live records into a new file which then atomically replaces the current log file. If anything goes
+     * wrong before the replacement, the current log file stays untouched.
+     *
+     * @throws IOException if the compacted file cannot be written or moved into place
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel == null) {
+                // the log has been closed meanwhile
+                return;
+            }
+            File compactFile = new File(file.getPath() + COMPACT_SUFFIX);
+            Map<String, SortedMap<String, RecordPointer>> compactIndex = new HashMap<>();
+            long position = HEADER_SIZE;
+
+            try (FileChannel target = FileChannel.open(compactFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(target, header(), 0);
+                for (Entry<String, SortedMap<String, RecordPointer>> storage : index.entrySet()) {
+                    SortedMap<String, RecordPointer> entries = new TreeMap<>();
+                    for (Entry<String, RecordPointer> entry : storage.getValue().entrySet()) {
+                        RecordPointer pointer = entry.getValue();
+                        writeFully(target, ByteBuffer.wrap(readRecord(pointer)), position);
+                        entries.put(entry.getKey(), new RecordPointer(position, pointer.length));
+                        position += pointer.length;
+                    }
+                    compactIndex.put(storage.getKey(), entries);
+                }
+                target.force(true);
+            } catch (IOException e) {
+                compactFile.delete();
+                throw e;
+            }
+
+            long previousSize = size;
+            channel.close();
+            try {
+                replace(compactFile, file);
+            } catch (IOException e) {
+                compactFile.delete();
+                channel = openChannel();
+                throw e;
+            }
+            channel = openChannel();
+            index = compactIndex;
+            size = position;
+            liveBytes = position - HEADER_SIZE;
+
+            logger.debug("Compacted storage log '{}' from {} to {} bytes.",
+                    new Object[] { file.getAbsolutePath(), previousSize, size });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private void load() throws IOException {
+        index = new HashMap<>();
+        liveBytes = 0;
+
+        long fileSize = channel.size();
+        if (fileSize == 0) {
+            writeFully(channel, header(), 0);
+            channel.force(true);
+            size = HEADER_SIZE;
+            return;
+        }
+
+        MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, fileSize);
+        if (fileSize < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("File '" + file.getAbsolutePath() + "' is not a storage log.");
+        }
+
+        CRC32 crc = new CRC32();
+        long position = HEADER_SIZE;
+        buffer.position(HEADER_SIZE);
+        while (buffer.remaining() >= RECORD_PREFIX_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            byte op = in.readByte();
+            String storageName = in.readUTF();
+            String key = in.readUTF();
+            apply(op, storageName, key, new RecordPointer(position, RECORD_PREFIX_SIZE + length));
+            position += RECORD_PREFIX_SIZE + length;
+        }
+
+        if (position < fileSize) {
+            logger.warn("Storage log '{}' contains {} bytes of incomplete or corrupt records, truncating them.",
+                    file.getAbsolutePath(), fileSize - position);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        size = position;
+    }
+
+    private void apply(byte op, String storageName, String key, RecordPointer pointer) {
+        SortedMap<String, RecordPointer> entries = index.get(storageName);
+        if (entries == null) {
+            entries = new TreeMap<>();
+            index.put(storageName, entries);
+        }
+
+        RecordPointer previous;
+        if (op == OP_PUT) {
+            previous = entries.put(key, pointer);
+            liveBytes += pointer.length;
+        } else {
+            previous = entries.remove(key);
+        }
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+    }
+
+    private RecordPointer getPointer(String storageName, String key) {
+        SortedMap<String, RecordPointer> entries = index.get(storageName);
+        return entries == null ? null : entries.get(key);
+    }
+
+    private RecordPointer append(ByteBuffer record) throws IOException {
+        long position = size;
+        int length = record.remaining();
+        try {
+            writeFully(channel, record, position);
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            // drop whatever part of the record made it to the file, so that the next append starts clean
+            channel.truncate(position);
+            throw e;
+        }
+        size += length;
+        return new RecordPointer(position, length);
+    }
+
+    private byte[] readRecord(RecordPointer pointer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(pointer.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pointer.offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of storage log at position " + pointer.offset);
+            }
+        }
+        return buffer.array();
+    }
+
+    private byte[] readValue(RecordPointer pointer) throws IOException {
+        byte[] record = readRecord(pointer);
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_PREFIX_SIZE, length);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in storage log at position " + pointer.offset);
+        }
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(record, RECORD_PREFIX_SIZE, length);
+        DataInputStream in = new DataInputStream(bytes);
+        in.readByte();
+        in.readUTF();
+        in.readUTF();
+        byte[] value = new byte[bytes.available()];
+        in.readFully(value);
+        return value;
+    }
+
+    private ByteBuffer encode(byte op, String storageName, String key, byte[] value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                RECORD_PREFIX_SIZE + 64 + (value == null ? 0 : value.length));
+        DataOutputStream out = new DataOutputStream(bytes);
+        // placeholders for length and checksum
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeByte(op);
+        out.writeUTF(storageName);
+        out.writeUTF(key);
+        if (value != null) {
+            out.write(value);
+        }
+        out.flush();
+
+        byte[] record = bytes.toByteArray();
+        int length = record.length - RECORD_PREFIX_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_PREFIX_SIZE, length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer;
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.flip();
+        return header;
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += target.write(buffer, offset);
+        }
+    }
+
+    private static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Position and length of a record within the log file.
+     */
+    private static class RecordPointer {
+
+        private final long offset;
+        private final int length;
+
+        private RecordPointer(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+}
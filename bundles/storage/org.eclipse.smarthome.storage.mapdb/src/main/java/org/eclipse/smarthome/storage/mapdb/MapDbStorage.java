@@ -7,17 +7,18 @@
  */
 package org.eclipse.smarthome.storage.mapdb;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 
 import org.eclipse.smarthome.core.storage.Storage;
+import org.eclipse.smarthome.core.storage.StorageCodec;
 import org.mapdb.DB;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 /**
  * The MapDbStorage is concrete implementation of the {@link Storage} interface.
@@ -25,9 +26,15 @@ import com.google.gson.GsonBuilder;
  * the given values using their JSON representation (generated by {@code Gson}.
  * This transformation should help maintaining version compatibility of the stored
  * data.
+ * <p>
+ * If binary serialization is enabled, values of types for which the storage has been given a
+ * {@link org.eclipse.smarthome.core.storage.ValueCodec} are stored in the compact binary format of the
+ * {@link StorageCodec} instead. Existing
+ * entries are converted to the configured format when the storage is opened.
  *
  * @author Thomas.Eichstaedt-Engelen - Initial Contribution and API
  * @author Alex Tugarev - Loading with Class.forName() if classLoader is null
+ * @author Markus Mazurczak - Added binary serialization
  */
 public class MapDbStorage<T> implements Storage<T> {
 
@@ -37,15 +44,20 @@ public class MapDbStorage<T> implements Storage<T> {
 
     private DB db;
     private ClassLoader classLoader;
-    private Map<String, String> map;
+    private StorageCodec codec;
+
+    /** the stored values, either JSON strings or binary values produced by the {@link StorageCodec} */
+    private Map<String, Object> map;
 
     private transient Gson mapper;
 
-    public MapDbStorage(DB db, String name, ClassLoader classLoader) {
+    public MapDbStorage(DB db, String name, ClassLoader classLoader, StorageCodec codec, Gson mapper) {
         this.db = db;
         this.classLoader = classLoader;
+        this.codec = codec;
         this.map = db.createTreeMap(name).makeOrGet();
-        this.mapper = new GsonBuilder().registerTypeAdapterFactory(new PropertiesTypeAdapterFactory()).create();
+        this.mapper = mapper;
+        migrate();
     }
 
     /**
@@ -53,7 +65,7 @@ public class MapDbStorage<T> implements Storage<T> {
      */
     @Override
     public T put(String key, T value) {
-        String previousValue = map.put(key, serialize(value));
+        Object previousValue = map.put(key, serialize(value));
         db.commit();
         return deserialize(previousValue);
     }
@@ -63,7 +75,7 @@ public class MapDbStorage<T> implements Storage<T> {
      */
     @Override
     public T remove(String key) {
-        String removedElement = map.remove(key);
+        Object removedElement = map.remove(key);
         db.commit();
         return deserialize(removedElement);
     }
@@ -96,6 +108,28 @@ public class MapDbStorage<T> implements Storage<T> {
         return values;
     }
 
+    /**
+     * Serializes the given {@code value}, in the binary format if possible and enabled or as JSON otherwise.
+     *
+     * @param value the {@code value} to store
+     * @return the serialized value, either a {@code byte[]} or a {@code String}
+     */
+    private Object serialize(T value) {
+
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot serialize NULL");
+        }
+
+        if (codec.isBinary() && codec.hasCodec(value.getClass().getName())) {
+            try {
+                return codec.encode(value);
+            } catch (IOException e) {
+                logger.debug("Couldn't encode value '{}', storing it as JSON: {}", value, e.getMessage());
+            }
+        }
+        return serializeJson(value);
+    }
+
     /**
      * Transforms the given {@code value} into its JSON representation using {@code Gson}. Since we do not know the type
      * of {@code value} while
@@ -105,11 +139,7 @@ public class MapDbStorage<T> implements Storage<T> {
      * @param value the {@code value} to store
      * @return the JSON document prepended with the qualified type name of {@code value}
      */
-    private String serialize(T value) {
-
-        if (value == null) {
-            throw new IllegalArgumentException("Cannot serialize NULL");
-        }
+    private String serializeJson(T value) {
 
         String valueTypeName = value.getClass().getName();
         String valueAsString = mapper.toJson(value);
@@ -119,6 +149,25 @@ public class MapDbStorage<T> implements Storage<T> {
         return concatValue;
     }
 
+    /**
+     * Deserializes a stored value, which is either a JSON String or a binary value.
+     *
+     * @param stored the stored value, might be null
+     * @return the value or null if there is nothing to deserialize or deserialization failed
+     */
+    @SuppressWarnings("unchecked")
+    private T deserialize(Object stored) {
+        if (stored instanceof byte[]) {
+            try {
+                return (T) codec.decode((byte[]) stored, classLoader);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Couldn't deserialize binary value. Root cause is: {}", e.getMessage());
+                return null;
+            }
+        }
+        return deserialize((String) stored);
+    }
+
     /**
      * Deserializes and instantiates an object of type {@code T} out of the
      * given JSON String. A special classloader (other than the one of the
@@ -159,4 +208,41 @@ public class MapDbStorage<T> implements Storage<T> {
         return value;
     }
 
+    /**
+     * Converts all entries which are not stored in the currently configured format, i.e. JSON entries for which a
+     * codec is available while binary serialization is enabled and binary entries while it is disabled.
+     */
+    private void migrate() {
+        int migrated = 0;
+        for (String key : new ArrayList<String>(map.keySet())) {
+            Object stored = map.get(key);
+            if (needsMigration(stored)) {
+                T value = deserialize(stored);
+                if (value != null) {
+                    map.put(key, serialize(value));
+                    migrated++;
+                }
+            }
+        }
+        if (migrated > 0) {
+            db.commit();
+            logger.debug("Migrated {} entries to the {} format.", migrated, codec.isBinary() ? "binary" : "JSON");
+        }
+    }
+
+    private boolean needsMigration(Object stored) {
+        try {
+            if (stored instanceof byte[]) {
+                return codec.needsMigration((byte[]) stored);
+            }
+            if (stored instanceof String && codec.isBinary()) {
+                String valueTypeName = ((String) stored).split(TYPE_SEPARATOR, 2)[0];
+                return codec.hasCodec(valueTypeName);
+            }
+        } catch (IOException e) {
+            logger.debug("Couldn't determine the format of a stored value: {}", e.getMessage());
+        }
+        return false;
+    }
+
 }
@@ -8,36 +8,73 @@
 package org.eclipse.smarthome.storage.mapdb;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.config.core.PropertiesTypeAdapterFactory;
+import org.eclipse.smarthome.core.storage.CodecAwareStorageService;
 import org.eclipse.smarthome.core.storage.Storage;
-import org.eclipse.smarthome.core.storage.StorageService;
+import org.eclipse.smarthome.core.storage.StorageCodec;
+import org.eclipse.smarthome.core.storage.TypeTable;
+import org.eclipse.smarthome.core.storage.ValueCodec;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
 /**
  * This implementation of {@link StorageService} provides abilities to store
  * data in the lightweight key-value-store <a href="http://www.mapdb.org">MapDB</a>.
+ * <p>
+ * The service can be configured with the parameter {@code serialization}, which is either {@code json} (default) or
+ * {@code binary}. In JSON mode all values are stored in their readable JSON representation, which is useful for
+ * debugging and exporting the data. In binary mode the values of storages which have been requested with
+ * {@link ValueCodec}s are stored in a compact binary form. A changed setting is applied to existing entries when their
+ * storage is opened, so switching the setting migrates the data in both directions.
  *
  * @author Thomas.Eichstaedt-Engelen - Initial Contribution and API
  * @author Alex Tugarev - Added getStorage for name only
+ * @author Markus Mazurczak - Added binary serialization
  */
-public class MapDbStorageService implements StorageService {
+public class MapDbStorageService implements CodecAwareStorageService {
 
     private final Logger logger = LoggerFactory.getLogger(MapDbStorageService.class);
 
     /** the name of the mapdb database ({@code storage.mapdb}) */
     private static final String DB_FILE_NAME = "storage.mapdb";
 
+    /** the name of the map which holds the {@link TypeTable} */
+    private static final String TYPE_TABLE_NAME = "org.eclipse.smarthome.storage.mapdb.types";
+
+    private static final String CONFIG_SERIALIZATION = "serialization";
+
+    private static final String SERIALIZATION_BINARY = "binary";
+
     /** holds the local instance of the MapDB database */
     private DB db;
 
     /** the folder name to store mapdb databases ({@code mapdb} by default) */
     private String dbFolderName = "mapdb";
 
-    public void activate() {
+    private TypeTable typeTable;
+
+    /**
+     * the codecs of the storages which have been opened by their names, so that a changed configuration applies to all
+     * of them; a storage which is requested again replaces the codec of its name
+     */
+    private final Map<String, StorageCodec> codecs = new ConcurrentHashMap<>();
+
+    private volatile boolean binary = false;
+
+    private Gson mapper;
+
+    public void activate(Map<String, Object> properties) {
         dbFolderName = ConfigConstants.getUserDataFolder() + File.separator + dbFolderName;
         File folder = new File(dbFolderName);
         if (!folder.exists()) {
@@ -48,16 +85,45 @@ public class MapDbStorageService implements StorageService {
         db = DBMaker.newFileDB(dbFile).closeOnJvmShutdown().make();
 
         logger.debug("Opened MapDB file at '{}'.", dbFile.getAbsolutePath());
+
+        final Map<Integer, String> types = db.createTreeMap(TYPE_TABLE_NAME).makeOrGet();
+        typeTable = new TypeTable(types, new TypeTable.Listener() {
+            @Override
+            public void typeAdded(int id, String typeName) {
+                types.put(id, typeName);
+                db.commit();
+            }
+        });
+        mapper = new GsonBuilder().registerTypeAdapterFactory(new PropertiesTypeAdapterFactory()).create();
+        modified(properties);
+    }
+
+    public void modified(Map<String, Object> properties) {
+        Object serialization = properties == null ? null : properties.get(CONFIG_SERIALIZATION);
+        binary = serialization != null && SERIALIZATION_BINARY.equalsIgnoreCase(serialization.toString());
+        for (StorageCodec codec : codecs.values()) {
+            codec.setBinary(binary);
+        }
+        logger.debug("MapDB Storage Service uses {} serialization.", binary ? "binary" : "JSON");
     }
 
     public void deactivate() {
+        codecs.clear();
         db.close();
         logger.debug("Deactivated MapDB Storage Service.");
     }
 
+    @Override
+    public <T> Storage<T> getStorage(String name, ClassLoader classLoader, Collection<ValueCodec<?>> valueCodecs) {
+        StorageCodec codec = new StorageCodec(typeTable, mapper, valueCodecs);
+        codec.setBinary(binary);
+        codecs.put(name, codec);
+        return new MapDbStorage<T>(db, name, classLoader, codec, mapper);
+    }
+
     @Override
     public <T> Storage<T> getStorage(String name, ClassLoader classLoader) {
-        return new MapDbStorage<T>(db, name, classLoader);
+        return getStorage(name, classLoader, Collections.<ValueCodec<?>> emptyList());
     }
 
     @Override
@@ -11,6 +11,7 @@ import static org.hamcrest.CoreMatchers.*
 import static org.junit.Assert.*
 import static org.junit.matchers.JUnitMatchers.*
 
+import javax.servlet.ServletOutputStream
 import javax.servlet.http.HttpServletRequest
 import javax.servlet.http.HttpServletResponse
 
@@ -31,6 +32,8 @@ class IconServletTest {
     def provider2
     def calledProvider
     def response
+    def headers
+    def status
 
     @Before
     void setUp() {
@@ -65,13 +68,20 @@ class IconServletTest {
 
         response = [
             setDateHeader : { s, d -> null },
+            setHeader : { s, v -> headers[s] = v },
+            setStatus : { i -> status = i },
             setContentType : { s -> null },
-            getOutputStream : { null },
+            setContentLength : { i -> null },
+            getOutputStream : {
+                [ write : { Object[] args -> null } ] as ServletOutputStream
+            },
             flushBuffer : {},
-            sendError : { i -> null }
+            sendError : { i -> status = i }
         ] as HttpServletResponse
 
         calledProvider = null
+        headers = [:]
+        status = null
     }
 
     @Test
@@ -80,6 +90,7 @@ class IconServletTest {
             getParameter : { p -> null },
             getRequestURI : { "/y-34.png" },
             getDateHeader : { s -> 0L },
+            getHeader : { s -> null },
         ] as HttpServletRequest
         servlet.addIconProvider(provider1)
         servlet.doGet(request, response)
@@ -99,6 +110,7 @@ class IconServletTest {
             },
             getRequestURI : { "/x" },
             getDateHeader : { s -> 0L },
+            getHeader : { s -> null },
         ] as HttpServletRequest
         servlet.addIconProvider(provider1)
         servlet.doGet(request, response)
@@ -109,4 +121,49 @@ class IconServletTest {
         servlet.doGet(request, response)
         assertThat calledProvider, equalTo(2)
     }
+
+    @Test
+    void testCaching() {
+        def ifNoneMatch = null
+        def request = [
+            getParameter : { p -> null },
+            getRequestURI : { "/y-34.png" },
+            getDateHeader : { s -> 0L },
+            getHeader : { s -> s == "If-None-Match" ? ifNoneMatch : null },
+        ] as HttpServletRequest
+        servlet.addIconProvider(provider1)
+        servlet.doGet(request, response)
+        assertThat calledProvider, equalTo(1)
+        assertThat headers["ETag"], notNullValue()
+
+        // the icon of a state in the same bucket is served from the cache
+        calledProvider = null
+        request = [
+            getParameter : { p -> null },
+            getRequestURI : { "/y-34.5.png" },
+            getDateHeader : { s -> 0L },
+            getHeader : { s -> s == "If-None-Match" ? ifNoneMatch : null },
+        ] as HttpServletRequest
+        servlet.doGet(request, response)
+        assertThat calledProvider, nullValue()
+        assertThat status, nullValue()
+
+        ifNoneMatch = headers["ETag"]
+        servlet.doGet(request, response)
+        assertThat calledProvider, nullValue()
+        assertThat status, equalTo(HttpServletResponse.SC_NOT_MODIFIED)
+    }
+
+    @Test
+    void testMissingIcon() {
+        def request = [
+            getParameter : { p -> null },
+            getRequestURI : { "/z.png" },
+            getDateHeader : { s -> 0L },
+            getHeader : { s -> null },
+        ] as HttpServletRequest
+        servlet.addIconProvider(provider1)
+        servlet.doGet(request, response)
+        assertThat status, equalTo(404)
+    }
 }
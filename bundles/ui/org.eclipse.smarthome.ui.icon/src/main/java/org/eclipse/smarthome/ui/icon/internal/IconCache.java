@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.icon.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link IconCache} keeps the content of the most recently requested icons in memory, together with the
+ * information that an icon does not exist. Entries expire after a fixed time, so that icons which are changed or
+ * added later (e.g. custom icons) are eventually picked up. If the total size of the cached icons exceeds the limit,
+ * the least recently used entries are removed.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class IconCache {
+
+    private final Map<String, CachedIcon> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxBytes;
+
+    private final long expiry;
+
+    private long bytes;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes the maximum total size of the cached icons in bytes
+     * @param expiry the time in milliseconds after which an entry expires
+     */
+    public IconCache(long maxBytes, long expiry) {
+        this.maxBytes = maxBytes;
+        this.expiry = expiry;
+    }
+
+    /**
+     * Returns a cached icon.
+     *
+     * @param key the key of the icon
+     * @param now the current time in milliseconds
+     * @return the icon, a missing icon (see {@link CachedIcon#isMissing()}) or null if the icon is not cached
+     */
+    public synchronized CachedIcon get(String key, long now) {
+        CachedIcon icon = entries.get(key);
+        if (icon != null && icon.created + expiry <= now) {
+            remove(key);
+            return null;
+        }
+        return icon;
+    }
+
+    /**
+     * Adds an icon. Icons which are larger than the cache are not added.
+     *
+     * @param key the key of the icon
+     * @param icon the icon
+     */
+    public synchronized void put(String key, CachedIcon icon) {
+        remove(key);
+        if (icon.getLength() > maxBytes) {
+            return;
+        }
+        entries.put(key, icon);
+        bytes += icon.getLength();
+
+        Iterator<CachedIcon> iterator = entries.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getLength();
+            iterator.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private void remove(String key) {
+        CachedIcon icon = entries.remove(key);
+        if (icon != null) {
+            bytes -= icon.getLength();
+        }
+    }
+
+    /**
+     * The content of an icon or the information that it does not exist.
+     */
+    public static class CachedIcon {
+
+        private final byte[] content;
+        private final String contentType;
+        private final String etag;
+        private final long created;
+
+        /**
+         * Creates an entry.
+         *
+         * @param content the content of the icon or null if the icon does not exist
+         * @param contentType the content type of the icon
+         * @param etag the entity tag of the content
+         * @param created the time of the creation in milliseconds
+         */
+        public CachedIcon(byte[] content, String contentType, String etag, long created) {
+            this.content = content;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.created = created;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public boolean isMissing() {
+            return content == null;
+        }
+
+        private long getLength() {
+            // missing icons are counted with a small size, so that they cannot fill the cache infinitely
+            return content != null ? content.length : 64;
+        }
+
+    }
+
+}
@@ -9,14 +9,14 @@ package org.eclipse.smarthome.ui.icon.internal;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Date;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -25,6 +25,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.smarthome.ui.icon.IconProvider;
 import org.eclipse.smarthome.ui.icon.IconSet.Format;
+import org.eclipse.smarthome.ui.icon.internal.IconCache.CachedIcon;
 import org.osgi.service.http.HttpContext;
 import org.osgi.service.http.HttpService;
 import org.osgi.service.http.NamespaceException;
@@ -34,7 +35,13 @@ import org.slf4j.LoggerFactory;
 /**
  * Registers a servlet that serves icons through {@link IconProvider}s.
  *
+ * The content of the served icons is kept in an {@link IconCache}, as well as the information that an icon does not
+ * exist. Icons are cached per icon set, category, format and state bucket: numeric states between 0 and 100 are
+ * truncated to integers, since icon providers only offer icons for integer states. Responses carry a strong ETag
+ * derived from the content and may be cached by clients for the configured cache time.
+ *
  * @author Kai Kreuzer - Initial contribution
+ * @author Markus Mazurczak - Icon cache and HTTP caching headers
  */
 public class IconServlet extends HttpServlet {
 
@@ -47,13 +54,23 @@ public class IconServlet extends HttpServlet {
     private static final String PARAM_FORMAT = "format";
     private static final String PARAM_STATE = "state";
 
+    /* the default maximum size of the cached icons in kilobytes */
+    private static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /* the default time in seconds for which icons are cached */
+    private static final int DEFAULT_CACHE_TIME = 3600;
+
     private long startupTime;
 
     protected HttpService httpService;
 
     protected String defaultIconSetId = "classic";
 
-    private List<IconProvider> iconProvider = new ArrayList<>();
+    private List<IconProvider> iconProvider = new CopyOnWriteArrayList<>();
+
+    private int cacheTime = DEFAULT_CACHE_TIME;
+
+    private IconCache cache = new IconCache(DEFAULT_CACHE_SIZE * 1024L, DEFAULT_CACHE_TIME * 1000L);
 
     public void setHttpService(HttpService httpService) {
         this.httpService = httpService;
@@ -65,10 +82,12 @@ public class IconServlet extends HttpServlet {
 
     public void addIconProvider(IconProvider iconProvider) {
         this.iconProvider.add(iconProvider);
+        cache.clear();
     }
 
     public void removeIconProvider(IconProvider iconProvider) {
         this.iconProvider.remove(iconProvider);
+        cache.clear();
     }
 
     protected void activate(Map<String, Object> config) {
@@ -92,6 +111,20 @@ public class IconServlet extends HttpServlet {
         if (iconSetId instanceof String) {
             defaultIconSetId = (String) iconSetId;
         }
+        cacheTime = getInt(config, "cacheTime", DEFAULT_CACHE_TIME);
+        cache = new IconCache(getInt(config, "cacheSize", DEFAULT_CACHE_SIZE) * 1024L, cacheTime * 1000L);
+    }
+
+    private int getInt(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        if (value != null) {
+            try {
+                return Math.max(Integer.parseInt(value.toString()), 0);
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid value '{}' of '{}'.", value, key);
+            }
+        }
+        return defaultValue;
     }
 
     /**
@@ -106,17 +139,54 @@ public class IconServlet extends HttpServlet {
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-
-        if (req.getDateHeader("If-Modified-Since") > startupTime) {
-            resp.setStatus(304);
-            return;
-        }
-
         String category = getCategory(req);
         Format format = getFormat(req);
         String state = getState(req);
         String iconSetId = getIconSetId(req);
 
+        long now = System.currentTimeMillis();
+        String key = iconSetId + "|" + category + "|" + getStateBucket(state) + "|" + format;
+        CachedIcon icon = cache.get(key, now);
+        if (icon == null) {
+            try {
+                icon = loadIcon(category, iconSetId, state, format, now);
+            } catch (IOException e) {
+                logger.error("Failed reading the icon byte stream: {}", e.getMessage());
+                resp.sendError(500, e.getMessage());
+                return;
+            }
+            cache.put(key, icon);
+        }
+        if (icon.isMissing()) {
+            resp.sendError(404);
+            return;
+        }
+
+        resp.setContentType(icon.getContentType());
+        resp.setHeader("ETag", icon.getEtag());
+        resp.setHeader("Cache-Control", "public, max-age=" + cacheTime + ", immutable");
+        resp.setDateHeader("Last-Modified", startupTime);
+
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        long ifModifiedSince = req.getDateHeader("If-Modified-Since");
+        if (ifNoneMatch != null ? ifNoneMatch.contains(icon.getEtag())
+                : ifModifiedSince > 0 && ifModifiedSince >= startupTime - startupTime % 1000) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        try {
+            resp.setContentLength(icon.getContent().length);
+            resp.getOutputStream().write(icon.getContent());
+            resp.flushBuffer();
+        } catch (IOException e) {
+            logger.error("Failed sending the icon byte stream as a response: {}", e.getMessage());
+            resp.sendError(500, e.getMessage());
+        }
+    }
+
+    private CachedIcon loadIcon(String category, String iconSetId, String state, Format format, long now)
+            throws IOException {
         IconProvider topProvider = null;
         int maxPrio = Integer.MIN_VALUE;
         for (IconProvider provider : iconProvider) {
@@ -126,24 +196,55 @@ public class IconServlet extends HttpServlet {
                 topProvider = provider;
             }
         }
-        if (topProvider != null) {
-            if (format.equals(Format.SVG)) {
-                resp.setContentType("image/svg+xml");
-            } else {
-                resp.setContentType("image/png");
+        if (topProvider == null) {
+            return new CachedIcon(null, null, null, now);
+        }
+
+        byte[] content;
+        try (InputStream is = topProvider.getIcon(category, iconSetId, state, format)) {
+            if (is == null) {
+                return new CachedIcon(null, null, null, now);
             }
-            resp.setDateHeader("Last-Modified", new Date().getTime());
-            ServletOutputStream os = resp.getOutputStream();
-            try (InputStream is = topProvider.getIcon(category, iconSetId, state, format)) {
-                IOUtils.copy(is, os);
-                resp.flushBuffer();
-            } catch (IOException e) {
-                logger.error("Failed sending the icon byte stream as a response: {}", e.getMessage());
-                resp.sendError(500, e.getMessage());
+            content = IOUtils.toByteArray(is);
+        }
+        String contentType = format.equals(Format.SVG) ? "image/svg+xml" : "image/png";
+        return new CachedIcon(content, contentType, getEtag(content), now);
+    }
+
+    private String getEtag(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+            StringBuilder etag = new StringBuilder(2 + 2 * digest.length).append('"');
+            for (byte b : digest) {
+                etag.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
             }
-        } else {
-            resp.sendError(404);
+            return etag.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Maps states to the states for which icon providers offer different icons, so that states like "84" and "84.5"
+     * share a cache entry.
+     *
+     * @param state the requested state or null
+     * @return the state bucket
+     */
+    private String getStateBucket(String state) {
+        if (state == null) {
+            return "";
+        }
+        try {
+            double value = Double.parseDouble(state);
+            if (value > 0 && value < 100) {
+                return Integer.toString((int) value);
+            }
+        } catch (NumberFormatException e) {
+            // not a number, so the state is used as it is
         }
+        return state.toLowerCase();
     }
 
     private String getCategory(HttpServletRequest req) {
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.internal.chart;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class DownsamplerTest {
+
+    @Test
+    public void downsample_keepsFirstMinMaxLastOfEachPixel() {
+        Downsampler downsampler = new Downsampler(0, 199, 2);
+        for (int i = 0; i < 200; i++) {
+            // a spike at 30, a dip at 170 and a constant value otherwise
+            double value = i == 30 ? 50 : i == 170 ? -50 : 10;
+            downsampler.visit(i, value);
+        }
+        downsampler.visit(500, 1000);
+
+        List<Date> xData = new ArrayList<>();
+        List<Number> yData = new ArrayList<>();
+        downsampler.addTo(xData, yData);
+
+        assertEquals(200, downsampler.getCount());
+        assertEquals(Arrays.asList(new Date(0), new Date(30), new Date(99), new Date(100), new Date(170),
+                new Date(199)), xData);
+        assertEquals(Arrays.<Number> asList(10d, 50d, 10d, 10d, -50d, 10d), yData);
+    }
+
+    @Test
+    public void downsample_keepsAllValuesIfTheyFit() {
+        Downsampler downsampler = new Downsampler(0, 1000, 480);
+        downsampler.visit(0, 1);
+        downsampler.visit(1000, 2);
+
+        List<Date> xData = new ArrayList<>();
+        List<Number> yData = new ArrayList<>();
+        downsampler.addTo(xData, yData);
+
+        assertEquals(Arrays.asList(new Date(0), new Date(1000)), xData);
+        assertEquals(Arrays.<Number> asList(1d, 2d), yData);
+    }
+
+}
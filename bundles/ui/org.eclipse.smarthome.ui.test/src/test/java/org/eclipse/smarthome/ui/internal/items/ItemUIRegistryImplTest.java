@@ -280,6 +280,22 @@ public class ItemUIRegistryImplTest {
         assertEquals("Label [State]", label);
     }
 
+    @Test
+    public void getLabel_labelWithChangingValue() throws ItemNotFoundException {
+        String testLabel = "Label [%.1f]";
+        Widget w = mock(Widget.class);
+        Item item = mock(Item.class);
+        when(w.getLabel()).thenReturn(testLabel);
+        when(w.getItem()).thenReturn("Item");
+        when(registry.getItem("Item")).thenReturn(item);
+        when(item.getState()).thenReturn(new DecimalType(1));
+        assertEquals("Label [1" + sep + "0]", uiRegistry.getLabel(w));
+        when(item.getState()).thenReturn(UnDefType.UNDEF);
+        assertEquals("Label [-]", uiRegistry.getLabel(w));
+        when(item.getState()).thenReturn(new DecimalType(2));
+        assertEquals("Label [2" + sep + "0]", uiRegistry.getLabel(w));
+    }
+
     @Test
     public void getLabel_groupLabelWithValue() throws ItemNotFoundException {
         String testLabel = "Label [%d]";
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.internal.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.httpclient.Header;
+import org.eclipse.smarthome.ui.internal.proxy.SnapshotCache.Snapshot;
+import org.junit.Test;
+
+/**
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class SnapshotCacheTest {
+
+    @Test
+    public void get_sharesOneFetchAmongConcurrentRequests() throws Exception {
+        final SnapshotCache cache = new SnapshotCache(60000);
+        final AtomicInteger fetches = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<Snapshot> loader = new Callable<Snapshot>() {
+            @Override
+            public Snapshot call() throws Exception {
+                fetches.incrementAndGet();
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return new Snapshot(200, new Header[0], new byte[] { 1 }, System.currentTimeMillis());
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Snapshot>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<Snapshot>() {
+                    @Override
+                    public Snapshot call() throws IOException {
+                        return cache.get("http://camera/snapshot.jpg", loader);
+                    }
+                }));
+            }
+            started.await(5, TimeUnit.SECONDS);
+            release.countDown();
+
+            Snapshot first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Snapshot> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, fetches.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void get_fetchesAgainAfterExpiryOrFailure() throws Exception {
+        SnapshotCache cache = new SnapshotCache(0);
+        final AtomicInteger fetches = new AtomicInteger();
+        Callable<Snapshot> loader = new Callable<Snapshot>() {
+            @Override
+            public Snapshot call() throws IOException {
+                if (fetches.incrementAndGet() == 2) {
+                    throw new IOException("unreachable");
+                }
+                return new Snapshot(200, new Header[0], new byte[0], System.currentTimeMillis());
+            }
+        };
+
+        cache.get("url", loader);
+        try {
+            cache.get("url", loader);
+            fail();
+        } catch (IOException e) {
+            assertEquals("unreachable", e.getMessage());
+        }
+        cache.get("url", loader);
+        assertEquals(3, fetches.get());
+
+        Callable<Snapshot> tooLarge = new Callable<Snapshot>() {
+            @Override
+            public Snapshot call() {
+                return null;
+            }
+        };
+        assertNull(cache.get("stream", tooLarge));
+    }
+
+}
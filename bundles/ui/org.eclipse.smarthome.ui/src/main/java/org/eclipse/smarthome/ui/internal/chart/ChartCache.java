@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.internal.chart;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link ChartCache} keeps the encoded images of the most recently requested charts. Charts are rendered for time
+ * buckets (see {@link ChartServlet}), so an entry is only returned for the bucket it has been rendered for and is
+ * replaced by the first request of the next bucket. If the cache is full, the least recently used entry is removed.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class ChartCache {
+
+    private final Map<String, CachedChart> entries;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the maximum number of charts to keep
+     */
+    public ChartCache(final int maxSize) {
+        entries = new LinkedHashMap<String, CachedChart>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedChart> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached chart.
+     *
+     * @param key the key of the chart
+     * @param bucket the start of the time bucket the chart is requested for
+     * @return the encoded image or null if the chart has not been rendered for this bucket
+     */
+    public synchronized byte[] get(String key, long bucket) {
+        CachedChart entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.bucket != bucket) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.image;
+    }
+
+    /**
+     * Adds a rendered chart.
+     *
+     * @param key the key of the chart
+     * @param bucket the start of the time bucket the chart has been rendered for
+     * @param image the encoded image
+     */
+    public synchronized void put(String key, long bucket, byte[] image) {
+        CachedChart entry = entries.get(key);
+        if (entry == null || entry.bucket <= bucket) {
+            entries.put(key, new CachedChart(bucket, image));
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static class CachedChart {
+
+        final long bucket;
+        final byte[] image;
+
+        CachedChart(long bucket, byte[] image) {
+            this.bucket = bucket;
+            this.image = image;
+        }
+
+    }
+
+}
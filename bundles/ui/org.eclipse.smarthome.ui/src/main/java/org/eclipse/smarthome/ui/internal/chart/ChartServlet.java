@@ -9,6 +9,7 @@ package org.eclipse.smarthome.ui.internal.chart;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
@@ -41,9 +42,17 @@ import org.slf4j.LoggerFactory;
  * <li>items: A comma separated list of item names to display</li>
  * <li>groups: A comma separated list of group names, whose members should be displayed</li>
  * <li>service: The persistence service name. If not supplied the first service found will be used.</li>
+ * <li>theme: The theme of the chart. If not supplied the default theme of the provider will be used.</li>
  * </ul>
+ * <p>
+ * Charts are rendered for time buckets: the end of the x-axis is rounded down to a multiple of the bucket length,
+ * which is the configured cache interval or the time of a pixel column if that is longer. All requests for the same
+ * chart within a bucket are answered with the same image from a {@link ChartCache}, its ETag and Cache-Control
+ * headers let browsers revalidate or skip the request until the bucket ends.
+ * </p>
  *
  * @author Chris Jackson
+ * @author Markus Mazurczak - Render cache and HTTP caching
  *
  */
 
@@ -53,8 +62,17 @@ public class ChartServlet extends HttpServlet {
 
     private final Logger logger = LoggerFactory.getLogger(ChartServlet.class);
 
+    private static final int DEFAULT_CACHE_SIZE = 50;
+
+    private static final int DEFAULT_CACHE_INTERVAL = 60;
+
     private String providerName = "default";
 
+    /** the minimum length of a time bucket in milliseconds */
+    private long cacheInterval = DEFAULT_CACHE_INTERVAL * 1000L;
+
+    private ChartCache cache = new ChartCache(DEFAULT_CACHE_SIZE);
+
     // The URI of this servlet
     public static final String SERVLET_NAME = "/chart";
 
@@ -108,6 +126,7 @@ public class ChartServlet extends HttpServlet {
 
     public void removeChartProvider(ChartProvider provider) {
         chartProviders.remove(provider.getName());
+        cache.clear();
     }
 
     static public Map<String, ChartProvider> getChartProviders() {
@@ -152,6 +171,22 @@ public class ChartServlet extends HttpServlet {
         if (value instanceof String) {
             providerName = (String) value;
         }
+
+        int cacheSize = getInt(config, "cacheSize", DEFAULT_CACHE_SIZE);
+        cacheInterval = getInt(config, "cacheInterval", DEFAULT_CACHE_INTERVAL) * 1000L;
+        cache = new ChartCache(cacheSize);
+    }
+
+    private int getInt(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        if (value != null) {
+            try {
+                return Math.max(Integer.parseInt(value.toString()), 0);
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid value '{}' of '{}'.", value, key);
+            }
+        }
+        return defaultValue;
     }
 
     @Override
@@ -173,28 +208,61 @@ public class ChartServlet extends HttpServlet {
             // use a day as the default period
             period = PERIODS.get("D");
         }
-        // Create the start and stop time
-        Date timeEnd = new Date();
+        // Create the start and stop time, rounded down to the time bucket
+        long now = System.currentTimeMillis();
+        long bucketLength = Math.max(cacheInterval, period / Math.max(width, 1));
+        long bucket = bucketLength > 0 ? now - now % bucketLength : now;
+        Date timeEnd = new Date(bucket);
         Date timeBegin = new Date(timeEnd.getTime() - period);
 
         // If a persistence service is specified, find the provider
         String serviceName = req.getParameter("service");
+        String theme = req.getParameter("theme");
+        String items = req.getParameter("items");
+        String groups = req.getParameter("groups");
 
         ChartProvider provider = getChartProviders().get(providerName);
         if (provider == null)
             throw new ServletException("Could not get chart provider.");
 
+        String key = providerName + "|" + serviceName + "|" + theme + "|" + period + "|" + width + "|" + height + "|"
+                + items + "|" + groups;
+        String etag = "\"" + Integer.toHexString(key.hashCode()) + "-" + Long.toHexString(bucket) + "\"";
+        byte[] image = cache.get(key, bucket);
+        if (image == null) {
+            try {
+                BufferedImage chart = provider.createChart(serviceName, theme, timeBegin, timeEnd, height, width,
+                        items, groups);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(chart, provider.getChartType().toString(), out);
+                image = out.toByteArray();
+            } catch (ItemNotFoundException e) {
+                logger.debug("Item not found error while generating chart.");
+                res.sendError(HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+                return;
+            } catch (IllegalArgumentException e) {
+                logger.warn("Illegal argument in chart: {}", e.getMessage());
+                res.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return;
+            }
+            cache.put(key, bucket, image);
+        }
+
+        // the caching headers are only set once there is an image, so errors are not cached
+        if (bucketLength > 0) {
+            res.setHeader("ETag", etag);
+            res.setHeader("Cache-Control", "max-age=" + Math.max((bucket + bucketLength - now) / 1000, 0));
+            String ifNoneMatch = req.getHeader("If-None-Match");
+            if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+                res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
         // Set the content type to that provided by the chart provider
         res.setContentType("image/" + provider.getChartType());
-        try {
-            BufferedImage chart = provider.createChart(serviceName, null, timeBegin, timeEnd, height, width,
-                    req.getParameter("items"), req.getParameter("groups"));
-            ImageIO.write(chart, provider.getChartType().toString(), res.getOutputStream());
-        } catch (ItemNotFoundException e) {
-            logger.debug("Item not found error while generating chart.");
-        } catch (IllegalArgumentException e) {
-            logger.warn("Illegal argument in chart: {}", e.getMessage());
-        }
+        res.setContentLength(image.length);
+        res.getOutputStream().write(image);
     }
 
     /**
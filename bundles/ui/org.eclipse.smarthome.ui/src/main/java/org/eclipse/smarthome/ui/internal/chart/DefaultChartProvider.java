@@ -23,10 +23,9 @@ import java.util.Map.Entry;
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
-import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.persistence.FilterCriteria;
 import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
-import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.PersistenceQueries;
 import org.eclipse.smarthome.core.persistence.PersistenceService;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.ui.chart.ChartProvider;
@@ -52,7 +51,11 @@ import com.xeiam.xchart.StyleManager.LegendPosition;
  * <li>service: The persistence service name. If not supplied the first service found will be used.</li>
  * </ul>
  *
+ * The values of each item are streamed from the persistence service and reduced to the width of the chart by a
+ * {@link Downsampler} before they are plotted.
+ *
  * @author Chris Jackson
+ * @author Markus Mazurczak - Downsampling of the series to the chart width
  *
  */
 
@@ -168,7 +171,7 @@ public class DefaultChartProvider implements ChartProvider {
             String[] itemNames = items.split(",");
             for (String itemName : itemNames) {
                 Item item = itemUIRegistry.getItem(itemName);
-                if (addItem(chart, persistenceService, startTime, endTime, item, seriesCounter))
+                if (addItem(chart, persistenceService, startTime, endTime, width, item, seriesCounter))
                     seriesCounter++;
             }
         }
@@ -181,7 +184,7 @@ public class DefaultChartProvider implements ChartProvider {
                 if (item instanceof GroupItem) {
                     GroupItem groupItem = (GroupItem) item;
                     for (Item member : groupItem.getMembers()) {
-                        if (addItem(chart, persistenceService, startTime, endTime, member, seriesCounter))
+                        if (addItem(chart, persistenceService, startTime, endTime, width, member, seriesCounter))
                             seriesCounter++;
                     }
                 } else {
@@ -223,8 +226,8 @@ public class DefaultChartProvider implements ChartProvider {
         return lBufferedImage;
     }
 
-    boolean addItem(Chart chart, QueryablePersistenceService service, Date timeBegin, Date timeEnd, Item item,
-            int seriesCounter) {
+    boolean addItem(Chart chart, QueryablePersistenceService service, Date timeBegin, Date timeEnd, int width,
+            Item item, int seriesCounter) {
         Color color = LINECOLORS[seriesCounter % LINECOLORS.length];
 
         // Get the item label
@@ -246,24 +249,17 @@ public class DefaultChartProvider implements ChartProvider {
         filter.setEndDate(timeEnd);
         filter.setItemName(item.getName());
         filter.setOrdering(Ordering.ASCENDING);
+        filter.setDownsampling(true);
 
-        // Get the data from the persistence store
-        Iterable<HistoricItem> result = service.query(filter);
-        Iterator<HistoricItem> it = result.iterator();
+        // Get the data from the persistence store, reduced to the values which are visible at this width
+        Downsampler downsampler = new Downsampler(timeBegin.getTime(), timeEnd.getTime(), width);
+        PersistenceQueries.stream(service, filter, null, downsampler);
 
         // Generate data collections
         Collection<Date> xData = new ArrayList<Date>();
         Collection<Number> yData = new ArrayList<Number>();
-
-        // Iterate through the data
-        while (it.hasNext()) {
-            HistoricItem historicItem = it.next();
-            org.eclipse.smarthome.core.types.State state = historicItem.getState();
-            if (state instanceof DecimalType) {
-                xData.add(historicItem.getTimestamp());
-                yData.add((DecimalType) state);
-            }
-        }
+        downsampler.addTo(xData, yData);
+        logger.trace("Plotting {} of {} values of item '{}'.", xData.size(), downsampler.getCount(), item.getName());
 
         // Add the new series to the chart - only if there's data elements to display
         if (xData.size() == 0) {
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.internal.chart;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+import org.eclipse.smarthome.core.persistence.NumericValueVisitor;
+
+/**
+ * The {@link Downsampler} reduces the values of a series to what can be seen on a chart of a given width. The time
+ * range is divided into one bucket per pixel column and of every bucket only the first, the minimum, the maximum and
+ * the last value are kept, so a line chart drawn from the result looks exactly like one drawn from all values. The
+ * values are processed as they are visited, so the memory does not depend on the number of values in the range.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class Downsampler implements NumericValueVisitor {
+
+    private static final int FIRST = 0;
+    private static final int MIN = 1;
+    private static final int MAX = 2;
+    private static final int LAST = 3;
+
+    private final long begin;
+    private final long end;
+    private final double bucketLength;
+
+    /** the timestamps and values of the first, minimum, maximum and last value of each bucket */
+    private final long[][] timestamps;
+    private final double[][] values;
+    private final boolean[] filled;
+
+    private int count;
+
+    /**
+     * Creates a downsampler.
+     *
+     * @param begin the begin of the time range in milliseconds
+     * @param end the end of the time range in milliseconds
+     * @param width the number of buckets, usually the width of the chart in pixels
+     */
+    public Downsampler(long begin, long end, int width) {
+        int buckets = Math.max(width, 1);
+        this.begin = begin;
+        this.end = end;
+        this.bucketLength = Math.max(end - begin + 1, 1) / (double) buckets;
+        this.timestamps = new long[4][buckets];
+        this.values = new double[4][buckets];
+        this.filled = new boolean[buckets];
+    }
+
+    @Override
+    public boolean visit(long timestamp, double value) {
+        if (timestamp < begin || timestamp > end || Double.isNaN(value)) {
+            return true;
+        }
+        count++;
+        int bucket = Math.min((int) ((timestamp - begin) / bucketLength), filled.length - 1);
+        if (!filled[bucket]) {
+            filled[bucket] = true;
+            for (int i = FIRST; i <= LAST; i++) {
+                set(i, bucket, timestamp, value);
+            }
+            return true;
+        }
+        if (timestamp < timestamps[FIRST][bucket]) {
+            set(FIRST, bucket, timestamp, value);
+        }
+        if (timestamp >= timestamps[LAST][bucket]) {
+            set(LAST, bucket, timestamp, value);
+        }
+        if (value < values[MIN][bucket]) {
+            set(MIN, bucket, timestamp, value);
+        }
+        if (value > values[MAX][bucket]) {
+            set(MAX, bucket, timestamp, value);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of values which have been visited within the time range
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Adds the kept values in chronological order to the given collections.
+     *
+     * @param xData the collection to add the times to
+     * @param yData the collection to add the values to
+     */
+    public void addTo(Collection<Date> xData, Collection<Number> yData) {
+        int[] order = new int[4];
+        for (int bucket = 0; bucket < filled.length; bucket++) {
+            if (!filled[bucket]) {
+                continue;
+            }
+            // sort the (at most four) points of the bucket by time and skip duplicates
+            int size = 0;
+            for (int i = FIRST; i <= LAST; i++) {
+                if (!contains(order, size, i, bucket)) {
+                    order[size++] = i;
+                }
+            }
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = timestamps[order[i]][bucket] * 4 + order[i];
+            }
+            Arrays.sort(keys);
+            for (long key : keys) {
+                int point = (int) (key & 3);
+                xData.add(new Date(timestamps[point][bucket]));
+                yData.add(values[point][bucket]);
+            }
+        }
+    }
+
+    private boolean contains(int[] order, int size, int point, int bucket) {
+        for (int i = 0; i < size; i++) {
+            if (timestamps[order[i]][bucket] == timestamps[point][bucket]
+                    && values[order[i]][bucket] == values[point][bucket]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void set(int point, int bucket, long timestamp, double value) {
+        timestamps[point][bucket] = timestamp;
+        values[point][bucket] = value;
+    }
+
+}
@@ -12,7 +12,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,7 +46,6 @@ import org.eclipse.smarthome.core.transform.TransformationHelper;
 import org.eclipse.smarthome.core.transform.TransformationService;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.core.types.StateDescription;
-import org.eclipse.smarthome.core.types.Type;
 import org.eclipse.smarthome.core.types.UnDefType;
 import org.eclipse.smarthome.model.sitemap.ColorArray;
 import org.eclipse.smarthome.model.sitemap.Group;
@@ -69,6 +70,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Kai Kreuzer - Initial contribution and API
  * @author Chris Jackson
+ * @author Markus Mazurczak - Cache of parsed label templates
  *
  */
 public class ItemUIRegistryImpl implements ItemUIRegistry {
@@ -84,10 +86,19 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
     /* RegEx to identify format patterns. See java.util.Formatter#formatSpecifier (without the '%' at the very end). */
     protected static final String IDENTIFY_FORMAT_PATTERN_PATTERN = "%(\\d+\\$)?([-#+ 0,(\\<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z])";
 
+    /* the maximum number of parsed labels to keep */
+    private static final int MAX_LABEL_TEMPLATES = 1000;
+
     protected Set<ItemUIProvider> itemUIProviders = new HashSet<ItemUIProvider>();
 
     protected ItemRegistry itemRegistry;
 
+    /*
+     * the parsed labels by their text; as the text is the key, a changed sitemap or state description simply leads to
+     * a new entry
+     */
+    private final Map<String, LabelTemplate> labelTemplates = new ConcurrentHashMap<>();
+
     public ItemUIRegistryImpl() {
     }
 
@@ -262,74 +273,120 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
     @Override
     public String getLabel(Widget w) {
         String label = getLabelFromWidget(w);
+        LabelTemplate template = getLabelTemplate(label);
 
         // now insert the value, if the state is a string or decimal value and there is some formatting pattern defined
         // in the label
         // (i.e. it contains at least a %)
         String itemName = w.getItem();
+        Item item = null;
         if (itemName != null) {
-            State state = null;
-            String formatPattern = null;
-
             try {
-                final Item item = getItem(itemName);
-                if (getFormatPattern(label) == null) {
+                item = getItem(itemName);
+                if (!template.hasValue()) {
                     final StateDescription stateDescription = item.getStateDescription();
                     if (stateDescription != null) {
                         final String pattern = stateDescription.getPattern();
                         if (pattern != null) {
-                            label = label + " [" + pattern + "]";
-                        }
-                    }
-                }
-
-                String updatedPattern = getFormatPattern(label);
-                if (updatedPattern != null) {
-                    formatPattern = updatedPattern;
-
-                    // TODO: TEE: we should find a more generic solution here! When
-                    // using indexes in formatString this 'contains' will fail again
-                    // and will cause an 'java.util.IllegalFormatConversionException:
-                    // d != java.lang.String' later on when trying to format a String
-                    // as %d (number).
-                    if (label.contains("%d")) {
-                        // a number is requested
-                        state = item.getState();
-                        if (!(state instanceof DecimalType)) {
-                            state = item.getStateAs(DecimalType.class);
+                            template = getLabelTemplate(label + " [" + pattern + "]");
                         }
-                    } else {
-                        state = item.getState();
                     }
                 }
             } catch (ItemNotFoundException e) {
                 logger.error("Cannot retrieve item for widget {}", w.eClass().getInstanceTypeName());
             }
+        }
 
-            if (formatPattern != null) {
-                if (state == null || state instanceof UnDefType) {
-                    formatPattern = formatUndefined(formatPattern);
-                } else if (state instanceof Type) {
-                    // The following exception handling has been added to work around a Java bug with formatting
-                    // numbers. See http://bugs.sun.com/view_bug.do?bug_id=6476425
-                    // Without this catch, the whole sitemap, or page can not be displayed!
-                    // This also handles IllegalFormatConversionException, which is a subclass of IllegalArgument.
-                    try {
-                        formatPattern = ((Type) state).format(formatPattern);
-                    } catch (IllegalArgumentException e) {
-                        logger.warn("Exception while formatting value '{}' of item {} with format '{}': {}", state,
-                                itemName, formatPattern, e);
-                        formatPattern = new String("Err");
-                    }
+        if (!template.hasValue()) {
+            return template.getLabel();
+        }
+        String value;
+        if (item != null) {
+            State state;
+            // TODO: TEE: we should find a more generic solution here! When
+            // using indexes in formatString this 'contains' will fail again
+            // and will cause an 'java.util.IllegalFormatConversionException:
+            // d != java.lang.String' later on when trying to format a String
+            // as %d (number).
+            if (template.isNumeric()) {
+                // a number is requested
+                state = item.getState();
+                if (!(state instanceof DecimalType)) {
+                    state = item.getStateAs(DecimalType.class);
+                }
+            } else {
+                state = item.getState();
+            }
+
+            if (state == null || state instanceof UnDefType) {
+                value = template.getUndefinedValue();
+            } else {
+                // The following exception handling has been added to work around a Java bug with formatting
+                // numbers. See http://bugs.sun.com/view_bug.do?bug_id=6476425
+                // Without this catch, the whole sitemap, or page can not be displayed!
+                // This also handles IllegalFormatConversionException, which is a subclass of IllegalArgument.
+                try {
+                    value = state.format(template.getFormat());
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Exception while formatting value '{}' of item {} with format '{}': {}", state,
+                            itemName, template.getFormat(), e);
+                    return template.getPrefix() + "Err]";
                 }
+            }
+        } else if (template.getTransformationType() != null) {
+            value = template.getFormat();
+        } else {
+            // without an item, the value is displayed as it has been defined
+            return template.getLabel();
+        }
 
-                label = label.trim().substring(0, label.indexOf("[") + 1) + formatPattern + "]";
+        if (template.getTransformationType() != null) {
+            value = transform(template, value);
+        }
+        return template.getPrefix() + value + "]";
+    }
+
+    /**
+     * Returns the parsed form of a label. The label is only parsed if it has not been parsed before.
+     *
+     * @param label the label
+     * @return the template of the label
+     */
+    private LabelTemplate getLabelTemplate(String label) {
+        LabelTemplate template = labelTemplates.get(label);
+        if (template == null) {
+            template = parseLabel(label);
+            if (labelTemplates.size() >= MAX_LABEL_TEMPLATES) {
+                // labels are usually static, so this only happens if they are generated dynamically
+                labelTemplates.clear();
             }
+            labelTemplates.put(label, template);
         }
+        return template;
+    }
 
-        label = transform(label);
+    private LabelTemplate parseLabel(String label) {
+        String formatPattern = getFormatPattern(label);
+        if (formatPattern == null) {
+            return new LabelTemplate(label, null, null, null, null, null);
+        }
 
-        return label;
+        String trimmedLabel = label.trim();
+        String prefix = trimmedLabel.substring(0, trimmedLabel.indexOf("[") + 1);
+        String type = null;
+        String function = null;
+
+        /*
+         * check if the value starts with the call to a transformation service (e.g. "[MAP(en.map):%s]"), which has to
+         * be applied after formatting the state
+         */
+        Matcher matcher = EXTRACT_TRANSFORMFUNCTION_PATTERN.matcher("[" + formatPattern + "]");
+        if (matcher.matches()) {
+            type = matcher.group(1);
+            function = matcher.group(2);
+            formatPattern = matcher.group(3);
+        }
+        return new LabelTemplate(label, prefix, formatPattern, formatUndefined(formatPattern), type, function);
     }
 
     private String getFormatPattern(String label) {
@@ -383,38 +440,24 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
     }
 
     /*
-     * check if there is a status value being displayed on the right side of the
-     * label (the right side is signified by being enclosed in square brackets [].
-     * If so, check if the value starts with the call to a transformation service
-     * (e.g. "[MAP(en.map):%s]") and execute the transformation in this case.
+     * executes the transformation of a label (e.g. "[MAP(en.map):%s]") on the formatted value
      */
-    private String transform(String label) {
-        if (getFormatPattern(label) != null) {
-            Matcher matcher = EXTRACT_TRANSFORMFUNCTION_PATTERN.matcher(label);
-            if (matcher.find()) {
-                String type = matcher.group(1);
-                String pattern = matcher.group(2);
-                String value = matcher.group(3);
-                TransformationService transformation = TransformationHelper
-                        .getTransformationService(UIActivator.getContext(), type);
-                if (transformation != null) {
-                    try {
-                        label = label.substring(0, label.indexOf("[") + 1) + transformation.transform(pattern, value)
-                                + "]";
-                    } catch (TransformationException e) {
-                        logger.error("transformation throws exception [transformation=" + transformation + ", value="
-                                + value + "]", e);
-                        label = label.substring(0, label.indexOf("[") + 1) + value + "]";
-                    }
-                } else {
-                    logger.warn(
-                            "couldn't transform value in label because transformationService of type '{}' is unavailable",
-                            type);
-                    label = label.substring(0, label.indexOf("[") + 1) + value + "]";
-                }
+    private String transform(LabelTemplate template, String value) {
+        String type = template.getTransformationType();
+        TransformationService transformation = TransformationHelper.getTransformationService(UIActivator.getContext(),
+                type);
+        if (transformation != null) {
+            try {
+                return transformation.transform(template.getTransformationFunction(), value);
+            } catch (TransformationException e) {
+                logger.error("transformation throws exception [transformation=" + transformation + ", value=" + value
+                        + "]", e);
             }
+        } else {
+            logger.warn("couldn't transform value in label because transformationService of type '{}' is unavailable",
+                    type);
         }
-        return label;
+        return value;
     }
 
     /**
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.internal.items;
+
+/**
+ * A {@link LabelTemplate} is the parsed form of a widget label. It keeps the parts of the label which do not depend
+ * on the state of the item, so that the label only has to be parsed once and rendering it merely formats the state
+ * and concatenates the parts.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class LabelTemplate {
+
+    private final String label;
+    private final String prefix;
+    private final String format;
+    private final String undefinedValue;
+    private final String transformationType;
+    private final String transformationFunction;
+    private final boolean numeric;
+
+    /**
+     * Creates a template.
+     *
+     * @param label the label as it has been defined
+     * @param prefix the label up to and including the opening bracket of the value or null if there is no value
+     * @param format the format pattern of the value (without a transformation) or null if there is no value
+     * @param undefinedValue the value to display if the state is undefined
+     * @param transformationType the type of the transformation service to apply to the value or null
+     * @param transformationFunction the function to pass to the transformation service or null
+     */
+    public LabelTemplate(String label, String prefix, String format, String undefinedValue,
+            String transformationType, String transformationFunction) {
+        this.label = label;
+        this.prefix = prefix;
+        this.format = format;
+        this.undefinedValue = undefinedValue;
+        this.transformationType = transformationType;
+        this.transformationFunction = transformationFunction;
+        // the whole label is checked for compatibility with the way labels have been formatted before
+        this.numeric = label.contains("%d");
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getUndefinedValue() {
+        return undefinedValue;
+    }
+
+    public String getTransformationType() {
+        return transformationType;
+    }
+
+    public String getTransformationFunction() {
+        return transformationFunction;
+    }
+
+    /**
+     * @return true, if the label displays a value
+     */
+    public boolean hasValue() {
+        return format != null;
+    }
+
+    /**
+     * @return true, if the value is formatted as an integer and thus needs a {@code DecimalType} state
+     */
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+}
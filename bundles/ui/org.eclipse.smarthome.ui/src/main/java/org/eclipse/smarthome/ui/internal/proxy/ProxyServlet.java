@@ -7,9 +7,17 @@
  */
 package org.eclipse.smarthome.ui.internal.proxy;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -19,15 +27,19 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.SimpleHttpConnectionManager;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.eclipse.smarthome.model.core.ModelRepository;
 import org.eclipse.smarthome.model.sitemap.Image;
 import org.eclipse.smarthome.model.sitemap.Sitemap;
 import org.eclipse.smarthome.model.sitemap.Video;
 import org.eclipse.smarthome.model.sitemap.Widget;
+import org.eclipse.smarthome.ui.internal.proxy.SnapshotCache.Snapshot;
 import org.eclipse.smarthome.ui.items.ItemUIRegistry;
 import org.osgi.service.http.HttpContext;
 import org.osgi.service.http.HttpService;
@@ -50,7 +62,13 @@ import org.slf4j.LoggerFactory;
  *
  * This servlet also supports data streams, such as a webcam video stream etc.
  *
+ * Upstream requests of image widgets share a pool of keep-alive connections, video streams use a connection of their
+ * own, so that they cannot exhaust the pool. The content of image widgets is cached for a short, configurable time
+ * ({@code snapshotCacheTime} in milliseconds, 0 to disable), so that a single upstream request serves all clients
+ * which show the same image at the same time.
+ *
  * @author Kai Kreuzer - Initial contribution and API
+ * @author Markus Mazurczak - Connection pooling and snapshot cache
  */
 public class ProxyServlet extends HttpServlet {
 
@@ -61,10 +79,40 @@ public class ProxyServlet extends HttpServlet {
 
     private static final long serialVersionUID = -4716754591953017793L;
 
+    /* the default time in milliseconds for which the content of an image is shared */
+    private static final int DEFAULT_SNAPSHOT_CACHE_TIME = 1000;
+
+    /* the maximum size of an image to cache */
+    private static final int MAX_SNAPSHOT_SIZE = 4 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int CONNECTION_TIMEOUT = 10000;
+
+    /* the time in milliseconds to wait for a free connection of the pool */
+    private static final long POOL_TIMEOUT = 10000;
+
+    /* the time in milliseconds to wait for data of an image, video streams are not limited */
+    private static final int SOCKET_TIMEOUT = 30000;
+
+    private static final int MAX_CONNECTIONS_PER_HOST = 8;
+
+    private static final int MAX_CONNECTIONS = 32;
+
+    /* headers which only apply to a single connection and thus must not be forwarded */
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<>(Arrays.asList("connection", "keep-alive",
+            "proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade"));
+
     protected HttpService httpService;
     protected ItemUIRegistry itemUIRegistry;
     protected ModelRepository modelRepository;
 
+    private MultiThreadedHttpConnectionManager connectionManager;
+    private HttpClient httpClient;
+
+    private int snapshotCacheTime = DEFAULT_SNAPSHOT_CACHE_TIME;
+    private SnapshotCache snapshotCache = new SnapshotCache(DEFAULT_SNAPSHOT_CACHE_TIME);
+
     protected void setItemUIRegistry(ItemUIRegistry itemUIRegistry) {
         this.itemUIRegistry = itemUIRegistry;
     }
@@ -89,7 +137,20 @@ public class ProxyServlet extends HttpServlet {
         this.httpService = null;
     }
 
-    protected void activate() {
+    protected void activate(Map<String, Object> config) {
+        modified(config);
+
+        connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+        params.setMaxTotalConnections(MAX_CONNECTIONS);
+        params.setConnectionTimeout(CONNECTION_TIMEOUT);
+        httpClient = new HttpClient(connectionManager);
+        httpClient.getParams().setConnectionManagerTimeout(POOL_TIMEOUT);
+        httpClient.getParams().setSoTimeout(SOCKET_TIMEOUT);
+        // credentials are only set for the hosts of urls which contain them
+        httpClient.getParams().setAuthenticationPreemptive(true);
+
         try {
             logger.debug("Starting up proxy servlet at /" + PROXY_ALIAS);
 
@@ -102,8 +163,24 @@ public class ProxyServlet extends HttpServlet {
         }
     }
 
+    protected void modified(Map<String, Object> config) {
+        if (config != null) {
+            Object value = config.get("snapshotCacheTime");
+            if (value != null) {
+                try {
+                    snapshotCacheTime = Math.max(Integer.parseInt(value.toString()), 0);
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring invalid value '{}' of 'snapshotCacheTime'.", value);
+                }
+            }
+        }
+        snapshotCache = new SnapshotCache(snapshotCacheTime);
+    }
+
     protected void deactivate() {
         httpService.unregister("/" + PROXY_ALIAS);
+        snapshotCache.clear();
+        connectionManager.shutdown();
     }
 
     /**
@@ -134,10 +211,11 @@ public class ProxyServlet extends HttpServlet {
         }
 
         String uriString = null;
+        Widget widget = null;
 
         Sitemap sitemap = (Sitemap) modelRepository.getModel(sitemapName);
         if (sitemap != null) {
-            Widget widget = itemUIRegistry.getWidget(sitemap, widgetId);
+            widget = itemUIRegistry.getWidget(sitemap, widgetId);
             if (widget instanceof Image) {
                 Image image = (Image) widget;
                 uriString = image.getUrl();
@@ -155,34 +233,179 @@ public class ProxyServlet extends HttpServlet {
             throw new ServletException("Sitemap '" + sitemapName + "' could not be found!");
         }
 
-        HttpClient httpClient = new HttpClient();
-
+        final String url = uriString;
+        final URI uri;
         try {
-            // check if the uri uses credentials and configure the http client accordingly
-            URI uri = URI.create(uriString);
-
-            if (uri.getUserInfo() != null) {
-                String[] userInfo = uri.getUserInfo().split(":");
-                httpClient.getParams().setAuthenticationPreemptive(true);
-                Credentials creds = new UsernamePasswordCredentials(userInfo[0], userInfo[1]);
-                httpClient.getState().setCredentials(new AuthScope(uri.getHost(), uri.getPort(), AuthScope.ANY_REALM),
-                        creds);
-            }
+            uri = URI.create(uriString);
         } catch (IllegalArgumentException e) {
             throw new ServletException("URI '" + uriString + "' is not valid: " + e.getMessage());
         }
 
-        // do the client request
-        GetMethod method = new GetMethod(uriString);
-        httpClient.executeMethod(method);
+        if (snapshotCacheTime > 0 && !(widget instanceof Video)) {
+            final UncachedResponse[] uncached = new UncachedResponse[1];
+            Snapshot snapshot = snapshotCache.get(url, new Callable<Snapshot>() {
+                @Override
+                public Snapshot call() throws IOException {
+                    return fetchSnapshot(url, uri, uncached);
+                }
+            });
+            if (snapshot != null) {
+                response.setStatus(snapshot.getStatus());
+                copyHeaders(snapshot.getHeaders(), response);
+                response.getOutputStream().write(snapshot.getBody());
+                return;
+            }
+            if (uncached[0] != null) {
+                // the content is too large to be cached, so the response which has been read partly is passed on
+                stream(uncached[0].method, uncached[0].head, response);
+                return;
+            }
+        }
+
+        // do the client request and stream the body content
+        stream(execute(url, uri, !(widget instanceof Video)), null, response);
+    }
+
+    /**
+     * Passes on the response of a request to the client and releases the request.
+     *
+     * @param method the executed request
+     * @param head the part of the body which has already been read from the response or null
+     * @param response the response to the client
+     * @throws IOException if the response cannot be read or written
+     */
+    private void stream(GetMethod method, byte[] head, HttpServletResponse response) throws IOException {
+        boolean completed = false;
+        try {
+            response.setStatus(method.getStatusCode());
+            copyHeaders(method.getResponseHeaders(), response);
+            OutputStream out = response.getOutputStream();
+            if (head != null) {
+                out.write(head);
+                out.flush();
+            }
+            InputStream in = method.getResponseBodyAsStream();
+            if (in != null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                    if (in.available() == 0) {
+                        // pass on the data of streams (e.g. a webcam video stream) as soon as it arrives
+                        out.flush();
+                    }
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                // the connection cannot be reused, as the rest of the body has not been read
+                method.abort();
+            }
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * Executes a GET request with the pooled client or with a connection of its own.
+     *
+     * @param url the url
+     * @param uri the parsed url, used to read the credentials
+     * @param pooled true to use the pooled client, false for long running streams which must not block the pool
+     * @return the executed method, which has to be released by the caller
+     * @throws IOException if the request fails
+     */
+    private GetMethod execute(String url, URI uri, boolean pooled) throws IOException {
+        // check if the uri uses credentials and configure the request accordingly
+        HttpState state = new HttpState();
+        if (uri.getUserInfo() != null) {
+            String[] userInfo = uri.getUserInfo().split(":");
+            Credentials creds = new UsernamePasswordCredentials(userInfo[0], userInfo[1]);
+            state.setCredentials(new AuthScope(uri.getHost(), uri.getPort(), AuthScope.ANY_REALM), creds);
+        }
+
+        HttpClient client = httpClient;
+        if (!pooled) {
+            // the connection is closed when the method is released
+            SimpleHttpConnectionManager unpooledManager = new SimpleHttpConnectionManager(true);
+            unpooledManager.getParams().setConnectionTimeout(CONNECTION_TIMEOUT);
+            client = new HttpClient(unpooledManager);
+            client.getParams().setAuthenticationPreemptive(true);
+        }
+
+        GetMethod method = new GetMethod(url);
+        try {
+            client.executeMethod(null, method, state);
+        } catch (IOException e) {
+            method.releaseConnection();
+            throw e;
+        }
+        return method;
+    }
+
+    /**
+     * Reads the complete response of a url. If the content is too large to be cached, the response is handed over
+     * to the caller instead, which has to pass it on and release it.
+     *
+     * @param url the url
+     * @param uri the parsed url
+     * @param uncached receives the response if the content is too large to be cached
+     * @return the snapshot or null if the content is too large to be cached
+     * @throws IOException if the request fails
+     */
+    private Snapshot fetchSnapshot(String url, URI uri, UncachedResponse[] uncached) throws IOException {
+        GetMethod method = execute(url, uri, true);
+        boolean handedOver = false;
+        try {
+            if (method.getResponseContentLength() > MAX_SNAPSHOT_SIZE) {
+                uncached[0] = new UncachedResponse(method, null);
+                handedOver = true;
+                return null;
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream in = method.getResponseBodyAsStream();
+            if (in != null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, count);
+                    if (body.size() > MAX_SNAPSHOT_SIZE) {
+                        // this is rather a stream than an image
+                        uncached[0] = new UncachedResponse(method, body.toByteArray());
+                        handedOver = true;
+                        return null;
+                    }
+                }
+            }
+            return new Snapshot(method.getStatusCode(), method.getResponseHeaders(), body.toByteArray(),
+                    System.currentTimeMillis());
+        } finally {
+            if (!handedOver) {
+                method.releaseConnection();
+            }
+        }
+    }
+
+    private void copyHeaders(Header[] headers, HttpServletResponse response) {
+        for (Header header : headers) {
+            if (!HOP_BY_HOP_HEADERS.contains(header.getName().toLowerCase())) {
+                response.setHeader(header.getName(), header.getValue());
+            }
+        }
+    }
+
+    /**
+     * A response which is too large to be cached, together with the part of its body which has already been read.
+     */
+    private static class UncachedResponse {
+
+        final GetMethod method;
+        final byte[] head;
 
-        // copy all headers
-        for (Header header : method.getResponseHeaders()) {
-            response.setHeader(header.getName(), header.getValue());
+        UncachedResponse(GetMethod method, byte[] head) {
+            this.method = method;
+            this.head = head;
         }
 
-        // now copy/stream the body content
-        IOUtils.copy(method.getResponseBodyAsStream(), response.getOutputStream());
-        method.releaseConnection();
     }
 }
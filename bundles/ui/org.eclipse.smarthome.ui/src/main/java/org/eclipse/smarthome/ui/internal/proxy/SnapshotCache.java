@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.internal.proxy;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.httpclient.Header;
+
+/**
+ * The {@link SnapshotCache} shares the responses of image urls among all clients which request them within a short
+ * time. If a url is requested while its snapshot is being fetched, the request waits for this fetch instead of
+ * starting another one, so a single upstream request serves all concurrent clients.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class SnapshotCache {
+
+    private final ConcurrentMap<String, FutureTask<Snapshot>> snapshots = new ConcurrentHashMap<>();
+
+    private final long ttl;
+
+    /**
+     * Creates a cache.
+     *
+     * @param ttl the time in milliseconds for which a snapshot is used
+     */
+    public SnapshotCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the snapshot of a url. The snapshot is fetched if there is no current one and no other request is
+     * fetching it already.
+     *
+     * @param url the url
+     * @param loader fetches the snapshot; may return null if the response cannot be cached
+     * @return the snapshot or null if the response cannot be cached
+     * @throws IOException if the snapshot could not be fetched
+     */
+    public Snapshot get(String url, Callable<Snapshot> loader) throws IOException {
+        while (true) {
+            FutureTask<Snapshot> task = snapshots.get(url);
+            if (task != null && task.isDone() && isExpired(task)) {
+                snapshots.remove(url, task);
+                continue;
+            }
+            if (task == null) {
+                FutureTask<Snapshot> newTask = new FutureTask<>(loader);
+                task = snapshots.putIfAbsent(url, newTask);
+                if (task == null) {
+                    task = newTask;
+                    task.run();
+                }
+            }
+
+            try {
+                Snapshot snapshot = task.get();
+                if (snapshot == null) {
+                    snapshots.remove(url, task);
+                }
+                return snapshot;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the snapshot of '" + url + "'.", e);
+            } catch (ExecutionException e) {
+                snapshots.remove(url, task);
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to fetch the snapshot of '" + url + "'.", e.getCause());
+            }
+        }
+    }
+
+    public void clear() {
+        snapshots.clear();
+    }
+
+    private boolean isExpired(FutureTask<Snapshot> task) {
+        try {
+            Snapshot snapshot = task.get();
+            return snapshot == null || snapshot.fetched + ttl <= System.currentTimeMillis();
+        } catch (InterruptedException | ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * A complete response of an image url.
+     */
+    public static class Snapshot {
+
+        private final int status;
+        private final Header[] headers;
+        private final byte[] body;
+        private final long fetched;
+
+        public Snapshot(int status, Header[] headers, byte[] body, long fetched) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.fetched = fetched;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Header[] getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+    }
+
+}
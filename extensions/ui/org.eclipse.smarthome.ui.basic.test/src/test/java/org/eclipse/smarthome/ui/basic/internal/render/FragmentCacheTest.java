@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.basic.internal.render;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.model.sitemap.ColorArray;
+import org.eclipse.smarthome.model.sitemap.VisibilityRule;
+import org.eclipse.smarthome.model.sitemap.Widget;
+import org.eclipse.smarthome.ui.basic.internal.render.FragmentCache.Fragment;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class FragmentCacheTest {
+
+    private FragmentCache cache;
+
+    private ItemRegistry registry;
+
+    private Item item;
+
+    @Before
+    public void setUp() throws ItemNotFoundException {
+        cache = new FragmentCache();
+        registry = mock(ItemRegistry.class);
+        item = mockItem("Item", OnOffType.ON);
+    }
+
+    @Test
+    public void testFragmentIsReturnedWhileTheStateIsUnchanged() {
+        Widget w = mockWidget("Item");
+        cache.put(w, cache.prepare(registry, w), "<div/>");
+        assertEquals("<div/>", cache.get(registry, w));
+        assertEquals("<div/>", cache.get(registry, w));
+
+        when(item.getState()).thenReturn(OnOffType.OFF);
+        assertNull(cache.get(registry, w));
+        // the fragment has been removed, so it is not returned for the former state either
+        when(item.getState()).thenReturn(OnOffType.ON);
+        assertNull(cache.get(registry, w));
+    }
+
+    @Test
+    public void testStateChangeDuringRenderingInvalidatesTheFragment() {
+        Widget w = mockWidget("Item");
+        Fragment fragment = cache.prepare(registry, w);
+        when(item.getState()).thenReturn(OnOffType.OFF);
+        cache.put(w, fragment, "<div/>");
+        assertNull(cache.get(registry, w));
+    }
+
+    @Test
+    public void testFragmentDependsOnTheItemsOfVisibilityAndColorRules() throws ItemNotFoundException {
+        Item visibility = mockItem("Visibility", OnOffType.ON);
+        Item labelColor = mockItem("LabelColor", OnOffType.ON);
+        Item valueColor = mockItem("ValueColor", OnOffType.ON);
+        Widget w = mockWidget(null);
+        VisibilityRule rule = mock(VisibilityRule.class);
+        when(rule.getItem()).thenReturn("Visibility");
+        w.getVisibility().add(rule);
+        w.getLabelColor().add(mockColor("LabelColor"));
+        w.getValueColor().add(mockColor("ValueColor"));
+
+        for (Item dependency : new Item[] { visibility, labelColor, valueColor }) {
+            cache.put(w, cache.prepare(registry, w), "<div/>");
+            assertEquals("<div/>", cache.get(registry, w));
+            when(dependency.getState()).thenReturn(OnOffType.OFF);
+            assertNull(cache.get(registry, w));
+        }
+    }
+
+    @Test
+    public void testReplacedItemInvalidatesTheFragment() throws ItemNotFoundException {
+        Widget w = mockWidget("Item");
+        cache.put(w, cache.prepare(registry, w), "<div/>");
+        mockItem("Item", OnOffType.ON);
+        assertNull(cache.get(registry, w));
+    }
+
+    @Test
+    public void testMissingItems() throws ItemNotFoundException {
+        Widget w = mockWidget("Missing");
+        doThrow(new ItemNotFoundException("Missing")).when(registry).getItem("Missing");
+        cache.put(w, cache.prepare(registry, w), "<div/>");
+        assertEquals("<div/>", cache.get(registry, w));
+
+        // the item has been added
+        mockItem("Missing", OnOffType.ON);
+        assertNull(cache.get(registry, w));
+        cache.put(w, cache.prepare(registry, w), "<div/>");
+        assertEquals("<div/>", cache.get(registry, w));
+    }
+
+    @Test
+    public void testClear() {
+        Widget w = mockWidget("Item");
+        cache.put(w, cache.prepare(registry, w), "<div/>");
+        cache.clear();
+        assertNull(cache.get(registry, w));
+    }
+
+    private Item mockItem(String name, OnOffType state) throws ItemNotFoundException {
+        Item item = mock(Item.class);
+        when(item.getName()).thenReturn(name);
+        when(item.getState()).thenReturn(state);
+        doReturn(item).when(registry).getItem(name);
+        return item;
+    }
+
+    private Widget mockWidget(String itemName) {
+        Widget w = mock(Widget.class);
+        when(w.getItem()).thenReturn(itemName);
+        when(w.getVisibility()).thenReturn(new BasicEList<VisibilityRule>());
+        when(w.getLabelColor()).thenReturn(new BasicEList<ColorArray>());
+        when(w.getValueColor()).thenReturn(new BasicEList<ColorArray>());
+        return w;
+    }
+
+    private ColorArray mockColor(String itemName) {
+        ColorArray color = mock(ColorArray.class);
+        when(color.getItem()).thenReturn(itemName);
+        return color;
+    }
+
+}
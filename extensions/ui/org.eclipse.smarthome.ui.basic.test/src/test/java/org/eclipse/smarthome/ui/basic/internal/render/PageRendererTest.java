@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.basic.internal.render;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.model.sitemap.ColorArray;
+import org.eclipse.smarthome.model.sitemap.Image;
+import org.eclipse.smarthome.model.sitemap.VisibilityRule;
+import org.eclipse.smarthome.model.sitemap.Widget;
+import org.eclipse.smarthome.ui.basic.internal.WebAppConfig;
+import org.eclipse.smarthome.ui.basic.render.RenderException;
+import org.eclipse.smarthome.ui.basic.render.WidgetRenderer;
+import org.eclipse.smarthome.ui.items.ItemUIRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the caching of the HTML code of widgets by the {@link PageRenderer}.
+ *
+ * @author Markus Mazurczak - Initial contribution
+ */
+public class PageRendererTest {
+
+    private PageRenderer pageRenderer;
+
+    private ItemUIRegistry registry;
+
+    private Item item;
+
+    private CountingRenderer widgetRenderer;
+
+    @Before
+    public void setUp() throws ItemNotFoundException {
+        registry = mock(ItemUIRegistry.class);
+        item = mock(Item.class);
+        when(item.getState()).thenReturn(OnOffType.ON);
+        doReturn(item).when(registry).getItem("Item");
+
+        widgetRenderer = new CountingRenderer();
+        pageRenderer = new PageRenderer();
+        pageRenderer.setItemUIRegistry(registry);
+        pageRenderer.addWidgetRenderer(widgetRenderer);
+    }
+
+    @Test
+    public void testWidgetIsRenderedAgainAfterAStateChange() throws RenderException {
+        Widget w = mockWidget(Widget.class);
+        assertEquals("<widget state=\"ON\"/>", render(w));
+        assertEquals("<widget state=\"ON\"/>", render(w));
+        assertEquals(1, widgetRenderer.count);
+
+        when(item.getState()).thenReturn(OnOffType.OFF);
+        assertEquals("<widget state=\"OFF\"/>", render(w));
+        assertEquals(2, widgetRenderer.count);
+    }
+
+    @Test
+    public void testCodeOfOtherWidgetsIsNotCached() throws RenderException {
+        Widget w = mockWidget(Widget.class);
+        StringBuilder sb = new StringBuilder("<page>");
+        pageRenderer.renderCachedWidget(w, sb);
+        assertEquals("<page><widget state=\"ON\"/>", sb.toString());
+        assertEquals("<widget state=\"ON\"/>", render(w));
+        assertEquals(1, widgetRenderer.count);
+    }
+
+    @Test
+    public void testImagesAreNotCached() throws RenderException {
+        Widget w = mockWidget(Image.class);
+        render(w);
+        render(w);
+        assertEquals(2, widgetRenderer.count);
+    }
+
+    @Test
+    public void testWidgetsWithChildrenAreNotCached() throws RenderException {
+        Widget w = mockWidget(Widget.class);
+        widgetRenderer.children = new BasicEList<Widget>();
+        StringBuilder sb = new StringBuilder();
+        assertNotNull(pageRenderer.renderCachedWidget(w, sb));
+        assertNotNull(pageRenderer.renderCachedWidget(w, sb));
+        assertEquals(2, widgetRenderer.count);
+    }
+
+    @Test
+    public void testCacheIsClearedWithTheConfiguration() throws RenderException {
+        Widget w = mockWidget(Widget.class);
+        render(w);
+        pageRenderer.setConfig(new WebAppConfig());
+        render(w);
+        assertEquals(2, widgetRenderer.count);
+
+        pageRenderer.clearCache();
+        render(w);
+        assertEquals(3, widgetRenderer.count);
+    }
+
+    private String render(Widget w) throws RenderException {
+        StringBuilder sb = new StringBuilder();
+        assertNull(pageRenderer.renderCachedWidget(w, sb));
+        return sb.toString();
+    }
+
+    private Widget mockWidget(Class<? extends Widget> type) {
+        Widget w = mock(type);
+        when(w.getItem()).thenReturn("Item");
+        when(w.getVisibility()).thenReturn(new BasicEList<VisibilityRule>());
+        when(w.getLabelColor()).thenReturn(new BasicEList<ColorArray>());
+        when(w.getValueColor()).thenReturn(new BasicEList<ColorArray>());
+        when(registry.getVisiblity(w)).thenReturn(true);
+        return w;
+    }
+
+    private class CountingRenderer implements WidgetRenderer {
+
+        private int count = 0;
+
+        private EList<Widget> children = null;
+
+        @Override
+        public boolean canRender(Widget w) {
+            return true;
+        }
+
+        @Override
+        public EList<Widget> renderWidget(Widget w, StringBuilder sb) throws RenderException {
+            count++;
+            sb.append("<widget state=\"").append(item.getState()).append("\"/>");
+            return children;
+        }
+
+        @Override
+        public void setConfig(WebAppConfig config) {
+        }
+
+    }
+
+}
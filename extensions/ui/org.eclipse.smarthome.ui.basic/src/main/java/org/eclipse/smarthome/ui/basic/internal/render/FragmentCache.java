@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2014-2015 openHAB UG (haftungsbeschraenkt) and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.eclipse.smarthome.ui.basic.internal.render;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.model.sitemap.ColorArray;
+import org.eclipse.smarthome.model.sitemap.VisibilityRule;
+import org.eclipse.smarthome.model.sitemap.Widget;
+
+/**
+ * This is a cache for the HTML code of single widgets. Together with the code, the items which the widget depends on
+ * (its item and the items of its visibility and color rules) are kept with the states they had before the widget has
+ * been rendered. The code is only returned as long as all of these items still have the same state, so any state
+ * change of one of them invalidates it.
+ * <p>
+ * The widgets are weakly referenced, so the entries of a sitemap disappear together with its model.
+ * </p>
+ *
+ * @author Markus Mazurczak - Initial contribution
+ *
+ */
+public class FragmentCache {
+
+    private final Map<Widget, Fragment> fragments = Collections.synchronizedMap(new WeakHashMap<Widget, Fragment>());
+
+    /**
+     * Returns the cached HTML code of a widget.
+     *
+     * @param itemRegistry the registry to look up the items with
+     * @param w the widget
+     * @return the code or null if the widget is not cached or one of its items has changed
+     */
+    public String get(ItemRegistry itemRegistry, Widget w) {
+        Fragment fragment = fragments.get(w);
+        if (fragment == null) {
+            return null;
+        }
+        for (int i = 0; i < fragment.itemNames.length; i++) {
+            Item item = getItem(itemRegistry, fragment.itemNames[i]);
+            if (item != fragment.items[i] || (item != null && !item.getState().equals(fragment.states[i]))) {
+                fragments.remove(w);
+                return null;
+            }
+        }
+        return fragment.html;
+    }
+
+    /**
+     * Records the current states of the items a widget depends on. This has to be done before the widget is
+     * rendered, so a state change during the rendering invalidates the result.
+     *
+     * @param itemRegistry the registry to look up the items with
+     * @param w the widget
+     * @return the fragment to add the code to
+     */
+    public Fragment prepare(ItemRegistry itemRegistry, Widget w) {
+        List<String> itemNames = new ArrayList<>();
+        if (w.getItem() != null) {
+            itemNames.add(w.getItem());
+        }
+        for (VisibilityRule rule : w.getVisibility()) {
+            itemNames.add(rule.getItem());
+        }
+        for (ColorArray color : w.getLabelColor()) {
+            if (color.getItem() != null) {
+                itemNames.add(color.getItem());
+            }
+        }
+        for (ColorArray color : w.getValueColor()) {
+            if (color.getItem() != null) {
+                itemNames.add(color.getItem());
+            }
+        }
+
+        Fragment fragment = new Fragment(itemNames.toArray(new String[itemNames.size()]));
+        for (int i = 0; i < fragment.itemNames.length; i++) {
+            Item item = getItem(itemRegistry, fragment.itemNames[i]);
+            fragment.items[i] = item;
+            fragment.states[i] = item != null ? item.getState() : null;
+        }
+        return fragment;
+    }
+
+    /**
+     * Adds the code of a widget.
+     *
+     * @param w the widget
+     * @param fragment the fragment which has been prepared before the widget has been rendered
+     * @param html the HTML code of the widget
+     */
+    public void put(Widget w, Fragment fragment, String html) {
+        fragment.html = html;
+        fragments.put(w, fragment);
+    }
+
+    /**
+     * Removes all entries, e.g. if the configuration has changed.
+     */
+    public void clear() {
+        fragments.clear();
+    }
+
+    private Item getItem(ItemRegistry itemRegistry, String itemName) {
+        try {
+            return itemRegistry.getItem(itemName);
+        } catch (ItemNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The HTML code of a widget together with the states it has been rendered for. It must not reference the
+     * widget, otherwise the weak reference of the cache would never be cleared.
+     */
+    public static class Fragment {
+
+        private final String[] itemNames;
+        private final Item[] items;
+        private final State[] states;
+        private String html;
+
+        private Fragment(String[] itemNames) {
+            this.itemNames = itemNames;
+            this.items = new Item[itemNames.length];
+            this.states = new State[itemNames.length];
+        }
+
+    }
+
+}
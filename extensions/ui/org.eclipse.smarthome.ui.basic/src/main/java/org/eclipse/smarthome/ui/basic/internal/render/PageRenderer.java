@@ -14,6 +14,7 @@ import org.apache.commons.lang.StringUtils;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.smarthome.model.sitemap.Frame;
+import org.eclipse.smarthome.model.sitemap.Image;
 import org.eclipse.smarthome.model.sitemap.Sitemap;
 import org.eclipse.smarthome.model.sitemap.Widget;
 import org.eclipse.smarthome.ui.basic.internal.WebAppConfig;
@@ -30,8 +31,12 @@ import org.slf4j.LoggerFactory;
  * It provides the HTML header and skeleton and delegates the rendering of
  * widgets on the page to the dedicated widget renderers.
  *
+ * The HTML code of widgets without children is kept in a {@link FragmentCache}, so only
+ * the widgets whose items have changed are rendered again.
+ *
  * @author Kai Kreuzer - Initial contribution and API
  * @author Vlad Ivanov - BasicUI changes
+ * @author Markus Mazurczak - Cache for the HTML code of widgets
  *
  */
 public class PageRenderer extends AbstractWidgetRenderer {
@@ -40,12 +45,16 @@ public class PageRenderer extends AbstractWidgetRenderer {
 
     List<WidgetRenderer> widgetRenderers = new ArrayList<WidgetRenderer>();
 
+    private final FragmentCache fragmentCache = new FragmentCache();
+
     public void addWidgetRenderer(WidgetRenderer widgetRenderer) {
         widgetRenderers.add(widgetRenderer);
+        fragmentCache.clear();
     }
 
     public void removeWidgetRenderer(WidgetRenderer widgetRenderer) {
         widgetRenderers.remove(widgetRenderer);
+        fragmentCache.clear();
     }
 
     /**
@@ -121,7 +130,7 @@ public class PageRenderer extends AbstractWidgetRenderer {
             StringBuilder new_pre = new StringBuilder();
             StringBuilder new_post = new StringBuilder();
             StringBuilder widgetSB = new StringBuilder();
-            EList<Widget> nextChildren = renderWidget(w, widgetSB);
+            EList<Widget> nextChildren = renderCachedWidget(w, widgetSB);
             if (nextChildren != null) {
                 String[] parts = widgetSB.toString().split("%children%");
                 // no %children% placeholder found or at the end
@@ -152,6 +161,31 @@ public class PageRenderer extends AbstractWidgetRenderer {
 
     }
 
+    /**
+     * Renders a widget or takes its HTML code from the cache, if the items it depends on have not changed.
+     *
+     * @param w the widget to render
+     * @param sb the string builder to append the HTML code to
+     * @return the children of the widget which still have to be rendered or null
+     * @throws RenderException if an error occurs during rendering
+     */
+    EList<Widget> renderCachedWidget(Widget w, StringBuilder sb) throws RenderException {
+        String html = fragmentCache.get(itemUIRegistry, w);
+        if (html != null) {
+            sb.append(html);
+            return null;
+        }
+
+        FragmentCache.Fragment fragment = fragmentCache.prepare(itemUIRegistry, w);
+        int start = sb.length();
+        EList<Widget> children = renderWidget(w, sb);
+        // widgets with children are not cached, images contain a timestamp to bypass the browser cache
+        if (children == null && !(w instanceof Image)) {
+            fragmentCache.put(w, fragment, sb.substring(start));
+        }
+        return children;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -186,5 +220,13 @@ public class PageRenderer extends AbstractWidgetRenderer {
         for (WidgetRenderer renderer : widgetRenderers) {
             renderer.setConfig(config);
         }
+        fragmentCache.clear();
+    }
+
+    /**
+     * Removes the HTML code of all widgets from the cache, e.g. after the configuration has changed.
+     */
+    public void clearCache() {
+        fragmentCache.clear();
     }
 }
@@ -8,12 +8,13 @@
 package org.eclipse.smarthome.ui.basic.internal.servlet;
 
 import java.io.IOException;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
@@ -43,6 +44,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Kai Kreuzer - Initial contribution and API
  * @author Vlad Ivanov - BasicUI changes
+ * @author Markus Mazurczak - Polling requests wait for state changes without sleeping
  *
  */
 public class WebAppServlet extends BaseServlet {
@@ -91,6 +93,9 @@ public class WebAppServlet extends BaseServlet {
 
     protected void modified(Map<String, Object> configProps) {
         config.applyConfig(configProps);
+        if (renderer != null) {
+            renderer.clearCache();
+        }
     }
 
     protected void deactivate() {
@@ -116,7 +121,6 @@ public class WebAppServlet extends BaseServlet {
             sitemapName = config.getDefaultSitemap();
         }
 
-        StringBuilder result = new StringBuilder();
         Sitemap sitemap = null;
 
         for (SitemapProvider sitemapProvider : sitemapProviders) {
@@ -124,6 +128,10 @@ public class WebAppServlet extends BaseServlet {
             if (sitemap != null)
                 break;
         }
+
+        String id = null;
+        String label = null;
+        EList<Widget> children = null;
         try {
             if (sitemap == null) {
                 throw new RenderException("Sitemap '" + sitemapName + "' could not be found");
@@ -131,37 +139,57 @@ public class WebAppServlet extends BaseServlet {
             logger.debug("reading sitemap {}", sitemap.getName());
             if (widgetId == null || widgetId.isEmpty() || widgetId.equals(sitemapName)) {
                 // we are at the homepage, so we render the children of the sitemap root node
-                String label = sitemap.getLabel() != null ? sitemap.getLabel() : sitemapName;
-                EList<Widget> children = sitemap.getChildren();
-                if (poll && waitForChanges(children) == false) {
-                    // we have reached the timeout, so we do not return any content as nothing has changed
-                    res.getWriter().append(getTimeoutResponse()).close();
-                    return;
-                }
-                result.append(renderer.processPage(sitemapName, sitemapName, label, sitemap.getChildren(), async));
+                id = sitemapName;
+                label = sitemap.getLabel() != null ? sitemap.getLabel() : sitemapName;
+                children = sitemap.getChildren();
             } else if (!widgetId.equals("Colorpicker")) {
                 // we are on some subpage, so we have to render the children of the widget that has been selected
                 Widget w = renderer.getItemUIRegistry().getWidget(sitemap, widgetId);
                 if (w != null) {
-                    String label = renderer.getItemUIRegistry().getLabel(w);
+                    label = renderer.getItemUIRegistry().getLabel(w);
                     if (label == null)
                         label = "undefined";
                     if (!(w instanceof LinkableWidget)) {
                         throw new RenderException("Widget '" + w + "' can not have any content");
                     }
-                    EList<Widget> children = renderer.getItemUIRegistry().getChildren((LinkableWidget) w);
-                    if (poll && waitForChanges(children) == false) {
-                        // we have reached the timeout, so we do not return any content as nothing has changed
-                        res.getWriter().append(getTimeoutResponse()).close();
-                        return;
-                    }
-                    result.append(renderer.processPage(renderer.getItemUIRegistry().getWidgetId(w), sitemapName, label,
-                            children, async));
+                    id = renderer.getItemUIRegistry().getWidgetId(w);
+                    children = renderer.getItemUIRegistry().getChildren((LinkableWidget) w);
                 }
             }
         } catch (RenderException e) {
             throw new ServletException(e.getMessage(), e);
         }
+
+        if (children != null && poll) {
+            if (waitForChanges(getAllItems(children)) == false) {
+                // we have reached the timeout, so we do not return any content as nothing has changed
+                res.getWriter().append(getTimeoutResponse()).close();
+                return;
+            }
+        }
+        writePage(res, id, sitemapName, label, children, async);
+    }
+
+    /**
+     * Renders a page and writes it to the response.
+     *
+     * @param res the response
+     * @param id the id of the page
+     * @param sitemapName the name of the sitemap
+     * @param label the title of the page
+     * @param children the widgets of the page or null to write an empty page
+     * @param async true, if this is an asynchronous request
+     */
+    private void writePage(ServletResponse res, String id, String sitemapName, String label, EList<Widget> children,
+            boolean async) throws ServletException, IOException {
+        StringBuilder result = new StringBuilder();
+        if (children != null) {
+            try {
+                result.append(renderer.processPage(id, sitemapName, label, children, async));
+            } catch (RenderException e) {
+                throw new ServletException(e.getMessage(), e);
+            }
+        }
         if (async) {
             res.setContentType("application/xml;charset=UTF-8");
         } else {
@@ -181,27 +209,20 @@ public class WebAppServlet extends BaseServlet {
     }
 
     /**
-     * This method only returns when a change has occurred to any item on the page to display
+     * This method only returns when a change has occurred to any item on the page to display.
      *
-     * @param widgets the widgets of the page to observe
+     * @param items the items of the page to observe
      */
-    private boolean waitForChanges(EList<Widget> widgets) {
-        long startTime = (new Date()).getTime();
+    private boolean waitForChanges(Set<GenericItem> items) {
         boolean timeout = false;
         BlockingStateChangeListener listener = new BlockingStateChangeListener();
-        // let's get all items for these widgets
-        Set<GenericItem> items = getAllItems(widgets);
         for (GenericItem item : items) {
             item.addStateChangeListener(listener);
         }
-        while (!listener.hasChangeOccurred() && !timeout) {
-            timeout = (new Date()).getTime() - startTime > TIMEOUT_IN_MS;
-            try {
-                Thread.sleep(300);
-            } catch (InterruptedException e) {
-                timeout = true;
-                break;
-            }
+        try {
+            timeout = !listener.awaitChange(TIMEOUT_IN_MS);
+        } catch (InterruptedException e) {
+            timeout = true;
         }
         for (GenericItem item : items) {
             item.removeStateChangeListener(listener);
@@ -249,23 +270,24 @@ public class WebAppServlet extends BaseServlet {
      */
     private static class BlockingStateChangeListener implements StateChangeListener {
 
-        private boolean changed = false;
+        private final CountDownLatch changed = new CountDownLatch(1);
 
         /**
          * {@inheritDoc}
          */
         @Override
         public void stateChanged(Item item, State oldState, State newState) {
-            changed = true;
+            changed.countDown();
         }
 
         /**
-         * determines, whether a state change has occurred since its creation
+         * waits until a state change has occurred since its creation
          *
+         * @param timeout the maximum time to wait in milliseconds
          * @return true, if a state has changed
          */
-        public boolean hasChangeOccurred() {
-            return changed;
+        public boolean awaitChange(long timeout) throws InterruptedException {
+            return changed.await(timeout, TimeUnit.MILLISECONDS);
         }
 
         /**